@@ -2,14 +2,16 @@ package buyertests;
 
 import java.lang.reflect.Field;
 import java.math.BigInteger;
+import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 
-import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.jena.rdf.model.Model;
@@ -21,20 +23,25 @@ import com.google.common.hash.BloomFilter;
 
 import dataquality.BuyerObtainKGPart;
 import dataquality.SellerPrepareKG;
+import knowledgegraphpartitioning.PartitionView;
 import knowledgegraphpartitioning.Partitioning;
+import knowledgegraphpartitioning.Strategies;
 import privatesetintersection.KGIntersectionSeller;
-import privatesetintersection.SellerBlindSignatures;
+import privatesetintersection.SignatureDigest;
 import protocol.GetUserInput;
 import protocol.Log;
 import protocol.ModelTools;
 import protocol.Tuple;
+import statistics.ApproximateStatisticsResults;
 import statistics.CBFSeller;
 import statistics.EntropiesEnum;
 import statistics.Entropy;
+import statistics.HyperLogLog;
 import statistics.EntropyResults;
 import statistics.Multisets;
 import statistics.Statistics;
 import statistics.StatisticsResults;
+import statistics.StatisticsSketch;
 
 public class BuyerTests {
 	
@@ -51,7 +58,7 @@ public class BuyerTests {
 	 * @param bf be used to compute intersection
 	 * @return returns true if the given intersection is the same as the intersection between the two models
 	 */
-	public static boolean testIntersection(Model buyerKG, Model sellerKG, Model intersection, BloomFilter<String> bf)
+	public static boolean testIntersection(Model buyerKG, Model sellerKG, Model intersection, BloomFilter<SignatureDigest> bf)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start testing intersection.");
@@ -88,9 +95,8 @@ public class BuyerTests {
 		{
 			logger.info("Testing if the Bloomfilter was computed correctly.");
 			
-			LinkedList<String> signatures = SellerBlindSignatures.aliceBlindSignatures(sellerKG);
 			double fpp = GetUserInput.getBloomFilterFPP();
-			BloomFilter<String> testBF = KGIntersectionSeller.trainBloomFilter(fpp, signatures);
+			BloomFilter<SignatureDigest> testBF = KGIntersectionSeller.trainBloomFilter(fpp, sellerKG);
 			
 			BitSet testBFBits = getBitSet(testBF);
 			BitSet bfBits = getBitSet(bf);
@@ -149,6 +155,11 @@ public class BuyerTests {
 		Logger logger = Log.getLogger();
 		logger.info("Start testing Statistics.");
 		
+		if(sellerResults instanceof ApproximateStatisticsResults)
+		{
+			return testApproximateStatistics(sellerKG, (ApproximateStatisticsResults) sellerResults);
+		}
+		
 		// Recalculate the statistics
 		StatisticsResults trueResults = Statistics.statistics(sellerKG);
 		
@@ -287,6 +298,202 @@ public class BuyerTests {
 		return fullMatch;
 	}
 	
+	/**
+	 * Tests if approximate statistics of the seller are within their claimed error bounds.
+	 * Size and totals have to match exactly, the numbers of different elements and the averages within the relative error,
+	 * every quantile, minimum and maximum has to be a value whose true rank is within the rank error of the claimed quantile.
+	 * The error bounds are computed by the buyer, a seller claiming larger errors than the sketches give fails the test.
+	 * @param sellerKG
+	 * @param sellerResults approximate statistics claimed by the seller
+	 * @return true if all claims are within their error bounds
+	 */
+	private static boolean testApproximateStatistics(Model sellerKG, ApproximateStatisticsResults sellerResults)
+	{
+		Logger logger = Log.getLogger();
+		
+		// Recalculate the statistics exactly
+		StatisticsResults trueResults = Statistics.statistics(sellerKG);
+		int[][] sorted = Statistics.sortedDegrees(sellerKG);
+		
+		// Error bounds of the sketches, the rank errors depend on the sizes of the samples the buyer gets from the same model
+		ApproximateStatisticsResults bounds = Statistics.approximateStatistics(sellerKG);
+		double countError = StatisticsSketch.DISTINCT_COUNT_DEVIATIONS * HyperLogLog.standardError();
+		// Averages divide by an estimated count
+		double averageError = countError / (1 - countError);
+		double subjectError = bounds.getSubjectQuantileError();
+		double objectError = bounds.getObjectQuantileError();
+		
+		boolean withinError = true;	// Stores if all seller values are within their error bounds
+		
+		withinError &= testClaimedError("relative error of the numbers of different elements", sellerResults.getDistinctCountError(), countError);
+		withinError &= testClaimedError("rank error of the quantiles per subject", sellerResults.getSubjectQuantileError(), subjectError);
+		withinError &= testClaimedError("rank error of the quantiles per object resource", sellerResults.getObjectQuantileError(), objectError);
+		
+		withinError &= testCount("size", sellerResults.getSize(), trueResults.getSize(), 0);
+		withinError &= testCount("total number of object resources", sellerResults.getTotalObjectResources(), trueResults.getTotalObjectResources(), 0);
+		withinError &= testCount("total number of literals", sellerResults.getTotalLiterals(), trueResults.getTotalLiterals(), 0);
+		
+		withinError &= testCount("number of resources", sellerResults.getResources(), trueResults.getResources(), countError);
+		withinError &= testCount("number of subjects", sellerResults.getSubjects(), trueResults.getSubjects(), countError);
+		withinError &= testCount("number of predicates", sellerResults.getPredicates(), trueResults.getPredicates(), countError);
+		withinError &= testCount("number of objects", sellerResults.getObjects(), trueResults.getObjects(), countError);
+		withinError &= testCount("number of object resources", sellerResults.getObjectResources(), trueResults.getObjectResources(), countError);
+		withinError &= testCount("number of literals", sellerResults.getLiterals(), trueResults.getLiterals(), countError);
+		
+		withinError &= testAverage("average of outgoing links", sellerResults.getAvgOutgoingLinks(), trueResults.getAvgOutgoingLinks(), averageError);
+		withinError &= testAverage("average of incoming links", sellerResults.getAvgIncomingLinks(), trueResults.getAvgIncomingLinks(), averageError);
+		withinError &= testAverage("average of literals per subject", sellerResults.getAvgLiterals(), trueResults.getAvgLiterals(), averageError);
+		withinError &= testAverage("average of object resources per subject", sellerResults.getAvgObjectResources(), trueResults.getAvgObjectResources(), averageError);
+		
+		long[] outgoing = {sellerResults.getMinOutgoingLinks(), sellerResults.getOutgoingLinks25(), sellerResults.getOutgoingLinks50(), sellerResults.getOutgoingLinks75(), sellerResults.getMaxOutgoingLinks()};
+		long[] resObjects = {sellerResults.getMinResObjects(), sellerResults.getResObjects25(), sellerResults.getResObjects50(), sellerResults.getResObjects75(), sellerResults.getMaxResObjects()};
+		long[] literals = {sellerResults.getMinLiterals(), sellerResults.getLiterals25(), sellerResults.getLiterals50(), sellerResults.getLiterals75(), sellerResults.getMaxLiterals()};
+		long[] incoming = {sellerResults.getMinIncomingLinks(), sellerResults.getIncomingLinks25(), sellerResults.getIncomingLinks50(), sellerResults.getIncomingLinks75(), sellerResults.getMaxIncomingLinks()};
+		withinError &= testQuantiles("outgoing links per subject", outgoing, sorted[0], subjectError);
+		withinError &= testQuantiles("object resources per subject", resObjects, sorted[1], subjectError);
+		withinError &= testQuantiles("literals per subject", literals, sorted[2], subjectError);
+		withinError &= testQuantiles("incoming links per object resource", incoming, sorted[3], objectError);
+		
+		// Output whether all statistics are within their error bounds
+		if(withinError)
+		{
+			logger.info("Approximate statistics results of the seller are within their error bounds of the results computed by the buyer on the sellers model");
+		} else
+		{
+			logger.info("Approximate statistics results of the seller are not within their error bounds of the results computed by the buyer on the sellers model. \n For differences see above.");
+		}
+		logger.info("Done testing Statistics.");
+		
+		return withinError;
+	}
+	
+	/**
+	 * Tests if an error bound claimed by the seller is not larger than the one computed by the buyer
+	 * @param name of the error bound for the output
+	 * @param claimed
+	 * @param computed
+	 * @return true if the claimed bound is at most the computed one
+	 */
+	private static boolean testClaimedError(String name, double claimed, double computed)
+	{
+		Logger logger = Log.getLogger();
+		
+		if(claimed <= computed)
+		{
+			logger.info("Claimed " + name + " of the Sellers statistics is within the error bound of the sketches.");
+			return true;
+		}
+		logger.info("Claimed " + name + " of the Sellers statistics is larger than the error bound of the sketches. \n Claimed: " + claimed + " Computed: " + computed);
+		return false;
+	}
+	
+	/**
+	 * Tests if a claimed count is within a relative error of the true count, off by one is always accepted
+	 * @param name of the statistic for the output
+	 * @param claimed
+	 * @param trueValue
+	 * @param error relative error, 0 if the count has to match exactly
+	 * @return true if within the error
+	 */
+	private static boolean testCount(String name, long claimed, long trueValue, double error)
+	{
+		Logger logger = Log.getLogger();
+		
+		double allowed = error == 0 ? 0 : Math.max(1, error * trueValue);
+		if(Math.abs(claimed - trueValue) <= allowed)
+		{
+			logger.info("Claimed " + name + " of the Sellers model is within the error bound of the true " + name + ".");
+			return true;
+		}
+		logger.info("Claimed " + name + " of the Sellers model is not within the error bound of the true " + name + ". \n Claimed: " + claimed + " True: " + trueValue + " Allowed difference: " + allowed);
+		return false;
+	}
+	
+	/**
+	 * Tests if a claimed average is within a relative error of the true average
+	 * @param name of the statistic for the output
+	 * @param claimed
+	 * @param trueValue
+	 * @param error relative error
+	 * @return true if within the error
+	 */
+	private static boolean testAverage(String name, double claimed, double trueValue, double error)
+	{
+		Logger logger = Log.getLogger();
+		
+		// Both are NaN if there are no subjects or object resources
+		if(Math.abs(claimed - trueValue) <= error * Math.abs(trueValue) || (Double.isNaN(claimed) && Double.isNaN(trueValue)))
+		{
+			logger.info("Claimed " + name + " of the Sellers model is within the error bound of the true " + name + ".");
+			return true;
+		}
+		logger.info("Claimed " + name + " of the Sellers model is not within the error bound of the true " + name + ". \n Claimed: " + claimed + " True: " + trueValue + " Allowed relative error: " + error);
+		return false;
+	}
+	
+	/**
+	 * Tests claimed minimum, 25%, 50%, 75% quantile and maximum against the true values.
+	 * Every claimed value has to be between the true minimum and maximum,
+	 * and the share of true values below it, or up to it, has to be within the rank error of its quantile.
+	 * @param name of the statistic for the output
+	 * @param claimed minimum, 25%, 50%, 75% quantile, maximum
+	 * @param sorted true values in increasing order
+	 * @param error rank error as a fraction of all values
+	 * @return true if all claims are within the error
+	 */
+	private static boolean testQuantiles(String name, long[] claimed, int[] sorted, double error)
+	{
+		Logger logger = Log.getLogger();
+		
+		if(sorted.length == 0)
+		{
+			return true;
+		}
+		double[] quantiles = {0, 0.25, 0.5, 0.75, 1};
+		boolean withinError = true;
+		for(int i = 0; i < quantiles.length; i++)
+		{
+			long value = claimed[i];
+			double below = (double) countBelow(sorted, value) / sorted.length;
+			double upTo = (double) countBelow(sorted, value + 1) / sorted.length;
+			if(value < sorted[0] || value > sorted[sorted.length - 1] || below > quantiles[i] + error || upTo < quantiles[i] - error)
+			{
+				logger.info("Claimed " + (quantiles[i] * 100) + "% quantile of " + name + " of the Sellers model is not within the error bound. \n Claimed: " + value 
+						+ " Share of true values below: " + below + " Share of true values up to: " + upTo + " Allowed rank error: " + error);
+				withinError = false;
+			}
+		}
+		if(withinError)
+		{
+			logger.info("Claimed minimum, quantiles and maximum of " + name + " of the Sellers model are within the error bound.");
+		}
+		return withinError;
+	}
+	
+	/**
+	 * 
+	 * @param sorted values in increasing order
+	 * @param value
+	 * @return number of values smaller than value
+	 */
+	private static int countBelow(int[] sorted, long value)
+	{
+		int low = 0;
+		int high = sorted.length;
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(sorted[middle] < value)
+			{
+				low = middle + 1;
+			} else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
 	/**
 	 * Tests if the given entropies where computed correctly
 	 * Unifies both models
@@ -486,8 +693,8 @@ public class BuyerTests {
 	{
 		Logger logger = Log.getLogger();
 		
-		HashMap<String, Integer> signedDescMultisetTest = CBFSeller.multisetToCBF(sellerMultisetTest);
-		HashMap<String, Integer> signedDescMultisetProtocol = results.getEntropyStore(name).getSellerMultiset();
+		HashMap<SignatureDigest, Integer> signedDescMultisetTest = CBFSeller.multisetToCBF(sellerMultisetTest);
+		HashMap<SignatureDigest, Integer> signedDescMultisetProtocol = results.getEntropyStore(name).getSellerMultiset();
 		if(signedDescMultisetTest.equals(signedDescMultisetProtocol))
 		{
 			logger.info("Test " + name.toString() + " multiset matches the multiset resulting from the protocol.");
@@ -508,10 +715,9 @@ public class BuyerTests {
 	 * @param sellerKG model used by seller instance
 	 * @param encryptedParts AES encrypted model parts the seller produced in the oblivious transfer step
 	 * @param keysBI AES keys the seller used to encrypt the model parts
-	 * @param iv InitialisationVector used for CBC in AES Encryption
 	 * @return true if all tests have been passed, false otherwise
 	 */
-	public static boolean testOblivousTransfer(Model sellerKG, LinkedList<byte[]> encryptedParts, LinkedList<BigInteger> keysBI, IvParameterSpec iv)
+	public static boolean testOblivousTransfer(Model sellerKG, LinkedList<byte[]> encryptedParts, LinkedList<BigInteger> keysBI)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start testing oblivious transfer.");
@@ -521,13 +727,20 @@ public class BuyerTests {
 		logger.info("Start testing if all secrets can be decrypted.");
 		LinkedList<Model> obliviousTransferSecrets = new LinkedList<Model>();
 		int unableToDecrypt = 0;
+		int wrongKeyCheckTags = 0;
 		for(int i = 0; i < encryptedParts.size(); i++)
 		{
 			BigInteger keyBI = keysBI.get(i);
 			try {
+				// The buyer only decrypts parts whose key check tag matches the key, a wrong tag would hide the part
+				byte[] keyCheckTag = SellerPrepareKG.keyCheckTag(keyBI);
+				if(!Arrays.equals(keyCheckTag, Arrays.copyOf(encryptedParts.get(i), keyCheckTag.length)))
+				{
+					wrongKeyCheckTags++;
+				}
 				SecretKeySpec secretKey = SellerPrepareKG.bigIntegerToAESKey(keyBI);
-				String decryptedString = BuyerObtainKGPart.decrypt(encryptedParts.get(i), secretKey, iv);
-				Model kgPart = ModelTools.stringToModel(decryptedString);
+				byte[] decryptedBytes = BuyerObtainKGPart.decrypt(encryptedParts.get(i), secretKey);
+				Model kgPart = ModelTools.bytesToModel(decryptedBytes);
 				if(kgPart != null)
 				{
 					obliviousTransferSecrets.add(kgPart);
@@ -535,14 +748,15 @@ public class BuyerTests {
 				{
 					unableToDecrypt++;
 				}
-			} catch (NoSuchAlgorithmException e) {
+			} catch (NoSuchAlgorithmException | InvalidKeyException e) {
 				logger.info("Exception when trying to decrypt oblivious transfer secrets during verification step. \n"
 						+ e.getMessage() + "\n"
 						+ e.toString());
 			}
 		}
 		logger.info("Done decrypting secrets. Number of secrets that could not be decrypted: " + unableToDecrypt);
-		allcorrect = (unableToDecrypt == 0);
+		logger.info("Number of secrets with a key check tag not matching their key: " + wrongKeyCheckTags);
+		allcorrect = (unableToDecrypt == 0) && (wrongKeyCheckTags == 0);
 		
 		// -------------- Check if OT secrets add up to the Full Buyer Graph.
 		logger.info("Start checking if combination of secrets match the full Sellers model.");
@@ -563,11 +777,35 @@ public class BuyerTests {
 		// -------------- Check if partitioning matches Buyer partitioning ------------------
 		logger.info("Start testing if partitionings match.");
 
-		LinkedList<Model> buyerPartitioning = Partitioning.partitionModel(sellerKG);
+		Strategies strategy = GetUserInput.askPartitioningStrategy();
+		LinkedList<PartitionView> buyerPartitioning = Partitioning.partitionModel(sellerKG, null, strategy);
 
 		if(buyerPartitioning.size() == obliviousTransferSecrets.size())
 		{
 			logger.info("Number of partitions and number of secrets match. Both are: " + buyerPartitioning.size());
+			
+			// The part of every statement only depends on the statement itself, so the parts have to be the same in the same order
+			// Label propagation orders subjects by their content, blank node subjects have none that survives sending the model
+			boolean comparable = strategy == Strategies.HASH
+					|| (strategy == Strategies.LABELPROPAGATION && !sellerKG.listSubjects().filterKeep(subject -> subject.isAnon()).hasNext());
+			if(strategy == Strategies.LABELPROPAGATION && !comparable)
+			{
+				logger.info("The Sellers model has blank node subjects, the label propagation parts cannot be recomputed and are not compared.");
+			}
+			if(comparable)
+			{
+				int differentParts = 0;
+				Iterator<Model> secrets = obliviousTransferSecrets.iterator();
+				for(PartitionView buyerPart : buyerPartitioning)
+				{
+					if(!buyerPart.toModel().isIsomorphicWith(secrets.next()))
+					{
+						differentParts++;
+					}
+				}
+				logger.info("Number of secrets that differ from the recomputed partitioning: " + differentParts);
+				allcorrect = allcorrect && (differentParts == 0);
+			}
 		} else
 		{
 			logger.info("Number of partitions and number of secrets don't match. Number of partitions: " + buyerPartitioning.size() + " Number of secrets: " + obliviousTransferSecrets.size());
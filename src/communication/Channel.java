@@ -0,0 +1,71 @@
+package communication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Buffered connection to the other party.
+ * Bytes are counted below the buffers, so the counts are the bytes that went over the socket.
+ * @author ---
+ *
+ */
+public final class Channel
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final CountingOutputStream countingOut; // MEASUREMENT
+	private final CountingInputStream countingIn; // MEASUREMENT
+	private final DataOutputStream out;
+	private final DataInputStream in;
+	private WireFormat format = WireFormat.JAVA_SERIALIZATION;
+
+	/**
+	 * Wraps the streams of a connected socket
+	 * @param socket
+	 * @throws IOException
+	 */
+	Channel(Socket socket) throws IOException
+	{
+		countingOut = new CountingOutputStream(socket.getOutputStream());
+		countingIn = new CountingInputStream(socket.getInputStream());
+		out = new DataOutputStream(new BufferedOutputStream(countingOut, BUFFER_SIZE));
+		in = new DataInputStream(new BufferedInputStream(countingIn, BUFFER_SIZE));
+	}
+
+	DataOutputStream getOut()
+	{
+		return out;
+	}
+
+	DataInputStream getIn()
+	{
+		return in;
+	}
+
+	WireFormat getFormat()
+	{
+		return format;
+	}
+
+	void setFormat(WireFormat format)
+	{
+		this.format = format;
+	}
+
+	public long getOutputStreamCount()
+	{
+		return countingOut.getByteCount();
+	}
+
+	public long getInputStreamCount()
+	{
+		return countingIn.getByteCount();
+	}
+}
@@ -0,0 +1,81 @@
+package communication;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a stream written by ChunkedOutputStream. Ends at the chunk of length 0, the underlying stream stays open.
+ * @author ---
+ *
+ */
+class ChunkedInputStream extends InputStream
+{
+	private final DataInputStream in;
+	private int remaining = 0;	// bytes left in the current chunk
+	private boolean end = false;
+	
+	ChunkedInputStream(DataInputStream in)
+	{
+		this.in = in;
+	}
+	
+	@Override
+	public int read() throws IOException
+	{
+		if(!nextChunk())
+		{
+			return -1;
+		}
+		remaining--;
+		return in.readUnsignedByte();
+	}
+	
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException
+	{
+		if(length == 0)
+		{
+			return 0;
+		}
+		if(!nextChunk())
+		{
+			return -1;
+		}
+		int n = in.read(bytes, offset, Math.min(length, remaining));
+		if(n < 0)
+		{
+			throw new IOException("Stream ended inside a chunk.");
+		}
+		remaining -= n;
+		return n;
+	}
+	
+	/**
+	 * Reads everything up to and including the end marker
+	 * @throws IOException
+	 */
+	void drain() throws IOException
+	{
+		while(nextChunk())
+		{
+			in.skipBytes(remaining);
+			remaining = 0;
+		}
+	}
+	
+	/**
+	 * Reads the length of the next chunk if the current one is used up
+	 * @return false if the end marker has been reached
+	 * @throws IOException
+	 */
+	private boolean nextChunk() throws IOException
+	{
+		while(remaining == 0 && !end)
+		{
+			remaining = WireCodecs.readVarInt(in);
+			end = (remaining == 0);
+		}
+		return !end;
+	}
+}
@@ -0,0 +1,78 @@
+package communication;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Splits a stream of unknown length into chunks: varint length, bytes. A chunk of length 0 ends the stream.
+ * Used for payloads that are too big to be buffered before sending, e.g. models.
+ * Closing writes the end marker but leaves the underlying stream open.
+ * @author ---
+ *
+ */
+class ChunkedOutputStream extends OutputStream
+{
+	private static final int CHUNK_SIZE = 1 << 16;
+	
+	private final DataOutputStream out;
+	private final byte[] buffer = new byte[CHUNK_SIZE];
+	private int count = 0;
+	private boolean closed = false;
+	
+	ChunkedOutputStream(DataOutputStream out)
+	{
+		this.out = out;
+	}
+	
+	@Override
+	public void write(int b) throws IOException
+	{
+		if(count == CHUNK_SIZE)
+		{
+			writeChunk();
+		}
+		buffer[count++] = (byte) b;
+	}
+	
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException
+	{
+		while(length > 0)
+		{
+			if(count == CHUNK_SIZE)
+			{
+				writeChunk();
+			}
+			int n = Math.min(length, CHUNK_SIZE - count);
+			System.arraycopy(bytes, offset, buffer, count, n);
+			count += n;
+			offset += n;
+			length -= n;
+		}
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		if(closed)
+		{
+			return;
+		}
+		writeChunk();
+		WireCodecs.writeVarInt(0, out);
+		out.flush();
+		closed = true;
+	}
+	
+	private void writeChunk() throws IOException
+	{
+		if(count == 0)
+		{
+			return;
+		}
+		WireCodecs.writeVarInt(count, out);
+		out.write(buffer, 0, count);
+		count = 0;
+	}
+}
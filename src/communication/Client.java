@@ -7,12 +7,13 @@ import java.util.logging.Logger;
 
 import javax.net.ssl.SSLSocketFactory;
 
-import org.apache.commons.io.input.CountingInputStream;
-import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 
+import com.google.common.hash.BloomFilter;
+
+import privatesetintersection.SignatureDigest;
 import protocol.GetUserInput;
 import protocol.Log;
 import protocol.Tuple;
@@ -28,8 +29,7 @@ public class Client
 {
 	private static Client instance;
 	private Socket socket;
-	private CountingOutputStream countingOut; // MEASUREMENT
-	private CountingInputStream countingIn; // MEASUREMENT
+	private Channel channel;
 	
 	/**
 	 * Creates a client that establishes a SSL connection to the server
@@ -44,8 +44,8 @@ public class Client
 		{
 			SSLSocketFactory ssf = (SSLSocketFactory) SSLSocketFactory.getDefault();
 		    socket = ssf.createSocket(ip, port);
-		    countingOut = new CountingOutputStream(socket.getOutputStream());  // MEASURING
-		    countingIn = new CountingInputStream(socket.getInputStream());  // MEASURING
+		    channel = new Channel(socket);
+		    ReadWrite.negotiateAsClient(channel);
 		} catch (IOException e) 
 		{
 			 logger.info("Exception in communication, when trying to create client. \n" 
@@ -75,8 +75,17 @@ public class Client
 	  */
 	 public void sendModel(Model model)
 	 {
-//		 ReadWrite.sendModel(client, model);
-		 ReadWrite.sendModel(countingOut, model);
+		 ReadWrite.sendModel(channel, model);
+	 }
+	 
+	 /**
+	  * Sends a model
+	  * @param model which is supposed to be sent
+	  * @param compress whether the model is gzip compressed, only with the framed wire format
+	  */
+	 public void sendModel(Model model, boolean compress)
+	 {
+		 ReadWrite.sendModel(channel, model, compress);
 	 }
 	 
 	/**
@@ -85,8 +94,7 @@ public class Client
 	 */
     public Model readModel()
     {
-//    	return ReadWrite.readModel(socket);
-    	return ReadWrite.readModel(countingIn);
+    	return ReadWrite.readModel(channel);
     }
 	
     /**
@@ -95,8 +103,7 @@ public class Client
      */
 	public <T> void sendObject(T object)
 	{
-//		ReadWrite.sendObject(socket, object);
-		ReadWrite.sendObject(countingOut, object);
+		ReadWrite.sendObject(channel, object);
 	}
 	
 	/**
@@ -105,10 +112,18 @@ public class Client
 	 */
 	public <T> T readObject()
     {
-//    	return ReadWrite.<T>readObject(socket);
-		return ReadWrite.<T>readObject(countingIn);
+		return ReadWrite.<T>readObject(channel);
     }
 	
+	/**
+	 * Receives a Bloom filter of signature digests
+	 * @return Bloom filter sent by the server
+	 */
+	public BloomFilter<SignatureDigest> readBloomFilter()
+	{
+		return ReadWrite.readBloomFilter(channel);
+	}
+	
 	// ------------- ONLY NEEDED FOR INSECURE / NO PRIVACY COMPARISON ----------------
 	/**
 	 * receives a HashMap with key: Tuple<Resource, RDFNode> value: Integer
@@ -116,8 +131,7 @@ public class Client
 	 */
 	public HashMap<Tuple<Resource, RDFNode>,Integer> readHashMap()
 	{
-//		return ReadWrite.readHashMap(socket);
-		return ReadWrite.readHashMap(countingIn);
+		return ReadWrite.readHashMap(channel);
 	}
 	
 	/**
@@ -126,8 +140,7 @@ public class Client
 	 */
 	public HashMap<RDFNode,Integer> readHashMap2()
 	{
-//		return ReadWrite.readHashMap2(socket);
-		return ReadWrite.readHashMap2(countingIn);
+		return ReadWrite.readHashMap2(channel);
 	}
 	
 	/**
@@ -136,19 +149,18 @@ public class Client
 	 */
 	public HashMap<Resource,Integer> readHashMap3()
 	{
-//		return ReadWrite.readHashMap3(socket);
-		return ReadWrite.readHashMap3(countingIn);
+		return ReadWrite.readHashMap3(channel);
 	}
 	
 	// ----------- ONLY NEEDED FOR COMMUNICATION MEASUREMENT -------------------------
 	 
 	 public long getOutputStreamCount()
 	 {
-		 return countingOut.getByteCount();
+		 return channel.getOutputStreamCount();
 	 }
 	 
 	 public long getInputStreamCount()
 	 {
-		 return countingIn.getByteCount();
+		 return channel.getInputStreamCount();
 	 }
 }
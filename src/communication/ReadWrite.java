@@ -1,24 +1,29 @@
 package communication;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.net.Socket;
 import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
-import org.apache.commons.io.input.CountingInputStream;
-import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.riot.RiotException;
 
+import com.google.common.hash.BloomFilter;
 
-import dataquality.BuyerObtainKGPart;
-import dataquality.SellerPrepareKG;
 import nosecuritycomparison.SerializedRDFNode;
+import privatesetintersection.SignatureDigest;
 import protocol.Log;
 import protocol.ModelTools;
 import protocol.Tuple;
@@ -26,27 +31,103 @@ import protocol.Tuple;
 /**
  * Contains sending and receiving methods to be used by both the server and client
  * 
+ * Depending on what server and client agreed on when connecting, every message is either a Java serialized object,
+ * or a frame: one byte tag naming the codec, varint length of the payload, payload.
+ * Objects without a binary codec are sent as Java serialized object inside a frame.
+ * Models are the exception, their length is not known in advance, see sendModel.
+ * 
  * @author ---
  *
  */
 public class ReadWrite 
 {
+	private static final int MAGIC = 0x4B475746; // "KGWF", first bytes the client sends
+	private static WireFormat preferredFormat = WireFormat.FRAMED;
+	
+	/**
+	 * Sets the format this party would like to use. The format used is the older one of the two parties' choices.
+	 * Needs to be called before the server or client is created.
+	 * @param format
+	 */
+	public static void setPreferredFormat(WireFormat format)
+	{
+		preferredFormat = format;
+	}
+	
+	/**
+	 * Client side of agreeing on a wire format. Sends its preferred format and reads the chosen one.
+	 * @param channel
+	 * @throws IOException
+	 */
+	static void negotiateAsClient(Channel channel) throws IOException
+	{
+		DataOutputStream out = channel.getOut();
+		out.writeInt(MAGIC);
+		out.writeByte(preferredFormat.ordinal());
+		out.flush();
+		
+		int chosen = channel.getIn().readUnsignedByte();
+		channel.setFormat(WireFormat.values()[chosen]);
+		Log.getLogger().info("Wire format: " + channel.getFormat());
+	}
+	
+	/**
+	 * Server side of agreeing on a wire format. Reads the clients preferred format and answers with the chosen one.
+	 * @param channel
+	 * @throws IOException
+	 */
+	static void negotiateAsServer(Channel channel) throws IOException
+	{
+		DataInputStream in = channel.getIn();
+		int magic = in.readInt();
+		if(magic != MAGIC)
+		{
+			throw new IOException("Client does not speak this protocol.");
+		}
+		int offered = in.readUnsignedByte();
+		int chosen = Math.min(offered, preferredFormat.ordinal());
+		
+		DataOutputStream out = channel.getOut();
+		out.writeByte(chosen);
+		out.flush();
+		channel.setFormat(WireFormat.values()[chosen]);
+		Log.getLogger().info("Wire format: " + channel.getFormat());
+	}
+	
 	/**
      * Can send any serializable object
      * terminates program on IOException
      *  
-     * @param socket the objects should be sent to
+     * @param channel the objects should be sent to
      * @param object object to be sent, needs to be serializable
      */
-//	public static <T> void sendObject(Socket socket, T object)
-	public static <T> void sendObject(CountingOutputStream count, T object)
+	public static <T> void sendObject(Channel channel, T object)
 	{
 		Logger logger = Log.getLogger();
 		
 		 try 
 		 {
-			 ObjectOutputStream os = new ObjectOutputStream(count);
-			 os.writeObject(object);
+			 if(channel.getFormat() == WireFormat.JAVA_SERIALIZATION)
+			 {
+				 ObjectOutputStream os = new ObjectOutputStream(channel.getOut());
+				 os.writeObject(object);
+				 os.flush();
+			 } else
+			 {
+				 byte tag = WireCodecs.tagFor(object);
+				 writeFrame(channel, tag, (payload) -> 
+				 {
+					 if(tag == WireCodecs.JAVA)
+					 {
+						 ObjectOutputStream os = new ObjectOutputStream(payload);
+						 os.writeObject(object);
+						 os.flush();
+					 } else
+					 {
+						 WireCodecs.encode(tag, object, payload);
+					 }
+				 });
+			 }
 		 } catch (IOException e) 
 		 {
 			 logger.info("Exception in communication, when trying to send a serializable object. \n" 
@@ -62,20 +143,36 @@ public class ReadWrite
 	 * 
 	 * terminates program on IOException
 	 *  
-	 * @param socket to listen to
+	 * @param channel to listen to
 	 * @return object which has been received.
 	 */
-//	public static <T> T readObject(Socket socket)
-	public static <T> T readObject(CountingInputStream count)
+	@SuppressWarnings("unchecked")
+	public static <T> T readObject(Channel channel)
 	{
 		Logger logger = Log.getLogger();
 		
 		T received = null;
 		try 
 		{
-//			ObjectInputStream is = new ObjectInputStream(socket.getInputStream());
-			ObjectInputStream is = new ObjectInputStream(count);
-			received = (T) is.readObject();
+			if(channel.getFormat() == WireFormat.JAVA_SERIALIZATION)
+			{
+				ObjectInputStream is = new ObjectInputStream(channel.getIn());
+				received = (T) is.readObject();
+			} else
+			{
+				received = (T) readFrame(channel, (tag, payload) -> 
+				{
+					if(tag == WireCodecs.JAVA)
+					{
+						try {
+							return new ObjectInputStream(payload).readObject();
+						} catch (ClassNotFoundException e) {
+							throw new IOException(e);
+						}
+					}
+					return WireCodecs.decode(tag, payload);
+				});
+			}
 		} catch (IOException | ClassNotFoundException e) 
 		{
 			logger.info("Exception in communication, when trying to read a serializable object. \n" 
@@ -87,27 +184,59 @@ public class ReadWrite
 		return received;
 	}
 	
+	/**
+	 * Sends a model, uncompressed
+	 * 
+	 * terminates program on IOException
+	 * 
+	 * @param channel the model should be sent to
+	 * @param model to be sent
+	 */
+	public static void sendModel(Channel channel, Model model)
+	{
+		sendModel(channel, model, false);
+	}
+	
 	/**
 	 * Sends a model
-	 * first encodes the model as a string which is serializable to be sent
+	 * With the framed format the model is written in RDF Thrift format directly to the socket: tag, one byte telling
+	 * whether the model is gzip compressed, and the model in chunks (see ChunkedOutputStream).
+	 * With Java serialization the model is encoded as a string which is serializable to be sent, compress is ignored.
 	 * 
 	 * terminates program on IOException
 	 * 
-	 * @param socket the model should be sent to
+	 * @param channel the model should be sent to
 	 * @param model to be sent
+	 * @param compress whether the model is gzip compressed
 	 */
-//	public static void sendModel(Socket socket, Model model)
-	public static void sendModel(CountingOutputStream count, Model model)
+	public static void sendModel(Channel channel, Model model, boolean compress)
 	{
 		Logger logger = Log.getLogger();
 		
-		String modelAsString = ModelTools.modelToString(model);
+		if(channel.getFormat() == WireFormat.JAVA_SERIALIZATION)
+		{
+			sendObject(channel, ModelTools.modelToString(model));
+			return;
+		}
+		
 		try 
 		{
-//			ObjectOutputStream os = new ObjectOutputStream(socket.getOutputStream());
-			ObjectOutputStream os = new ObjectOutputStream(count);
-			os.writeObject(modelAsString);
-		} catch (IOException e) 
+			DataOutputStream out = channel.getOut();
+			out.writeByte(WireCodecs.MODEL);
+			out.writeByte(compress ? 1 : 0);
+			
+			ChunkedOutputStream chunks = new ChunkedOutputStream(out);
+			if(compress)
+			{
+				GZIPOutputStream gzip = new GZIPOutputStream(chunks, 1 << 16);
+				ModelTools.writeModel(model, gzip);
+				gzip.finish();
+			} else
+			{
+				ModelTools.writeModel(model, chunks);
+			}
+			chunks.close();
+		} catch (IOException | RiotException e) 
 		{
 			logger.info("Exception in communication, when trying to send a model. \n" 
 					+ e.getMessage() + "\n"
@@ -115,31 +244,39 @@ public class ReadWrite
 					+ "Protocol is being terminated.");
 			System.exit(1);
 		}
-    	
 	}
 	
 	/**
 	 * Receives a model
-	 * Received model is encoded as a String
-	 * Turns it back into a model
+	 * With the framed format the triples are added to the model while they arrive.
+	 * With Java serialization the received model is encoded as a String and turned back into a model.
 	 * 
 	 * terminates program on IOException
 	 *  
-	 * @param socket to listen to
+	 * @param channel to listen to
 	 * @return model
 	 */
-//	public static Model readModel(Socket socket)
-	public static Model readModel(CountingInputStream count)
+	public static Model readModel(Channel channel)
 	{
 		Logger logger = Log.getLogger();
 		
-		String modelAsString = null;
+		if(channel.getFormat() == WireFormat.JAVA_SERIALIZATION)
+		{
+			return ModelTools.stringToModel(ReadWrite.<String>readObject(channel));
+		}
+		
+		Model model = ModelFactory.createDefaultModel();
 		try 
 		{
-//			ObjectInputStream is = new ObjectInputStream(socket.getInputStream());
-			ObjectInputStream is = new ObjectInputStream(count);
-			modelAsString = (String) is.readObject();
-		} catch (IOException | ClassNotFoundException e) 
+			DataInputStream in = channel.getIn();
+			expectTag(WireCodecs.MODEL, in.readByte());
+			boolean compressed = in.readByte() != 0;
+			
+			ChunkedInputStream chunks = new ChunkedInputStream(in);
+			ModelTools.readModel(compressed ? new GZIPInputStream(chunks, 1 << 16) : chunks, model);
+			// The parser may stop before the end marker
+			chunks.drain();
+		} catch (IOException | RiotException e) 
 		{
 			logger.info("Exception in communication, when trying to read a model. \n" 
 					+ e.getMessage() + "\n"
@@ -147,77 +284,179 @@ public class ReadWrite
 					+ "Protocol is being terminated.");
 			System.exit(1);
 		}
-		Model model = ModelTools.stringToModel(modelAsString);
 		return model;
 	}
 	
-	
-	// ------------ ONLY USED FOR INSECURE/NO PRIVACY COMPARISON ----------------------------
 	/**
-	 * Serializes and sends a HashMap<Tuple<Resource, RDFNode>,Integer>
+	 * Sends a Bloom filter of signature digests. Only the bits and hash function count are sent.
 	 * 
 	 * terminates program on IOException
 	 * 
-	 * @param socket to send to
-	 * @param hashmap HashMap<Tuple<Resource, RDFNode>,Integer>
+	 * @param channel the Bloom filter should be sent to
+	 * @param bf Bloom filter
 	 */
-//	public static void sendHashMap(Socket socket, HashMap<Tuple<Resource, RDFNode>,Integer> hashmap)
-	public static void sendHashMap(CountingOutputStream count, HashMap<Tuple<Resource, RDFNode>,Integer> hashmap)
+	public static void sendBloomFilter(Channel channel, BloomFilter<SignatureDigest> bf)
 	{
 		Logger logger = Log.getLogger();
 		
-		HashMap<Tuple<String, SerializedRDFNode>,Integer> serializedHashMap = new HashMap<Tuple<String, SerializedRDFNode>,Integer>();
-		for(Entry<Tuple<Resource, RDFNode>, Integer> entry : hashmap.entrySet())
+		if(channel.getFormat() == WireFormat.JAVA_SERIALIZATION)
 		{
-			String resourceString = entry.getKey().x.toString();
-			SerializedRDFNode sNode = new SerializedRDFNode(entry.getKey().y);
-			serializedHashMap.put(new Tuple<String, SerializedRDFNode>(resourceString, sNode), entry.getValue());
+			sendObject(channel, bf);
+			return;
 		}
-		// send serialized version
+		
 		try 
 		{
-//			ObjectOutputStream os = new ObjectOutputStream(socket.getOutputStream());
-			ObjectOutputStream os = new ObjectOutputStream(count);
-			os.writeObject(serializedHashMap);
+			writeFrame(channel, WireCodecs.BLOOM_FILTER, (payload) -> bf.writeTo(payload));
 		} catch (IOException e) 
 		{
-			logger.info("Exception in communication, when trying to send a hashmap. \n" 
+			logger.info("Exception in communication, when trying to send a Bloom filter. \n" 
 					+ e.getMessage() + "\n"
 					+ e.toString() + "\n"
 					+ "Protocol is being terminated.");
 			System.exit(1);
 		}
-    	
 	}
 	
 	/**
-	 * Receives a HashMap<Tuple<Resource, RDFNode>, Integer>
-	 * Undoes serialisation encoding
+	 * Receives a Bloom filter of signature digests.
 	 * 
 	 * terminates program on IOException
 	 * 
-	 * @param socket to listen to
-	 * @return HashMap<Tuple<Resource, RDFNode>, Integer>
+	 * @param channel to listen to
+	 * @return Bloom filter
 	 */
-//	public static HashMap<Tuple<Resource, RDFNode>,Integer> readHashMap(Socket socket)
-	public static HashMap<Tuple<Resource, RDFNode>,Integer> readHashMap(CountingInputStream count)
+	@SuppressWarnings("unchecked")
+	public static BloomFilter<SignatureDigest> readBloomFilter(Channel channel)
 	{
 		Logger logger = Log.getLogger();
 		
-		HashMap<Tuple<String, SerializedRDFNode>,Integer> serializedHashMap = null;
+		if(channel.getFormat() == WireFormat.JAVA_SERIALIZATION)
+		{
+			return ReadWrite.<BloomFilter<SignatureDigest>>readObject(channel);
+		}
+		
+		BloomFilter<SignatureDigest> bf = null;
 		try 
 		{
-//			ObjectInputStream is = new ObjectInputStream(socket.getInputStream());
-			ObjectInputStream is = new ObjectInputStream(count);
-			serializedHashMap = (HashMap<Tuple<String, SerializedRDFNode>,Integer>) is.readObject();
-		} catch (IOException | ClassNotFoundException e) 
+			bf = (BloomFilter<SignatureDigest>) readFrame(channel, (tag, payload) -> 
+			{
+				expectTag(WireCodecs.BLOOM_FILTER, tag);
+				return BloomFilter.readFrom(payload, SignatureDigest.DigestFunnel.INSTANCE);
+			});
+		} catch (IOException e) 
 		{
-			logger.info("Exception in communication, when trying to read a hashmap. \n" 
+			logger.info("Exception in communication, when trying to read a Bloom filter. \n" 
 					+ e.getMessage() + "\n"
 					+ e.toString() + "\n"
 					+ "Protocol is being terminated.");
 			System.exit(1);
 		}
+		return bf;
+	}
+	
+	// ------------ Frames ----------------------------------------------------------------
+	
+	private interface PayloadWriter
+	{
+		public void write(DataOutputStream payload) throws IOException;
+	}
+	
+	private interface PayloadReader
+	{
+		public Object read(byte tag, DataInputStream payload) throws IOException;
+	}
+	
+	/**
+	 * Writes tag, length of the payload, and the payload, then flushes.
+	 * @param channel
+	 * @param tag
+	 * @param writer writes the payload
+	 * @throws IOException
+	 */
+	private static void writeFrame(Channel channel, byte tag, PayloadWriter writer) throws IOException
+	{
+		// The length needs to be known before the payload is written
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(buffer);
+		writer.write(payload);
+		payload.flush();
+		
+		DataOutputStream out = channel.getOut();
+		out.writeByte(tag);
+		WireCodecs.writeVarInt(buffer.size(), out);
+		buffer.writeTo(out);
+		out.flush();
+	}
+	
+	/**
+	 * Reads one frame. The reader only sees the bytes of the payload and needs to read all of them.
+	 * @param channel
+	 * @param reader reads the payload
+	 * @return what the reader returned
+	 * @throws IOException
+	 */
+	private static Object readFrame(Channel channel, PayloadReader reader) throws IOException
+	{
+		DataInputStream in = channel.getIn();
+		byte tag = in.readByte();
+		int length = WireCodecs.readVarInt(in);
+		
+		BoundedInputStream bounded = new BoundedInputStream(in, length);
+		bounded.setPropagateClose(false);
+		DataInputStream payload = new DataInputStream(bounded);
+		
+		Object received = reader.read(tag, payload);
+		if(payload.read() != -1)
+		{
+			throw new IOException("Payload of frame with tag " + tag + " has not been read completely.");
+		}
+		return received;
+	}
+	
+	private static void expectTag(byte expected, byte tag) throws IOException
+	{
+		if(tag != expected)
+		{
+			throw new IOException("Expected frame with tag " + expected + " but received tag " + tag);
+		}
+	}
+	
+	// ------------ ONLY USED FOR INSECURE/NO PRIVACY COMPARISON ----------------------------
+	/**
+	 * Serializes and sends a HashMap<Tuple<Resource, RDFNode>,Integer>
+	 * 
+	 * terminates program on IOException
+	 * 
+	 * @param channel to send to
+	 * @param hashmap HashMap<Tuple<Resource, RDFNode>,Integer>
+	 */
+	public static void sendHashMap(Channel channel, HashMap<Tuple<Resource, RDFNode>,Integer> hashmap)
+	{
+		HashMap<Tuple<String, SerializedRDFNode>,Integer> serializedHashMap = new HashMap<Tuple<String, SerializedRDFNode>,Integer>();
+		for(Entry<Tuple<Resource, RDFNode>, Integer> entry : hashmap.entrySet())
+		{
+			String resourceString = entry.getKey().x.toString();
+			SerializedRDFNode sNode = new SerializedRDFNode(entry.getKey().y);
+			serializedHashMap.put(new Tuple<String, SerializedRDFNode>(resourceString, sNode), entry.getValue());
+		}
+		// send serialized version
+		sendObject(channel, serializedHashMap);
+    	
+	}
+	
+	/**
+	 * Receives a HashMap<Tuple<Resource, RDFNode>, Integer>
+	 * Undoes serialisation encoding
+	 * 
+	 * terminates program on IOException
+	 * 
+	 * @param channel to listen to
+	 * @return HashMap<Tuple<Resource, RDFNode>, Integer>
+	 */
+	public static HashMap<Tuple<Resource, RDFNode>,Integer> readHashMap(Channel channel)
+	{
+		HashMap<Tuple<String, SerializedRDFNode>,Integer> serializedHashMap = ReadWrite.<HashMap<Tuple<String, SerializedRDFNode>,Integer>>readObject(channel);
 		
 		HashMap<Tuple<Resource, RDFNode>,Integer> hashmap = new HashMap<Tuple<Resource, RDFNode>,Integer>();
 		for(Entry<Tuple<String, SerializedRDFNode>, Integer> entry : serializedHashMap.entrySet())
@@ -244,14 +483,11 @@ public class ReadWrite
 	 * 
 	 * terminates program on IOException
 	 * 
-	 * @param socket to send to
+	 * @param channel to send to
 	 * @param hashmap HashMap<RDFNode,Integer>
 	 */
-//	public static void sendHashMap2(Socket socket, HashMap<RDFNode,Integer> hashmap)
-	public static void sendHashMap2(CountingOutputStream count, HashMap<RDFNode,Integer> hashmap)
+	public static void sendHashMap2(Channel channel, HashMap<RDFNode,Integer> hashmap)
 	{
-		Logger logger = Log.getLogger();
-		
 		HashMap<SerializedRDFNode,Integer> serializedHashMap = new HashMap<SerializedRDFNode,Integer>();
 		for(Entry<RDFNode, Integer> entry : hashmap.entrySet())
 		{
@@ -259,17 +495,7 @@ public class ReadWrite
 			serializedHashMap.put(sNode, entry.getValue());
 		}
 		
-		try {
-//			ObjectOutputStream os = new ObjectOutputStream(socket.getOutputStream());
-			ObjectOutputStream os = new ObjectOutputStream(count);
-			os.writeObject(serializedHashMap);
-		} catch (IOException e) {
-			logger.info("Exception in communication, when trying to send a hashmap2. \n" 
-					+ e.getMessage() + "\n"
-					+ e.toString() + "\n"
-					+ "Protocol is being terminated.");
-			System.exit(1);
-		}
+		sendObject(channel, serializedHashMap);
     	
 	}
 	
@@ -279,26 +505,12 @@ public class ReadWrite
 	 * 
 	 * terminates program on IOException
 	 * 
-	 * @param socket to listen to
+	 * @param channel to listen to
 	 * @return HashMap<RDFNode, Integer>
 	 */
-//	public static HashMap<RDFNode,Integer> readHashMap2(Socket socket)
-	public static HashMap<RDFNode,Integer> readHashMap2(CountingInputStream count)
+	public static HashMap<RDFNode,Integer> readHashMap2(Channel channel)
 	{
-		Logger logger = Log.getLogger();
-		
-		HashMap<SerializedRDFNode,Integer> serializedHashMap = null;
-		try {
-//			ObjectInputStream is = new ObjectInputStream(socket.getInputStream());
-			ObjectInputStream is = new ObjectInputStream(count);
-			serializedHashMap = (HashMap<SerializedRDFNode,Integer>) is.readObject();
-		} catch (IOException | ClassNotFoundException e) {
-			logger.info("Exception in communication, when trying to read a hashmap2. \n" 
-					+ e.getMessage() + "\n"
-					+ e.toString() + "\n"
-					+ "Protocol is being terminated.");
-			System.exit(1);
-		}
+		HashMap<SerializedRDFNode,Integer> serializedHashMap = ReadWrite.<HashMap<SerializedRDFNode,Integer>>readObject(channel);
 		
 		HashMap<RDFNode,Integer> hashmap = new HashMap<RDFNode,Integer>();
 		for(Entry<SerializedRDFNode, Integer> entry : serializedHashMap.entrySet())
@@ -323,14 +535,11 @@ public class ReadWrite
 	 * 
 	 * terminates program on IOException
 	 * 
-	 * @param socket to send to
+	 * @param channel to send to
 	 * @param hashmap HashMap<Resource,Integer>
 	 */
-//	public static void sendHashMap3(Socket socket, HashMap<Resource,Integer> hashmap)
-	public static void sendHashMap3(CountingOutputStream count, HashMap<Resource,Integer> hashmap)
+	public static void sendHashMap3(Channel channel, HashMap<Resource,Integer> hashmap)
 	{
-		Logger logger = Log.getLogger();
-		
 		HashMap<String,Integer> serializedHashMap = new HashMap<String, Integer>();
 		for(Entry<Resource, Integer> entry : hashmap.entrySet())
 		{
@@ -338,17 +547,7 @@ public class ReadWrite
 			serializedHashMap.put(resourceString, entry.getValue());
 		}
 		
-		try {
-//			ObjectOutputStream os = new ObjectOutputStream(socket.getOutputStream());
-			ObjectOutputStream os = new ObjectOutputStream(count);
-			os.writeObject(serializedHashMap);
-		} catch (IOException e) {
-			logger.info("Exception in communication, when trying to send a hashmap3. \n" 
-					+ e.getMessage() + "\n"
-					+ e.toString() + "\n"
-					+ "Protocol is being terminated.");
-			System.exit(1);
-		}
+		sendObject(channel, serializedHashMap);
 	}
 	
 	/**
@@ -357,26 +556,12 @@ public class ReadWrite
 	 * 
 	 * terminates program on IOException
 	 * 
-	 * @param socket to listen to
+	 * @param channel to listen to
 	 * @return HashMap<Resource, Integer>
 	 */
-//	public static HashMap<Resource, Integer> readHashMap3(Socket socket)
-	public static HashMap<Resource, Integer> readHashMap3(CountingInputStream count)
+	public static HashMap<Resource, Integer> readHashMap3(Channel channel)
 	{
-		Logger logger = Log.getLogger();
-		
-		HashMap<String, Integer> serializedHashMap = null;
-		try {
-//			ObjectInputStream is = new ObjectInputStream(socket.getInputStream());
-			ObjectInputStream is = new ObjectInputStream(count);
-			serializedHashMap = (HashMap<String, Integer>) is.readObject();
-		} catch (IOException | ClassNotFoundException e) {
-			logger.info("Exception in communication, when trying to read a hashmap3. \n" 
-					+ e.getMessage() + "\n"
-					+ e.toString() + "\n"
-					+ "Protocol is being terminated.");
-			System.exit(1);
-		}
+		HashMap<String, Integer> serializedHashMap = ReadWrite.<HashMap<String, Integer>>readObject(channel);
 		
 		HashMap<Resource, Integer> hashmap = new HashMap<Resource, Integer>();
 		for(Entry<String, Integer> entry : serializedHashMap.entrySet())
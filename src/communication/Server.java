@@ -8,12 +8,13 @@ import java.util.logging.Logger;
 
 import javax.net.ssl.SSLServerSocketFactory;
 
-import org.apache.commons.io.input.CountingInputStream;
-import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 
+import com.google.common.hash.BloomFilter;
+
+import privatesetintersection.SignatureDigest;
 import protocol.Log;
 import protocol.Tuple;
  
@@ -29,8 +30,7 @@ import protocol.Tuple;
 	 private static Server instance;
 	 private ServerSocket serverSocket;
 	 private Socket client;
-	 private CountingOutputStream countingOut; // MEASUREMENT
-	 private CountingInputStream countingIn;
+	 private Channel channel;
 	 
 	 /**
 	  * Creates a Server that uses a SSL connection to communicate with a Client
@@ -45,8 +45,8 @@ import protocol.Tuple;
 			 SSLServerSocketFactory ssf = (SSLServerSocketFactory) SSLServerSocketFactory.getDefault();
 			 serverSocket = ssf.createServerSocket(port);
 			 client = waitForRegistration();
-			 countingOut = new CountingOutputStream(client.getOutputStream());  // MEASURING
-			 countingIn = new CountingInputStream(client.getInputStream());  // MEASURING
+			 channel = new Channel(client);
+			 ReadWrite.negotiateAsServer(channel);
 		 } catch (IOException e) 
 		 {
 			 logger.info("Exception in communication, when trying to create server. \n" 
@@ -89,8 +89,17 @@ import protocol.Tuple;
 	  */
 	 public void sendModel(Model model)
 	 {
-//		 ReadWrite.sendModel(client, model);
-		 ReadWrite.sendModel(countingOut, model);
+		 ReadWrite.sendModel(channel, model);
+	 }
+	 
+	 /**
+	  * Sends a model
+	  * @param model which is supposed to be sent
+	  * @param compress whether the model is gzip compressed, only with the framed wire format
+	  */
+	 public void sendModel(Model model, boolean compress)
+	 {
+		 ReadWrite.sendModel(channel, model, compress);
 	 }
 	 
 	/**
@@ -99,8 +108,7 @@ import protocol.Tuple;
 	 */
     public Model readModel()
     {
-//	    return ReadWrite.readModel(socket);
-    	return ReadWrite.readModel(countingIn);
+    	return ReadWrite.readModel(channel);
     }
 	 
 	 /**
@@ -109,8 +117,7 @@ import protocol.Tuple;
 	 */
 	 public <T> T readObject()
 	 {
-//		 return ReadWrite.<T>readObject(client);
-		 return ReadWrite.<T>readObject(countingIn);
+		 return ReadWrite.<T>readObject(channel);
 	 }
 	 
 	 /**
@@ -119,8 +126,16 @@ import protocol.Tuple;
      */
 	 public <T> void sendObject(T object)
 	 {
-//		 ReadWrite.sendObject(client, object);
-		 ReadWrite.sendObject(countingOut, object); // MEASUREMENT
+		 ReadWrite.sendObject(channel, object); // MEASUREMENT
+	 }
+	 
+	 /**
+	  * Sends a Bloom filter of signature digests
+	  * @param bf Bloom filter
+	  */
+	 public void sendBloomFilter(BloomFilter<SignatureDigest> bf)
+	 {
+		 ReadWrite.sendBloomFilter(channel, bf);
 	 }
 	 
 	// ------------- ONLY NEEDED FOR INSECURE / NO PRIVACY COMPARISON ----------------
@@ -130,8 +145,7 @@ import protocol.Tuple;
 	  */
 	 public void sendHashMap(HashMap<Tuple<Resource, RDFNode>,Integer> hashmap)
 	 {
-//		 ReadWrite.sendHashMap(client, hashmap);
-		 ReadWrite.sendHashMap(countingOut, hashmap);
+		 ReadWrite.sendHashMap(channel, hashmap);
 	 }
 	 
 	 /**
@@ -140,8 +154,7 @@ import protocol.Tuple;
 	  */
 	 public void sendHashMap2(HashMap<RDFNode, Integer> hashmap)
 	 {
-//		 ReadWrite.sendHashMap2(client, hashmap);
-		 ReadWrite.sendHashMap2(countingOut, hashmap);
+		 ReadWrite.sendHashMap2(channel, hashmap);
 	 }
 	 
 	 /**
@@ -150,19 +163,18 @@ import protocol.Tuple;
 	  */
 	 public void sendHashMap3(HashMap<Resource, Integer> hashmap)
 	 {
-//		 ReadWrite.sendHashMap3(client, hashmap);
-		 ReadWrite.sendHashMap3(countingOut, hashmap);
+		 ReadWrite.sendHashMap3(channel, hashmap);
 	 }
 	 
 	 // ----------- ONLY NEEDED FOR COMMUNICATION MEASUREMENT -------------------------
 	 
 	 public long getOutputStreamCount()
 	 {
-		 return countingOut.getByteCount();
+		 return channel.getOutputStreamCount();
 	 }
 	 
 	 public long getInputStreamCount()
 	 {
-		 return countingIn.getByteCount();
+		 return channel.getInputStreamCount();
 	 }
  }
\ No newline at end of file
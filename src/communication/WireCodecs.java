@@ -0,0 +1,381 @@
+package communication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map.Entry;
+
+import privatesetintersection.SignatureDigest;
+import protocol.Tuple;
+
+/**
+ * Binary encodings of the payloads the protocol sends.
+ * Numbers are written as varints (LEB128), signed ones zigzag encoded first, BigIntegers as length prefixed two's complement bytes.
+ * Lists are always decoded as LinkedLists, which is what the protocol sends.
+ * @author ---
+ *
+ */
+final class WireCodecs
+{
+	// Tags of the frames, part of the wire format, do not reorder
+	static final byte JAVA = 0;					// Java serialized object, fallback for everything else
+	static final byte STRING = 1;				// String
+	static final byte BIGINTEGER_LIST = 2;		// LinkedList<BigInteger>
+	static final byte BIGINTEGER_TUPLES = 3;	// LinkedList<Tuple<BigInteger, Long>>
+	static final byte BIGINTEGER_LISTS = 4;		// LinkedList<LinkedList<BigInteger>>
+	static final byte BYTES = 5;				// byte[]
+	static final byte BYTES_LIST = 6;			// LinkedList<byte[]>
+	static final byte DIGEST_MULTISET = 7;		// HashMap<SignatureDigest, Integer>
+	static final byte BLOOM_FILTER = 8;			// BloomFilter<SignatureDigest>
+	static final byte MODEL = 9;				// Model, not length prefixed, see ReadWrite.sendModel
+
+	private WireCodecs()
+	{
+	}
+
+	/**
+	 * Finds the codec for an object.
+	 * @param object
+	 * @return tag of the codec, JAVA if there is no binary codec for the object
+	 */
+	static byte tagFor(Object object)
+	{
+		if(object instanceof String)
+		{
+			return STRING;
+		}
+		if(object instanceof byte[])
+		{
+			return BYTES;
+		}
+		if(object != null && object.getClass() == LinkedList.class)
+		{
+			LinkedList<?> list = (LinkedList<?>) object;
+			if(list.isEmpty() || allInstances(list, BigInteger.class))
+			{
+				return BIGINTEGER_LIST;
+			}
+			if(allInstances(list, byte[].class))
+			{
+				return BYTES_LIST;
+			}
+			if(allBigIntegerTuples(list))
+			{
+				return BIGINTEGER_TUPLES;
+			}
+			if(allBigIntegerLists(list))
+			{
+				return BIGINTEGER_LISTS;
+			}
+			return JAVA;
+		}
+		if(object != null && object.getClass() == HashMap.class && isDigestMultiset((HashMap<?, ?>) object))
+		{
+			return DIGEST_MULTISET;
+		}
+		return JAVA;
+	}
+
+	/**
+	 * Writes an object with the codec of the tag
+	 * @param tag returned by tagFor
+	 * @param object
+	 * @param out
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	static void encode(byte tag, Object object, DataOutputStream out) throws IOException
+	{
+		switch(tag)
+		{
+			case STRING:
+				writeBytes(((String) object).getBytes("UTF-8"), out);
+				break;
+			case BYTES:
+				writeBytes((byte[]) object, out);
+				break;
+			case BIGINTEGER_LIST:
+				writeBigIntegers((LinkedList<BigInteger>) object, out);
+				break;
+			case BIGINTEGER_TUPLES:
+				LinkedList<Tuple<BigInteger, Long>> tuples = (LinkedList<Tuple<BigInteger, Long>>) object;
+				writeVarInt(tuples.size(), out);
+				for(Tuple<BigInteger, Long> tuple : tuples)
+				{
+					writeBigInteger(tuple.x, out);
+					writeVarLong(zigzag(tuple.y), out);
+				}
+				break;
+			case BIGINTEGER_LISTS:
+				LinkedList<LinkedList<BigInteger>> lists = (LinkedList<LinkedList<BigInteger>>) object;
+				writeVarInt(lists.size(), out);
+				for(LinkedList<BigInteger> list : lists)
+				{
+					writeBigIntegers(list, out);
+				}
+				break;
+			case BYTES_LIST:
+				LinkedList<byte[]> arrays = (LinkedList<byte[]>) object;
+				writeVarInt(arrays.size(), out);
+				for(byte[] array : arrays)
+				{
+					writeBytes(array, out);
+				}
+				break;
+			case DIGEST_MULTISET:
+				writeDigestMultiset((HashMap<SignatureDigest, Integer>) object, out);
+				break;
+			default:
+				throw new IOException("No binary codec for tag " + tag);
+		}
+	}
+
+	/**
+	 * Reads an object written with the codec of the tag
+	 * @param tag
+	 * @param in
+	 * @return object
+	 * @throws IOException
+	 */
+	static Object decode(byte tag, DataInputStream in) throws IOException
+	{
+		switch(tag)
+		{
+			case STRING:
+				return new String(readBytes(in), "UTF-8");
+			case BYTES:
+				return readBytes(in);
+			case BIGINTEGER_LIST:
+				return readBigIntegers(in);
+			case BIGINTEGER_TUPLES:
+				int size = readVarInt(in);
+				LinkedList<Tuple<BigInteger, Long>> tuples = new LinkedList<Tuple<BigInteger, Long>>();
+				for(int i = 0; i < size; i++)
+				{
+					BigInteger x = readBigInteger(in);
+					tuples.add(new Tuple<BigInteger, Long>(x, unzigzag(readVarLong(in))));
+				}
+				return tuples;
+			case BIGINTEGER_LISTS:
+				int lists = readVarInt(in);
+				LinkedList<LinkedList<BigInteger>> list = new LinkedList<LinkedList<BigInteger>>();
+				for(int i = 0; i < lists; i++)
+				{
+					list.add(readBigIntegers(in));
+				}
+				return list;
+			case BYTES_LIST:
+				int arrays = readVarInt(in);
+				LinkedList<byte[]> bytes = new LinkedList<byte[]>();
+				for(int i = 0; i < arrays; i++)
+				{
+					bytes.add(readBytes(in));
+				}
+				return bytes;
+			case DIGEST_MULTISET:
+				return readDigestMultiset(in);
+			default:
+				throw new IOException("Unknown tag " + tag);
+		}
+	}
+
+	// ------------------ Multisets ----------------------------
+
+	/**
+	 * All digests of a multiset have the same length, so it is written once and then only the digest bytes follow.
+	 */
+	private static void writeDigestMultiset(HashMap<SignatureDigest, Integer> multiset, DataOutputStream out) throws IOException
+	{
+		writeVarInt(multiset.size(), out);
+		if(multiset.isEmpty())
+		{
+			return;
+		}
+		writeVarInt(multiset.keySet().iterator().next().length(), out);
+		for(Entry<SignatureDigest, Integer> entry : multiset.entrySet())
+		{
+			out.write(entry.getKey().getBytes());
+			writeVarInt(entry.getValue(), out);
+		}
+	}
+
+	private static HashMap<SignatureDigest, Integer> readDigestMultiset(DataInputStream in) throws IOException
+	{
+		int size = readVarInt(in);
+		HashMap<SignatureDigest, Integer> multiset = new HashMap<SignatureDigest, Integer>(size * 4 / 3 + 1);
+		if(size == 0)
+		{
+			return multiset;
+		}
+		int length = readVarInt(in);
+		byte[] digest = new byte[length];
+		for(int i = 0; i < size; i++)
+		{
+			in.readFully(digest);
+			multiset.put(SignatureDigest.fromBytes(digest), readVarInt(in));
+		}
+		return multiset;
+	}
+
+	private static boolean isDigestMultiset(HashMap<?, ?> map)
+	{
+		if(map.isEmpty())
+		{
+			return false;
+		}
+		int length = -1;
+		for(Entry<?, ?> entry : map.entrySet())
+		{
+			if(!(entry.getKey() instanceof SignatureDigest) || !(entry.getValue() instanceof Integer) || (Integer) entry.getValue() < 0)
+			{
+				return false;
+			}
+			int digestLength = ((SignatureDigest) entry.getKey()).length();
+			if(length != -1 && length != digestLength)
+			{
+				return false;
+			}
+			length = digestLength;
+		}
+		return true;
+	}
+
+	// ------------------ Lists --------------------------------
+
+	private static boolean allInstances(LinkedList<?> list, Class<?> type)
+	{
+		for(Object element : list)
+		{
+			if(!type.isInstance(element))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean allBigIntegerTuples(LinkedList<?> list)
+	{
+		for(Object element : list)
+		{
+			if(!(element instanceof Tuple) || !(((Tuple<?, ?>) element).x instanceof BigInteger) || !(((Tuple<?, ?>) element).y instanceof Long))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean allBigIntegerLists(LinkedList<?> list)
+	{
+		for(Object element : list)
+		{
+			if(element == null || element.getClass() != LinkedList.class || !allInstances((LinkedList<?>) element, BigInteger.class))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void writeBigIntegers(LinkedList<BigInteger> list, DataOutputStream out) throws IOException
+	{
+		writeVarInt(list.size(), out);
+		for(BigInteger value : list)
+		{
+			writeBigInteger(value, out);
+		}
+	}
+
+	private static LinkedList<BigInteger> readBigIntegers(DataInputStream in) throws IOException
+	{
+		int size = readVarInt(in);
+		LinkedList<BigInteger> list = new LinkedList<BigInteger>();
+		for(int i = 0; i < size; i++)
+		{
+			list.add(readBigInteger(in));
+		}
+		return list;
+	}
+
+	// ------------------ Primitives ---------------------------
+
+	static void writeBigInteger(BigInteger value, DataOutputStream out) throws IOException
+	{
+		writeBytes(value.toByteArray(), out);
+	}
+
+	static BigInteger readBigInteger(DataInputStream in) throws IOException
+	{
+		return new BigInteger(readBytes(in));
+	}
+
+	static void writeBytes(byte[] bytes, DataOutputStream out) throws IOException
+	{
+		writeVarInt(bytes.length, out);
+		out.write(bytes);
+	}
+
+	static byte[] readBytes(DataInputStream in) throws IOException
+	{
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Writes a non negative int with 7 bits per byte, the highest bit marks that more bytes follow
+	 */
+	static void writeVarInt(int value, DataOutputStream out) throws IOException
+	{
+		writeVarLong(value & 0xFFFFFFFFL, out);
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException
+	{
+		long value = readVarLong(in);
+		if(value > Integer.MAX_VALUE)
+		{
+			throw new IOException("Varint too large: " + value);
+		}
+		return (int) value;
+	}
+
+	static void writeVarLong(long value, DataOutputStream out) throws IOException
+	{
+		while((value & ~0x7FL) != 0)
+		{
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	static long readVarLong(DataInputStream in) throws IOException
+	{
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	static long zigzag(long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unzigzag(long value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,12 @@
+package communication;
+
+/**
+ * Formats messages can be sent in. Agreed on by server and client when the connection is set up.
+ * @author ---
+ *
+ */
+public enum WireFormat 
+{
+	JAVA_SERIALIZATION,		// every message is a Java serialized object
+	FRAMED					// tag and length prefixed messages, binary codecs for the protocol's payloads
+}
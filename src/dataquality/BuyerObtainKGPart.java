@@ -1,93 +1,131 @@
 package dataquality;
 
-import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.jena.rdf.model.Model;
 
+import privatesetintersection.ExecutorHandling;
 import protocol.Log;
 import protocol.ModelTools;
 
 public class BuyerObtainKGPart {
 	
-	private static IvParameterSpec iv;
-//	private static LinkedList<byte[]> encryptedParts = null;
-	
-	public static LinkedList<Model> obtainKGPart(LinkedList<BigInteger> keysBI, byte[] byteIV, LinkedList<byte[]> encryptedParts)
+	/**
+	 * Finds the parts the keys belong to by their key check tags and decrypts only those, in parallel.
+	 * @param keysBI BigIntegers obtained by oblivious transfer
+	 * @param encryptedParts all encrypted parts of the seller
+	 * @return models of the parts that could be decrypted, in the order of the parts
+	 */
+	public static LinkedList<Model> obtainKGPart(LinkedList<BigInteger> keysBI, LinkedList<byte[]> encryptedParts)
 	{
 		Logger logger = Log.getLogger();
 		
-		LinkedList<Model> obtainedModels = new LinkedList<Model>();
-		iv = new IvParameterSpec(byteIV);
+		logger.info("Start matching keys to model parts.");
+		// ------------ Key check tag of every key --------------------------
+		HashMap<ByteBuffer, BigInteger> keysByTag = new HashMap<ByteBuffer, BigInteger>();
+		for(BigInteger keyBI : keysBI)
+		{
+			try {
+				keysByTag.put(ByteBuffer.wrap(SellerPrepareKG.keyCheckTag(keyBI)), keyBI);
+			} catch (NoSuchAlgorithmException | InvalidKeyException e) 
+			{
+				logger.info("Exception in oblivious transfer, when trying to decrypt model parts. \n" 
+						+ e.getMessage() + "\n"
+						+ e.toString() + "\n"
+						+ "Protocol is being terminated.");
+				System.exit(1);
+			}
+		}
 		
-		logger.info("Start trying to decrypt model parts.");
-		// Try the key on each encrypted part to find the one it fits
+		// ------------ Parts starting with the tag of a key --------------------------
+		ArrayList<byte[]> matchedParts = new ArrayList<byte[]>();
+		ArrayList<BigInteger> matchedKeys = new ArrayList<BigInteger>();
 		for(byte[] part : encryptedParts)
 		{
-			// Try each key on the string
-			for(BigInteger keyBI : keysBI)
+			if(part.length < SellerPrepareKG.KEY_CHECK_LENGTH)
+			{
+				continue;
+			}
+			BigInteger keyBI = keysByTag.get(ByteBuffer.wrap(part, 0, SellerPrepareKG.KEY_CHECK_LENGTH));
+			if(keyBI != null)
+			{
+				matchedParts.add(part);
+				matchedKeys.add(keyBI);
+			}
+		}
+		logger.info("Done matching keys to model parts. Parts matched: " + matchedParts.size() + " Keys: " + keysBI.size());
+		
+		// ------------ Decrypt the matched parts --------------------------
+		logger.info("Start decrypting model parts.");
+		Model[] decrypted = new Model[matchedParts.size()];
+		try {
+			ExecutorHandling.forEachIndex(matchedParts.size(), (i) ->
+			{
+				SecretKeySpec secretKey = SellerPrepareKG.bigIntegerToAESKey(matchedKeys.get(i));
+				// null if the part does not authenticate, e.g. because it has been changed
+				decrypted[i] = ModelTools.bytesToModel(decrypt(matchedParts.get(i), secretKey));
+			});
+		} catch (ExecutionException e) 
+		{
+			logger.info("Exception in oblivious transfer, when trying to decrypt model parts. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		
+		LinkedList<Model> obtainedModels = new LinkedList<Model>();
+		for(Model model : decrypted)
+		{
+			if(model != null)
 			{
-				// ------------ Recreate key from BigIntger --------------------------
-				try {
-					SecretKeySpec secretKey = SellerPrepareKG.bigIntegerToAESKey(keyBI);
-					
-					// --------- Try to decrypt the string ---------------------------
-					String decryptedString = decrypt(part, secretKey, iv);
-		            
-		            // Try to turn decrypted string into model (only works for the String the Buyer obtained the key for)
-		            Model decrypted = ModelTools.stringToModel(decryptedString);
-		            // If the String could be turned into a model add it to the found models
-		            if(decrypted != null)
-		            {
-		            	obtainedModels.add(decrypted);
-		            }
-				} catch (NoSuchAlgorithmException e) 
-				{
-					logger.info("Exception in oblivious transfer, when trying to decrypt model parts. \n" 
-							+ e.getMessage() + "\n"
-							+ e.toString() + "\n"
-							+ "Protocol is being terminated.");
-					System.exit(1);
-				}
+				obtainedModels.add(model);
 			}
 		}
-		logger.info("Done trying to decrypt model parts.");
+		logger.info("Done decrypting model parts. Parts that could not be decrypted: " + (decrypted.length - obtainedModels.size()));
         return obtainedModels;
 	}
 	
-	
-	
-	public static String decrypt(byte[] encrypted, SecretKeySpec secretKey, IvParameterSpec iv)
+	/**
+	 * Decrypts a part encrypted by SellerPrepareKG with AES-GCM
+	 * @param encrypted key check tag and nonce followed by the ciphertext and authentication tag
+	 * @param secretKey
+	 * @return decrypted bytes, null if the key does not fit or the part has been changed
+	 */
+	public static byte[] decrypt(byte[] encrypted, SecretKeySpec secretKey)
 	{
-		String decryptedString = "";
+		byte[] decrypted = null;
 		
+		int start = SellerPrepareKG.KEY_CHECK_LENGTH + SellerPrepareKG.NONCE_LENGTH;
+		if(encrypted.length < start + SellerPrepareKG.TAG_LENGTH / 8)
+		{
+			return null;
+		}
 		try {
-			// Specify AES mode and padding
-			Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
-			cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
-			decryptedString = new String(cipher.doFinal(encrypted), "UTF-8");
-		} catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | UnsupportedEncodingException | IllegalBlockSizeException | BadPaddingException e) 
+			Cipher cipher = Cipher.getInstance(SellerPrepareKG.CIPHER);
+			cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(SellerPrepareKG.TAG_LENGTH, encrypted, SellerPrepareKG.KEY_CHECK_LENGTH, SellerPrepareKG.NONCE_LENGTH));
+			decrypted = cipher.doFinal(encrypted, start, encrypted.length - start);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) 
 		{
 
 		}
 		
-		return decryptedString;
-	}
-	
-	public static IvParameterSpec getIV()
-	{
-		return iv;
+		return decrypted;
 	}
 }
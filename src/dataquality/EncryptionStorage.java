@@ -5,13 +5,12 @@ import java.util.LinkedList;
 
 /**
  * Class stores information about AES encryption.
- * These are: Used keys, resulting encryptions, and CBC Initialization Vector
+ * These are: Used keys and resulting encryptions, every encryption starts with its own GCM nonce
  * @author ---
  *
  */
 public class EncryptionStorage 
 {
-	private byte[] byteIV;
 	private LinkedList<byte[]> encryptedParts;
 	private LinkedList<BigInteger> keys;
 	
@@ -20,16 +19,6 @@ public class EncryptionStorage
 		
 	}
 
-	public byte[] getByteIV() 
-	{
-		return byteIV;
-	}
-
-	public void setByteIV(byte[] byteIV) 
-	{
-		this.byteIV = byteIV;
-	}
-
 	public LinkedList<byte[]> getEncryptedParts() 
 	{
 		return encryptedParts;
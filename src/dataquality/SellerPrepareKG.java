@@ -1,125 +1,175 @@
 package dataquality;
 
-import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
-import java.security.InvalidAlgorithmParameterException;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
-import org.apache.jena.rdf.model.Model;
-
+import knowledgegraphpartitioning.PartitionView;
+import privatesetintersection.ExecutorHandling;
 import protocol.Log;
-import protocol.ModelTools;
 
 public class SellerPrepareKG {
 	
+	// Parts are encrypted with AES in GCM mode, which also authenticates them
+	static final String CIPHER = "AES/GCM/NoPadding";
+	// Length of the nonce put in front of every encrypted part
+	static final int NONCE_LENGTH = 12;
+	// Length of the authentication tag in bits
+	static final int TAG_LENGTH = 128;
+	// Bit length of the BigIntegers the keys are derived from, the OT extension mode transfers at most 256 bits
+	public static final int KEY_BITS = 256;
+	// Length of the key check tag put in front of every encrypted part
+	static final int KEY_CHECK_LENGTH = 16;
+	// Contexts of the HKDF key derivation, keep the AES key and the key check tag of a part independent of each other
+	private static final byte[] KEY_INFO = "KG part AES-256-GCM key".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] KEY_CHECK_INFO = "KG part key check".getBytes(StandardCharsets.US_ASCII);
+	
 	/**
-	 * Takes a partitioning of a model (list of models) and encrypts each part with AES
+	 * Takes a partitioning of a model (list of views on its statements) and encrypts each part with AES-GCM
+	 * Every part gets its own key and nonce, so the parts are encrypted in parallel.
+	 * Each part is encoded straight into the cipher, only the encrypted bytes are kept.
+	 * An encrypted part is the key check tag of its key, the nonce, the ciphertext and the authentication tag.
+	 * With the key check tag the buyer finds the part of a key without decrypting any part.
 	 * @param partitioning
-	 * @return Class containing encrypted parts, keys, Initialization Vector
+	 * @return Class containing encrypted parts and keys
 	 */
-	public static EncryptionStorage prepareKG(LinkedList<Model> partitioning)
+	public static EncryptionStorage prepareKG(LinkedList<PartitionView> partitioning)
 	{
 		Logger logger = Log.getLogger();
 		
-		// ----------------- Turn partitions into Strings -----------------
-		logger.info("Start encoding partition parts as Strings.");
-		LinkedList<String> partitionsAsStrings = new LinkedList<String>();
-		for(Model part : partitioning)
-		{
-			partitionsAsStrings.add(ModelTools.modelToString(part));
-		}
-		logger.info("Done encoding partition parts as Strings.");
-		
-		// ----------------- Encrypt partition Strings with AES -------
-		logger.info("Start encrypting partition Strings with AES.");
-		byte[] byteIV = new byte[16];
-		// Get a instance of SecureRandom
-		SecureRandom secureRandom = null;
+		// ----------------- Encrypt encoded partitions with AES -------
+		logger.info("Start encrypting partition parts with AES-GCM.");
+		ArrayList<PartitionView> parts = new ArrayList<PartitionView>(partitioning);
+		// Encrypted part i and the BigInteger used to generate the key for part i
+		byte[][] encrypted = new byte[parts.size()][];
+		BigInteger[] keysBI = new BigInteger[parts.size()];
+		// Every task encrypts every stripes-th part, so a few big parts still spread over all threads
+		int stripes = Math.min(parts.size(), 4 * Runtime.getRuntime().availableProcessors());
 		try {
-			secureRandom = SecureRandom.getInstance("SHA1PRNG");
-			secureRandom.nextBytes(byteIV);
-		} catch (NoSuchAlgorithmException e1) {
-			logger.info(e1.getMessage());
-			logger.info(e1.toString());
-			e1.printStackTrace();
+			ExecutorHandling.forEachIndex(stripes, (stripe) ->
+			{
+				SecureRandom secureRandom = new SecureRandom();
+				for(int i = stripe; i < parts.size(); i += stripes)
+				{
+					// ----------- Generate AES Key ---------------------------------
+					// Use Secure Random to generate a random BigInteger
+					// This is shared using OT in order to allow the Buyer to decrypt 1 part of the model
+					keysBI[i] = new BigInteger(KEY_BITS, secureRandom);
+					byte[] nonce = new byte[NONCE_LENGTH];
+					secureRandom.nextBytes(nonce);
+					
+					// ----------- Encrypt the part ---------------------------------
+					encrypted[i] = encrypt(parts.get(i), keyCheckTag(keysBI[i]), bigIntegerToAESKey(keysBI[i]), nonce);
+				}
+			});
+		} catch (ExecutionException e)
+		{
+			logger.info("Exception in oblivious transfer, when trying to encrypt model parts with AES. \n"
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
 			System.exit(1);
 		}
-		IvParameterSpec iv = new IvParameterSpec(byteIV);
-		// List to store the encrypted strings
+		logger.info("Done encrypting partition parts with AES-GCM.");
+		
 		LinkedList<byte[]> encryptedParts = new LinkedList<byte[]>();
-		// List to store the BigIntegers used to generate keys which are used to encrypt the strings (one for each string)
 		LinkedList<BigInteger> keys = new LinkedList<BigInteger>();
-		// For each string generate a new key and encrypt it with AES
-		for(String partAsS : partitionsAsStrings)
+		for(int i = 0; i < parts.size(); i++)
 		{
-			try {
-				// ----------- Generate AES Key ---------------------------------
-				// Use Secure Random to generate a random BigInteger
-				BigInteger keyBI = new BigInteger(1024, secureRandom);
-				
-				SecretKeySpec secretKey = bigIntegerToAESKey(keyBI);
-
-				// ----------- Encrypt the String -------------------------------
-				// Get an instance, Specify AES, mode, and padding
-				Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
-				// Specify that it will be used to encrypt and the key to be used
-	            cipher.init(Cipher.ENCRYPT_MODE, secretKey, iv);
-	            // Encrypt and turn the result into a String
-	            byte[] encrypted = cipher.doFinal(partAsS.getBytes("UTF8"));
-	            
-	            // Add the encrypted String to the encrypted model parts
-	            encryptedParts.add(encrypted);
-	            // Store the BigInteger used to generate the key
-	            // This is shared using OT in order to allow the Buyer to decrypt 1 part of the model
-	            keys.add(keyBI);
-			} catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e) 
-			{
-				logger.info("Exception in oblivious transfer, when trying to encrypt model parts with AES. \n" 
-						+ e.getMessage() + "\n"
-						+ e.toString() + "\n"
-						+ "Protocol is being terminated.");
-				System.exit(1);
-			}
-			
+			encryptedParts.add(encrypted[i]);
+			keys.add(keysBI[i]);
 		}
-		logger.info("Done encrypting partition Strings with AES.");
 		
 		EncryptionStorage storage = new EncryptionStorage();
 		storage.setKeys(keys);
-		storage.setByteIV(byteIV);
 		storage.setEncryptedParts(encryptedParts);
 		
 		return storage;
 	}
 	
-	public static SecretKeySpec bigIntegerToAESKey(BigInteger bi) throws NoSuchAlgorithmException
+	/**
+	 * Encodes a part and encrypts it on the fly
+	 * @param part
+	 * @param keyCheckTag
+	 * @param secretKey
+	 * @param nonce never used twice with the same key
+	 * @return key check tag and nonce followed by the ciphertext and authentication tag
+	 * @throws Exception if the cipher is not available or the key is invalid
+	 */
+	private static byte[] encrypt(PartitionView part, byte[] keyCheckTag, SecretKeySpec secretKey, byte[] nonce) throws Exception
 	{
-		// Turn BigInteger into a Bytearray
-		byte[] keyByte = bi.toByteArray();
-		// Hash Bytearray for "more" randomness
-		MessageDigest sha = MessageDigest.getInstance("SHA-1");
-		keyByte = sha.digest(keyByte);
-		// Get the first 128 bit to be used as the key
-		keyByte = Arrays.copyOf(keyByte, 32); // use only first 256 bit
-		// Create the key from the Bytearray
-		SecretKeySpec secretKey = new SecretKeySpec(keyByte, "AES");
+		Cipher cipher = Cipher.getInstance(CIPHER);
+		cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH, nonce));
 		
-		return secretKey;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(keyCheckTag);
+		out.write(nonce);
+		// Closing the cipher stream finishes the encryption and appends the tag
+		try(CipherOutputStream cipherOut = new CipherOutputStream(out, cipher))
+		{
+			part.write(cipherOut);
+		}
+		return out.toByteArray();
 	}
 	
-
+	/**
+	 * Derives a 256 bit AES key from a BigInteger with HKDF (RFC 5869) using HMAC-SHA256
+	 * @param bi
+	 * @return AES key
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 */
+	public static SecretKeySpec bigIntegerToAESKey(BigInteger bi) throws NoSuchAlgorithmException, InvalidKeyException
+	{
+		return new SecretKeySpec(hkdf(bi, KEY_INFO), "AES");
+	}
+	
+	/**
+	 * Derives the key check tag of a BigInteger with HKDF, independent of the AES key derived from it.
+	 * Put in front of the part encrypted with the key, so the part of a key can be found without trying to decrypt.
+	 * @param bi
+	 * @return key check tag of KEY_CHECK_LENGTH bytes
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 */
+	public static byte[] keyCheckTag(BigInteger bi) throws NoSuchAlgorithmException, InvalidKeyException
+	{
+		return Arrays.copyOf(hkdf(bi, KEY_CHECK_INFO), KEY_CHECK_LENGTH);
+	}
+	
+	/**
+	 * HKDF with HMAC-SHA256, no salt and one block of output
+	 * @param bi input key material
+	 * @param info context of the derived key
+	 * @return 32 derived bytes
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 */
+	private static byte[] hkdf(BigInteger bi, byte[] info) throws NoSuchAlgorithmException, InvalidKeyException
+	{
+		Mac hmac = Mac.getInstance("HmacSHA256");
+		// Extract: no salt, which HKDF defines as a string of zeros as long as the hash
+		hmac.init(new SecretKeySpec(new byte[hmac.getMacLength()], "HmacSHA256"));
+		byte[] pseudoRandomKey = hmac.doFinal(bi.toByteArray());
+		// Expand: only the first block is needed
+		hmac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+		hmac.update(info);
+		hmac.update((byte) 1);
+		return hmac.doFinal();
+	}
 	
 }
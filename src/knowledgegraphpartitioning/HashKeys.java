@@ -0,0 +1,12 @@
+package knowledgegraphpartitioning;
+
+/**
+ * This Enum contains the terms of a statement by which hash partitioning can assign it to a part.
+ * @author ---
+ *
+ */
+public enum HashKeys 
+{
+	SUBJECT,
+	PREDICATE;
+}
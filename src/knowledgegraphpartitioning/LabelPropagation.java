@@ -0,0 +1,338 @@
+package knowledgegraphpartitioning;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import privatesetintersection.ExecutorHandling;
+import protocol.Log;
+import triplestore.EncodedGraph;
+
+/**
+ * Balanced partitioning with size constrained label propagation.
+ * Every subject is a node weighted by its number of statements, subjects are connected by the statements between them.
+ * All statements of a subject go into the part of the subject, so parts are exclusive and cover the whole model.
+ *
+ * The nodes are first split into parts of about equal weight along a breadth first search, then refined in rounds:
+ * every node moves to the part most of its connections lead to, as long as that part does not get too big.
+ * Each round costs O(statements). The best part of every node is searched in parallel, the moves are applied in one order fixed by the seed.
+ * The order of the nodes and of the neighbors in the search only depends on a seeded hash of the terms, see Partitioning.hash,
+ * so the same model and seed always give the same partitioning, independent of the number of threads.
+ * For models with IRI and literal subjects only it is also independent of the order in which the model lists its statements.
+ * All blank nodes share one hash, ties between them fall back to the term IDs, which follow the order in which the model lists its statements.
+ * @author ---
+ *
+ */
+public class LabelPropagation
+{
+	// Parts may get this much bigger than the average part through moves
+	private static final double IMBALANCE = 0.03;
+	// Maximum number of refinement rounds, refinement stops earlier once no node moves
+	private static final int ROUNDS = 10;
+	// Number of nodes whose best part is searched by one task
+	private static final int NODES_PER_TASK = 4096;
+	
+	private final EncodedGraph graph;
+	private final int nrParts;
+	private final int[] nodes;			// term IDs of all subjects, in the order given by the seed
+	private final int[] rank;			// position of each subject in nodes
+	private final int[] part;			// part of each term, -1 for terms that are no subject
+	private final long[] partWeights;	// number of statements in each part
+	private final long maxWeight;
+	
+	private LabelPropagation(EncodedGraph graph, int nrParts, long seed)
+	{
+		this.graph = graph;
+		this.nrParts = nrParts;
+		this.nodes = seededOrder(graph, seed);
+		this.rank = new int[graph.getDictionary().size()];
+		for(int i = 0; i < nodes.length; i++)
+		{
+			rank[nodes[i]] = i;
+		}
+		this.part = new int[graph.getDictionary().size()];
+		this.partWeights = new long[nrParts];
+		long average = (graph.size() + nrParts - 1) / nrParts;
+		this.maxWeight = Math.max(average, (long) Math.ceil(average * (1 + IMBALANCE)));
+	}
+	
+	/**
+	 * Partitions the statements of a graph into the given number of parts of about equal size.
+	 * @param graph
+	 * @param nrParts wanted number of parts, fewer parts are returned if the graph has fewer subjects
+	 * @param seed
+	 * @return partitioning, as views on the statements of the graph, null if the graph is empty
+	 */
+	public static LinkedList<PartitionView> partition(EncodedGraph graph, int nrParts, long seed)
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start label propagation partitioning into " + nrParts + " parts with seed " + seed + ".");
+		
+		if(graph == null || graph.size() == 0)
+		{
+			logger.info("Cannot partition this model as it is empty or null.");
+			return null;
+		}
+		
+		LabelPropagation propagation = new LabelPropagation(graph, nrParts, seed);
+		propagation.initialParts();
+		for(int round = 0; round < ROUNDS; round++)
+		{
+			int moved = propagation.refine();
+			logger.info("Label propagation round " + (round + 1) + " moved subjects: " + moved);
+			if(moved == 0)
+			{
+				break;
+			}
+		}
+		return propagation.toViews();
+	}
+	
+	/**
+	 * Fills the parts one after the other with the subjects in breadth first order, starting each search at the next subject in seed order.
+	 * So neighboring subjects mostly start in the same part. The neighbors of a subject are queued in seed order.
+	 */
+	private void initialParts()
+	{
+		Arrays.fill(part, -1);
+		long average = (graph.size() + nrParts - 1) / nrParts;
+		int current = 0;
+		int[] queue = new int[nodes.length];
+		int queued = 0;
+		int[] neighbors = new int[0];
+		for(int start : nodes)
+		{
+			if(part[start] != -1)
+			{
+				continue;
+			}
+			int next = queued;
+			queue[queued++] = start;
+			part[start] = current;
+			while(next < queued)
+			{
+				int node = queue[next++];
+				if(partWeights[current] >= average && current < nrParts - 1)
+				{
+					current++;
+				}
+				part[node] = current;
+				partWeights[current] += graph.outDegree(node);
+				
+				neighbors = neighbors(node, neighbors);
+				for(int i = 1; i <= neighbors[0]; i++)
+				{
+					neighbors[i] = rank[neighbors[i]];
+				}
+				Arrays.sort(neighbors, 1, neighbors[0] + 1);
+				for(int i = 1; i <= neighbors[0]; i++)
+				{
+					int neighbor = nodes[neighbors[i]];
+					if(part[neighbor] == -1)
+					{
+						// Marks the neighbor as queued, its final part is set when it is taken from the queue
+						part[neighbor] = current;
+						queue[queued++] = neighbor;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * One round of label propagation
+	 * @return number of subjects that changed their part
+	 */
+	private int refine()
+	{
+		Logger logger = Log.getLogger();
+		
+		// Best part of every node according to the parts at the start of the round
+		int[] candidates = new int[nodes.length];
+		int tasks = (nodes.length + NODES_PER_TASK - 1) / NODES_PER_TASK;
+		try {
+			ExecutorHandling.forEachIndex(tasks, (task) ->
+			{
+				long[] connections = new long[nrParts];
+				int[] neighbors = new int[0];
+				int end = Math.min(nodes.length, (task + 1) * NODES_PER_TASK);
+				for(int i = task * NODES_PER_TASK; i < end; i++)
+				{
+					neighbors = neighbors(nodes[i], neighbors);
+					candidates[i] = bestPart(nodes[i], neighbors, connections);
+				}
+			});
+		} catch (ExecutionException e) {
+			logger.info("Exception when trying to refine the label propagation partitioning. \n"
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		
+		// Apply the moves in seed order, the gain and the size of the target part are checked again against the current parts
+		long[] connections = new long[nrParts];
+		int[] neighbors = new int[0];
+		int moved = 0;
+		for(int i = 0; i < nodes.length; i++)
+		{
+			int node = nodes[i];
+			if(candidates[i] == part[node])
+			{
+				continue;
+			}
+			neighbors = neighbors(node, neighbors);
+			int target = bestPart(node, neighbors, connections);
+			if(target != part[node])
+			{
+				long weight = graph.outDegree(node);
+				partWeights[part[node]] -= weight;
+				partWeights[target] += weight;
+				part[node] = target;
+				moved++;
+			}
+		}
+		return moved;
+	}
+	
+	/**
+	 * Finds the part the node is connected to the most, among its own part and the parts it fits into.
+	 * Ties are broken towards the own part, then towards the part with the lower number, so the order of the neighbors does not matter.
+	 * @param node term ID
+	 * @param neighbors as returned by neighbors
+	 * @param connections zeroed array with one entry per part, is zeroed again before returning
+	 * @return part
+	 */
+	private int bestPart(int node, int[] neighbors, long[] connections)
+	{
+		for(int i = 1; i <= neighbors[0]; i++)
+		{
+			connections[part[neighbors[i]]]++;
+		}
+		int own = part[node];
+		long weight = graph.outDegree(node);
+		int best = own;
+		for(int i = 1; i <= neighbors[0]; i++)
+		{
+			int candidate = part[neighbors[i]];
+			if(candidate != best && partWeights[candidate] + weight <= maxWeight
+					&& (connections[candidate] > connections[best] || (connections[candidate] == connections[best] && best != own && candidate < best)))
+			{
+				best = candidate;
+			}
+		}
+		for(int i = 1; i <= neighbors[0]; i++)
+		{
+			connections[part[neighbors[i]]] = 0;
+		}
+		return best;
+	}
+	
+	/**
+	 * Lists the subjects connected to a node by a statement in either direction, once per statement
+	 * @param node term ID
+	 * @param buffer array to reuse if it is big enough
+	 * @return array with the number of neighbors at index 0 followed by the neighbors
+	 */
+	private int[] neighbors(int node, int[] buffer)
+	{
+		int[] outgoing = graph.statementsWithSubject(node);
+		int[] incoming = graph.statementsWithObject(node);
+		if(buffer.length < outgoing.length + incoming.length + 1)
+		{
+			buffer = new int[outgoing.length + incoming.length + 1];
+		}
+		int count = 0;
+		for(int statement : outgoing)
+		{
+			int object = graph.object(statement);
+			if(object != node && graph.outDegree(object) > 0)
+			{
+				buffer[++count] = object;
+			}
+		}
+		for(int statement : incoming)
+		{
+			int subject = graph.subject(statement);
+			if(subject != node)
+			{
+				buffer[++count] = subject;
+			}
+		}
+		buffer[0] = count;
+		return buffer;
+	}
+	
+	/**
+	 * Collects the statements of every part
+	 * @return non empty parts as views on the graph
+	 */
+	private LinkedList<PartitionView> toViews()
+	{
+		int[] sizes = new int[nrParts];
+		for(int statement = 0; statement < graph.size(); statement++)
+		{
+			sizes[part[graph.subject(statement)]]++;
+		}
+		int[][] statements = new int[nrParts][];
+		for(int p = 0; p < nrParts; p++)
+		{
+			statements[p] = new int[sizes[p]];
+			sizes[p] = 0;
+		}
+		for(int statement = 0; statement < graph.size(); statement++)
+		{
+			int p = part[graph.subject(statement)];
+			statements[p][sizes[p]++] = statement;
+		}
+		
+		LinkedList<PartitionView> parts = new LinkedList<PartitionView>();
+		for(int p = 0; p < nrParts; p++)
+		{
+			if(statements[p].length > 0)
+			{
+				parts.add(new PartitionView(graph, statements[p]));
+			}
+		}
+		return parts;
+	}
+	
+	/**
+	 * Orders the subjects of the graph by a hash of their content and the seed, see Partitioning.hash.
+	 * Subjects with equal hashes, in practice only blank nodes, keep the order of their term IDs.
+	 * @param graph
+	 * @param seed
+	 * @return term IDs of all subjects
+	 */
+	private static int[] seededOrder(EncodedGraph graph, long seed)
+	{
+		int terms = graph.getDictionary().size();
+		int count = 0;
+		for(int term = 0; term < terms; term++)
+		{
+			if(graph.outDegree(term) > 0)
+			{
+				count++;
+			}
+		}
+		long[] hashes = new long[terms];
+		Integer[] subjects = new Integer[count];
+		int i = 0;
+		for(int term = 0; term < terms; term++)
+		{
+			if(graph.outDegree(term) > 0)
+			{
+				hashes[term] = Partitioning.hash(graph.getDictionary().getNode(term), seed);
+				subjects[i++] = term;
+			}
+		}
+		Arrays.sort(subjects, (a, b) -> hashes[a] != hashes[b] ? Long.compare(hashes[a], hashes[b]) : Integer.compare(a, b));
+		int[] order = new int[count];
+		for(i = 0; i < count; i++)
+		{
+			order[i] = subjects[i];
+		}
+		return order;
+	}
+}
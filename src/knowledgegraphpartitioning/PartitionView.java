@@ -0,0 +1,122 @@
+package knowledgegraphpartitioning;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+
+import triplestore.EncodedGraph;
+
+/**
+ * Part of a partitioning, stored as the sorted IDs of its statements in the encoded graph of the partitioned model.
+ * Costs 4 bytes per statement instead of a model with its own indexes. The part is only turned into a model or into bytes when it is needed.
+ * @author ---
+ *
+ */
+public class PartitionView
+{
+	private final EncodedGraph graph;
+	private final int[] statements;		// sorted, no duplicates
+	
+	/**
+	 * Creates a view on some statements of a graph
+	 * @param graph
+	 * @param statements IDs of the statements, may contain duplicates, the array is sorted and may not be used afterwards
+	 */
+	public PartitionView(EncodedGraph graph, int[] statements)
+	{
+		this.graph = graph;
+		this.statements = sortDistinct(statements);
+	}
+	
+	/**
+	 * Creates a view on the statements of a model that has been built from the graph's statements
+	 * @param graph
+	 * @param part model only containing statements of the graph
+	 * @return view on the statements of the model
+	 */
+	public static PartitionView of(EncodedGraph graph, Model part)
+	{
+		int[] statements = new int[(int) part.size()];
+		int i = 0;
+		Iterator<Triple> triples = part.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		while(triples.hasNext())
+		{
+			Triple triple = triples.next();
+			int statement = graph.statementId(triple);
+			if(statement == -1)
+			{
+				throw new IllegalArgumentException("Statement is not part of the graph: " + triple);
+			}
+			statements[i++] = statement;
+		}
+		return new PartitionView(graph, Arrays.copyOf(statements, i));
+	}
+	
+	/**
+	 *
+	 * @return number of statements in this part
+	 */
+	public int size()
+	{
+		return statements.length;
+	}
+	
+	/**
+	 *
+	 * @return sorted IDs of the statements in this part, must not be changed
+	 */
+	public int[] getStatements()
+	{
+		return statements;
+	}
+	
+	public EncodedGraph getGraph()
+	{
+		return graph;
+	}
+	
+	/**
+	 * Creates a new model containing the statements of this part
+	 * @return model
+	 */
+	public Model toModel()
+	{
+		return graph.toModel(statements);
+	}
+	
+	/**
+	 * Encodes the statements of this part like ModelTools.modelToBytes, without creating a model
+	 * @return bytes encoding this part
+	 */
+	public byte[] toBytes()
+	{
+		return graph.toBytes(statements);
+	}
+	
+	/**
+	 * Writes this part to a stream like toBytes, e.g. straight into a cipher
+	 * @param out is flushed but not closed
+	 */
+	public void write(OutputStream out)
+	{
+		graph.write(statements, out);
+	}
+	
+	private static int[] sortDistinct(int[] values)
+	{
+		Arrays.sort(values);
+		int distinct = 0;
+		for(int i = 0; i < values.length; i++)
+		{
+			if(i == 0 || values[i] != values[i - 1])
+			{
+				values[distinct++] = values[i];
+			}
+		}
+		return distinct == values.length ? values : Arrays.copyOf(values, distinct);
+	}
+}
@@ -1,24 +1,31 @@
 package knowledgegraphpartitioning;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
+import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.ResIterator;
-import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import privatesetintersection.ExecutorHandling;
 import protocol.GetUserInput;
 import protocol.Log;
 import protocol.Seller;
 import protocol.Tuple;
 import statistics.StatisticsResults;
+import triplestore.EncodedGraph;
 
 public class Partitioning 
 {
@@ -26,30 +33,73 @@ public class Partitioning
 	/**
 	 * Asks the user for a partitioning strategy and partitions the model with it.
 	 * @param model
-	 * @return list of models, which is the partitioning of the original model
+	 * @return partitioning of the original model, as views on its statements
 	 */
-	public static LinkedList<Model> partitionModel(Model model)
+	public static LinkedList<PartitionView> partitionModel(Model model)
+	{
+		return partitionModel(model, null);
+	}
+	
+	/**
+	 * Asks the user for a partitioning strategy and partitions the model with it.
+	 * The parts are views on the statements of the encoded graph, if none is given the model is loaded into one.
+	 * @param model
+	 * @param graph model loaded into an encoded graph, may be null
+	 * @return partitioning of the original model, as views on its statements
+	 */
+	public static LinkedList<PartitionView> partitionModel(Model model, EncodedGraph graph)
+	{
+		return partitionModel(model, graph, GetUserInput.askPartitioningStrategy());
+	}
+	
+	/**
+	 * Partitions the model with the given strategy, the parameters of the strategy are asked from the user.
+	 * @param model
+	 * @param graph model loaded into an encoded graph, may be null
+	 * @param partitioningStrategy
+	 * @return partitioning of the original model, as views on its statements
+	 */
+	public static LinkedList<PartitionView> partitionModel(Model model, EncodedGraph graph, Strategies partitioningStrategy)
 	{
 		Logger logger = Log.getLogger();
 		
-		Strategies partitioningStrategy = GetUserInput.askPartitioningStrategy();
+		if(graph == null)
+		{
+			graph = EncodedGraph.load(model);
+		}
 		
-		LinkedList<Model> partitions = new LinkedList<Model>();
+		LinkedList<PartitionView> partitions = new LinkedList<PartitionView>();
 		switch (partitioningStrategy)
 		{
 			case BALANCEDDBSCAN:
-				partitions = Partitioning.partitionDBSCAN(model);
+				partitions = toViews(graph, Partitioning.partitionDBSCAN(model));
 				break;
 			case DBSCAN:
 				int minStatements = GetUserInput.askDBSCANminStatements();
-				partitions = Partitioning.dbscan(model, minStatements, false);
+				partitions = Partitioning.dbscan(graph, minStatements, false);
 				break;
 			case RANGE:
 				int range = GetUserInput.askRange();
-				partitions = Partitioning.partitionNeighborhood(model, range);
+				partitions = Partitioning.partitionNeighborhood(graph, range);
 				break;
 			case RESOURCE:
-				partitions = Partitioning.partitionResorces(model);
+				partitions = Partitioning.partitionResorces(graph);
+				break;
+			case LABELPROPAGATION:
+				int nrParts = GetUserInput.askNumberOfParts();
+				long seed = GetUserInput.askPartitioningSeed();
+				partitions = LabelPropagation.partition(graph, nrParts, seed);
+				if(partitions != null)
+				{
+					logger.info("Done label propagation partitioning.");
+					outputViewDetails(partitions);
+				}
+				break;
+			case HASH:
+				HashKeys key = GetUserInput.askHashKey();
+				int nrHashParts = GetUserInput.askNumberOfParts();
+				long hashSeed = GetUserInput.askPartitioningSeed();
+				partitions = Partitioning.partitionHash(graph, key, nrHashParts, hashSeed);
 				break;
 			default:
 				logger.info("Non existing patitioning strategy. Missing case.");
@@ -57,6 +107,26 @@ public class Partitioning
 		return partitions;
 	}
 	
+	/**
+	 * Turns parts built as models into views on the graph
+	 * @param graph the parts have been built from
+	 * @param parts
+	 * @return views on the statements of the parts, null if parts is null
+	 */
+	private static LinkedList<PartitionView> toViews(EncodedGraph graph, LinkedList<Model> parts)
+	{
+		if(parts == null)
+		{
+			return null;
+		}
+		LinkedList<PartitionView> views = new LinkedList<PartitionView>();
+		for(Model part : parts)
+		{
+			views.add(PartitionView.of(graph, part));
+		}
+		return views;
+	}
+	
 	/**
 	 * Partitions a model using a DBSCAN approach. Iteratively partitions each part again with a higher minstatements. Then balances the resulting parts using statements that not yet belong to a part.
 	 * @param model
@@ -80,37 +150,41 @@ public class Partitioning
 			minPoints = (int) statisticsResults.getOutgoingLinks25();
 		}
 		
-		int level = 0;
 		TreeNode<Model> dbscanResultsTree = new TreeNode<Model>(model);
 		
+		// Nodes of the level that is refined next and all leaves, both in the order of the tree
+		LinkedList<TreeNode<Model>> nodesOnLevel = new LinkedList<TreeNode<Model>>();
+		nodesOnLevel.add(dbscanResultsTree);
+		LinkedList<TreeNode<Model>> leaves = new LinkedList<TreeNode<Model>>(nodesOnLevel);
+		
 		Boolean biggestUsableClusterFound = false;
 		
 		while(!biggestUsableClusterFound)
 		{
-			for(TreeNode<Model> node : dbscanResultsTree.getNodesOnLevel(level))
+			refineLevel(nodesOnLevel, minPoints);
+			
+			// Children of the refined nodes are the next level, and replace their parents as leaves
+			LinkedList<TreeNode<Model>> nextLevel = new LinkedList<TreeNode<Model>>();
+			for(TreeNode<Model> node : nodesOnLevel)
+			{
+				nextLevel.addAll(node.getChildren());
+			}
+			LinkedList<TreeNode<Model>> newLeaves = new LinkedList<TreeNode<Model>>();
+			for(TreeNode<Model> leaf : leaves)
 			{
-				if(node.getData().size() > minPoints)
+				if(leaf.isLeaf())
 				{
-					LinkedList<Model> dbscanResult = dbscan(node.getData(), minPoints, true);
-					if(!dbscanResult.isEmpty())
-					{
-						for(Model c : dbscanResult) 
-						{
-							if(c.size() > 0)
-							{
-								node.addChild(c);
-							}
-						}
-					}
+					newLeaves.add(leaf);
+				} else
+				{
+					newLeaves.addAll(leaf.getChildren());
 				}
-				
 			}
+			nodesOnLevel = nextLevel;
+			leaves = newLeaves;
 			
-			level++;
-			
-			LinkedList<TreeNode<Model>> leaves = dbscanResultsTree.getLeaves();
 			long biggestClusterSize = getNodeWithBiggestModel(leaves).getData().size();
-			if(leaves.size() * biggestClusterSize > model.size() && dbscanResultsTree.getNodesOnLevel(level).size() > 0)
+			if(leaves.size() * biggestClusterSize > model.size() && nodesOnLevel.size() > 0)
 			{
 				minPoints = minPoints * 2;
 			} else
@@ -138,6 +212,51 @@ public class Partitioning
 		return result;
 	}
 	
+	/**
+	 * Partitions the models of all nodes of a tree level with DBSCAN and adds the non empty parts as children.
+	 * Nodes are independent of each other, so they are partitioned in parallel.
+	 * Children are added afterwards in the order of the nodes, so the tree does not depend on the order in which the tasks finish.
+	 * @param nodesOnLevel
+	 * @param minPoints
+	 */
+	private static void refineLevel(LinkedList<TreeNode<Model>> nodesOnLevel, int minPoints)
+	{
+		Logger logger = Log.getLogger();
+		
+		ArrayList<TreeNode<Model>> nodes = new ArrayList<TreeNode<Model>>(nodesOnLevel);
+		ArrayList<LinkedList<Model>> dbscanResults = new ArrayList<LinkedList<Model>>(Collections.nCopies(nodes.size(), (LinkedList<Model>) null));
+		try {
+			ExecutorHandling.forEachIndex(nodes.size(), (i) ->
+			{
+				Model nodeModel = nodes.get(i).getData();
+				if(nodeModel.size() > minPoints)
+				{
+					dbscanResults.set(i, dbscan(nodeModel, minPoints, true));
+				}
+			});
+		} catch (ExecutionException e) {
+			logger.info("Exception when trying to build the DBSCAN tree. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		
+		for(int i = 0; i < nodes.size(); i++)
+		{
+			if(dbscanResults.get(i) != null)
+			{
+				for(Model c : dbscanResults.get(i)) 
+				{
+					if(c.size() > 0)
+					{
+						nodes.get(i).addChild(c);
+					}
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Outputs and logs information about the partitioning.
 	 * - Number of parts
@@ -149,29 +268,59 @@ public class Partitioning
 	 * @param partitioning
 	 */
 	private static void outputPartitioningDetails(LinkedList<Model> partitioning)
+	{
+		long[] sizes = new long[partitioning.size()];
+		int i = 0;
+		for(Model m : partitioning)
+		{
+			sizes[i++] = m.size();
+		}
+		outputPartitioningDetails(sizes);
+	}
+	
+	/**
+	 * Same as outputPartitioningDetails for a partitioning made of views
+	 * @param partitioning
+	 */
+	private static void outputViewDetails(LinkedList<PartitionView> partitioning)
+	{
+		long[] sizes = new long[partitioning.size()];
+		int i = 0;
+		for(PartitionView view : partitioning)
+		{
+			sizes[i++] = view.size();
+		}
+		outputPartitioningDetails(sizes);
+	}
+	
+	/**
+	 * Outputs and logs information about the partitioning, given the sizes of its parts.
+	 * @param sizes
+	 */
+	private static void outputPartitioningDetails(long[] sizes)
 	{
 		Logger logger = Log.getLogger();
 		
 		long statements = 0;
 		long smallest = Long.MAX_VALUE;
 		long biggest = 0;
-		for(Model m : partitioning)
+		for(long size : sizes)
 		{
-			statements += m.size();
-			if(smallest > m.size())
+			statements += size;
+			if(smallest > size)
 			{
-				smallest = m.size();
+				smallest = size;
 			}
-			if(biggest < m.size())
+			if(biggest < size)
 			{
-				biggest = m.size();
+				biggest = size;
 			}
 		}
-		logger.info("Number of Parts: " + partitioning.size());
+		logger.info("Number of Parts: " + sizes.length);
 		logger.info("Number of Statements: " + statements);
 		logger.info("Smalest: " + smallest);
 		logger.info("Biggest: " + biggest);
-		logger.info("Average: " + statements/partitioning.size());
+		logger.info("Average: " + statements/sizes.length);
 		
 	}
 	
@@ -221,6 +370,7 @@ public class Partitioning
 	 * Highly connected parts of the model stay in one part.
 	 * A subject that is connected to at least minStatements statements starts a part. 
 	 * Then the statements of every connected subject that also fulfills this condition gets added to this part.
+	 * The model is loaded into an encoded graph once, see dbscan(EncodedGraph, int, boolean).
 	 * @param model
 	 * @param minStatements
 	 * @param silent if true no logger messages are output.
@@ -228,54 +378,67 @@ public class Partitioning
 	 */
 	public static LinkedList<Model> dbscan (Model model, int minStatements, boolean silent)
 	{
-		Logger logger = Log.getLogger();
-		logger.info("Start DBSCAN for model of size: " + model.size());
-		
 		if(model == null || model.size() == 0)
 		{
 			return null;
 		}
-		// Iterator over all Resources in the model
-		ResIterator resourceIterator = model.listResourcesWithProperty(null);
+		LinkedList<Model> clusters = new LinkedList<Model>();
+		for(PartitionView cluster : dbscan(EncodedGraph.load(model), minStatements, silent))
+		{
+			clusters.add(cluster.toModel());
+		}
+		return clusters;
+	}
+	
+	/**
+	 * Same as dbscan(Model, int, boolean) on an encoded graph.
+	 * The statements of a subject are read from the subject index of the graph.
+	 * Like the clusters of the model version, which only grow from the subjects already in the cluster,
+	 * a cluster is made of the statements of one core subject. Clusters are collected as statement IDs,
+	 * models are only created for the finished clusters.
+	 * Subjects are used as starting points in the order of the model the graph was loaded from, so the result is the same as the one of the model.
+	 * @param graph
+	 * @param minStatements
+	 * @param silent if true no logger messages are output.
+	 * @return partitioning, as views on the statements of the graph
+	 */
+	public static LinkedList<PartitionView> dbscan (EncodedGraph graph, int minStatements, boolean silent)
+	{
+		Logger logger = Log.getLogger();
 		
-		// Hashset used to store all Resources that have been checked if they belong to a cluster or not
-		HashSet<Resource> checkedResources = new HashSet<Resource>((int) (model.listResourcesWithProperty(null).toList().size() * 1.33));
+		if(graph == null || graph.size() == 0)
+		{
+			return null;
+		}
+		logger.info("Start DBSCAN for model of size: " + graph.size());
 		
-		// List storing all clusters found
-		// Clusters are stored as their own model
-		LinkedList<Model> clusters = new LinkedList<Model>();
+		// Clusters found
+		LinkedList<PartitionView> clusters = new LinkedList<PartitionView>();
 		
-		// Go over all Resources and test if they belong to a cluster
-		while(resourceIterator.hasNext())
+		IntList cluster = new IntList();
+		// Every subject is listed once
+		for(int resource : graph.subjectsInModelOrder())
 		{
-			// Get the next Resource, this will be the starting point for DBSCAN and a potential new cluster
-			Resource resource = resourceIterator.next();
-			
-			// If this Resource has not been checked yet, do so
-			if(!checkedResources.contains(resource)) 
+			// Core subject, all its statements belong to the cluster
+			cluster.clear();
+			if(graph.outDegree(resource) >= minStatements)
 			{
-				// Store Resource to the checked Resources, after this it will not have to be looked at again
-				checkedResources.add(resource);
-				
-				// Calculate cluster
-				Cluster c = new Cluster(model, checkedResources, resource, minStatements);
-				
-				// If an actual cluster is returned
-				if (c.getCluster().size() > 0) 
+				for(int statement : graph.statementsWithSubject(resource))
 				{
-					// Add cluster to the found clusters
-					clusters.add(c.getCluster());
-					
-					// Add all Resources in the new cluster the the checked Resources (they cannot belong to a second cluster)
-					checkedResources.addAll(c.getCluster().listResourcesWithProperty(null).toList());
+					cluster.add(statement);
 				}
 			}
-		}
 			
+			if(cluster.size() > 0)
+			{
+				clusters.add(new PartitionView(graph, cluster.toArray()));
+			}
+		}
+		
 		if(!silent)
 		{
 			logger.info("Done with DBSCAN.");
-			outputPartitioningDetails(clusters);
+			outputViewDetails(clusters);
 		}
 		return clusters;
 	}
@@ -506,43 +669,38 @@ public class Partitioning
 	 * This means there is one part for every resource in the model.
 	 * Statements where the subject and object are not the same resource appear twice in two different parts. (Parts are not exclusive).
 	 * Therefore the total number of statements is between the number of statements in the model and twice that number.
-	 * @param model
+	 * The statements of a resource are read from the subject and object indexes of the graph.
+	 * @param graph
+	 * @return partitioning, as views on the statements of the graph
 	 */
-	public static LinkedList<Model> partitionResorces (Model model)
+	public static LinkedList<PartitionView> partitionResorces (EncodedGraph graph)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start partitioning model into resources.");
 		
-		if(model.isEmpty() || model == null)
+		if(graph == null || graph.size() == 0)
 		{
 			logger.info("Cannot partition this model as it is empty or null.");
 			return null;
 		}
 		
-		LinkedList<Model> partitions = new LinkedList<Model>();
-		HashSet<Resource> resources = new HashSet<Resource>((int) model.size());
-		List<Resource> subjects = model.listSubjects().toList();
-		List<RDFNode> objects = model.listObjects().toList();
-		resources.addAll(subjects);
-		for(RDFNode object : objects)
+		LinkedList<PartitionView> partitions = new LinkedList<PartitionView>();
+		for(int term = 0; term < graph.getDictionary().size(); term++)
 		{
-			if(object.isResource() && !resources.contains(object))
+			// Subjects and objects that are resources, predicates that are neither get no part
+			if(graph.outDegree(term) == 0 && (graph.inDegree(term) == 0 || graph.getDictionary().isLiteral(term)))
 			{
-				resources.add((Resource) object);
+				continue;
 			}
-		}
-		
-		for(Resource r : resources)
-		{
-			List<Statement> statementsWithSubject = model.listStatements(r, null, (RDFNode) null).toList();
-			List<Statement> statementsWithObject = model.listStatements(null, null, r).toList();
-			LinkedList<Statement> statements = new LinkedList<Statement>(statementsWithSubject);
-			statements.addAll(statementsWithObject);
-			partitions.add(ModelFactory.createDefaultModel().add(statements));
+			int[] statementsWithSubject = graph.statementsWithSubject(term);
+			int[] statementsWithObject = graph.statementsWithObject(term);
+			int[] statements = Arrays.copyOf(statementsWithSubject, statementsWithSubject.length + statementsWithObject.length);
+			System.arraycopy(statementsWithObject, 0, statements, statementsWithSubject.length, statementsWithObject.length);
+			partitions.add(new PartitionView(graph, statements));
 		}
 		
 		logger.info("Done resource partitioning model.");
-		outputPartitioningDetails(partitions);
+		outputViewDetails(partitions);
 		return partitions;
 	}
 	
@@ -550,93 +708,234 @@ public class Partitioning
 	 * Partitions given model.
 	 * Takes a subject and then joins all statements within distance of diameter into one part.
 	 * Statements only belongs to one part. All statements belong to a part.
-	 * May not be deterministic.
-	 * @param model
+	 * Subjects are used as centers in the order of their IDs.
+	 * @param graph
 	 * @param diameter
-	 * @return
+	 * @return partitioning, as views on the statements of the graph
 	 */
-	public static LinkedList<Model> partitionNeighborhood (Model model, int diameter)
+	public static LinkedList<PartitionView> partitionNeighborhood (EncodedGraph graph, int diameter)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start partitioning model into parts of neighors within " + diameter + " range.");
 		
-		if(model.isEmpty() || model == null)
+		if(graph == null || graph.size() == 0)
 		{
 			logger.info("Cannot partition this model as it is empty or null.");
 			return null;
 		}
 		
 		int k = 10000;
-		LinkedList<Model> subModels = new LinkedList<Model>();
-		
-		// List all Subjects in model
-		List<Resource> subjects = model.listSubjects().toList();
+		int terms = graph.getDictionary().size();
+		int nrSubjects = 0;
+		for(int term = 0; term < terms; term++)
+		{
+			if(graph.outDegree(term) > 0)
+			{
+				nrSubjects++;
+			}
+		}
 		
-		HashSet<Resource> visited = new HashSet<Resource>(subjects.size());
+		LinkedList<PartitionView> subModels = new LinkedList<PartitionView>();
+		BitSet visited = new BitSet(terms);
+		int visitedCount = 0;
 		
-		// while there is a subject that has not been added to a part, build a new part around said subject
-		for(Resource center : subjects)
+		for(int center = 0; center < terms; center++)
 		{
-			// skip rest of the loop body if this subject already has been processed
-			if(visited.contains(center))
+			// skip terms that are no subject or already have been processed
+			if(graph.outDegree(center) == 0 || visited.get(center))
 			{
 				continue;
 			}
-			int step = 0;
-			List<Statement> statements = model.listStatements(center, null, (RDFNode) null).toList();
 			
-			LinkedList<Resource>[] resourcesInDistance = new LinkedList[diameter];
-			// Create a list for every step
-			for(int i = 0; i < diameter; i++)
-			{
-				resourcesInDistance[i] = new LinkedList<Resource>();
-			}
+			// Statements of the part, resources found in the last step and in this step
+			IntList statements = new IntList();
+			IntList previousStep = new IntList();
+			IntList currentStep = new IntList();
 			
-			for(Statement s : statements)
-			{
-				if(s.getObject().isResource())
-				{
-					resourcesInDistance[step].add((Resource) s.getObject());
-				}
-			}
-			
-			visited.add(center);
+			addStatementsOf(graph, center, statements, currentStep);
+			visited.set(center);
+			visitedCount++;
 			
-			while(step < diameter - 1)
+			for(int step = 1; step < diameter; step++)
 			{
-				step++;
-				for(Resource r : resourcesInDistance[step - 1])
+				IntList swap = previousStep;
+				previousStep = currentStep;
+				currentStep = swap;
+				currentStep.clear();
+				
+				for(int i = 0; i < previousStep.size(); i++)
 				{
-					if(!visited.contains(r))
+					int resource = previousStep.get(i);
+					if(!visited.get(resource))
 					{
-						List<Statement> newStatements = model.listStatements(r, null, (RDFNode) null).toList();
-						if(newStatements != null)
-						{
-							statements.addAll(newStatements);
-							
-							for(Statement s : newStatements)
-							{
-								if(s.getObject().isResource())
-								{
-									resourcesInDistance[step].add((Resource) s.getObject());
-								}
-							}
-						}
-						visited.add(r);
+						addStatementsOf(graph, resource, statements, currentStep);
+						visited.set(resource);
+						visitedCount++;
 					}
 				}
 			}
-			subModels.add(ModelFactory.createDefaultModel().add(statements));
+			subModels.add(new PartitionView(graph, statements.toArray()));
 			
-			if(visited.size() > k)
+			if(visitedCount > k)
 			{
-				logger.info("Subjects processed: " + visited.size() + " Out of: " + subjects.size());
+				logger.info("Subjects processed: " + visitedCount + " Out of: " + nrSubjects);
 				k = k + 10000;
 			}
 		}
 		
 		logger.info("Done range-partitioning model.");
-		outputPartitioningDetails(subModels);
+		outputViewDetails(subModels);
 		return subModels;
 	}
+	
+	/**
+	 * Partitions the model in a single pass over its statements.
+	 * Every statement goes into the part given by a seeded hash of its subject or predicate, see partOf.
+	 * The hash only depends on the term itself, so anyone holding the model can recompute the part of each statement, also after parsing it again.
+	 * The part of every term is computed once and the statement IDs are collected in one buffer per part, no models are created.
+	 * Parts without statements are left out, the other parts are in the order of their numbers.
+	 * @param graph
+	 * @param key term of a statement which decides its part
+	 * @param nrParts number of parts the statements are hashed into
+	 * @param seed
+	 * @return partitioning, as views on the statements of the graph
+	 */
+	public static LinkedList<PartitionView> partitionHash (EncodedGraph graph, HashKeys key, int nrParts, long seed)
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start hash partitioning model by " + key + " into " + nrParts + " parts.");
+		
+		if(graph == null || graph.size() == 0)
+		{
+			logger.info("Cannot partition this model as it is empty or null.");
+			return null;
+		}
+		
+		// Part of every term, -1 if not computed yet
+		int[] termParts = new int[graph.getDictionary().size()];
+		Arrays.fill(termParts, -1);
+		IntList[] buffers = new IntList[nrParts];
+		for(int statement = 0; statement < graph.size(); statement++)
+		{
+			int term = (key == HashKeys.SUBJECT) ? graph.subject(statement) : graph.predicate(statement);
+			if(termParts[term] == -1)
+			{
+				termParts[term] = partOf(graph.getDictionary().getNode(term), nrParts, seed);
+			}
+			if(buffers[termParts[term]] == null)
+			{
+				buffers[termParts[term]] = new IntList();
+			}
+			buffers[termParts[term]].add(statement);
+		}
+		
+		LinkedList<PartitionView> partitions = new LinkedList<PartitionView>();
+		for(IntList buffer : buffers)
+		{
+			if(buffer != null)
+			{
+				partitions.add(new PartitionView(graph, buffer.toArray()));
+			}
+		}
+		
+		logger.info("Done hash partitioning model.");
+		outputViewDetails(partitions);
+		return partitions;
+	}
+	
+	/**
+	 * Part of a term in hash partitioning, see hash.
+	 * Equal terms get the same part on every machine, independent of the order in which the model lists its statements.
+	 * All blank nodes get the same part.
+	 * @param term subject or predicate of a statement
+	 * @param nrParts
+	 * @param seed
+	 * @return part between 0 and nrParts-1
+	 */
+	public static int partOf(Node term, int nrParts, long seed)
+	{
+		return (int) Math.floorMod(hash(term, seed), (long) nrParts);
+	}
+	
+	/**
+	 * Hashes the kind and text of a term with 128 bit murmur3, seeded with the seed.
+	 * Only depends on the term itself, so the hash and everything ordered by it is the same on every machine.
+	 * Blank node labels change whenever a model is parsed again, so all blank nodes share one hash.
+	 * @param term
+	 * @param seed
+	 * @return 64 bit hash
+	 */
+	static long hash(Node term, long seed)
+	{
+		Hasher hasher = Hashing.murmur3_128((int) (seed ^ (seed >>> 32))).newHasher();
+		if(term.isURI())
+		{
+			hasher.putChar('U').putString(term.getURI(), StandardCharsets.UTF_8);
+		} else if(term.isBlank())
+		{
+			hasher.putChar('B');
+		} else
+		{
+			hasher.putChar('N').putString(term.toString(), StandardCharsets.UTF_8);
+		}
+		return hasher.hash().asLong();
+	}
+	
+	/**
+	 * Adds all statements with the resource as subject, and every object of them which is a resource
+	 * @param graph
+	 * @param resource term ID
+	 * @param statements statement IDs are added to this list
+	 * @param objects term IDs of objects are added to this list
+	 */
+	private static void addStatementsOf(EncodedGraph graph, int resource, IntList statements, IntList objects)
+	{
+		for(int statement : graph.statementsWithSubject(resource))
+		{
+			statements.add(statement);
+			int object = graph.object(statement);
+			if(!graph.getDictionary().isLiteral(object))
+			{
+				objects.add(object);
+			}
+		}
+	}
+	
+	/**
+	 * Growable list of ints, avoids boxing every statement ID
+	 */
+	private static class IntList
+	{
+		private int[] values = new int[16];
+		private int size = 0;
+		
+		void add(int value)
+		{
+			if(size == values.length)
+			{
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+		
+		int get(int index)
+		{
+			return values[index];
+		}
+		
+		int size()
+		{
+			return size;
+		}
+		
+		void clear()
+		{
+			size = 0;
+		}
+		
+		int[] toArray()
+		{
+			return Arrays.copyOf(values, size);
+		}
+	}
 }
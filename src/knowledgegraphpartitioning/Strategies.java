@@ -10,5 +10,7 @@ public enum Strategies
 	BALANCEDDBSCAN,
 	DBSCAN,
 	RANGE,
-	RESOURCE;
+	RESOURCE,
+	LABELPROPAGATION,
+	HASH;
 }
@@ -1,18 +1,16 @@
 package nosecuritycomparison;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.Statement;
 
 import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 
 import privatesetintersection.ExecutorHandling;
-import privatesetintersection.KGIntersectionSeller;
 import protocol.Log;
 
 /**
@@ -34,12 +32,14 @@ public class InsecureIntersection {
 		logger.info("Starting Intersection without privacy. \n"
 				+ "Start training Bloom filter.");
 		
-		BloomFilter<String> bf = KGIntersectionSeller.setupBloomFilter(model.size(), 0.03);
+		BloomFilter<String> bf = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), model.size(), 0.03);
 		
-		List<Statement> statements = model.listStatements().toList();
-		for(Statement statement : statements)
-		{
-			bf.put(statement.toString());
+		try {
+			ExecutorHandling.forEach(model.listStatements(), (statement) -> bf.put(statement.toString()));
+		} catch (ExecutionException e) {
+			logger.info("Exception in insecure intersection, when seller is training the Bloom filter. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString());
 		}
 		logger.info("Done training Bloom Filter. Elements contained in BF: " + bf.approximateElementCount());
 		
@@ -60,29 +60,20 @@ public class InsecureIntersection {
 		logger.info("Start checking Statements for membership in Bloom fiter to find intersection.");
 		
 		Model intersection = ModelFactory.createDefaultModel();
-		List<Statement> statements = model.listStatements().toList();
-		ExecutorHandling.calculateParallelForListElements(statements, (statement) -> 
-		{
-			if(bf.mightContain(statement.toString()))
+		try {
+			ExecutorHandling.mapUnordered(model.listStatements(), (statement) -> 
 			{
-				return statement;
-			}
-			return null;
-		}, (Future future) -> 
-		{
-				Statement s;
-				try {
-					s = (Statement) future.get();
-					if(s != null)
-					{
-						intersection.add(s);
-					}
-				} catch (InterruptedException | ExecutionException e) {
-					 logger.info("Exception in insecure intersection, when buyer is testing his statements against the Bloom filter. \n" 
-								+ e.getMessage() + "\n"
-								+ e.toString());
+				if(bf.mightContain(statement.toString()))
+				{
+					return statement;
 				}
-		});
+				return null;
+			}, (results) -> intersection.add(results));
+		} catch (ExecutionException e) {
+			logger.info("Exception in insecure intersection, when buyer is testing his statements against the Bloom filter. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString());
+		}
 		logger.info("Done determining intersection. Size: " + intersection.size());
 		
 		return intersection;
@@ -5,6 +5,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.interfaces.RSAPublicKey;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.logging.Logger;
 
 import protocol.Log;
@@ -81,10 +82,10 @@ public class BuyerOT
 	 * Oblivious Transfer part 2 from Bobs side.
 	 * Uses information from Alice (based on his choices) to decrypt secrets.
 	 * @param publicKey of Alice
-	 * @param kmprime information from Alice calculated on earlier choices.
+	 * @param kmprime information from Alice calculated on earlier choices, one row per choice.
 	 * @return obtained secrets
 	 */
-	public static LinkedList<BigInteger> buyerOTPart2(RSAPublicKey publicKey, LinkedList<LinkedList<BigInteger>> kmprime)
+	public static LinkedList<BigInteger> buyerOTPart2(RSAPublicKey publicKey, List<BigInteger[]> kmprime)
 	{
 		Logger logger = Log.getLogger();
 		
@@ -94,10 +95,10 @@ public class BuyerOT
 		LinkedList<BigInteger> secrets = new LinkedList<BigInteger>();
 		for(int i = 0; i < kmprime.size(); i++)
 		{
-			LinkedList<BigInteger> mprime = kmprime.get(i);
+			BigInteger[] mprime = kmprime.get(i);
 			int b = bValues.get(i);
 			BigInteger k = kValues.get(i);
-			BigInteger mbprime = mprime.get(b);
+			BigInteger mbprime = mprime[b];
 			BigInteger mb = mbprime.subtract(k).mod(N);
 			secrets.add(mb);
 		}
@@ -0,0 +1,174 @@
+package oblivioustransfer;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.crypto.Cipher;
+
+import protocol.Log;
+
+/**
+ * Buyer side of the OT extension mode, see OTExtension.
+ * The buyer is the sender of the base OTs and the receiver of the extended OTs.
+ * @author ---
+ *
+ */
+public class BuyerOTExtension
+{
+	private static BigInteger a;		// secret exponent of the base OTs
+	private static BigInteger A;		// g^a
+	private static byte[][] seeds0;		// key of every base OT for bit 0
+	private static byte[][] seeds1;		// key of every base OT for bit 1
+	private static int[] choices;		// chosen messages
+	private static byte[][] keys;		// key of every extended OT for the chosen bit
+	
+	/**
+	 * Base OTs, part 1 for the buyer.
+	 * @return A = g^a in the group fixed by OTExtension
+	 */
+	public static BigInteger buyerBaseOT()
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start buyer base OTs.");
+		
+		a = new BigInteger(OTExtension.EXPONENT_BITS, new SecureRandom());
+		A = OTExtension.G.modPow(a, OTExtension.P);
+		return A;
+	}
+	
+	/**
+	 * Base OTs, part 2 for the buyer.
+	 * Derives both keys of every base OT from the answer of the seller, the seller only knows one of them.
+	 * @param Bs B_j for every base OT
+	 */
+	public static void buyerBaseOTPart2(BigInteger[] Bs)
+	{
+		Logger logger = Log.getLogger();
+		
+		seeds0 = new byte[OTExtension.KAPPA][];
+		seeds1 = new byte[OTExtension.KAPPA][];
+		BigInteger p = OTExtension.P;
+		BigInteger inverseA = A.modInverse(p);
+		try {
+			for(int j = 0; j < OTExtension.KAPPA; j++)
+			{
+				if(!OTExtension.isGroupElement(Bs[j]))
+				{
+					logger.info("Seller sent an invalid base OT message. Terminating protocol.");
+					System.exit(1);
+				}
+				seeds0[j] = OTExtension.baseKey(j, Bs[j].modPow(a, p));
+				seeds1[j] = OTExtension.baseKey(j, Bs[j].multiply(inverseA).mod(p).modPow(a, p));
+			}
+		} catch (GeneralSecurityException e) {
+			logger.info("Exception in buyer base OTs. \n"
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		logger.info("Done buyer base OTs.");
+	}
+	
+	/**
+	 * Chooses random messages and extends the base OTs to one OT per bit of the choices.
+	 * @param amount number of messages to obtain, at most n
+	 * @param n number of messages of the seller
+	 * @return columns u_j to be sent to the seller
+	 */
+	public static byte[][] buyerOTExtension(int amount, int n)
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start buyer OT extension.");
+		
+		int l = OTExtension.bitsFor(n);
+		int m = amount * l;
+		int mBytes = (m + 7) / 8;
+		
+		// ---------------- Choose messages, their bits are the choice bits r --------------------------------
+		SecureRandom secureRandom = new SecureRandom();
+		choices = new int[amount];
+		byte[] r = new byte[mBytes];
+		for(int c = 0; c < amount; c++)
+		{
+			choices[c] = secureRandom.nextInt(n);
+			for(int j = 0; j < l; j++)
+			{
+				if(((choices[c] >>> j) & 1) == 1)
+				{
+					OTExtension.setBit(r, c * l + j);
+				}
+			}
+		}
+		
+		// ---------------- t_j = G(k0_j), u_j = t_j XOR G(k1_j) XOR r --------------------------------
+		byte[][] t = new byte[OTExtension.KAPPA][];
+		byte[][] u = new byte[OTExtension.KAPPA][];
+		try {
+			for(int j = 0; j < OTExtension.KAPPA; j++)
+			{
+				t[j] = OTExtension.prg(seeds0[j], mBytes);
+				u[j] = OTExtension.prg(seeds1[j], mBytes);
+				OTExtension.xor(u[j], t[j]);
+				OTExtension.xor(u[j], r);
+			}
+			// Key of extended OT i for bit r_i is the hash of row i of T
+			keys = new byte[m][];
+			for(int i = 0; i < m; i++)
+			{
+				keys[i] = OTExtension.rowKey(i, OTExtension.row(t, i));
+			}
+		} catch (GeneralSecurityException e) {
+			logger.info("Exception in buyer OT extension. \n"
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		return u;
+	}
+	
+	/**
+	 * Unmasks the chosen message of every choice.
+	 * @param maskedMessages one array per choice as sent by the seller
+	 * @return obtained secrets
+	 */
+	public static LinkedList<BigInteger> buyerOTExtensionPart2(List<byte[]> maskedMessages)
+	{
+		Logger logger = Log.getLogger();
+		
+		LinkedList<BigInteger> secrets = new LinkedList<BigInteger>();
+		try {
+			int l = keys.length / choices.length;
+			byte[] mask = new byte[OTExtension.MESSAGE_BYTES];
+			byte[] buffer = new byte[OTExtension.MESSAGE_BYTES];
+			for(int c = 0; c < choices.length; c++)
+			{
+				Cipher[] prfs = new Cipher[l];
+				for(int j = 0; j < l; j++)
+				{
+					prfs[j] = OTExtension.prf(keys[c * l + j]);
+				}
+				OTExtension.mask(prfs, choices[c], mask, buffer);
+				byte[] masked = maskedMessages.get(c);
+				for(int i = 0; i < OTExtension.MESSAGE_BYTES; i++)
+				{
+					mask[i] ^= masked[choices[c] * OTExtension.MESSAGE_BYTES + i];
+				}
+				secrets.add(new BigInteger(1, mask));
+			}
+		} catch (GeneralSecurityException e) {
+			logger.info("Exception in buyer OT extension. \n"
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		logger.info("Done with buyer OT extension.");
+		return secrets;
+	}
+}
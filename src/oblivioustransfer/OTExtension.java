@@ -0,0 +1,216 @@
+package oblivioustransfer;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Building blocks shared by SellerOTExtension and BuyerOTExtension.
+ *
+ * The OT extension mode works in three layers:
+ * - KAPPA base OTs (1 out of 2, Chou and Orlandi "The Simplest Oblivious Transfer") in the fixed Diffie-Hellman group ffdhe2048,
+ *   with the roles reversed: the buyer sends, the seller chooses.
+ * - IKNP OT extension (Ishai, Kilian, Nissim, Petrank) stretches the base OTs with a PRG into one 1 out of 2 OT per choice bit of the buyer.
+ *   Both keys of such an OT are known to the seller, the buyer only knows the key of his choice bit.
+ * - Naor and Pinkas 1 out of n OT: a choice of a part is written with l = log2(n) bits, part i is masked with the XOR of
+ *   one PRF value per bit, keyed with the key of the bit value of i. Only the chosen part can be unmasked by the buyer.
+ * So the public key operations do not depend on the number of parts, every part costs l AES calls and MESSAGE_BYTES per choice.
+ * Secure against semi honest parties, like the RSA based OT.
+ * @author ---
+ *
+ */
+class OTExtension
+{
+	// Number of base OTs, security parameter in bits
+	static final int KAPPA = 128;
+	static final int KAPPA_BYTES = KAPPA / 8;
+	// Length of the messages, messages are non negative BigIntegers of at most 256 bits
+	static final int MESSAGE_BYTES = 32;
+	// Bit length of the secret exponents in the Diffie-Hellman group
+	static final int EXPONENT_BITS = 256;
+	// Safe prime p = 2q + 1 of the group ffdhe2048 (RFC 7919), fixed on both sides so neither party can choose a weak group
+	static final BigInteger P = new BigInteger(
+			"FFFFFFFFFFFFFFFFADF85458A2BB4A9AAFDC5620273D3CF1D8B9C583CE2D3695A9E13641146433FBCC939DCE249B3EF9"
+			+ "7D2FE363630C75D8F681B202AEC4617AD3DF1ED5D5FD65612433F51F5F066ED0856365553DED1AF3B557135E7F57C935"
+			+ "984F0C70E0E68B77E2A689DAF3EFE8721DF158A136ADE73530ACCA4F483A797ABC0AB182B324FB61D108A94BB2C8E3FB"
+			+ "B96ADAB760D7F4681D4F42A3DE394DF4AE56EDE76372BB190B07A7C8EE0A6D709E02FCE1CDF7E2ECC03404CD28342F61"
+			+ "9172FE9CE98583FF8E4F1232EEF28183C3FE3B1B4C6FAD733BB5FCBC2EC22005C58EF1837D1683B2C6F34A26C1B2EFFA"
+			+ "886B423861285C97FFFFFFFFFFFFFFFF", 16);
+	// Order of the subgroup generated by G
+	static final BigInteger Q = P.shiftRight(1);
+	static final BigInteger G = BigInteger.valueOf(2);
+	
+	/**
+	 * Checks that a value received from the other party is an element of the group other than 0, 1 and -1
+	 * @param value
+	 * @return true if the value can be used
+	 */
+	static boolean isGroupElement(BigInteger value)
+	{
+		return value.compareTo(BigInteger.ONE) > 0 && value.compareTo(P.subtract(BigInteger.ONE)) < 0;
+	}
+	
+	/**
+	 * Checks that a value received from the other party is in the subgroup of prime order Q generated by G.
+	 * A value outside of it would show in the answers of the seller whether A was multiplied in, i.e. the choice bits.
+	 * @param value
+	 * @return true if the value can be used
+	 */
+	static boolean isSubgroupElement(BigInteger value)
+	{
+		return isGroupElement(value) && value.modPow(Q, P).equals(BigInteger.ONE);
+	}
+	
+	/**
+	 * Key of base OT j from a group element
+	 * @param j
+	 * @param point
+	 * @return KAPPA_BYTES long seed
+	 * @throws GeneralSecurityException
+	 */
+	static byte[] baseKey(int j, BigInteger point) throws GeneralSecurityException
+	{
+		MessageDigest sha = MessageDigest.getInstance("SHA-256");
+		sha.update(ByteBuffer.allocate(4).putInt(j).array());
+		sha.update(point.toByteArray());
+		return Arrays.copyOf(sha.digest(), KAPPA_BYTES);
+	}
+	
+	/**
+	 * Expands a seed with AES in counter mode
+	 * @param seed KAPPA_BYTES long
+	 * @param length
+	 * @return length pseudo random bytes
+	 * @throws GeneralSecurityException
+	 */
+	static byte[] prg(byte[] seed, int length) throws GeneralSecurityException
+	{
+		Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(seed, "AES"), new IvParameterSpec(new byte[16]));
+		return cipher.doFinal(new byte[length]);
+	}
+	
+	/**
+	 * Key of extended OT i from a row of the IKNP matrix
+	 * @param i
+	 * @param row KAPPA_BYTES long
+	 * @return KAPPA_BYTES long key
+	 * @throws GeneralSecurityException
+	 */
+	static byte[] rowKey(int i, byte[] row) throws GeneralSecurityException
+	{
+		MessageDigest sha = MessageDigest.getInstance("SHA-256");
+		sha.update(ByteBuffer.allocate(4).putInt(i).array());
+		sha.update(row);
+		return Arrays.copyOf(sha.digest(), KAPPA_BYTES);
+	}
+	
+	/**
+	 * Row i of a matrix given by its KAPPA columns of bits
+	 * @param columns
+	 * @param i
+	 * @return KAPPA_BYTES long row, bit j is bit i of column j
+	 */
+	static byte[] row(byte[][] columns, int i)
+	{
+		byte[] row = new byte[KAPPA_BYTES];
+		for(int j = 0; j < KAPPA; j++)
+		{
+			if(bit(columns[j], i))
+			{
+				setBit(row, j);
+			}
+		}
+		return row;
+	}
+	
+	/**
+	 *
+	 * @param n number of parts
+	 * @return number of bits needed to write every part number, at least 1
+	 */
+	static int bitsFor(int n)
+	{
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(n - 1));
+	}
+	
+	static boolean bit(byte[] bits, int i)
+	{
+		return (bits[i >>> 3] & (1 << (i & 7))) != 0;
+	}
+	
+	static void setBit(byte[] bits, int i)
+	{
+		bits[i >>> 3] |= 1 << (i & 7);
+	}
+	
+	/**
+	 * XORs other into bits
+	 * @param bits
+	 * @param other at least as long as bits
+	 */
+	static void xor(byte[] bits, byte[] other)
+	{
+		for(int i = 0; i < bits.length; i++)
+		{
+			bits[i] ^= other[i];
+		}
+	}
+	
+	/**
+	 * Creates a PRF with AES, the value of part i is the encryption of two blocks containing i
+	 * @param key KAPPA_BYTES long
+	 * @return cipher, not thread safe
+	 * @throws GeneralSecurityException
+	 */
+	static Cipher prf(byte[] key) throws GeneralSecurityException
+	{
+		Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+		return cipher;
+	}
+	
+	/**
+	 * XORs the PRF values of part i under all given PRFs into a mask
+	 * @param prfs one PRF per bit of the part number, already chosen by the bit values
+	 * @param i part
+	 * @param mask MESSAGE_BYTES long
+	 * @param buffer MESSAGE_BYTES long, overwritten
+	 * @throws GeneralSecurityException
+	 */
+	static void mask(Cipher[] prfs, int i, byte[] mask, byte[] buffer) throws GeneralSecurityException
+	{
+		byte[] input = new byte[MESSAGE_BYTES];
+		ByteBuffer.wrap(input).putLong(0, i).putLong(16, i).put(8, (byte) 1).put(24, (byte) 2);
+		Arrays.fill(mask, (byte) 0);
+		for(Cipher prf : prfs)
+		{
+			prf.doFinal(input, 0, MESSAGE_BYTES, buffer, 0);
+			xor(mask, buffer);
+		}
+	}
+	
+	/**
+	 *
+	 * @param message non negative, at most 8*MESSAGE_BYTES bits
+	 * @return message as MESSAGE_BYTES unsigned big endian bytes
+	 */
+	static byte[] toBytes(BigInteger message)
+	{
+		if(message.signum() < 0 || message.bitLength() > 8 * MESSAGE_BYTES)
+		{
+			throw new IllegalArgumentException("Message does not fit into " + MESSAGE_BYTES + " bytes.");
+		}
+		byte[] bytes = message.toByteArray();
+		byte[] fixed = new byte[MESSAGE_BYTES];
+		int length = Math.min(bytes.length, MESSAGE_BYTES);
+		System.arraycopy(bytes, bytes.length - length, fixed, MESSAGE_BYTES - length, length);
+		return fixed;
+	}
+}
@@ -0,0 +1,13 @@
+package oblivioustransfer;
+
+/**
+ * This Enum contains the names of all oblivious transfer modes.
+ * RSA runs the RSA based 1 out of n OT for every choice, EXTENSION stretches a fixed number of base OTs with symmetric cryptography.
+ * @author ---
+ *
+ */
+public enum OTModes 
+{
+	RSA,
+	EXTENSION;
+}
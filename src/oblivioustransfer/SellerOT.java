@@ -7,17 +7,25 @@ import java.security.SecureRandom;
 import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.interfaces.RSAPublicKey;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
+import privatesetintersection.CRTSigner;
+import privatesetintersection.ExecutorHandling;
 import protocol.Log;
 
 public class SellerOT 
 {
+	public interface RowSink
+	{
+		public void send(BigInteger[] messagesprime);
+	}
+	
 	private static KeyPair alicePair;  //Alice key pair
 	private static RSAPrivateCrtKey alicePrivate; // Alice private key d
 	private static RSAPublicKey alicePublic; // Alice public key e
 	private static BigInteger N; // Key pair's modulus
-	private static BigInteger d; // private exponent d
+	private static CRTSigner signer; // computes x^d mod N with CRT
 	
 	/**
 	 * Oblivious Transfer Alice Part 1
@@ -57,13 +65,15 @@ public class SellerOT
 	 * Oblivious Transfer Alice Part 2
 	 * From choice of Bob subtracts random message and adds the message.
 	 * This has to be done for all combinations.
+	 * The combinations of one choice form a row. The exponentiations of a row are done in parallel with CRT,
+	 * every row is handed to the sink as soon as it is done, in the order of the choices.
 	 * @param messages / secrets
 	 * @param amount how many messages / secrets are to be shared with Bob.
 	 * @param vValues obscured choices of Bob. (Obscured random message from first part)
 	 * @param randomMessages that where send to Bob in part 1
-	 * @return obscured messages where Bob can crack those he chose earlier but no others
+	 * @param sink receives the obscured messages of each choice, where Bob can crack those he chose earlier but no others
 	 */
-	public static LinkedList<LinkedList<BigInteger>> sellerOTPart2(LinkedList<BigInteger> messages, int amount, LinkedList<BigInteger> vValues, LinkedList<BigInteger> randomMessages)
+	public static void sellerOTPart2(LinkedList<BigInteger> messages, int amount, LinkedList<BigInteger> vValues, LinkedList<BigInteger> randomMessages, RowSink sink)
 	{
 		Logger logger = Log.getLogger();
 		
@@ -73,29 +83,34 @@ public class SellerOT
 			System.exit(1);
 		}
 		
-		LinkedList<LinkedList<BigInteger>> kmessagesprime = new LinkedList<LinkedList<BigInteger>>();
+		BigInteger[] messagesArray = messages.toArray(new BigInteger[messages.size()]);
+		BigInteger[] randomMessagesArray = randomMessages.toArray(new BigInteger[randomMessages.size()]);
+		int n = Math.min(messagesArray.length, randomMessagesArray.length);
+		// Every task computes every stripes-th message of a row
+		int stripes = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
 		
 		for(BigInteger v : vValues)
 		{
-			LinkedList<BigInteger> blindingsK = new LinkedList<BigInteger>();
-			for(BigInteger randomMessage : randomMessages)
-			{
-				BigInteger k = (v.subtract(randomMessage)).modPow(d, N);
-				blindingsK.add(k);
-			}
-			
-			int i = 0;
-			LinkedList<BigInteger> messagesprime = new LinkedList<BigInteger>();
-			for(BigInteger message : messages)
-			{
-				messagesprime.add(message.add(blindingsK.get(i)).mod(N));
-				i++;
+			BigInteger[] messagesprime = new BigInteger[n];
+			try {
+				ExecutorHandling.forEachIndex(stripes, (stripe) ->
+				{
+					for(int i = stripe; i < n; i += stripes)
+					{
+						BigInteger k = signer.sign(v.subtract(randomMessagesArray[i]));
+						messagesprime[i] = messagesArray[i].add(k).mod(N);
+					}
+				});
+			} catch (ExecutionException e) {
+				logger.info("Exception when trying to compute the oblivious transfer messages. \n" 
+						+ e.getMessage() + "\n"
+						+ e.toString() + "\n"
+						+ "Protocol is being terminated.");
+				System.exit(1);
 			}
-			
-			kmessagesprime.add(messagesprime);
+			sink.send(messagesprime);
 		}
 		logger.info("Done seller OT.");
-		return kmessagesprime;
 	}
 	
 	private static void setKey(KeyPair keyPair) 
@@ -104,6 +119,6 @@ public class SellerOT
 		alicePrivate = (RSAPrivateCrtKey) alicePair.getPrivate(); //get the private key d out of the key pair Alice produced
 		alicePublic = (RSAPublicKey) alicePair.getPublic(); //get  the public key e out of the key pair Alice produced
 		N = alicePublic.getModulus(); //get the modulus of the key pair produced by Alice
-		d = alicePrivate.getPrivateExponent(); //get private exponent d
+		signer = new CRTSigner(keyPair);
 	}
 }
@@ -0,0 +1,181 @@
+package oblivioustransfer;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import javax.crypto.Cipher;
+
+import privatesetintersection.ExecutorHandling;
+import protocol.Log;
+
+/**
+ * Seller side of the OT extension mode, see OTExtension.
+ * The seller is the receiver of the base OTs and the sender of the extended OTs.
+ * @author ---
+ *
+ */
+public class SellerOTExtension
+{
+	public interface MaskedSink
+	{
+		public void send(byte[] maskedMessages);
+	}
+	
+	private static byte[] s;			// choice bits of the base OTs
+	private static byte[][] seeds;		// key of every base OT for the chosen bit
+	
+	/**
+	 * Base OTs, part 1 for the seller.
+	 * Chooses a random bit for every base OT and answers the first message of the buyer.
+	 * @param A g^a of the buyer
+	 * @return B_j for every base OT
+	 */
+	public static BigInteger[] sellerBaseOT(BigInteger A)
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start seller base OTs.");
+		
+		BigInteger p = OTExtension.P;
+		BigInteger g = OTExtension.G;
+		if(!OTExtension.isSubgroupElement(A))
+		{
+			logger.info("Buyer sent an invalid base OT message. Terminating protocol.");
+			System.exit(1);
+		}
+		
+		s = new byte[OTExtension.KAPPA_BYTES];
+		seeds = new byte[OTExtension.KAPPA][];
+		BigInteger[] Bs = new BigInteger[OTExtension.KAPPA];
+		try {
+			SecureRandom secureRandom = new SecureRandom();
+			secureRandom.nextBytes(s);
+			for(int j = 0; j < OTExtension.KAPPA; j++)
+			{
+				BigInteger b = new BigInteger(OTExtension.EXPONENT_BITS, secureRandom);
+				BigInteger B = g.modPow(b, p);
+				if(OTExtension.bit(s, j))
+				{
+					B = A.multiply(B).mod(p);
+				}
+				Bs[j] = B;
+				seeds[j] = OTExtension.baseKey(j, A.modPow(b, p));
+			}
+		} catch (GeneralSecurityException e) {
+			logger.info("Exception in seller base OTs. \n"
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		logger.info("Done seller base OTs.");
+		return Bs;
+	}
+	
+	/**
+	 * Extends the base OTs to one OT per choice bit of the buyer and sends every message masked for every choice.
+	 * The masked messages of one choice are computed in parallel and handed to the sink as soon as they are done, in the order of the choices.
+	 * @param messages / secrets, non negative and at most 256 bits
+	 * @param amount how many messages / secrets are to be shared with the buyer.
+	 * @param choices number of messages the buyer wants
+	 * @param u columns sent by the buyer
+	 * @param sink receives MESSAGE_BYTES per message for each choice, the buyer can only unmask the chosen one
+	 */
+	public static void sellerOTExtension(LinkedList<BigInteger> messages, int amount, int choices, byte[][] u, MaskedSink sink)
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start seller OT extension.");
+		
+		if(choices > amount)
+		{
+			logger.info("Buyer tried to obtain more secrets then agreed upon. Terminating protocol.");
+			System.exit(1);
+		}
+		
+		BigInteger[] messagesArray = messages.toArray(new BigInteger[messages.size()]);
+		int n = messagesArray.length;
+		int l = OTExtension.bitsFor(n);
+		int m = choices * l;
+		int mBytes = (m + 7) / 8;
+		if(u.length != OTExtension.KAPPA)
+		{
+			logger.info("Buyer sent an invalid OT extension message. Terminating protocol.");
+			System.exit(1);
+		}
+		
+		try {
+			// ---------------- Keys of the extended OTs --------------------------------
+			// q_j = t_j XOR s_j*r, so row i is T_i if the buyer's bit r_i is 0 and T_i XOR s otherwise
+			byte[][] q = new byte[OTExtension.KAPPA][];
+			for(int j = 0; j < OTExtension.KAPPA; j++)
+			{
+				if(u[j].length != mBytes)
+				{
+					logger.info("Buyer sent an invalid OT extension message. Terminating protocol.");
+					System.exit(1);
+				}
+				q[j] = OTExtension.prg(seeds[j], mBytes);
+				if(OTExtension.bit(s, j))
+				{
+					OTExtension.xor(q[j], u[j]);
+				}
+			}
+			// keys[bit][i] is the key of extended OT i for bit value bit, the buyer knows the one of his bit
+			byte[][][] keys = new byte[2][m][];
+			for(int i = 0; i < m; i++)
+			{
+				byte[] row = OTExtension.row(q, i);
+				keys[0][i] = OTExtension.rowKey(i, row);
+				OTExtension.xor(row, s);
+				keys[1][i] = OTExtension.rowKey(i, row);
+			}
+			
+			// ---------------- Mask all messages for every choice --------------------------------
+			byte[][] messageBytes = new byte[n][];
+			for(int i = 0; i < n; i++)
+			{
+				messageBytes[i] = OTExtension.toBytes(messagesArray[i]);
+			}
+			int stripes = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
+			for(int c = 0; c < choices; c++)
+			{
+				int firstOT = c * l;
+				byte[] masked = new byte[n * OTExtension.MESSAGE_BYTES];
+				ExecutorHandling.forEachIndex(stripes, (stripe) ->
+				{
+					// PRF for every bit and bit value of the part numbers, keyed with the key of its extended OT
+					Cipher[][] prfs = new Cipher[2][l];
+					for(int j = 0; j < l; j++)
+					{
+						prfs[0][j] = OTExtension.prf(keys[0][firstOT + j]);
+						prfs[1][j] = OTExtension.prf(keys[1][firstOT + j]);
+					}
+					Cipher[] chosen = new Cipher[l];
+					byte[] mask = new byte[OTExtension.MESSAGE_BYTES];
+					byte[] buffer = new byte[OTExtension.MESSAGE_BYTES];
+					for(int i = stripe; i < n; i += stripes)
+					{
+						for(int j = 0; j < l; j++)
+						{
+							chosen[j] = prfs[(i >>> j) & 1][j];
+						}
+						OTExtension.mask(chosen, i, mask, buffer);
+						OTExtension.xor(mask, messageBytes[i]);
+						System.arraycopy(mask, 0, masked, i * OTExtension.MESSAGE_BYTES, OTExtension.MESSAGE_BYTES);
+					}
+				});
+				sink.send(masked);
+			}
+		} catch (GeneralSecurityException | ExecutionException | IllegalArgumentException e) {
+			logger.info("Exception in seller OT extension. \n"
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		logger.info("Done seller OT extension.");
+	}
+}
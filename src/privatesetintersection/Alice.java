@@ -39,39 +39,14 @@ public class Alice
     }
 
     /**
-     * Calculate mu' using the Chinese Remainder Theorem for optimization
-     * Thanks to the isomorphism property f(x+y)=f(x)+f(y) we can split the mu^d modN in two:
-     * one mode p , one mode q, and then we can combine the results to calculate muprime
-     * @param mu
-     * @param d
-     * @param N
-     * @param P
-     * @param Q
-     * @param PinverseModQ
-     * @param QinverseModP
-     * @return mu'
+     * Creates the signing engine for a key pair produced by Alice.
+     * Signatures are calculated with the Chinese Remainder Theorem, see CRTSigner.
+     * @param keyPair RSA keypair
+     * @return signer that calculates mu^d modN for the given keypair
      */
-    public static BigInteger calculateMuPrimeWithChineseRemainderTheorem(BigInteger mu, BigInteger d, BigInteger N, BigInteger P, BigInteger Q, BigInteger PinverseModQ, BigInteger QinverseModP)
+    public static CRTSigner createSigner(KeyPair keyPair)
     {
-        try
-        {
-            BigInteger m1 = mu.modPow(d, N).mod(P); //calculate m1=(mu^d modN)modP
-
-            BigInteger m2 = mu.modPow(d, N).mod(Q); //calculate m2=(mu^d modN)modQ
-
-            //We combine the calculated m1 and m2 in order to calculate muprime
-            //We calculate muprime: (m1*Q*QinverseModP + m2*P*PinverseModQ) mod N where N =P*Q
-            
-            BigInteger muprime = ((m1.multiply(Q).multiply(QinverseModP)).add(m2.multiply(P).multiply(PinverseModQ))).mod(N);
-
-            return muprime;
-
-        }
-        catch (Exception e)
-        {
-            e.printStackTrace();
-        }
-        return null;
+        return new CRTSigner(keyPair);
     }
 
 }
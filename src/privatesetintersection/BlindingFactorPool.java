@@ -0,0 +1,154 @@
+package privatesetintersection;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAPublicKey;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.logging.Logger;
+
+import protocol.Log;
+import protocol.Tuple;
+
+/**
+ * Pool of precomputed blinding factors (r^e mod N, r^-1 mod N) for the blind signatures of the buyer.
+ * Background threads fill the pool as soon as the public key of the seller is known, e.g. while the buyer computes the multisets.
+ * The inverses are computed in batches with Montgomery's simultaneous inversion: the product of all r of a batch is inverted once,
+ * every single inverse follows from it and the prefix products with three multiplications.
+ * If the product is invertible, so is every r, so the gcd check per r is not needed either.
+ * If the pool is empty, the calling thread computes a batch itself, so taking a factor never waits for the background threads.
+ * @author ---
+ *
+ */
+public class BlindingFactorPool
+{
+	// Number of blinding factors that share one modular inversion
+	private static final int BATCH_SIZE = 256;
+	// Maximum number of blinding factors kept in the pool, about 600 bytes each for a 2048 bit key
+	private static final int CAPACITY = 65536;
+	
+	private final BigInteger N;
+	private final BigInteger e;
+	private final ArrayBlockingQueue<Tuple<BigInteger, BigInteger>> pool = new ArrayBlockingQueue<Tuple<BigInteger, BigInteger>>(CAPACITY);
+	private final LinkedList<Thread> fillers = new LinkedList<Thread>();
+	
+	/**
+	 * Creates an empty pool for a RSA key
+	 * @param publicKey
+	 */
+	public BlindingFactorPool(RSAPublicKey publicKey)
+	{
+		N = publicKey.getModulus();
+		e = publicKey.getPublicExponent();
+	}
+	
+	/**
+	 * Starts one background thread per processor filling the pool, they wait while the pool is full.
+	 */
+	public synchronized void start()
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start filling blinding factors.");
+		
+		for(int i = fillers.size(); i < Runtime.getRuntime().availableProcessors(); i++)
+		{
+			Thread filler = new Thread(() -> 
+			{
+				SecureRandom random = new SecureRandom();
+				try {
+					while(!Thread.currentThread().isInterrupted())
+					{
+						for(Tuple<BigInteger, BigInteger> factor : computeBatch(BATCH_SIZE, random))
+						{
+							pool.put(factor);
+						}
+					}
+				} catch (InterruptedException ex) {
+					// Stopped
+				}
+			}, "BlindingFactorFiller");
+			filler.setDaemon(true);
+			filler.setPriority(Thread.MIN_PRIORITY);
+			filler.start();
+			fillers.add(filler);
+		}
+	}
+	
+	/**
+	 * Stops the background threads, the factors left in the pool are dropped.
+	 */
+	public synchronized void stop()
+	{
+		Logger logger = Log.getLogger();
+		
+		for(Thread filler : fillers)
+		{
+			filler.interrupt();
+		}
+		fillers.clear();
+		pool.clear();
+		logger.info("Stopped filling blinding factors.");
+	}
+	
+	/**
+	 * Takes a blinding factor out of the pool, computes a new one if the pool is empty.
+	 * Thread safe, every factor is handed out once.
+	 * @return r^e mod N as x and r^-1 mod N as y
+	 */
+	public Tuple<BigInteger, BigInteger> next()
+	{
+		Tuple<BigInteger, BigInteger> factor = pool.poll();
+		if(factor == null)
+		{
+			// Still compute a whole batch, the factors not needed now go into the pool
+			Tuple<BigInteger, BigInteger>[] factors = computeBatch(BATCH_SIZE, Bob.random());
+			for(int i = 1; i < factors.length; i++)
+			{
+				pool.offer(factors[i]);
+			}
+			factor = factors[0];
+		}
+		return factor;
+	}
+	
+	/**
+	 * Draws random r with 1 < r < N and computes r^e and r^-1 with one modular inversion for all of them
+	 * @param size number of blinding factors
+	 * @param random
+	 * @return blinding factors, r^e mod N as x and r^-1 mod N as y
+	 */
+	private Tuple<BigInteger, BigInteger>[] computeBatch(int size, SecureRandom random)
+	{
+		BigInteger[] r = new BigInteger[size];
+		// prefix[i] = r_0 * ... * r_i mod N
+		BigInteger[] prefix = new BigInteger[size];
+		for(int i = 0; i < size; i++)
+		{
+			do
+			{
+				r[i] = new BigInteger(N.bitLength(), random);
+			}
+			while(r[i].compareTo(N) >= 0 || r[i].compareTo(BigInteger.ONE) <= 0);
+			prefix[i] = i == 0 ? r[i] : prefix[i - 1].multiply(r[i]).mod(N);
+		}
+		
+		BigInteger inverse;
+		try {
+			inverse = prefix[size - 1].modInverse(N);
+		} catch (ArithmeticException ex) {
+			// One of the r shares a factor with N, which happens with negligible probability. Draw the whole batch again.
+			return computeBatch(size, random);
+		}
+		
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Tuple<BigInteger, BigInteger>[] factors = new Tuple[size];
+		// inverse is (r_0 * ... * r_i)^-1, multiplying with the prefix before r_i leaves r_i^-1
+		for(int i = size - 1; i >= 0; i--)
+		{
+			BigInteger rInverse = i == 0 ? inverse : inverse.multiply(prefix[i - 1]).mod(N);
+			inverse = inverse.multiply(r[i]).mod(N);
+			factors[i] = new Tuple<BigInteger, BigInteger>(r[i].modPow(e, N), rInverse);
+		}
+		return factors;
+	}
+}
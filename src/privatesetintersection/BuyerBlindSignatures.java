@@ -1,157 +1,236 @@
 package privatesetintersection;
 
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
-import org.apache.commons.codec.digest.DigestUtils;
-
 import communication.Client;
 import protocol.Log;
 import protocol.Tuple;
 
 public class BuyerBlindSignatures
 {
-	private static HashMap<Long, BigInteger> blindingMap;
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+	
+	// Inverses of the blinding factors and UTF-8 bytes of the elements, filled by the thread sending blinded batches, read and emptied by the thread receiving signed batches
+	private static ConcurrentHashMap<Long, Tuple<BigInteger, byte[]>> blindingMap;
+	private static BlindingFactorPool blindingFactors;
 	private static RSAPublicKey publicKey;
+	private static int batchSize = DEFAULT_BATCH_SIZE;
+	private static VerificationPolicy verificationPolicy = VerificationPolicy.BATCHED;
 	
 	/**
 	 * Computes blind signatures for all elements contained in a HashMap
+	 * The elements are sent in batches. A separate thread blinds and sends batches while this thread receives and unblinds
+	 * the batches the seller already signed. An empty batch marks the end in both directions.
+	 * In the OPRF mode the elements get OPRF values instead of signatures, see BuyerOPRF. The verification policy does not apply to them.
 	 * @param numberStatementMap containing elements to be signed and a long which identifies each element
 	 * @return LinkedList of tuples containing blind signatures concatenated with a String representation of the signed element as x and the identifier of the original element as y
 	 */
-	public static <K> LinkedList<Tuple<String,Long>> bobBlindSignature (HashMap<Long, K> numberStatementMap)
+	public static <K> LinkedList<Tuple<SignatureDigest, Long>> bobBlindSignature (HashMap<Long, K> numberStatementMap)
 	{
-		Logger logger = Log.getLogger();
-		logger.info("Start getting signatures.");
+		if(PSIParameters.getParameters().getMode() == PSIModes.OPRF)
+		{
+			return BuyerOPRF.buyerOPRF(numberStatementMap, batchSize);
+		}
 		
-		LinkedList<Tuple<K, Long>> statementNumberList = hashmapToTupleList(numberStatementMap);
-		LinkedList<Tuple<BigInteger, Long>> blindedStatements = blindStatements(statementNumberList);
+		Logger logger = Log.getLogger();
+		logger.info("Start getting signatures. Elements to sign: " + numberStatementMap.size() + ", batch size: " + batchSize);
 		
-		// Communication
+		blindingMap = new ConcurrentHashMap<Long, Tuple<BigInteger, byte[]>>();
 		Client client = Client.getClient();
-		client.sendObject(blindedStatements);
+		
+		// --------------- Blind and send batches -------------------
+		Thread sender = new Thread(() -> 
+		{
+			LinkedList<Tuple<K, Long>> batch = new LinkedList<Tuple<K, Long>>();
+			for(HashMap.Entry<Long, K> entry : numberStatementMap.entrySet())
+			{
+				batch.add(new Tuple<K, Long>(entry.getValue(), entry.getKey()));
+				if(batch.size() >= batchSize)
+				{
+					client.sendObject(blindStatements(batch));
+					batch = new LinkedList<Tuple<K, Long>>();
+				}
+			}
+			if(!batch.isEmpty())
+			{
+				client.sendObject(blindStatements(batch));
+			}
+			// Tell the seller that all elements have been sent
+			client.sendObject(new LinkedList<Tuple<BigInteger, Long>>());
+		}, "BlindedBatchSender");
+		sender.start();
+		
+		// --------------- Receive and unblind batches --------------
+		LinkedList<Tuple<SignatureDigest, Long>> unblindedSignatures = new LinkedList<Tuple<SignatureDigest, Long>>();
 		LinkedList<Tuple<BigInteger, Long>> blindedSignatures = client.<LinkedList<Tuple<BigInteger, Long>>>readObject();
+		while(!blindedSignatures.isEmpty())
+		{
+			unblindedSignatures.addAll(unblindStatements(blindedSignatures));
+			blindedSignatures = client.<LinkedList<Tuple<BigInteger, Long>>>readObject();
+		}
 		
-		LinkedList<Tuple<String, Long>> unblindedSignatures = unblindStatements(blindedSignatures, numberStatementMap);
+		try {
+			sender.join();
+		} catch (InterruptedException e) {
+			logger.info("Exception in BuyerBlindSignatures bobBlindSignature, when waiting for blinded batches to be sent. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
 		
-		logger.info("Done obtaining signatures.");
+		logger.info("Done obtaining signatures. Unblinded Singatures: " + unblindedSignatures.size());
 		return unblindedSignatures;
 	}
 	
 	/**
-	 * Blinds given elements
+	 * Blinds given elements and remembers the inverses of the blinding factors and the bytes of the elements for the digests
 	 * @param statementNumberTuples List of Tuples elements and identifiers
 	 * @return blinded elements with identifiers
 	 */
 	private static <K> LinkedList<Tuple<BigInteger, Long>> blindStatements (LinkedList<Tuple<K, Long>> statementNumberTuples)
 	{
 		Logger logger = Log.getLogger();
-		logger.info("Start blinding Buyer elements.");
 		
 		// List of blinded statements
 		LinkedList<Tuple<BigInteger, Long>> blindedStatements = new LinkedList<Tuple<BigInteger, Long>>();
 		
-		blindingMap = new HashMap<Long, BigInteger>(statementNumberTuples.size());
-		
-		ExecutorHandling.calculateParallelForListElements(statementNumberTuples, (statementTuple) -> 
-		{
-			Tuple<BigInteger, BigInteger> mu = Bob.calculateMu(statementTuple.x.toString(), publicKey);
-			// Return blinded statement
-			return new Tuple<Tuple<BigInteger, Long>, BigInteger>(new Tuple<BigInteger, Long>(mu.x, statementTuple.y), mu.y);
-		}, (Future future) -> 
-		{
-			Tuple<Tuple<BigInteger, Long>, BigInteger> f;
-			try {
-				f = (Tuple<Tuple<BigInteger, Long>, BigInteger>)future.get();
-				blindedStatements.add(f.x);
-				blindingMap.put(f.x.y, f.y);
-			} catch (InterruptedException | ExecutionException e) {
-				logger.info("Exception in BuyerBlindSignatures blindStatements, when trying to read features of parallel computation. \n" 
-						+ e.getMessage() + "\n"
-						+ e.toString() + "\n"
-						+ "Protocol is being terminated.");
-				System.exit(1);
-			}
-		});
-		
-		logger.info("Done blinding Elements. Blinded singatures: " + blindedStatements.size());
+		try {
+			ExecutorHandling.mapUnordered(statementNumberTuples.iterator(), (statementTuple) -> 
+			{
+				Tuple<BigInteger, BigInteger> blindingFactor = blindingFactors.next();
+				byte[] element = statementTuple.x.toString().getBytes(StandardCharsets.UTF_8);
+				BigInteger mu = Bob.calculateMu(element, publicKey.getModulus(), blindingFactor.x);
+				// Return blinded statement
+				return new Tuple<Tuple<BigInteger, Long>, Tuple<BigInteger, byte[]>>(new Tuple<BigInteger, Long>(mu, statementTuple.y), new Tuple<BigInteger, byte[]>(blindingFactor.y, element));
+			}, (results) -> 
+			{
+				for(Tuple<Tuple<BigInteger, Long>, Tuple<BigInteger, byte[]>> f : results)
+				{
+					blindedStatements.add(f.x);
+					blindingMap.put(f.x.y, f.y);
+				}
+			});
+		} catch (ExecutionException e) {
+			logger.info("Exception in BuyerBlindSignatures blindStatements, when trying to blind Buyer elements. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
 		
 		return blindedStatements;
 	}
 	
 	/**
 	 * Removes blinding from signed elements and concatenates the signature to the string of the original element
+	 * The unblinded signatures are checked with the verification policy, invalid ones are logged.
 	 * @param signedStatements signed elements with identifier
-	 * @param numberStatementMap mapping from element to identifier
 	 * @return unblinded elements
 	 */
-	private static <K> LinkedList<Tuple<String, Long>> unblindStatements(LinkedList<Tuple<BigInteger, Long>> signedStatements, HashMap<Long, K> numberStatementMap)
+	private static LinkedList<Tuple<SignatureDigest, Long>> unblindStatements(LinkedList<Tuple<BigInteger, Long>> signedStatements)
 	{
 		Logger logger = Log.getLogger();
-		logger.info("Start unblinding signatures.");
 		
 		BigInteger N = publicKey.getModulus();
+		boolean hash = verificationPolicy != VerificationPolicy.OFF;
 
 		// List of unblinded signatures
-		LinkedList<Tuple<String, Long>> signatures = new LinkedList<Tuple<String, Long>>();
+		LinkedList<Tuple<SignatureDigest, Long>> signatures = new LinkedList<Tuple<SignatureDigest, Long>>();
 		
-		ExecutorHandling.calculateParallelForListElements(signedStatements, (statement) -> 
-		{
-			String signature = Bob.signatureCalculation(statement.x, N, blindingMap.get(statement.y));
+		try {
+			// Digest, unblinded signature and H(msg) of every element, in the order of the signed elements
+			ArrayList<Tuple<Tuple<SignatureDigest, Long>, Tuple<BigInteger, BigInteger>>> results = ExecutorHandling.mapOrdered(signedStatements.iterator(), (statement) -> 
+			{
+				// The blinding factor and the element bytes are not needed any more once the signature has been unblinded
+				Tuple<BigInteger, byte[]> blinding = blindingMap.remove(statement.y);
+				BigInteger signature = Bob.removeBlinding(statement.x, N, blinding.x);
+				byte[] element = blinding.y;
+				
+				// -------------- Hash origininal statement and signature together (like in the paper) ---------------
+				SignatureDigest result = SignatureDigest.create(element, signature, N);
+				//----------------------------------------------------------------------------------------------------
+				
+				return new Tuple<Tuple<SignatureDigest, Long>, Tuple<BigInteger, BigInteger>>(new Tuple<SignatureDigest, Long>(result, statement.y), 
+						new Tuple<BigInteger, BigInteger>(signature, hash ? Bob.hashMessage(element) : null));
+			});
 			
-			if(!Bob.verify(signature, publicKey, numberStatementMap.get(statement.y).toString()))
+			BigInteger[] unblinded = new BigInteger[results.size()];
+			BigInteger[] hashes = new BigInteger[results.size()];
+			for(int i = 0; i < results.size(); i++)
 			{
-				logger.info("Signature failed!");
+				signatures.add(results.get(i).x);
+				unblinded[i] = results.get(i).y.x;
+				hashes[i] = results.get(i).y.y;
 			}
 			
-			// -------------- Hash origininal statement and signature together (like in the paper) ---------------
-			String statementWithSignature = numberStatementMap.get(statement.y).toString() + signature;
-			String result = DigestUtils.sha512Hex(statementWithSignature);
-			//----------------------------------------------------------------------------------------------------
-			
-			return new Tuple<String, Long>(result, statement.y);
-		}, (Future future) -> 
-		{
-			try {
-				signatures.add((Tuple<String, Long>) future.get());
-			} catch (InterruptedException | ExecutionException e) {
-				logger.info("Exception in BuyerBlindSignatures unblindStatements, when trying to read features of parallel computation. \n" 
-						+ e.getMessage() + "\n"
-						+ e.toString() + "\n"
-						+ "Protocol is being terminated.");
-				System.exit(1);
+			// -------------- Verify the signatures ---------------
+			for(int i : new SignatureVerifier(publicKey).findInvalid(unblinded, hashes, verificationPolicy))
+			{
+				logger.info("Signature failed! Element: " + results.get(i).x.y);
 			}
-		});
+		} catch (ExecutionException e) {
+			logger.info("Exception in BuyerBlindSignatures unblindStatements, when trying to unblind signatures. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
 		
-		logger.info("Done unblinding signatures. Unblinded Singatures: " + signatures.size());
-
 		return signatures;
 	}
 	
+	/**
+	 * Sets the public key of the seller and starts precomputing blinding factors for it.
+	 * The OPRF mode does not use the key, so no blinding factors are precomputed in it. Set the PSIParameters first.
+	 * @param key
+	 */
 	public static void setPublicKey(RSAPublicKey key)
 	{
+		stopBlindingFactorPool();
 		publicKey = key;
+		blindingFactors = new BlindingFactorPool(key);
+		if(PSIParameters.getParameters().getMode() == PSIModes.RSA)
+		{
+			blindingFactors.start();
+		}
 	}
 	
 	/**
-	 * Turns HashMap into Linked List of tuples where the keys are y and the values are x
-	 * @param numberStatementMap mapping from identifier to original element
-	 * @return LinkedList containing elements of HashMap as tuples
+	 * Stops precomputing blinding factors, to be called once no more elements are signed.
+	 * Blinding factors are still computed on demand afterwards.
 	 */
-	public static <K> LinkedList<Tuple<K, Long>> hashmapToTupleList(HashMap<Long, K> numberStatementMap)
+	public static void stopBlindingFactorPool()
 	{
-		LinkedList<Tuple<K,Long>> list = new LinkedList<Tuple<K,Long>>();
-		
-		for(HashMap.Entry<Long, K> entry : numberStatementMap.entrySet())
+		if(blindingFactors != null)
 		{
-			list.add(new Tuple<K, Long>(entry.getValue(), entry.getKey()));
+			blindingFactors.stop();
 		}
-		
-		return list;
+	}
+	
+	/**
+	 * Sets how many elements are blinded and sent together.
+	 * @param size
+	 */
+	public static void setBatchSize(int size)
+	{
+		batchSize = Math.max(1, size);
+	}
+	
+	/**
+	 * Sets how the unblinded signatures are verified.
+	 * @param policy
+	 */
+	public static void setVerificationPolicy(VerificationPolicy policy)
+	{
+		verificationPolicy = policy;
 	}
 }
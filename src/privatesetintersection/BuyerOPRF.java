@@ -0,0 +1,188 @@
+package privatesetintersection;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+import communication.Client;
+import protocol.Log;
+import protocol.Tuple;
+
+/**
+ * Buyer side of the OPRF mode, see SellerOPRF.
+ * An element m is blinded as x(r*H(m)) for a random scalar r, and unblinded as x(r^-1 * k*r*H(m)) = x(k*H(m)).
+ * There is nothing to verify: without a public key the buyer cannot check the answers of the seller,
+ * a wrong answer only makes the element miss the intersection, like a wrong signature that is not verified.
+ * @author ---
+ *
+ */
+class BuyerOPRF
+{
+	/**
+	 * Computes the OPRF values of all elements contained in a HashMap and hashes each one together with its element.
+	 * The elements are sent in batches. A separate thread blinds and sends batches while this thread receives and unblinds
+	 * the batches the seller already evaluated. The seller answers in the order of the batches and of the elements in them,
+	 * so only the identifiers, element bytes and inverses of the blinding factors of the sent batches are queued. An empty batch marks the end in both directions.
+	 * @param numberStatementMap containing elements and a long which identifies each element
+	 * @param batchSize number of elements blinded and sent together
+	 * @return LinkedList of tuples containing the digests as x and the identifier of the original element as y
+	 */
+	static <K> LinkedList<Tuple<SignatureDigest, Long>> buyerOPRF(HashMap<Long, K> numberStatementMap, int batchSize)
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start getting OPRF values. Elements: " + numberStatementMap.size() + ", batch size: " + batchSize);
+		
+		Client client = Client.getClient();
+		// Identifiers, UTF-8 bytes of the elements and inverses of the blinding factors of the batches sent but not received yet, in the order they were sent
+		BlockingQueue<Tuple<Tuple<long[], byte[][]>, BigInteger[]>> pending = new LinkedBlockingQueue<Tuple<Tuple<long[], byte[][]>, BigInteger[]>>();
+		
+		// --------------- Blind and send batches -------------------
+		Thread sender = new Thread(() -> 
+		{
+			LinkedList<Long> batch = new LinkedList<Long>();
+			for(Long id : numberStatementMap.keySet())
+			{
+				batch.add(id);
+				if(batch.size() >= batchSize)
+				{
+					sendBatch(client, pending, batch, numberStatementMap);
+					batch = new LinkedList<Long>();
+				}
+			}
+			if(!batch.isEmpty())
+			{
+				sendBatch(client, pending, batch, numberStatementMap);
+			}
+			// Tell the seller that all elements have been sent
+			client.sendObject(new byte[0]);
+		}, "BlindedBatchSender");
+		sender.start();
+		
+		// --------------- Receive and unblind batches --------------
+		LinkedList<Tuple<SignatureDigest, Long>> values = new LinkedList<Tuple<SignatureDigest, Long>>();
+		try {
+			byte[] evaluated = client.<byte[]>readObject();
+			while(evaluated.length > 0)
+			{
+				values.addAll(unblindBatch(evaluated, pending.take()));
+				evaluated = client.<byte[]>readObject();
+			}
+			sender.join();
+		} catch (InterruptedException e) {
+			logger.info("Exception in BuyerOPRF buyerOPRF, when waiting for blinded batches to be sent. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		
+		logger.info("Done obtaining OPRF values. Values: " + values.size());
+		return values;
+	}
+	
+	/**
+	 * Blinds the elements of a batch, queues their identifiers, bytes and blinding factors and sends the batch.
+	 * The batch is queued before it is sent, so it is there when the answer arrives.
+	 * @param client
+	 * @param pending
+	 * @param batch identifiers of the elements
+	 * @param numberStatementMap
+	 */
+	private static <K> void sendBatch(Client client, BlockingQueue<Tuple<Tuple<long[], byte[][]>, BigInteger[]>> pending, LinkedList<Long> batch, HashMap<Long, K> numberStatementMap)
+	{
+		Logger logger = Log.getLogger();
+		
+		long[] ids = new long[batch.size()];
+		int i = 0;
+		for(Long id : batch)
+		{
+			ids[i++] = id;
+		}
+		int n = ids.length;
+		BigInteger[] inverses = new BigInteger[n];
+		byte[][] elements = new byte[n][];
+		byte[] blinded = new byte[n * P256.BYTES];
+		int stripes = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
+		try {
+			ExecutorHandling.forEachIndex(stripes, (stripe) ->
+			{
+				for(int j = stripe; j < n; j += stripes)
+				{
+					elements[j] = numberStatementMap.get(ids[j]).toString().getBytes(StandardCharsets.UTF_8);
+					BigInteger r;
+					do
+					{
+						r = new BigInteger(P256.N.bitLength(), Bob.random());
+					} while(r.signum() == 0 || r.compareTo(P256.N) >= 0);
+					inverses[j] = r.modInverse(P256.N);
+					P256.writeX(P256.x(P256.multiply(P256.hashToCurve(elements[j]), r)), blinded, j * P256.BYTES);
+				}
+			});
+			pending.put(new Tuple<Tuple<long[], byte[][]>, BigInteger[]>(new Tuple<long[], byte[][]>(ids, elements), inverses));
+		} catch (ExecutionException | InterruptedException e) {
+			logger.info("Exception in BuyerOPRF sendBatch, when trying to blind Buyer elements. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		client.sendObject(blinded);
+	}
+	
+	/**
+	 * Removes the blinding from an evaluated batch and hashes each OPRF value together with its element.
+	 * @param evaluated x-coordinates sent by the seller
+	 * @param batch identifiers, element bytes and inverses of the blinding factors of the batch
+	 * @return digests with identifiers, in the order of the batch
+	 */
+	private static LinkedList<Tuple<SignatureDigest, Long>> unblindBatch(byte[] evaluated, Tuple<Tuple<long[], byte[][]>, BigInteger[]> batch)
+	{
+		Logger logger = Log.getLogger();
+		
+		long[] ids = batch.x.x;
+		byte[][] elements = batch.x.y;
+		BigInteger[] inverses = batch.y;
+		int n = ids.length;
+		if(evaluated.length != n * P256.BYTES)
+		{
+			logger.info("Seller sent an invalid OPRF batch. Terminating protocol.");
+			System.exit(1);
+		}
+		SignatureDigest[] digests = new SignatureDigest[n];
+		int stripes = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
+		try {
+			ExecutorHandling.forEachIndex(stripes, (stripe) ->
+			{
+				for(int j = stripe; j < n; j += stripes)
+				{
+					long[][] point = P256.fromX(P256.readX(evaluated, j * P256.BYTES));
+					if(point == null)
+					{
+						logger.info("Seller sent a point that is not on the curve. Terminating protocol.");
+						System.exit(1);
+					}
+					BigInteger value = P256.x(P256.multiply(point, inverses[j]));
+					digests[j] = SignatureDigest.create(elements[j], value, P256.P);
+				}
+			});
+		} catch (ExecutionException e) {
+			logger.info("Exception in BuyerOPRF unblindBatch, when trying to unblind OPRF values. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		
+		LinkedList<Tuple<SignatureDigest, Long>> values = new LinkedList<Tuple<SignatureDigest, Long>>();
+		for(int j = 0; j < n; j++)
+		{
+			values.add(new Tuple<SignatureDigest, Long>(digests[j], ids[j]));
+		}
+		return values;
+	}
+}
@@ -0,0 +1,64 @@
+package privatesetintersection;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.interfaces.RSAPrivateCrtKey;
+
+/**
+ * Signing engine for Alice's RSA key.
+ * Computes mu^d mod N with the Chinese Remainder Theorem: one exponentiation mod p with dP = d mod (p-1),
+ * one exponentiation mod q with dQ = d mod (q-1), and Garner recombination of both halves.
+ * All values are precomputed once per key pair and never change afterwards, so one instance can be shared by all worker threads.
+ * @author ---
+ *
+ */
+public class CRTSigner
+{
+	private final BigInteger N; 	// Key pair's modulus
+	private final BigInteger P; 	// prime number p used to produce the key pair
+	private final BigInteger Q; 	// prime number q used to produce the key pair
+	private final BigInteger dP; 	// d mod (p-1)
+	private final BigInteger dQ; 	// d mod (q-1)
+	private final BigInteger qInv; 	// q inverse modulo p
+
+	/**
+	 * Creates a signer for a RSA key pair.
+	 * @param keyPair needs to contain a RSAPrivateCrtKey
+	 */
+	public CRTSigner(KeyPair keyPair)
+	{
+		RSAPrivateCrtKey privateKey = (RSAPrivateCrtKey) keyPair.getPrivate();
+		N = privateKey.getModulus();
+		P = privateKey.getPrimeP();
+		Q = privateKey.getPrimeQ();
+		dP = privateKey.getPrimeExponentP();
+		dQ = privateKey.getPrimeExponentQ();
+		qInv = privateKey.getCrtCoefficient();
+	}
+
+	/**
+	 * Calculates mu^d mod N.
+	 * m1 = mu^dP mod p, m2 = mu^dQ mod q
+	 * Garner: h = qInv * (m1 - m2) mod p, result = m2 + h * q
+	 * @param mu value to be signed, may be negative or bigger than N
+	 * @return mu^d mod N
+	 */
+	public BigInteger sign(BigInteger mu)
+	{
+		BigInteger m1 = mu.mod(P).modPow(dP, P);
+		BigInteger m2 = mu.mod(Q).modPow(dQ, Q);
+
+		BigInteger h = qInv.multiply(m1.subtract(m2)).mod(P);
+
+		return m2.add(h.multiply(Q));
+	}
+
+	/**
+	 *
+	 * @return modulus N of the key pair
+	 */
+	public BigInteger getModulus()
+	{
+		return N;
+	}
+}
@@ -1,98 +1,335 @@
 package privatesetintersection;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 import protocol.Log;
 
+/**
+ * Parallel engine used by all steps of the protocol.
+ * Elements are read from an iterator in chunks, each chunk is handed to a shared fork join pool which splits it further,
+ * so idle threads can steal work. Only a bounded number of chunks is in flight at any time, reading from the iterator
+ * blocks until a chunk is done. The first exception stops all remaining work and is thrown to the caller.
+ * @author ---
+ *
+ */
 public class ExecutorHandling {
+
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+	// Shared by every call, the threads are daemon threads and live as long as the program
+	private static final ForkJoinPool pool = new ForkJoinPool(THREADS);
+	// Chunks read from the iterator but not processed yet
+	private static final int MAX_CHUNKS_IN_FLIGHT = 4 * THREADS;
+	// Chunks are split until a task has at most this many elements
+	private static final int LEAF_SIZE = 32;
+	private static int chunkSize = 1024;
+
+	public interface ElementFunction<T,U>
+	{
+		public U function(T t) throws Exception;
+	}
+
+	public interface ElementConsumer<T>
+	{
+		public void function(T t) throws Exception;
+	}
+
+	public interface ResultSink<U>
+	{
+		public void function(List<U> results);
+	}
+	
+	public interface StateConsumer<T,S>
+	{
+		public void function(T t, S state) throws Exception;
+	}
 	
-	public interface WaitForThreads <T>
+	public interface IndexConsumer
+	{
+		public void function(int index) throws Exception;
+	}
+
+	private interface ChunkDone
+	{
+		public void function(Object[] results);
+	}
+
+	/**
+	 * Parallel executes a function on all elements and returns the results in the order of the elements.
+	 * @param elements
+	 * @param function to be executed on the elements
+	 * @return results, result i belongs to element i
+	 * @throws ExecutionException first exception thrown by the function
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T,U> ArrayList<U> mapOrdered(Iterator<T> elements, ElementFunction<T,U> function) throws ExecutionException
+	{
+		// Only this thread adds to the list, every worker writes into its own array
+		ArrayList<Object[]> chunkResults = new ArrayList<Object[]>();
+		long count = run(elements, function, chunkResults, (results) -> {});
+
+		ArrayList<U> results = new ArrayList<U>((int) count);
+		for(Object[] chunk : chunkResults)
+		{
+			for(Object result : chunk)
+			{
+				results.add((U) result);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Parallel executes a function on all elements and hands the results to a sink in no particular order.
+	 * null results are dropped.
+	 * The sink is called for one chunk of results at a time and never by two threads at once, so it can write into non thread safe collections.
+	 * @param elements
+	 * @param function to be executed on the elements
+	 * @param sink receives the results
+	 * @throws ExecutionException first exception thrown by the function
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T,U> void mapUnordered(Iterator<T> elements, ElementFunction<T,U> function, ResultSink<U> sink) throws ExecutionException
 	{
-		public void function(Future<T> future);
+		Object lock = new Object();
+		run(elements, function, null, (results) ->
+		{
+			ArrayList<U> batch = new ArrayList<U>(results.length);
+			for(Object result : results)
+			{
+				if(result != null)
+				{
+					batch.add((U) result);
+				}
+			}
+			synchronized(lock)
+			{
+				sink.function(batch);
+			}
+		});
+	}
+
+	/**
+	 * Parallel executes a function on all elements.
+	 * @param elements
+	 * @param function to be executed on the elements, needs to be thread safe
+	 * @throws ExecutionException first exception thrown by the function
+	 */
+	public static <T> void forEach(Iterator<T> elements, ElementConsumer<T> function) throws ExecutionException
+	{
+		run(elements, (element) ->
+		{
+			function.function(element);
+			return null;
+		}, null, (results) -> {});
+	}
+
+	/**
+	 * Parallel executes a function on all elements, every worker thread passes its own state to the function.
+	 * Useful to accumulate into non thread safe structures, which are combined by the caller afterwards.
+	 * @param elements
+	 * @param newState creates the state of a worker thread, called once per thread that processes elements
+	 * @param function to be executed on the elements
+	 * @return states of all worker threads that processed elements
+	 * @throws ExecutionException first exception thrown by the function
+	 */
+	public static <T,S> List<S> forEachWithState(Iterator<T> elements, Supplier<S> newState, StateConsumer<T,S> function) throws ExecutionException
+	{
+		ConcurrentHashMap<Thread, S> states = new ConcurrentHashMap<Thread, S>();
+		forEach(elements, (element) -> function.function(element, states.computeIfAbsent(Thread.currentThread(), (thread) -> newState.get())));
+		return new ArrayList<S>(states.values());
 	}
 	
-	public interface CalculateParallelForListElemenets<T,U>
+	/**
+	 * Runs a function for every index from 0 to count-1 on the shared pool, every index is its own task.
+	 * Meant for a small number of expensive tasks, e.g. one per shard of a result.
+	 * @param count number of indexes
+	 * @param function to be executed on the indexes
+	 * @throws ExecutionException first exception thrown by the function
+	 */
+	public static void forEachIndex(int count, IndexConsumer function) throws ExecutionException
 	{
-		public U function(T t);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		ArrayList<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(count);
+		for(int i = 0; i < count; i++)
+		{
+			int index = i;
+			tasks.add(pool.submit(() ->
+			{
+				if(failure.get() != null)
+				{
+					return;
+				}
+				try {
+					function.function(index);
+				} catch (Throwable t) {
+					failure.compareAndSet(null, t);
+				}
+			}));
+		}
+		for(ForkJoinTask<?> task : tasks)
+		{
+			task.join();
+		}
+		
+		if(failure.get() != null)
+		{
+			throw new ExecutionException(failure.get());
+		}
 	}
 	
 	/**
-	 * Waits for Callables to be finished and executes a function on their futures.
-	 * @param futures
-	 * @param function lambda function of what to do with the results of given futures
+	 * Sets how many elements are read from the iterator for one chunk.
+	 * @param size
 	 */
-	public static <T> void waitForThreads(List<Future<T>> futures, WaitForThreads function)
+	public static void setChunkSize(int size)
+	{
+		chunkSize = Math.max(LEAF_SIZE, size);
+	}
+
+	/**
+	 * Reads the elements in chunks and submits them to the pool. Blocks while too many chunks are in flight.
+	 * Waits until all chunks are done.
+	 * @param elements
+	 * @param function to be executed on the elements
+	 * @param chunkResults if not null the result array of every chunk is added in order of the chunks
+	 * @param done called by the worker thread once all elements of a chunk are processed
+	 * @return number of elements
+	 * @throws ExecutionException first exception thrown by the function
+	 */
+	private static <T,U> long run(Iterator<T> elements, ElementFunction<T,U> function, List<Object[]> chunkResults, ChunkDone done) throws ExecutionException
 	{
-		//-------------- Wait until all tasks are finished then end the executor and with that the threads ------------
-		// i and k used to keep track of how many statements have been blinded
 		Logger logger = Log.getLogger();
-		logger.info("Total Number of Elements to process: " + futures.size());
-		int i = 0;
-		int k = 10000;
-		// For every task wait until it is done
-		for(Future<T> future : futures)
+
+		Semaphore inFlight = new Semaphore(MAX_CHUNKS_IN_FLIGHT);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		AtomicLong processed = new AtomicLong();
+		long count = 0;
+
+		while(elements.hasNext() && failure.get() == null)
 		{
-			// Waits until a task is done and the future is returned
-			function.function(future);
-
-			
-			// Every 10k statements output how many statements have been processed
-			// Keep track of progress
-			i++;
-			if(i >= k)
+			ArrayList<T> chunk = new ArrayList<T>(chunkSize);
+			while(chunk.size() < chunkSize && elements.hasNext())
 			{
-				logger.info("Number of Elements processed: " + i);
-				k = k + 10000;
+				chunk.add(elements.next());
 			}
+			count += chunk.size();
+
+			try {
+				inFlight.acquire();
+			} catch (InterruptedException e) {
+				failure.compareAndSet(null, e);
+				break;
+			}
+
+			Object[] results = new Object[chunk.size()];
+			if(chunkResults != null)
+			{
+				chunkResults.add(results);
+			}
+
+			pool.execute(new RecursiveAction()
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute()
+				{
+					try {
+						new RangeTask<T,U>(chunk, results, 0, chunk.size(), function, failure).compute();
+						if(failure.get() == null)
+						{
+							done.function(results);
+						}
+
+						// Every 100k elements output how many elements have been processed
+						long before = processed.getAndAdd(results.length);
+						if((before + results.length) / 100000 > before / 100000)
+						{
+							logger.info("Number of Elements processed: " + (before + results.length));
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					} finally {
+						inFlight.release();
+					}
+				}
+			});
 		}
+
+		// All permits are free again once every chunk is done
+		inFlight.acquireUninterruptibly(MAX_CHUNKS_IN_FLIGHT);
+		inFlight.release(MAX_CHUNKS_IN_FLIGHT);
+
+		if(failure.get() != null)
+		{
+			throw new ExecutionException(failure.get());
+		}
+
+		logger.info("Total Number of Elements processed: " + count);
+		return count;
 	}
 
 	/**
-	 * Parallel executes a function of all elements of a given list. 
-	 * Creates a threadpool for the parallel execution. The number of threads equals double the amount of available processors.
-	 * @param list
-	 * @param function to be executed on elements of the list
-	 * @param waitThreads function to be executed on results of first function (futures of callabels)
+	 * Processes a range of a chunk. Splits itself in halves until the range is small enough.
+	 * Stops as soon as any task has failed.
 	 */
-	public static <T,U> void calculateParallelForListElements(List<T> list, CalculateParallelForListElemenets<T,U> function, WaitForThreads waitThreads)
+	private static class RangeTask<T,U> extends RecursiveAction
 	{
-		// Create a fixed number of threads handled by executor 
-		// Number of threads equals the number of available processors
-		ExecutorService executor = Executors.newFixedThreadPool(2*Runtime.getRuntime().availableProcessors());
-		// A list of results from tasks given to threads to compute in parallel
-		// A future is filled once this task is completed as it is the return value
-		// Allows to detect when a task has finished
-		List<Future<U>> futures = new ArrayList<Future<U>>();
-		// For every statement generate a task which calculates the signature for it
-		// Then puts the signature into the BF
-		for(T statement : list)
-		{	
-			// Define a task which can be given to the executor which handles the threads
-			// Callables have a return (future)
-			Callable<U> task = new Callable<U>()
+		private static final long serialVersionUID = 1L;
+
+		private final List<T> chunk;
+		private final Object[] results;
+		private final int from;
+		private final int to;
+		private final ElementFunction<T,U> function;
+		private final AtomicReference<Throwable> failure;
+
+		RangeTask(List<T> chunk, Object[] results, int from, int to, ElementFunction<T,U> function, AtomicReference<Throwable> failure)
+		{
+			this.chunk = chunk;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.function = function;
+			this.failure = failure;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from > LEAF_SIZE)
 			{
-				@Override
-				public U call()
+				int middle = (from + to) >>> 1;
+				invokeAll(new RangeTask<T,U>(chunk, results, from, middle, function, failure),
+						new RangeTask<T,U>(chunk, results, middle, to, function, failure));
+				return;
+			}
+
+			for(int i = from; i < to; i++)
+			{
+				if(failure.get() != null)
 				{
-					return function.function(statement);
+					return;
+				}
+				try {
+					results[i] = function.function(chunk.get(i));
+				} catch (Throwable t) {
+					failure.compareAndSet(null, t);
+					return;
 				}
-			};
-			// Run the above defined task and read out its result
-			Future<U> f = executor.submit(task);
-			// Add the return to the list of futures
-			futures.add(f);
+			}
 		}
-		
-		waitForThreads(futures, waitThreads);
-		
-		// Threads are no longer needed
-		// End the executor and therefore also the threads
-		executor.shutdown();
 	}
 }
@@ -3,7 +3,6 @@ package privatesetintersection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.apache.jena.rdf.model.Model;
@@ -25,37 +24,30 @@ public class KGIntersectionBuyer
 	 * @param numberStatementMap mapping from signatures to original elements
 	 * @return intersection as Model
 	 */
-	public static Model determineIntersection(BloomFilter<String> bf, LinkedList<Tuple<String, Long>> signatures, HashMap<Long, Statement> numberStatementMap)
+	public static Model determineIntersection(BloomFilter<SignatureDigest> bf, LinkedList<Tuple<SignatureDigest, Long>> signatures, HashMap<Long, Statement> numberStatementMap)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start determining intersection from BF. Compare signatures.");
 		
 		Model intersection = ModelFactory.createDefaultModel();
 		
-		ExecutorHandling.calculateParallelForListElements(signatures, (signature) -> 
-		{
-			if(bf.mightContain(signature.x))
+		// The model is not thread safe, matching statements are added by one thread at a time
+		try {
+			ExecutorHandling.mapUnordered(signatures.iterator(), (signature) -> 
 			{
-				return numberStatementMap.get(signature.y);
-			}
-			return null;
-		}, (Future future) -> 
-		{
-				Statement s;
-				try {
-					s = (Statement) future.get();
-					if(s != null)
-					{
-						intersection.add(s);
-					}
-				} catch (InterruptedException | ExecutionException e) {
-					logger.info("Exception in KGIntersectionBuyer determineIntersection, when trying to read features of parallel computation. \n" 
-							+ e.getMessage() + "\n"
-							+ e.toString() + "\n"
-							+ "Protocol is being terminated.");
-					System.exit(1);
+				if(bf.mightContain(signature.x))
+				{
+					return numberStatementMap.get(signature.y);
 				}
-		});
+				return null;
+			}, (results) -> intersection.add(results));
+		} catch (ExecutionException e) {
+			logger.info("Exception in KGIntersectionBuyer determineIntersection, when trying to test signatures against the Bloom filter. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
 		
 		logger.info("Done determining intersection. Size: " + intersection.size());
 		
@@ -1,35 +1,30 @@
 package privatesetintersection;
 
-import java.nio.charset.StandardCharsets;
-import java.util.LinkedList;
 import java.util.logging.Logger;
 
+import org.apache.jena.rdf.model.Model;
+
 import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnel;
-import com.google.common.hash.PrimitiveSink;
 
 import protocol.Log;
 
 public class KGIntersectionSeller
 {	
 	/**
-	 * Creates a Bloom filter and stores a list of strings in it
+	 * Creates a Bloom filter and stores the signatures of the statements of a model in it
 	 * @param fpp false positive probability for Bloom filter
-	 * @param signatures to be stored in the Bloom filter
-	 * @return Bloom filter trained with given list 
+	 * @param model containing the statements to be signed and stored in the Bloom filter
+	 * @return Bloom filter trained with the signed statements 
 	 */
-	public static BloomFilter<String> trainBloomFilter(double fpp, LinkedList<String> signatures)
+	public static BloomFilter<SignatureDigest> trainBloomFilter(double fpp, Model model)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start building Bloom filter.");
 		
-		BloomFilter<String>bf = setupBloomFilter(signatures.size(), fpp);
+		BloomFilter<SignatureDigest>bf = setupBloomFilter(model.size(), fpp);
 		
 		logger.info("Start adding signatures to BF.");
-		for(String signature : signatures) 
-		{
-			bf.put(signature);
-		}
+		SellerBlindSignatures.signSellerStatements(model, bf);
 		
 		// Output that training of BF is done
 		logger.info("Done training Bloom Filter. Elements contained in BF: " + bf.approximateElementCount());
@@ -38,27 +33,15 @@ public class KGIntersectionSeller
 	}
 
 	/**
-	 * Creates a Bloom filter
+	 * Creates a Bloom filter for signature digests. The digest bytes are put into the filter directly.
 	 * @param size Number of elements to be stored in the Bloom filter
 	 * @param fpp false positive probability of the Bloom filter
 	 * @return Bloom filter
 	 */
-	public static BloomFilter<String> setupBloomFilter(long size, double fpp)
+	public static BloomFilter<SignatureDigest> setupBloomFilter(long size, double fpp)
 	{
-		// Define how to enter an object into the BF (in this case a string)
-		Funnel<String> statementSignatureFunnel = new Funnel<String>() 
-		{
-			  private static final long serialVersionUID = 1;
-			  @Override
-			  public void funnel(String statementSignature, PrimitiveSink into) 
-			  {
-			    into
-			    	.putString(statementSignature, StandardCharsets.UTF_8);
-			  }
-		};
-			
 		// Create the bloom filter
-		BloomFilter<String> bf = BloomFilter.create(statementSignatureFunnel, size, fpp);
+		BloomFilter<SignatureDigest> bf = BloomFilter.create(SignatureDigest.DigestFunnel.INSTANCE, size, fpp);
 		
 		return bf;
 	}
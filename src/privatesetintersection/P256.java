@@ -0,0 +1,473 @@
+package privatesetintersection;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Arithmetic on the NIST curve P-256 (secp256r1), y^2 = x^3 - 3x + b over the field of p = 2^256 - 2^224 + 2^192 + 2^96 - 1.
+ * The group of points has the prime order N, so every point except the point at infinity generates the whole group.
+ * Only what the DH-OPRF needs: hashing an element to a point, multiplying a point with a scalar, and points given by their x-coordinate.
+ *
+ * Field elements are arrays of 8 limbs of 32 bits, lowest limb first, always reduced mod p.
+ * Points are arrays {X, Y, Z} of Jacobian coordinates for x = X/Z^2 and y = Y/Z^3, Z = 0 is the point at infinity.
+ * Like the BigInteger arithmetic of the RSA blind signatures, the operations do not run in constant time.
+ * @author ---
+ *
+ */
+final class P256
+{
+	static final BigInteger P = new BigInteger("ffffffff00000001000000000000000000000000ffffffffffffffffffffffff", 16);
+	static final BigInteger N = new BigInteger("ffffffff00000000ffffffffffffffffbce6faada7179e84f3b9cac2fc632551", 16);
+	static final BigInteger B = new BigInteger("5ac635d8aa3a93e7b3ebbd55769886bc651d06b0cc53b0f63bce3c3e27d2604b", 16);
+	// Bytes of an encoded x-coordinate
+	static final int BYTES = 32;
+	
+	private static final long MASK = 0xFFFFFFFFL;
+	// Separates the hash to the curve from other uses of SHA-512 on the same elements
+	private static final byte[] HASH_TO_CURVE = "P-256 DH-OPRF hash to curve".getBytes(StandardCharsets.US_ASCII);
+	
+	private static final long[] PRIME = limbs(P);
+	private static final long[] ONE = toField(BigInteger.ONE);
+	private static final long[] THREE = toField(BigInteger.valueOf(3));
+	private static final long[] FIELD_B = toField(B);
+	private static final BigInteger INVERSE_EXPONENT = P.subtract(BigInteger.valueOf(2));
+	// p = 3 mod 4, so a square root of a square z is z^((p+1)/4)
+	private static final BigInteger SQRT_EXPONENT = P.add(BigInteger.ONE).shiftRight(2);
+	
+	private P256()
+	{
+	
+	}
+	
+	// ---------------- Points --------------------------------
+	
+	/**
+	 * Hashes an element to a point by try and increment: the first x = SHA-512(context, counter, element) mod p that is the x-coordinate of a point.
+	 * Half of all x are, so two tries are needed on average.
+	 * @param element
+	 * @return point with a known discrete logarithm to no one
+	 */
+	static long[][] hashToCurve(byte[] element)
+	{
+		MessageDigest sha = Bob.sha512();
+		for(int counter = 0; ; counter++)
+		{
+			sha.update(HASH_TO_CURVE);
+			sha.update((byte) (counter >>> 24));
+			sha.update((byte) (counter >>> 16));
+			sha.update((byte) (counter >>> 8));
+			sha.update((byte) counter);
+			sha.update(element);
+			long[][] point = fromX(new BigInteger(1, sha.digest()).mod(P));
+			if(point != null)
+			{
+				return point;
+			}
+		}
+	}
+	
+	/**
+	 * Lifts an x-coordinate to one of the two points having it. Which one does not matter for the OPRF,
+	 * as k*(-Q) = -(k*Q) has the same x-coordinate as k*Q.
+	 * @param x
+	 * @return point, null if x is not the x-coordinate of a point on the curve
+	 */
+	static long[][] fromX(BigInteger x)
+	{
+		if(x.signum() < 0 || x.compareTo(P) >= 0)
+		{
+			return null;
+		}
+		long[] fieldX = toField(x);
+		// x^3 - 3x + b
+		long[] rhs = new long[8];
+		mul(fieldX, fieldX, rhs);
+		sub(rhs, THREE, rhs);
+		mul(rhs, fieldX, rhs);
+		add(rhs, FIELD_B, rhs);
+		long[] y = pow(rhs, SQRT_EXPONENT);
+		long[] check = new long[8];
+		mul(y, y, check);
+		if(!equal(check, rhs))
+		{
+			return null;
+		}
+		return new long[][] {fieldX, y, ONE.clone()};
+	}
+	
+	/**
+	 *
+	 * @param point not the point at infinity
+	 * @return affine x-coordinate of the point
+	 */
+	static BigInteger x(long[][] point)
+	{
+		long[] zInverse = pow(point[2], INVERSE_EXPONENT);
+		long[] x = new long[8];
+		mul(zInverse, zInverse, x);
+		mul(x, point[0], x);
+		return fromField(x);
+	}
+	
+	/**
+	 * Multiplies a point with a scalar, with a fixed window of 4 bits
+	 * @param point
+	 * @param k scalar, reduced mod N
+	 * @return k * point
+	 */
+	static long[][] multiply(long[][] point, BigInteger k)
+	{
+		k = k.mod(N);
+		// table[i] = i * point
+		long[][][] table = new long[16][][];
+		table[0] = infinity();
+		table[1] = point;
+		for(int i = 2; i < 16; i++)
+		{
+			table[i] = (i & 1) == 0 ? twice(table[i / 2]) : add(table[i - 1], point);
+		}
+		long[][] result = infinity();
+		for(int window = (k.bitLength() + 3) / 4 - 1; window >= 0; window--)
+		{
+			for(int i = 0; i < 4; i++)
+			{
+				result = twice(result);
+			}
+			int bits = 0;
+			for(int i = 3; i >= 0; i--)
+			{
+				bits = (bits << 1) | (k.testBit(4 * window + i) ? 1 : 0);
+			}
+			result = add(result, table[bits]);
+		}
+		return result;
+	}
+	
+	/**
+	 * Writes an x-coordinate as BYTES unsigned big endian bytes
+	 * @param x
+	 * @param out
+	 * @param offset
+	 */
+	static void writeX(BigInteger x, byte[] out, int offset)
+	{
+		byte[] bytes = x.toByteArray();
+		int length = Math.min(bytes.length, BYTES);
+		System.arraycopy(bytes, bytes.length - length, out, offset + BYTES - length, length);
+	}
+	
+	/**
+	 * Reads an x-coordinate written by writeX
+	 * @param in
+	 * @param offset
+	 * @return x-coordinate, not checked
+	 */
+	static BigInteger readX(byte[] in, int offset)
+	{
+		byte[] bytes = new byte[BYTES];
+		System.arraycopy(in, offset, bytes, 0, BYTES);
+		return new BigInteger(1, bytes);
+	}
+	
+	private static long[][] infinity()
+	{
+		return new long[][] {ONE.clone(), ONE.clone(), new long[8]};
+	}
+	
+	private static boolean isInfinity(long[][] point)
+	{
+		return isZero(point[2]);
+	}
+	
+	/**
+	 * Doubling for a = -3, "dbl-2001-b" of the Explicit-Formulas Database
+	 * @param point
+	 * @return 2 * point
+	 */
+	private static long[][] twice(long[][] point)
+	{
+		if(isInfinity(point))
+		{
+			return point;
+		}
+		long[] delta = new long[8];
+		long[] gamma = new long[8];
+		long[] beta = new long[8];
+		long[] alpha = new long[8];
+		long[] t = new long[8];
+		mul(point[2], point[2], delta);
+		mul(point[1], point[1], gamma);
+		mul(point[0], gamma, beta);
+		// alpha = 3 * (X - delta) * (X + delta)
+		sub(point[0], delta, t);
+		add(point[0], delta, alpha);
+		mul(t, alpha, alpha);
+		add(alpha, alpha, t);
+		add(alpha, t, alpha);
+		// X3 = alpha^2 - 8 * beta
+		long[] x3 = new long[8];
+		mul(alpha, alpha, x3);
+		add(beta, beta, beta);
+		add(beta, beta, beta);
+		sub(x3, beta, x3);
+		sub(x3, beta, x3);
+		// Z3 = (Y + Z)^2 - gamma - delta
+		long[] z3 = new long[8];
+		add(point[1], point[2], z3);
+		mul(z3, z3, z3);
+		sub(z3, gamma, z3);
+		sub(z3, delta, z3);
+		// Y3 = alpha * (4 * beta - X3) - 8 * gamma^2, beta already holds 4 * beta
+		long[] y3 = new long[8];
+		sub(beta, x3, y3);
+		mul(alpha, y3, y3);
+		mul(gamma, gamma, t);
+		add(t, t, t);
+		add(t, t, t);
+		add(t, t, t);
+		sub(y3, t, y3);
+		return new long[][] {x3, y3, z3};
+	}
+	
+	/**
+	 * Addition, "add-2007-bl" of the Explicit-Formulas Database
+	 * @param p1
+	 * @param p2
+	 * @return p1 + p2
+	 */
+	private static long[][] add(long[][] p1, long[][] p2)
+	{
+		if(isInfinity(p1))
+		{
+			return p2;
+		}
+		if(isInfinity(p2))
+		{
+			return p1;
+		}
+		long[] z1z1 = new long[8];
+		long[] z2z2 = new long[8];
+		long[] u1 = new long[8];
+		long[] u2 = new long[8];
+		long[] s1 = new long[8];
+		long[] s2 = new long[8];
+		mul(p1[2], p1[2], z1z1);
+		mul(p2[2], p2[2], z2z2);
+		mul(p1[0], z2z2, u1);
+		mul(p2[0], z1z1, u2);
+		mul(p1[1], p2[2], s1);
+		mul(s1, z2z2, s1);
+		mul(p2[1], p1[2], s2);
+		mul(s2, z1z1, s2);
+		long[] h = new long[8];
+		long[] r = new long[8];
+		sub(u2, u1, h);
+		sub(s2, s1, r);
+		add(r, r, r);
+		if(isZero(h))
+		{
+			return isZero(r) ? twice(p1) : infinity();
+		}
+		// I = (2H)^2, J = H * I, V = U1 * I
+		long[] i = new long[8];
+		long[] j = new long[8];
+		long[] v = new long[8];
+		add(h, h, i);
+		mul(i, i, i);
+		mul(h, i, j);
+		mul(u1, i, v);
+		// X3 = r^2 - J - 2V
+		long[] x3 = new long[8];
+		mul(r, r, x3);
+		sub(x3, j, x3);
+		sub(x3, v, x3);
+		sub(x3, v, x3);
+		// Y3 = r * (V - X3) - 2 * S1 * J
+		long[] y3 = new long[8];
+		sub(v, x3, y3);
+		mul(r, y3, y3);
+		mul(s1, j, s1);
+		add(s1, s1, s1);
+		sub(y3, s1, y3);
+		// Z3 = ((Z1 + Z2)^2 - Z1Z1 - Z2Z2) * H
+		long[] z3 = new long[8];
+		add(p1[2], p2[2], z3);
+		mul(z3, z3, z3);
+		sub(z3, z1z1, z3);
+		sub(z3, z2z2, z3);
+		mul(z3, h, z3);
+		return new long[][] {x3, y3, z3};
+	}
+	
+	// ---------------- Field --------------------------------
+	
+	/**
+	 * r = a * b mod p, schoolbook multiplication followed by the fast reduction of FIPS 186-4 D.2.3. r may be a or b.
+	 * @param a
+	 * @param b
+	 * @param r
+	 */
+	private static void mul(long[] a, long[] b, long[] r)
+	{
+		// Column by column, the low and high halves of the products are summed separately so nothing overflows
+		long[] c = new long[16];
+		long carry = 0;
+		for(int k = 0; k < 15; k++)
+		{
+			long low = carry;
+			long high = 0;
+			for(int i = Math.max(0, k - 7); i <= Math.min(7, k); i++)
+			{
+				long product = a[i] * b[k - i];
+				low += product & MASK;
+				high += product >>> 32;
+			}
+			c[k] = low & MASK;
+			carry = high + (low >>> 32);
+		}
+		c[15] = carry;
+		
+		// s1 + 2 s2 + 2 s3 + s4 + s5 - d1 - d2 - d3 - d4, word by word
+		long[] w = new long[8];
+		w[0] = c[0] + c[8] + c[9] - c[11] - c[12] - c[13] - c[14];
+		w[1] = c[1] + c[9] + c[10] - c[12] - c[13] - c[14] - c[15];
+		w[2] = c[2] + c[10] + c[11] - c[13] - c[14] - c[15];
+		w[3] = c[3] + 2 * c[11] + 2 * c[12] + c[13] - c[15] - c[8] - c[9];
+		w[4] = c[4] + 2 * c[12] + 2 * c[13] + c[14] - c[9] - c[10];
+		w[5] = c[5] + 2 * c[13] + 2 * c[14] + c[15] - c[10] - c[11];
+		w[6] = c[6] + 3 * c[14] + 2 * c[15] + c[13] - c[8] - c[9];
+		w[7] = c[7] + 3 * c[15] + c[8] - c[10] - c[11] - c[12] - c[13];
+		normalize(w, r);
+	}
+	
+	/**
+	 * r = a + b mod p. r may be a or b.
+	 */
+	private static void add(long[] a, long[] b, long[] r)
+	{
+		long[] w = new long[8];
+		for(int i = 0; i < 8; i++)
+		{
+			w[i] = a[i] + b[i];
+		}
+		normalize(w, r);
+	}
+	
+	/**
+	 * r = a - b mod p. r may be a or b.
+	 */
+	private static void sub(long[] a, long[] b, long[] r)
+	{
+		long[] w = new long[8];
+		for(int i = 0; i < 8; i++)
+		{
+			w[i] = a[i] - b[i];
+		}
+		normalize(w, r);
+	}
+	
+	/**
+	 * Reduces a value given by 8 small signed words of 32 bit weight each
+	 * @param w words, lowest first, overwritten
+	 * @param r receives the value mod p in 8 limbs
+	 */
+	private static void normalize(long[] w, long[] r)
+	{
+		long carry;
+		do
+		{
+			carry = 0;
+			for(int i = 0; i < 8; i++)
+			{
+				w[i] += carry;
+				carry = w[i] >> 32;
+				w[i] &= MASK;
+			}
+			// 2^256 = 2^224 - 2^192 - 2^96 + 1 mod p
+			w[0] += carry;
+			w[3] -= carry;
+			w[6] -= carry;
+			w[7] += carry;
+		}
+		while(carry != 0);
+		
+		// The value is below 2^256 < 2p now
+		long[] d = new long[8];
+		long borrow = 0;
+		for(int i = 0; i < 8; i++)
+		{
+			long v = w[i] - PRIME[i] - borrow;
+			d[i] = v & MASK;
+			borrow = v >>> 63;
+		}
+		System.arraycopy(borrow == 0 ? d : w, 0, r, 0, 8);
+	}
+	
+	/**
+	 *
+	 * @param a
+	 * @param e non negative exponent
+	 * @return a^e
+	 */
+	private static long[] pow(long[] a, BigInteger e)
+	{
+		long[] result = ONE.clone();
+		for(int i = e.bitLength() - 1; i >= 0; i--)
+		{
+			mul(result, result, result);
+			if(e.testBit(i))
+			{
+				mul(result, a, result);
+			}
+		}
+		return result;
+	}
+	
+	private static boolean isZero(long[] a)
+	{
+		long or = 0;
+		for(long limb : a)
+		{
+			or |= limb;
+		}
+		return or == 0;
+	}
+	
+	private static boolean equal(long[] a, long[] b)
+	{
+		for(int i = 0; i < 8; i++)
+		{
+			if(a[i] != b[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static long[] toField(BigInteger x)
+	{
+		return limbs(x.mod(P));
+	}
+	
+	private static BigInteger fromField(long[] a)
+	{
+		BigInteger x = BigInteger.ZERO;
+		for(int i = 7; i >= 0; i--)
+		{
+			x = x.shiftLeft(32).or(BigInteger.valueOf(a[i]));
+		}
+		return x;
+	}
+	
+	private static long[] limbs(BigInteger x)
+	{
+		long[] r = new long[8];
+		for(int i = 0; i < 8; i++)
+		{
+			r[i] = x.shiftRight(32 * i).longValue() & MASK;
+		}
+		return r;
+	}
+}
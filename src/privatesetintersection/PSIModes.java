@@ -0,0 +1,13 @@
+package privatesetintersection;
+
+/**
+ * This Enum contains the names of all engines for the private set intersection and the multiset signatures.
+ * RSA uses RSA blind signatures, OPRF a Diffie-Hellman OPRF on the elliptic curve P-256.
+ * @author ---
+ *
+ */
+public enum PSIModes 
+{
+	RSA,
+	OPRF;
+}
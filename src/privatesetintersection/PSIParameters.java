@@ -0,0 +1,78 @@
+package privatesetintersection;
+
+import java.io.Serializable;
+
+/**
+ * Settings of the private set intersection both parties need to agree on.
+ * The seller chooses them and sends them to the buyer right after its public key.
+ * @author ---
+ *
+ */
+public class PSIParameters implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	
+	public static final int DEFAULT_DIGEST_LENGTH = 16;
+	
+	private static PSIParameters parameters = new PSIParameters(DEFAULT_DIGEST_LENGTH, false, PSIModes.RSA);
+	
+	private final int digestLength; 			// bytes of SHA-512(element + signature) that are kept
+	private final boolean legacyFormat; 		// hash elements and signatures through hex and Base64 strings like the first version
+	private final PSIModes mode; 				// engine that computes the values hashed into the digests
+	
+	/**
+	 * 
+	 * @param digestLength bytes of each digest, 16, 32, or 64
+	 * @param legacyFormat true to get the same signatures and digests as the first version of the protocol, see Bob.hashMessage and SignatureDigest.create
+	 * @param mode RSA blind signatures or elliptic curve OPRF, see PSIModes
+	 */
+	public PSIParameters(int digestLength, boolean legacyFormat, PSIModes mode)
+	{
+		if(digestLength != 16 && digestLength != 32 && digestLength != 64)
+		{
+			throw new IllegalArgumentException("Digest length needs to be 16, 32, or 64 bytes, was: " + digestLength);
+		}
+		this.digestLength = digestLength;
+		this.legacyFormat = legacyFormat;
+		this.mode = mode;
+	}
+	
+	public int getDigestLength()
+	{
+		return digestLength;
+	}
+	
+	public boolean isLegacyFormat()
+	{
+		return legacyFormat;
+	}
+	
+	public PSIModes getMode()
+	{
+		return mode;
+	}
+	
+	/**
+	 * 
+	 * @return parameters used by this instance of the protocol
+	 */
+	public static PSIParameters getParameters()
+	{
+		return parameters;
+	}
+	
+	/**
+	 * Sets the parameters used by this instance of the protocol.
+	 * @param psiParameters
+	 */
+	public static void setParameters(PSIParameters psiParameters)
+	{
+		parameters = psiParameters;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "Digest length: " + digestLength + " bytes, legacy format: " + legacyFormat + ", mode: " + mode;
+	}
+}
@@ -1,19 +1,22 @@
 package privatesetintersection;
 
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
-import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
 
+import com.google.common.hash.BloomFilter;
+
+import communication.Server;
 import protocol.Log;
 import protocol.Tuple;
 
@@ -21,22 +24,19 @@ public class SellerBlindSignatures {
 	
 	private static boolean existingKey = false;
 	private static KeyPair alicePair;  				//alice key pair
-	private static RSAPrivateCrtKey alicePrivate; 	// alice private key d
 	private static RSAPublicKey alicePublic; 		// alice public key e
 	private static BigInteger N; 					// Key pair's modulus
-	private static BigInteger P; 					// prime number p used to produce the key pair
-	private static BigInteger Q; 					// prime number q used to produce the key pair
-	private static BigInteger PinverseModQ; 		// p inverse modulo q
-	private static BigInteger QinverseModP; 		// q inverse modulo p
-	private static BigInteger d; 					// private exponent d
+	private static CRTSigner signer; 				// signs with the private key of the key pair, shared by all threads
 	
 	/**
-	 * Signs statements of a model.
+	 * Signs statements of a model and puts them into a Bloom filter.
 	 * Concatenates string representing statement with the signature.
+	 * The seller owns the private key, so there is no need to blind its own statements: the signature is H(statement)^d mod N directly,
+	 * which is the same value the buyer ends up with after unblinding.
 	 * @param model containing statements to be signed
-	 * @return List of signatures
+	 * @param bf Bloom filter the signatures are stored in
 	 */
-	public static LinkedList<String> aliceBlindSignatures(Model model)
+	public static void signSellerStatements(Model model, BloomFilter<SignatureDigest> bf)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start signing Seller statements.");
@@ -48,42 +48,56 @@ public class SellerBlindSignatures {
 			createKeyPair();
 		}
 		
+		BigInteger oprfKey = oprfKey();
+		
 		//------------ Generate signature for each statement ----------------
 		// An iterator over all statements
-		List<Statement> statements = model.listStatements().toList();
-		logger.info("Finished creating statement list.");
+		StmtIterator statements = model.listStatements();
 		
-		LinkedList<String> signatures = new LinkedList<String>();
+		// Guava's Bloom filter can be written to by several threads at once
+		try {
+			ExecutorHandling.forEach(statements, (statement) -> bf.put(directSignature(statement.toString(), oprfKey)));
+		} catch (ExecutionException e) {
+			logger.info("Exception in SellerBlindSignatures signSellerStatements, when trying to sign Sellers statements. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
 		
-		ExecutorHandling.calculateParallelForListElements(statements, (statement) -> 
-		{
-			Tuple<BigInteger,BigInteger> muR = Bob.calculateMu(statement.toString(), alicePublic); //call Bob's function calculateMu with alice Public key as input in order to calculate mu, and store it in mu variable
-
-			BigInteger muprime = Alice.calculateMuPrimeWithChineseRemainderTheorem(muR.x, d, N, P, Q, PinverseModQ, QinverseModP); // call Alice's function calculateMuPrime with mu produced earlier by Bob as input, to calculate  mu' and store it to muprime  variable
-
-			String sig = Bob.signatureCalculation(muprime, N, muR.y); // call Bob's function signatureCalculation with muprime as input and calculate the signature, then store it in sig variable
-			
-			// -------------- Hash origininal statement and signature together (like in the paper) ---------------
-			String statementWithSignature = statement.toString() + sig;
-			String result = DigestUtils.sha512Hex(statementWithSignature);
-			//----------------------------------------------------------------------------------------------------
-			
-			return result;
-		}, (Future future) -> 
+		logger.info("Done signing Statements. Number of Statements signed: " + model.size());
+	}
+	
+	/**
+	 * Signs an element of the seller without blinding it and hashes it together with its signature.
+	 * sig = H(element)^d mod N, result = SignatureDigest of element and sig
+	 * In the OPRF mode the OPRF value of the element is used instead of the signature, see SellerOPRF.
+	 * @param element String representation of the element
+	 * @param oprfKey key of the OPRF mode as returned by oprfKey, null in the RSA mode
+	 * @return hash of element and signature, identical to the one the buyer computes for the same element
+	 */
+	private static SignatureDigest directSignature(String element, BigInteger oprfKey)
+	{
+		byte[] bytes = element.getBytes(StandardCharsets.UTF_8);
+		if(oprfKey != null)
 		{
-			try {
-				signatures.add((String) future.get());
-			} catch (InterruptedException | ExecutionException e) {
-				logger.info("Exception in SellerPSI.PrivateSetIntersection, when trying to sign Sellers statements. \n" 
-						+ e.getMessage() + "\n"
-						+ e.toString() + "\n"
-						+ "Protocol is being terminated.");
-				System.exit(1);
-			}
-		});
-
-		logger.info("Done signing Statements. Number of Statements signed: " + signatures.size());
-		return signatures;
+			return SellerOPRF.evaluate(bytes, oprfKey);
+		}
+		
+		BigInteger s = signer.sign(Bob.hashMessage(bytes)); // sign H(element) with Alice's private key using CRT
+		
+		// -------------- Hash origininal statement and signature together (like in the paper) ---------------
+		return SignatureDigest.create(bytes, s, N);
+		//----------------------------------------------------------------------------------------------------
+	}
+	
+	/**
+	 * Gets the key of the OPRF mode once before elements are signed in parallel, SellerOPRF.getKey is synchronized.
+	 * @return key of the OPRF mode, null in the RSA mode
+	 */
+	private static BigInteger oprfKey()
+	{
+		return PSIParameters.getParameters().getMode() == PSIModes.OPRF ? SellerOPRF.getKey() : null;
 	}
 	
 	/**
@@ -95,65 +109,116 @@ public class SellerBlindSignatures {
 		Logger logger = Log.getLogger();
 		
 		alicePair = Alice.produceKeyPair(); 						// call Alice's function to produce a key pair (N, e ,d), and save it in alicePair variable
-		alicePrivate = (RSAPrivateCrtKey) alicePair.getPrivate(); 	//get the private key d out of the key pair Alice produced
 		alicePublic = (RSAPublicKey) alicePair.getPublic(); 		//get  the public key e out of the key pair Alice produced
 		N = alicePublic.getModulus(); 								//get the modulus of the key pair produced by Alice
-		P = alicePrivate.getPrimeP(); 								//get the prime number p used to produce the key pair
-    	Q = alicePrivate.getPrimeQ(); 								//get the prime number q used to produce the key pair
-    	
-        //We split the mu^d modN in two , one mode p , one mode q
-        PinverseModQ = P.modInverse(Q); //calculate p inverse modulo q
-        QinverseModP = Q.modInverse(P); //calculate q inverse modulo p
-
-        d = alicePrivate.getPrivateExponent(); //get private exponent d
+		
+		//We split the mu^d modN in two, one mod p, one mod q. dP, dQ and qInv are precomputed once by the signer
+		signer = Alice.createSigner(alicePair);
         existingKey = true;
-        
+
         logger.info("A RSA keypair has been created.");
 		return alicePair;
 	}
 	
 	
+	/**
+	 * Signs blinded elements of Bob as they arrive in batches.
+	 * A separate thread keeps reading batches while this thread signs and returns the previous ones.
+	 * Stops after the empty batch which marks the end, and sends an empty batch back.
+	 * In the OPRF mode the batches are evaluated by SellerOPRF instead.
+	 */
+	public static void signBuyerBatches()
+	{
+		if(PSIParameters.getParameters().getMode() == PSIModes.OPRF)
+		{
+			SellerOPRF.evaluateBuyerBatches();
+			return;
+		}
+		
+		Logger logger = Log.getLogger();
+		logger.info("Start signing Buyer statements.");
+		
+		Server server = Server.getServer();
+		// Holds at most two batches that have been received but not signed yet
+		BlockingQueue<LinkedList<Tuple<BigInteger, Long>>> received = new ArrayBlockingQueue<LinkedList<Tuple<BigInteger, Long>>>(2);
+		
+		Thread reader = new Thread(() -> 
+		{
+			LinkedList<Tuple<BigInteger, Long>> batch;
+			do
+			{
+				batch = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
+				try {
+					received.put(batch);
+				} catch (InterruptedException e) {
+					logger.info("Exception in SellerBlindSignatures signBuyerBatches, when trying to queue a received batch. \n" 
+							+ e.getMessage() + "\n"
+							+ e.toString() + "\n"
+							+ "Protocol is being terminated.");
+					System.exit(1);
+				}
+			} while(!batch.isEmpty());
+		}, "BlindedBatchReader");
+		reader.start();
+		
+		long signed = 0;
+		try {
+			LinkedList<Tuple<BigInteger, Long>> batch = received.take();
+			while(!batch.isEmpty())
+			{
+				server.sendObject(signBuyerStatements(batch));
+				signed += batch.size();
+				batch = received.take();
+			}
+			// Tell the buyer that all batches have been signed
+			server.sendObject(batch);
+			reader.join();
+		} catch (InterruptedException e) {
+			logger.info("Exception in SellerBlindSignatures signBuyerBatches, when waiting for batches of the Buyer. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		
+		logger.info("Done signing Buyer statements. Signed Statements: " + signed);
+	}
+	
 	/**
 	 * Signs blinded elements of Bob.
 	 * @param blindedStatements blinded elements to be singed with identifier.
 	 * @return List of tuples containing signatures and identifiers. 
 	 */
-	public static LinkedList<Tuple<BigInteger, Long>> signBuyerStatements(LinkedList<Tuple<BigInteger, Long>> blindedStatements)
+	private static LinkedList<Tuple<BigInteger, Long>> signBuyerStatements(LinkedList<Tuple<BigInteger, Long>> blindedStatements)
 	{
 		Logger logger = Log.getLogger();
-		logger.info("Start signing Buyer statements.");
 		//List of signed statements
 		LinkedList<Tuple<BigInteger, Long>> signedStatements = new LinkedList<Tuple<BigInteger, Long>>();
 		
-		ExecutorHandling.calculateParallelForListElements(blindedStatements, (statement) -> 
-		{
-			BigInteger muprime = Alice.calculateMuPrimeWithChineseRemainderTheorem(statement.x, d, N, P, Q, PinverseModQ, QinverseModP); // call Alice's function calculateMuPrime with mu produced earlier by Bob as input, to calculate  mu' and store it to muprime  variable
-			// Return blinded statement
-			return new Tuple<BigInteger,Long>(muprime, statement.y);
-		}, (Future future) -> 
-		{
-			try {
-				signedStatements.add((Tuple<BigInteger, Long>) future.get());
-			} catch (InterruptedException | ExecutionException e) {
-				logger.info("Exception in SellerBlindSignatures signBuyerStatements, when trying to read features of parallel computation. \n" 
-						+ e.getMessage() + "\n"
-						+ e.toString() + "\n"
-						+ "Protocol is being terminated.");
-				System.exit(1);
-			}
-		});
+		try {
+			ExecutorHandling.mapUnordered(blindedStatements.iterator(), (statement) -> 
+			{
+				BigInteger muprime = signer.sign(statement.x); // sign mu produced by Bob with Alice's private key using CRT, to calculate mu' and store it to muprime variable
+				// Return blinded statement
+				return new Tuple<BigInteger,Long>(muprime, statement.y);
+			}, (results) -> signedStatements.addAll(results));
+		} catch (ExecutionException e) {
+			logger.info("Exception in SellerBlindSignatures signBuyerStatements, when trying to sign Buyer statements. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
 		
-		logger.info("Done signing Buyer statements. Signed Statements: " + signedStatements.size());
-
 		return signedStatements;
 	}
 	
 	/**
-	 * Calculates signatures for a LinkedList of Tuples. Signs tuple.x and matches signature with tuple.y
-	 * @param multisetIndexList
-	 * @return List of Tuples. Tuple.x is signature, Tuple.y is original Tuple.y
+	 * Calculates signatures for the keys of a multiset and stores them with their counts.
+	 * @param multiset
+	 * @return HashMap containing signatures as key and multiset value as value
 	 */
-	public static <K> LinkedList<Tuple<Long,String>> signSellerMultiset(LinkedList<Tuple<K,Long>> multisetIndexList)
+	public static <K> HashMap<SignatureDigest, Integer> signSellerMultiset(HashMap<K, Integer> multiset)
 	{
 		Logger logger = Log.getLogger();
 		
@@ -164,38 +229,31 @@ public class SellerBlindSignatures {
 			createKeyPair();
 		}
 		
-		LinkedList<Tuple<Long,String>> signatures = new LinkedList<Tuple<Long,String>>();
+		BigInteger oprfKey = oprfKey();
+		HashMap<SignatureDigest, Integer> signedMultiset = new HashMap<SignatureDigest, Integer>(multiset.size());
 		
-		ExecutorHandling.calculateParallelForListElements(multisetIndexList, (element) ->
-		{
-			Tuple<BigInteger,BigInteger> muR = Bob.calculateMu(element.x.toString(), alicePublic); //call Bob's function calculateMu with alice Public key as input in order to calculate mu, and store it in mu variable
-
-			BigInteger muprime = Alice.calculateMuPrimeWithChineseRemainderTheorem(muR.x, d, N, P, Q, PinverseModQ, QinverseModP); // call Alice's function calculateMuPrime with mu produced earlier by Bob as input, to calculate  mu' and store it to muprime  variable
-
-			String sig = Bob.signatureCalculation(muprime, N, muR.y); // call Bob's function signatureCalculation with muprime as input and calculate the signature, then store it in sig variable
-
-			// -------------- Hash origininal statement and signature together (like in the paper) ---------------
-			String statementWithSignature = element.x.toString() + sig;
-			String result = DigestUtils.sha512Hex(statementWithSignature);
-			//----------------------------------------------------------------------------------------------------
-			
-			return new Tuple<Long,String> (element.y, result);
-		}, (Future future) -> 
-		{
-			try {
-				signatures.add((Tuple<Long,String>) future.get());
-			} catch (InterruptedException | ExecutionException e) {
-				logger.info("Exception in SellerBlindSignatures signSellerMultiset, when trying to read features of parallel computation. \n" 
-						+ e.getMessage() + "\n"
-						+ e.toString() + "\n"
-						+ "Protocol is being terminated.");
-				System.exit(1);
-			}
-		});
+		try {
+			ExecutorHandling.mapUnordered(multiset.entrySet().iterator(), (entry) ->
+			{
+				return new Tuple<SignatureDigest,Integer>(directSignature(entry.getKey().toString(), oprfKey), entry.getValue());
+			}, (results) -> 
+			{
+				for(Tuple<SignatureDigest,Integer> signature : results)
+				{
+					signedMultiset.put(signature.x, signature.y);
+				}
+			});
+		} catch (ExecutionException e) {
+			logger.info("Exception in SellerBlindSignatures signSellerMultiset, when trying to sign Sellers multiset. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
 		
-		logger.info("Done signing Sellers Multiset. Number of elements signed: " + signatures.size());
+		logger.info("Done signing Sellers Multiset. Number of elements signed: " + signedMultiset.size());
 		
-		return signatures;
+		return signedMultiset;
 	}
 	
 	/**
@@ -206,13 +264,8 @@ public class SellerBlindSignatures {
 	{
 		existingKey = true;
 		alicePair = keyPair;  									//alice key pair
-		alicePrivate = (RSAPrivateCrtKey) keyPair.getPrivate(); // alice private key d
 		alicePublic = (RSAPublicKey) keyPair.getPublic(); 		// alice public key e
 		N = alicePublic.getModulus(); 							// Key pair's modulus
-		P = alicePrivate.getPrimeP(); 							// prime number p used to produce the key pair
-		Q = alicePrivate.getPrimeQ(); 							// prime number q used to produce the key pair
-		PinverseModQ = P.modInverse(Q); 						//calculate p inverse modulo q
-        QinverseModP = Q.modInverse(P); 						//calculate q inverse modulo p
-        d = alicePrivate.getPrivateExponent(); 					//get private exponent d
+		signer = Alice.createSigner(keyPair); 					// CRT signer for the private key
 	}
 }
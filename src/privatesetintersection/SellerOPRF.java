@@ -0,0 +1,163 @@
+package privatesetintersection;
+
+import java.math.BigInteger;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import communication.Server;
+import protocol.Log;
+
+/**
+ * Seller side of the OPRF mode, see PSIModes.
+ * The seller holds a secret scalar k, the OPRF value of an element m is the x-coordinate of k*H(m) on P-256.
+ * Like a signature it is hashed together with the element into a SignatureDigest, so the Bloom filter and the multisets work unchanged.
+ * The buyer sends x(r*H(m)) for a random r, the seller answers x(k*r*H(m)) without learning anything about m.
+ * @author ---
+ *
+ */
+public class SellerOPRF
+{
+	private static BigInteger key; 				// secret scalar k in [1, N-1]
+	
+	/**
+	 * Computes the OPRF value of an element of the seller directly with the key and hashes it together with the element.
+	 * @param element UTF-8 bytes of the String representation of the element
+	 * @param k key as returned by getKey, read once by the caller instead of once per element
+	 * @return hash of element and OPRF value, identical to the one the buyer computes for the same element
+	 */
+	static SignatureDigest evaluate(byte[] element, BigInteger k)
+	{
+		BigInteger value = P256.x(P256.multiply(P256.hashToCurve(element), k));
+		return SignatureDigest.create(element, value, P256.P);
+	}
+	
+	/**
+	 * Evaluates the OPRF on blinded elements of the buyer as they arrive in batches.
+	 * A batch is the x-coordinates of the blinded points, P256.BYTES each. The answer has the same layout and order.
+	 * A separate thread keeps reading batches while this thread evaluates and returns the previous ones.
+	 * Stops after the empty batch which marks the end, and sends an empty batch back.
+	 */
+	static void evaluateBuyerBatches()
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start evaluating the OPRF on Buyer statements.");
+		
+		Server server = Server.getServer();
+		// Holds at most two batches that have been received but not evaluated yet
+		BlockingQueue<byte[]> received = new ArrayBlockingQueue<byte[]>(2);
+		
+		Thread reader = new Thread(() -> 
+		{
+			byte[] batch;
+			do
+			{
+				batch = server.<byte[]>readObject();
+				try {
+					received.put(batch);
+				} catch (InterruptedException e) {
+					logger.info("Exception in SellerOPRF evaluateBuyerBatches, when trying to queue a received batch. \n" 
+							+ e.getMessage() + "\n"
+							+ e.toString() + "\n"
+							+ "Protocol is being terminated.");
+					System.exit(1);
+				}
+			} while(batch.length > 0);
+		}, "BlindedBatchReader");
+		reader.start();
+		
+		long evaluated = 0;
+		try {
+			byte[] batch = received.take();
+			while(batch.length > 0)
+			{
+				server.sendObject(evaluateBatch(batch));
+				evaluated += batch.length / P256.BYTES;
+				batch = received.take();
+			}
+			// Tell the buyer that all batches have been evaluated
+			server.sendObject(batch);
+			reader.join();
+		} catch (InterruptedException e) {
+			logger.info("Exception in SellerOPRF evaluateBuyerBatches, when waiting for batches of the Buyer. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		
+		logger.info("Done evaluating the OPRF on Buyer statements. Evaluated Statements: " + evaluated);
+	}
+	
+	/**
+	 * Multiplies every blinded point of a batch with the key.
+	 * Every x-coordinate is checked to be on the curve first, otherwise the protocol is terminated.
+	 * @param batch x-coordinates of blinded points
+	 * @return x-coordinates of the points multiplied with the key, in the same order
+	 */
+	private static byte[] evaluateBatch(byte[] batch)
+	{
+		Logger logger = Log.getLogger();
+		
+		int n = batch.length / P256.BYTES;
+		if(batch.length % P256.BYTES != 0)
+		{
+			logger.info("Buyer sent an invalid OPRF batch. Terminating protocol.");
+			System.exit(1);
+		}
+		BigInteger k = getKey();
+		byte[] evaluated = new byte[batch.length];
+		int stripes = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
+		try {
+			ExecutorHandling.forEachIndex(stripes, (stripe) ->
+			{
+				for(int i = stripe; i < n; i += stripes)
+				{
+					long[][] point = P256.fromX(P256.readX(batch, i * P256.BYTES));
+					if(point == null)
+					{
+						logger.info("Buyer sent a point that is not on the curve. Terminating protocol.");
+						System.exit(1);
+					}
+					P256.writeX(P256.x(P256.multiply(point, k)), evaluated, i * P256.BYTES);
+				}
+			});
+		} catch (ExecutionException e) {
+			logger.info("Exception in SellerOPRF evaluateBatch, when trying to evaluate Buyer statements. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		}
+		return evaluated;
+	}
+	
+	/**
+	 * Creates the key on first use.
+	 * @return secret scalar of the seller
+	 */
+	public static synchronized BigInteger getKey()
+	{
+		if(key == null)
+		{
+			BigInteger k;
+			do
+			{
+				k = new BigInteger(P256.N.bitLength(), Bob.random());
+			} while(k.signum() == 0 || k.compareTo(P256.N) >= 0);
+			key = k;
+			Log.getLogger().info("An OPRF key has been created.");
+		}
+		return key;
+	}
+	
+	/**
+	 * Sets the key used for the OPRF, e.g. after the seller revealed it at the end of the protocol.
+	 * @param k secret scalar in [1, N-1]
+	 */
+	public static synchronized void buyerTestSetKey(BigInteger k)
+	{
+		key = k;
+	}
+}
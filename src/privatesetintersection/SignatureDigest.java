@@ -0,0 +1,139 @@
+package privatesetintersection;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ * Fixed width binary digest of an element concatenated with its signature.
+ * Replaces the 128 character SHA-512 hex string. The first PSIParameters.getDigestLength() bytes of SHA-512(element + signature) are kept.
+ * Both parties need to use the same length, otherwise no digests match.
+ * @author ---
+ *
+ */
+public final class SignatureDigest implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	
+	private final byte[] bytes;
+	
+	/**
+	 * Puts the bytes of a digest into a Bloom filter without any conversion.
+	 */
+	public enum DigestFunnel implements Funnel<SignatureDigest>
+	{
+		INSTANCE;
+
+		@Override
+		public void funnel(SignatureDigest digest, PrimitiveSink into)
+		{
+			into.putBytes(digest.bytes);
+		}
+	}
+	
+	private SignatureDigest(byte[] bytes)
+	{
+		this.bytes = bytes;
+	}
+	
+	/**
+	 * Hashes an element together with its signature (like in the paper).
+	 * The digest is SHA-512(element || signature), the signature written as unsigned big endian number as long as the modulus.
+	 * In the legacy format of the PSIParameters the signature is written as Base64 of its two's complement bytes instead,
+	 * which gives the same digest as hashing the String of the element concatenated with the Base64 String of the signature.
+	 * @param element UTF-8 bytes of the String representation of the element
+	 * @param signature unblinded signature of the element
+	 * @param N modulus of the key of the signature
+	 * @return digest with the length set in the PSIParameters
+	 */
+	public static SignatureDigest create(byte[] element, BigInteger signature, BigInteger N)
+	{
+		MessageDigest sha = Bob.sha512();
+		sha.update(element);
+		byte[] bytes = signature.toByteArray();
+		if(PSIParameters.getParameters().isLegacyFormat())
+		{
+			sha.update(Base64.encodeBase64(bytes));
+		}
+		else
+		{
+			// Drop the sign byte and pad to the length of the modulus
+			int offset = bytes.length > 1 && bytes[0] == 0 ? 1 : 0;
+			int length = bytes.length - offset;
+			for(int i = length; i < (N.bitLength() + 7) / 8; i++)
+			{
+				sha.update((byte) 0);
+			}
+			sha.update(bytes, offset, length);
+		}
+		return new SignatureDigest(Arrays.copyOf(sha.digest(), PSIParameters.getParameters().getDigestLength()));
+	}
+	
+	/**
+	 * Recreates a digest from its bytes, e.g. after receiving it.
+	 * @param bytes
+	 * @return digest
+	 */
+	public static SignatureDigest fromBytes(byte[] bytes)
+	{
+		return new SignatureDigest(bytes.clone());
+	}
+	
+	/**
+	 * 
+	 * @return copy of the bytes of the digest
+	 */
+	public byte[] getBytes()
+	{
+		return bytes.clone();
+	}
+	
+	/**
+	 * 
+	 * @return number of bytes of the digest
+	 */
+	public int length()
+	{
+		return bytes.length;
+	}
+	
+	@Override
+	public boolean equals(Object object)
+	{
+		if(this == object)
+		{
+			return true;
+		}
+		if(!(object instanceof SignatureDigest))
+		{
+			return false;
+		}
+		return Arrays.equals(bytes, ((SignatureDigest) object).bytes);
+	}
+	
+	/**
+	 * The bytes are output of a hash function, so the first four of them are already uniformly distributed.
+	 */
+	@Override
+	public int hashCode()
+	{
+		return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder hex = new StringBuilder(2 * bytes.length);
+		for(byte b : bytes)
+		{
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+}
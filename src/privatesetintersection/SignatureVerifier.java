@@ -0,0 +1,260 @@
+package privatesetintersection;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAPublicKey;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Verifies unblinded RSA signatures s = H(msg)^d mod N, with a batch test instead of an exponentiation per signature if the public exponent is large.
+ *
+ * The batch test checks (prod s_i)^e = prod H(msg_i) mod N, once for all signatures and once for each of SUBSETS random subsets.
+ * Valid signatures always pass. Invalid signatures fail the check of all signatures unless their errors cancel out in the product,
+ * which a signer can only arrange on purpose. Against that every random subset fails with probability at least 1/2,
+ * independently of the other subsets, so a cheating signer passes one batch with probability at most 2^-SUBSETS.
+ * The subsets are formed with buckets in GROUPS groups: in every group each signature is put into one of 2^BUCKET_BITS buckets by a random mask,
+ * subset j of a group is the product of all its buckets whose mask has bit j set.
+ * So a signature costs two multiplications per group instead of an exponentiation.
+ *
+ * If the test fails, the signatures are split in halves and each half is tested again until the invalid signatures are found.
+ * A multiplication and reduction mod N costs about as much as two and a half steps of an exponentiation, so the batch test only pays off
+ * if verifying a signature takes more than 5*GROUPS steps. With the public exponent 65537 of Alice's keys it takes 17,
+ * so in the protocol the BATCHED policy verifies the signatures one by one in parallel. Keys with larger exponents use the batch test,
+ * see TestSignatureVerification.
+ * @author ---
+ *
+ */
+public class SignatureVerifier
+{
+	// Number of random subsets per group, every signature gets a mask of this many bits in each group
+	private static final int BUCKET_BITS = 8;
+	// Number of groups of buckets
+	private static final int GROUPS = 8;
+	// Number of random subsets, a batch with invalid signatures passes with probability at most 2^-SUBSETS
+	static final int SUBSETS = GROUPS * BUCKET_BITS;
+	// Up to this many signatures are verified one by one, below that the buckets cost more than the exponentiations
+	private static final int LEAF_SIZE = 256;
+	// The sampled policy verifies one in this many signatures
+	private static final int SAMPLING_RATE = 32;
+	
+	private final BigInteger N;
+	private final BigInteger e;
+	private final boolean batchPaysOff;		// true if the batch test is cheaper than verifying one by one
+	
+	/**
+	 * Creates a verifier for signatures of a RSA key
+	 * @param publicKey
+	 */
+	public SignatureVerifier(RSAPublicKey publicKey)
+	{
+		N = publicKey.getModulus();
+		e = publicKey.getPublicExponent();
+		// Squarings and multiplications of one verification
+		batchPaysOff = e.bitLength() + e.bitCount() > 5 * GROUPS;
+	}
+	
+	/**
+	 * Finds the invalid signatures among the given ones.
+	 * @param signatures unblinded signatures
+	 * @param hashes H(msg) of the signed elements, hash i belongs to signature i
+	 * @param policy
+	 * @return indexes of the invalid signatures that were found, all of them for BATCHED, those in the sample for SAMPLED, none for OFF
+	 * @throws ExecutionException if the parallel batch test fails
+	 */
+	public LinkedList<Integer> findInvalid(BigInteger[] signatures, BigInteger[] hashes, VerificationPolicy policy) throws ExecutionException
+	{
+		LinkedList<Integer> invalid = new LinkedList<Integer>();
+		switch (policy)
+		{
+			case SAMPLED:
+				SecureRandom random = Bob.random();
+				for(int i = 0; i < signatures.length; i++)
+				{
+					if(random.nextInt(SAMPLING_RATE) == 0 && !verify(signatures[i], hashes[i]))
+					{
+						invalid.add(i);
+					}
+				}
+				break;
+			case BATCHED:
+				if(batchPaysOff)
+				{
+					localize(signatures, hashes, 0, signatures.length, invalid);
+				} else
+				{
+					verifyAll(signatures, hashes, invalid);
+				}
+				break;
+			default:
+		
+		}
+		return invalid;
+	}
+	
+	/**
+	 * Verifies one signature
+	 * @param signature
+	 * @param hash H(msg)
+	 * @return true if signature^e mod N = H(msg) mod N
+	 */
+	public boolean verify(BigInteger signature, BigInteger hash)
+	{
+		return signature.modPow(e, N).equals(hash.mod(N));
+	}
+	
+	/**
+	 * Verifies every signature on its own, in parallel
+	 * @param signatures
+	 * @param hashes
+	 * @param invalid receives the indexes of invalid signatures, in ascending order
+	 * @throws ExecutionException
+	 */
+	private void verifyAll(BigInteger[] signatures, BigInteger[] hashes, LinkedList<Integer> invalid) throws ExecutionException
+	{
+		int n = signatures.length;
+		boolean[] valid = new boolean[n];
+		int stripes = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
+		ExecutorHandling.forEachIndex(stripes, (stripe) ->
+		{
+			for(int i = stripe; i < n; i += stripes)
+			{
+				valid[i] = verify(signatures[i], hashes[i]);
+			}
+		});
+		for(int i = 0; i < n; i++)
+		{
+			if(!valid[i])
+			{
+				invalid.add(i);
+			}
+		}
+	}
+	
+	/**
+	 * Finds the invalid signatures of a range by binary search, every half that fails the batch test is split again
+	 * @param signatures
+	 * @param hashes
+	 * @param from first index of the range
+	 * @param to index after the range
+	 * @param invalid receives the indexes of invalid signatures
+	 * @throws ExecutionException
+	 */
+	private void localize(BigInteger[] signatures, BigInteger[] hashes, int from, int to, LinkedList<Integer> invalid) throws ExecutionException
+	{
+		if(to - from <= LEAF_SIZE)
+		{
+			for(int i = from; i < to; i++)
+			{
+				if(!verify(signatures[i], hashes[i]))
+				{
+					invalid.add(i);
+				}
+			}
+			return;
+		}
+		if(batchTest(signatures, hashes, from, to))
+		{
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		localize(signatures, hashes, from, middle, invalid);
+		localize(signatures, hashes, middle, to, invalid);
+	}
+	
+	/**
+	 * Batch test of a range, the buckets are filled in parallel
+	 * @param signatures
+	 * @param hashes
+	 * @param from first index of the range
+	 * @param to index after the range
+	 * @return true if the check of all signatures and of every random subset passes
+	 * @throws ExecutionException
+	 */
+	private boolean batchTest(BigInteger[] signatures, BigInteger[] hashes, int from, int to) throws ExecutionException
+	{
+		int buckets = 1 << BUCKET_BITS;
+		int stripes = Math.min(to - from, 4 * Runtime.getRuntime().availableProcessors());
+		// Products of the signatures and of the hashes in every bucket of every group, per stripe, null for empty buckets
+		BigInteger[][][] signatureProducts = new BigInteger[stripes][][];
+		BigInteger[][][] hashProducts = new BigInteger[stripes][][];
+		ExecutorHandling.forEachIndex(stripes, (stripe) ->
+		{
+			SecureRandom random = Bob.random();
+			BigInteger[][] signatureProduct = new BigInteger[GROUPS][buckets];
+			BigInteger[][] hashProduct = new BigInteger[GROUPS][buckets];
+			for(int i = from + stripe; i < to; i += stripes)
+			{
+				// One mask of BUCKET_BITS bits per group
+				long masks = random.nextLong();
+				for(int group = 0; group < GROUPS; group++)
+				{
+					int bucket = (int) (masks >>> (group * BUCKET_BITS)) & (buckets - 1);
+					signatureProduct[group][bucket] = multiply(signatureProduct[group][bucket], signatures[i]);
+					hashProduct[group][bucket] = multiply(hashProduct[group][bucket], hashes[i]);
+				}
+			}
+			signatureProducts[stripe] = signatureProduct;
+			hashProducts[stripe] = hashProduct;
+		});
+		
+		for(int group = 0; group < GROUPS; group++)
+		{
+			BigInteger[] signatureProduct = signatureProducts[0][group];
+			BigInteger[] hashProduct = hashProducts[0][group];
+			for(int stripe = 1; stripe < stripes; stripe++)
+			{
+				for(int bucket = 0; bucket < buckets; bucket++)
+				{
+					signatureProduct[bucket] = multiply(signatureProduct[bucket], signatureProducts[stripe][group][bucket]);
+					hashProduct[bucket] = multiply(hashProduct[bucket], hashProducts[stripe][group][bucket]);
+				}
+			}
+			
+			// Fold the highest bit into the lower buckets one bit after the other.
+			// Before folding bit j, bucket m holds all signatures whose lowest j+1 mask bits are m, so the upper half of them is subset j.
+			for(int bit = BUCKET_BITS - 1; bit >= 0; bit--)
+			{
+				int half = 1 << bit;
+				BigInteger signatureSubset = null;
+				BigInteger hashSubset = null;
+				for(int bucket = half; bucket < 2 * half; bucket++)
+				{
+					signatureSubset = multiply(signatureSubset, signatureProduct[bucket]);
+					hashSubset = multiply(hashSubset, hashProduct[bucket]);
+					signatureProduct[bucket - half] = multiply(signatureProduct[bucket - half], signatureProduct[bucket]);
+					hashProduct[bucket - half] = multiply(hashProduct[bucket - half], hashProduct[bucket]);
+				}
+				if(signatureSubset != null && !verify(signatureSubset, hashSubset))
+				{
+					return false;
+				}
+			}
+			// Bucket 0 now holds all signatures, the same in every group
+			if(group == 0 && !verify(signatureProduct[0], hashProduct[0]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * 
+	 * @param product null for an empty product
+	 * @param factor null for an empty product
+	 * @return product * factor mod N
+	 */
+	private BigInteger multiply(BigInteger product, BigInteger factor)
+	{
+		if(product == null)
+		{
+			return factor;
+		}
+		if(factor == null)
+		{
+			return product;
+		}
+		return product.multiply(factor).mod(N);
+	}
+}
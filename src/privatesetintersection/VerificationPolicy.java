@@ -0,0 +1,16 @@
+package privatesetintersection;
+
+/**
+ * This Enum contains the names of all policies for verifying the unblinded signatures on the buyer.
+ * OFF verifies nothing, SAMPLED verifies a random sample one by one, BATCHED verifies all signatures,
+ * with a probabilistic batch test if that is cheaper than verifying them one by one, see SignatureVerifier.
+ * For the public exponent 65537 it is not, so BATCHED verifies every signature in parallel.
+ * @author ---
+ *
+ */
+public enum VerificationPolicy 
+{
+	OFF,
+	SAMPLED,
+	BATCHED;
+}
@@ -3,6 +3,7 @@ package protocol;
 import java.math.BigInteger;
 import java.security.KeyPair;
 import java.security.interfaces.RSAPublicKey;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Scanner;
@@ -18,16 +19,24 @@ import com.google.common.hash.BloomFilter;
 
 import buyertests.BuyerTests;
 import communication.Client;
+import communication.ReadWrite;
 import dataquality.BuyerObtainKGPart;
 import oblivioustransfer.BuyerOT;
+import oblivioustransfer.BuyerOTExtension;
+import oblivioustransfer.OTModes;
 import privatesetintersection.BuyerBlindSignatures;
 import privatesetintersection.KGIntersectionBuyer;
+import privatesetintersection.PSIModes;
+import privatesetintersection.PSIParameters;
 import privatesetintersection.SellerBlindSignatures;
+import privatesetintersection.SellerOPRF;
+import privatesetintersection.SignatureDigest;
 import statistics.CBFBuyer;
 import statistics.EntropiesEnum;
 import statistics.Entropy;
 import statistics.EntropyResults;
 import statistics.EntropyStore;
+import statistics.MultisetResults;
 import statistics.Multisets;
 import statistics.Statistics;
 import statistics.StatisticsResults;
@@ -46,17 +55,17 @@ public class Buyer
 	private static HashMap<Resource,Integer> predicateMultisetBuyer = null;
 	private static HashMap<RDFNode,Integer> literalMultisetBuyer = null;
 	
-	private static LinkedList<Tuple<String, Tuple<Resource,RDFNode>>> descSignaturesWithElements = null;
-	private static LinkedList<Tuple<String, Tuple<Resource,RDFNode>>> classifSignaturesWithElements = null;
-	private static LinkedList<Tuple<String, Tuple<Resource,RDFNode>>> descmSignaturesWithElements = null;
-	private static LinkedList<Tuple<String, Resource>> descmpSignaturesWithElements = null;
-	private static LinkedList<Tuple<String, Resource>> econnSignaturesWithElements = null;
-	private static LinkedList<Tuple<String, Resource>> resourceSignaturesWithElements = null;
-	private static LinkedList<Tuple<String, Resource>> subjectSignaturesWithElements = null;
-	private static LinkedList<Tuple<String, Resource>> predicateSignaturesWithElements = null;
-	private static LinkedList<Tuple<String, RDFNode>> literalSignaturesWithElements = null;
+	private static LinkedList<Tuple<SignatureDigest, Tuple<Resource,RDFNode>>> descSignaturesWithElements = null;
+	private static LinkedList<Tuple<SignatureDigest, Tuple<Resource,RDFNode>>> classifSignaturesWithElements = null;
+	private static LinkedList<Tuple<SignatureDigest, Tuple<Resource,RDFNode>>> descmSignaturesWithElements = null;
+	private static LinkedList<Tuple<SignatureDigest, Resource>> descmpSignaturesWithElements = null;
+	private static LinkedList<Tuple<SignatureDigest, Resource>> econnSignaturesWithElements = null;
+	private static LinkedList<Tuple<SignatureDigest, Resource>> resourceSignaturesWithElements = null;
+	private static LinkedList<Tuple<SignatureDigest, Resource>> subjectSignaturesWithElements = null;
+	private static LinkedList<Tuple<SignatureDigest, Resource>> predicateSignaturesWithElements = null;
+	private static LinkedList<Tuple<SignatureDigest, RDFNode>> literalSignaturesWithElements = null;
 	
-	private static BloomFilter<String> bf = null;
+	private static BloomFilter<SignatureDigest> bf = null;
 	
 
 	/**
@@ -78,10 +87,18 @@ public class Buyer
 		System.setProperty("javax.net.ssl.trustStore", pathToTrustStore);
 	    System.setProperty("javax.net.ssl.trustStorePassword", trustStorePw);
 		
+		ReadWrite.setPreferredFormat(GetUserInput.askWireFormat());
 		Client client = Client.getClient();
 		
 		RSAPublicKey key = client.<RSAPublicKey>readObject();
+		
+		PSIParameters psiParameters = client.<PSIParameters>readObject();
+		PSIParameters.setParameters(psiParameters);
+		logger.info("PSI parameters of the Seller: " + psiParameters);
+		// After the parameters, which decide whether blinding factors are needed
 		BuyerBlindSignatures.setPublicKey(key);
+		BuyerBlindSignatures.setBatchSize(GetUserInput.askSignatureBatchSize());
+		BuyerBlindSignatures.setVerificationPolicy(GetUserInput.askSignatureVerification());
 		
 		// ----------- Get entropy signatures ---------------
 		boolean runEntropy = GetUserInput.runStep("Calculate Entropies. [yes, no]");
@@ -97,6 +114,8 @@ public class Buyer
 		{
 			intersection = intersectionStep(model);
 		}
+		// No more elements are signed after the intersection
+		BuyerBlindSignatures.stopBlindingFactorPool();
 		GetUserInput.continueProtocol();
 		
 		// ----------- Entropy and Statistics -------------------------
@@ -135,6 +154,10 @@ public class Buyer
 		
 		KeyPair sellerIntersectionEntropyKeyPair =  client.<KeyPair>readObject();
 		SellerBlindSignatures.buyerTestSetKey(sellerIntersectionEntropyKeyPair);
+		if(psiParameters.getMode() == PSIModes.OPRF)
+		{
+			SellerOPRF.buyerTestSetKey(client.<BigInteger>readObject());
+		}
 		
 		LinkedList<BigInteger> otKeysBI = null;
 		if(runObliviousTransfer)
@@ -164,7 +187,7 @@ public class Buyer
 		}
 		if(runObliviousTransfer)
 		{
-			fair = fair & BuyerTests.testOblivousTransfer(sellerModel, encryptedParts, otKeysBI, BuyerObtainKGPart.getIV());
+			fair = fair & BuyerTests.testOblivousTransfer(sellerModel, encryptedParts, otKeysBI);
 		}
 		logger.info("Done verification step.");
 		logger.info("Seller behaved fairly: " + fair);
@@ -187,10 +210,10 @@ public class Buyer
 		
 		HashMap<Long, Statement> numberStatementMap = KGIntersectionBuyer.numberStatements(model);
 		
-		LinkedList<Tuple<String,Long>> signatures = BuyerBlindSignatures.bobBlindSignature(numberStatementMap);
+		LinkedList<Tuple<SignatureDigest,Long>> signatures = BuyerBlindSignatures.bobBlindSignature(numberStatementMap);
 		
 		Client client = Client.getClient();
-		bf = client.<BloomFilter<String>>readObject();
+		bf = client.readBloomFilter();
 		
 		Model intersection = KGIntersectionBuyer.determineIntersection(bf, signatures, numberStatementMap);
 		
@@ -217,49 +240,52 @@ public class Buyer
 	private static void entropyBuyerSignatures(Model model)
 	{
 		LinkedList<String> input = GetUserInput.entropiesToCompute();
-		if(input.contains("all") || input.contains("1"))
+		MultisetResults multisets = Multisets.computeMultisets(model, EntropiesEnum.fromUserInput(input));
+		
+		descMultisetBuyer = multisets.getDesc();
+		classifMultisetBuyer = multisets.getClassif();
+		descmMultisetBuyer = multisets.getDescm();
+		descmpMultisetBuyer = multisets.getDescmp();
+		econnMultisetBuyer = multisets.getEconn();
+		resourceMultisetBuyer = multisets.getResource();
+		subjectMultisetBuyer = multisets.getSubject();
+		predicateMultisetBuyer = multisets.getPredicate();
+		literalMultisetBuyer = multisets.getLiteral();
+		
+		if(descMultisetBuyer != null)
 		{
-			descMultisetBuyer = Multisets.descMultiset(model);
 			descSignaturesWithElements = CBFBuyer.getBuyerElementsSignatures(descMultisetBuyer);
 		}
-		if(input.contains("all") || input.contains("2"))
+		if(classifMultisetBuyer != null)
 		{
-			classifMultisetBuyer = Multisets.classifMultiset(model);
 			classifSignaturesWithElements = CBFBuyer.getBuyerElementsSignatures(classifMultisetBuyer);
 		}
-		if(input.contains("all") || input.contains("3"))
+		if(descmMultisetBuyer != null)
 		{
-			descmMultisetBuyer = Multisets.descmMultiset(model);
 			descmSignaturesWithElements = CBFBuyer.getBuyerElementsSignatures(descmMultisetBuyer);
 		}
-		if(input.contains("all") || input.contains("4"))
+		if(descmpMultisetBuyer != null)
 		{
-			descmpMultisetBuyer = Multisets.descmpMultiset(model);
 			descmpSignaturesWithElements = CBFBuyer.getBuyerElementsSignatures(descmpMultisetBuyer);
 		}
-		if(input.contains("all") || input.contains("5"))
+		if(econnMultisetBuyer != null)
 		{
-			econnMultisetBuyer = Multisets.econnMultiset(model);
 			econnSignaturesWithElements = CBFBuyer.getBuyerElementsSignatures(econnMultisetBuyer);
 		}
-		if(input.contains("all") || input.contains("6"))
+		if(resourceMultisetBuyer != null)
 		{
-			resourceMultisetBuyer = Multisets.resourceMultiset(model);
 			resourceSignaturesWithElements = CBFBuyer.getBuyerElementsSignatures(resourceMultisetBuyer);
 		}
-		if(input.contains("all") || input.contains("7"))
+		if(subjectMultisetBuyer != null)
 		{
-			subjectMultisetBuyer = Multisets.subjectMultiset(model);
 			subjectSignaturesWithElements = CBFBuyer.getBuyerElementsSignatures(subjectMultisetBuyer);
 		}
-		if(input.contains("all") || input.contains("8"))
+		if(predicateMultisetBuyer != null)
 		{
-			predicateMultisetBuyer = Multisets.predicateMultiset(model);
 			predicateSignaturesWithElements = CBFBuyer.getBuyerElementsSignatures(predicateMultisetBuyer);
 		}
-		if(input.contains("all") || input.contains("9"))
+		if(literalMultisetBuyer != null)
 		{
-			literalMultisetBuyer = Multisets.literalMultiset(model);
 			literalSignaturesWithElements = CBFBuyer.getBuyerElementsSignatures(literalMultisetBuyer);
 		}
 	}
@@ -277,54 +303,57 @@ public class Buyer
 		
 		EntropyResults results = new EntropyResults();
 		
-		HashMap<Tuple<Resource, RDFNode>,Integer> descMultisetIntersection = null;
-		HashMap<Tuple<Resource, RDFNode>,Integer> classifMultisetIntersection = null;
-		HashMap<Tuple<Resource, RDFNode>,Integer> descmMultisetIntersection = null;
-		HashMap<Resource,Integer> descmpMultisetIntersection = null;
-		HashMap<Resource,Integer> econnMultisetIntersection = null;
-		HashMap<Resource,Integer> resourceMultisetIntersection = null;
-		HashMap<Resource,Integer> subjectMultisetIntersection = null;
-		HashMap<Resource,Integer> predicateMultisetIntersection = null;
-		HashMap<RDFNode,Integer> literalMultisetIntersection = null;
-		
 		logger.info("Start computing multisets.");
 		
+		// Only the multisets the buyer computed for its own model are needed
+		EnumSet<EntropiesEnum> entropies = EnumSet.noneOf(EntropiesEnum.class);
 		if(!(descMultisetBuyer == null))
 		{
-			descMultisetIntersection = Multisets.descMultiset(intersection);
+			entropies.add(EntropiesEnum.DESC);
 		}
 		if(!(classifMultisetBuyer == null))
 		{
-			classifMultisetIntersection = Multisets.classifMultiset(intersection);
+			entropies.add(EntropiesEnum.CLASSIF);
 		}
 		if(!(descmMultisetBuyer == null))
 		{
-			descmMultisetIntersection = Multisets.descmMultiset(intersection);
+			entropies.add(EntropiesEnum.DESCM);
 		}
 		if(!(descmpMultisetBuyer == null))
 		{
-			descmpMultisetIntersection = Multisets.descmpMultiset(intersection);
+			entropies.add(EntropiesEnum.DESCMP);
 		}
 		if(!(econnMultisetBuyer == null))
 		{
-			econnMultisetIntersection = Multisets.econnMultiset(intersection);
+			entropies.add(EntropiesEnum.ECONN);
 		}
 		if(!(resourceMultisetBuyer == null))
 		{
-			resourceMultisetIntersection = Multisets.resourceMultiset(intersection);
+			entropies.add(EntropiesEnum.RESOURCE);
 		}
 		if(!(subjectMultisetBuyer == null))
 		{
-			subjectMultisetIntersection = Multisets.subjectMultiset(intersection);
+			entropies.add(EntropiesEnum.SUBJECT);
 		}
 		if(!(predicateMultisetBuyer == null))
 		{
-			predicateMultisetIntersection = Multisets.predicateMultiset(intersection);
+			entropies.add(EntropiesEnum.PREDICATE);
 		}
 		if(!(literalMultisetBuyer == null))
 		{
-			literalMultisetIntersection = Multisets.literalMultiset(intersection);
+			entropies.add(EntropiesEnum.LITERAL);
 		}
+		MultisetResults multisets = Multisets.computeMultisets(intersection, entropies);
+		
+		HashMap<Tuple<Resource, RDFNode>,Integer> descMultisetIntersection = multisets.getDesc();
+		HashMap<Tuple<Resource, RDFNode>,Integer> classifMultisetIntersection = multisets.getClassif();
+		HashMap<Tuple<Resource, RDFNode>,Integer> descmMultisetIntersection = multisets.getDescm();
+		HashMap<Resource,Integer> descmpMultisetIntersection = multisets.getDescmp();
+		HashMap<Resource,Integer> econnMultisetIntersection = multisets.getEconn();
+		HashMap<Resource,Integer> resourceMultisetIntersection = multisets.getResource();
+		HashMap<Resource,Integer> subjectMultisetIntersection = multisets.getSubject();
+		HashMap<Resource,Integer> predicateMultisetIntersection = multisets.getPredicate();
+		HashMap<RDFNode,Integer> literalMultisetIntersection = multisets.getLiteral();
 		
 		logger.info("Done computing multisets.");
 		
@@ -385,7 +414,7 @@ public class Buyer
 	 * @param name of entropy to compute
 	 * @param results class to store results in
 	 */
-	private static <K> void multisetsToEntropy(HashMap<K, Integer> multisetBuyer, HashMap<K, Integer> multisetIntersection, LinkedList<Tuple<String, K>> signaturesWithElements, EntropiesEnum name, EntropyResults results)
+	private static <K> void multisetsToEntropy(HashMap<K, Integer> multisetBuyer, HashMap<K, Integer> multisetIntersection, LinkedList<Tuple<SignatureDigest, K>> signaturesWithElements, EntropiesEnum name, EntropyResults results)
 	{
 		Logger logger = Log.getLogger();
 		
@@ -395,7 +424,7 @@ public class Buyer
 		
 		// Get seller multiset and store it
 		Client client = Client.getClient();
-		HashMap<String, Integer> signedSellerMultiset = client.<HashMap<String, Integer>>readObject();
+		HashMap<SignatureDigest, Integer> signedSellerMultiset = client.<HashMap<SignatureDigest, Integer>>readObject();
 		EntropyStore entropyStore = results.newEntropy(name);
 		entropyStore.setSellerMultiset(signedSellerMultiset);
 		logger.info("Got multiset");
@@ -481,17 +510,46 @@ public class Buyer
 		int k = GetUserInput.askObliviousTransferK();
 		
 		Client client = Client.getClient();
-		LinkedList<BigInteger> randomMessages = client.<LinkedList<BigInteger>>readObject();
-		LinkedList<BigInteger> vValues = BuyerOT.buyerOT(k, key, randomMessages);
-		
-		client.sendObject(vValues);
-		
-		LinkedList<LinkedList<BigInteger>> kmprime = client.<LinkedList<LinkedList<BigInteger>>>readObject();
-		LinkedList<BigInteger> keysBI = BuyerOT.buyerOTPart2(key, kmprime);
+		LinkedList<BigInteger> keysBI;
+		if(GetUserInput.askObliviousTransferMode() == OTModes.EXTENSION)
+		{
+			int n = client.<Integer>readObject();
+			if(k > n)
+			{
+				logger.info("Warning: Oblivous Transfer Buyer. Trying to buy more parts of the graph then exist. Getting all parts of the KG.");
+				k = n;
+			}
+			client.sendObject(k);
+			client.sendObject(BuyerOTExtension.buyerBaseOT());
+			BuyerOTExtension.buyerBaseOTPart2(client.<BigInteger[]>readObject());
+			
+			client.sendObject(BuyerOTExtension.buyerOTExtension(k, n));
+			
+			// The seller sends the masked messages once for every choice
+			LinkedList<byte[]> maskedMessages = new LinkedList<byte[]>();
+			for(int i = 0; i < k; i++)
+			{
+				maskedMessages.add(client.<byte[]>readObject());
+			}
+			keysBI = BuyerOTExtension.buyerOTExtensionPart2(maskedMessages);
+		} else
+		{
+			LinkedList<BigInteger> randomMessages = client.<LinkedList<BigInteger>>readObject();
+			LinkedList<BigInteger> vValues = BuyerOT.buyerOT(k, key, randomMessages);
+			
+			client.sendObject(vValues);
+			
+			// The seller sends one row for every choice
+			LinkedList<BigInteger[]> kmprime = new LinkedList<BigInteger[]>();
+			for(int i = 0; i < vValues.size(); i++)
+			{
+				kmprime.add(client.<BigInteger[]>readObject());
+			}
+			keysBI = BuyerOT.buyerOTPart2(key, kmprime);
+		}
 		
-		byte[] byteIV = client.<byte[]>readObject();
 		LinkedList<byte[]> encryptedParts = client.<LinkedList<byte[]>>readObject();
-		LinkedList<Model> obtained = BuyerObtainKGPart.obtainKGPart(keysBI, byteIV, encryptedParts);
+		LinkedList<Model> obtained = BuyerObtainKGPart.obtainKGPart(keysBI, encryptedParts);
 		logger.info("Number of KG parts received: " + obtained.size());
 		
 		if(modelFolder.equals(""))
@@ -6,7 +6,14 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import communication.WireFormat;
+import knowledgegraphpartitioning.HashKeys;
 import knowledgegraphpartitioning.Strategies;
+import oblivioustransfer.OTModes;
+import privatesetintersection.BuyerBlindSignatures;
+import privatesetintersection.PSIModes;
+import privatesetintersection.PSIParameters;
+import privatesetintersection.VerificationPolicy;
 
 /**
  * Class containing methods used to get input from the user
@@ -157,6 +164,233 @@ public class GetUserInput
 		return fpp;
 	}
 	
+	/**
+	 * Asks the user for the length of the digests of elements and their signatures.
+	 * Longer digests make false matches less likely but cost more memory and communication.
+	 * @return digest length in bytes, 16, 32, or 64
+	 */
+	public static int getDigestLength()
+	{
+		Logger logger = Log.getLogger();
+		
+		int length = PSIParameters.DEFAULT_DIGEST_LENGTH;
+		if(!runAllSteps)
+		{
+			boolean lengthEntered = false;
+			while(!lengthEntered)
+			{
+				logger.info("Enter length of signature digests in bytes. [16, 32, 64]");
+				String lengthString = scanner.next();
+				try
+				{
+					length = Integer.valueOf(lengthString);
+					if(length == 16 || length == 32 || length == 64)
+					{
+						lengthEntered = true;
+					}
+				} catch(NumberFormatException e)
+				{
+					
+				}
+			}
+		}
+		logger.info("Entered digest length: " + length);
+		return length;
+	}
+	
+	/**
+	 * Asks the user if elements and signatures should be hashed in the format of the first version of the protocol.
+	 * Meant to compare both versions, the default is the byte format.
+	 * @return true for the legacy format
+	 */
+	public static boolean askLegacyDigestFormat()
+	{
+		Logger logger = Log.getLogger();
+		
+		boolean legacy = false;
+		if(!runAllSteps)
+		{
+			boolean entered = false;
+			while(!entered)
+			{
+				logger.info("Hash elements and signatures in the legacy string format. [yes, no]");
+				String input = scanner.next();
+				if(input.equals("yes") || input.equals("no"))
+				{
+					legacy = input.equals("yes");
+					entered = true;
+				}
+			}
+		}
+		logger.info("Legacy digest format: " + legacy);
+		return legacy;
+	}
+	
+	/**
+	 * Asks the user if messages should be sent as Java serialized objects instead of binary frames.
+	 * Meant as fallback and to compare both formats, the default are binary frames. The older format of the two parties is used.
+	 * @return WireFormat (Enum) chosen format
+	 */
+	public static WireFormat askWireFormat()
+	{
+		Logger logger = Log.getLogger();
+		
+		WireFormat format = WireFormat.FRAMED;
+		if(!runAllSteps)
+		{
+			boolean entered = false;
+			while(!entered)
+			{
+				logger.info("Send messages as Java serialized objects instead of binary frames. [yes, no]");
+				String input = scanner.next();
+				if(input.equals("yes") || input.equals("no"))
+				{
+					format = input.equals("yes") ? WireFormat.JAVA_SERIALIZATION : WireFormat.FRAMED;
+					entered = true;
+				}
+			}
+		}
+		logger.info("Preferred wire format: " + format);
+		return format;
+	}
+	
+	/**
+	 * Asks the user which engine the private set intersection and the multiset signatures use.
+	 * The default are RSA blind signatures.
+	 * @return PSIModes (Enum) chosen mode
+	 */
+	public static PSIModes askPSIMode()
+	{
+		Logger logger = Log.getLogger();
+		
+		PSIModes mode = PSIModes.RSA;
+		if(!runAllSteps)
+		{
+			boolean entered = false;
+			while(!entered)
+			{
+				logger.info("Enter the private set intersection mode. 'rsa', 'oprf'");
+				String modeString = scanner.next();
+				switch (modeString)
+				{
+					case "rsa":
+						mode = PSIModes.RSA;
+						entered = true;
+						break;
+					case "oprf":
+						mode = PSIModes.OPRF;
+						entered = true;
+						break;
+					default:
+						
+				}
+			}
+		}
+		logger.info("Entered private set intersection mode: " + mode);
+		return mode;
+	}
+	
+	/**
+	 * Asks the user how many elements should be blinded and sent to the seller together.
+	 * @return batch size
+	 */
+	public static int askSignatureBatchSize()
+	{
+		Logger logger = Log.getLogger();
+		
+		int batchSize = BuyerBlindSignatures.DEFAULT_BATCH_SIZE;
+		if(!runAllSteps)
+		{
+			boolean batchSizeEntered = false;
+			while(!batchSizeEntered)
+			{
+				logger.info("Enter number of elements to be blinded and sent together. Must be > 0.");
+				String batchSizeString = scanner.next();
+				try
+				{
+					batchSize = Integer.valueOf(batchSizeString);
+					if(batchSize > 0)
+					{
+						batchSizeEntered = true;
+					}
+				} catch(NumberFormatException e)
+				{
+					
+				}
+			}
+		}
+		logger.info("Entered batch size: " + batchSize);
+		return batchSize;
+	}
+	
+	/**
+	 * Asks the user how the unblinded signatures should be verified.
+	 * The default is a batch test of all signatures.
+	 * @return VerificationPolicy (Enum) chosen policy
+	 */
+	public static VerificationPolicy askSignatureVerification()
+	{
+		Logger logger = Log.getLogger();
+		
+		VerificationPolicy policy = VerificationPolicy.BATCHED;
+		if(!runAllSteps)
+		{
+			boolean entered = false;
+			while(!entered)
+			{
+				logger.info("Enter how the signatures should be verified. 'off', 'sampled', 'batched'");
+				String policyString = scanner.next();
+				switch (policyString)
+				{
+					case "off":
+						policy = VerificationPolicy.OFF;
+						entered = true;
+						break;
+					case "sampled":
+						policy = VerificationPolicy.SAMPLED;
+						entered = true;
+						break;
+					case "batched":
+						policy = VerificationPolicy.BATCHED;
+						entered = true;
+						break;
+					default:
+						
+				}
+			}
+		}
+		logger.info("Entered signature verification: " + policy);
+		return policy;
+	}
+	
+	/**
+	 * Asks the user if the statistics should be estimated with sketches instead of computed exactly.
+	 * Meant for models too big for the exact statistics, the default is exact.
+	 * @return true if the statistics should be approximated
+	 */
+	public static boolean askApproximateStatistics()
+	{
+		Logger logger = Log.getLogger();
+		
+		boolean approximate = false;
+		if(!runAllSteps)
+		{
+			boolean entered = false;
+			while(!entered)
+			{
+				logger.info("Approximate the statistics with sketches instead of computing them exactly. [yes, no]");
+				String input = scanner.next();
+				if(input.equals("yes") || input.equals("no"))
+				{
+					approximate = input.equals("yes");
+					entered = true;
+				}
+			}
+		}
+		logger.info("Approximate statistics: " + approximate);
+		return approximate;
+	}
+	
 	/**
 	 * Asks the user to enter which entropies should be computed.
 	 * @return unfilterd LinkedList<String> with all user inputs.
@@ -238,6 +472,42 @@ public class GetUserInput
 		return k;
 	}
 	
+	/**
+	 * Asks the user which oblivious transfer mode should be used.
+	 * The extension mode is meant for partitionings with many parts, the default is the RSA based OT.
+	 * @return OTModes (Enum) chosen mode
+	 */
+	public static OTModes askObliviousTransferMode()
+	{
+		Logger logger = Log.getLogger();
+		
+		OTModes mode = OTModes.RSA;
+		if(!runAllSteps)
+		{
+			boolean entered = false;
+			while(!entered)
+			{
+				logger.info("Enter the oblivious transfer mode. 'RSA', 'extension'");
+				String modeString = scanner.next();
+				switch (modeString)
+				{
+					case "RSA":
+						mode = OTModes.RSA;
+						entered = true;
+						break;
+					case "extension":
+						mode = OTModes.EXTENSION;
+						entered = true;
+						break;
+					default:
+						
+				}
+			}
+		}
+		logger.info("Entered oblivious transfer mode: " + mode);
+		return mode;
+	}
+	
 	/**
 	 * Asks the user to enter a strategy with which a model is to be partitioned.
 	 * 
@@ -256,7 +526,7 @@ public class GetUserInput
 			boolean entered = false;
 			while(!entered)
 			{
-				logger.info("Enter a partitioning strategy. 'balancedDBSCAN', 'DBSCAN', 'range', 'resource'");
+				logger.info("Enter a partitioning strategy. 'balancedDBSCAN', 'DBSCAN', 'range', 'resource', 'labelPropagation', 'hash'");
 				String strategyString = scanner.next();
 				switch (strategyString)
 				{
@@ -276,6 +546,14 @@ public class GetUserInput
 						strategy = Strategies.RESOURCE;
 						entered = true;
 						break;
+					case "labelPropagation":
+						strategy = Strategies.LABELPROPAGATION;
+						entered = true;
+						break;
+					case "hash":
+						strategy = Strategies.HASH;
+						entered = true;
+						break;
 					default:
 						
 				}
@@ -357,6 +635,109 @@ public class GetUserInput
 		return range;
 	}
 	
+	/**
+	 * Asks the user to enter the number of parts for label propagation or hash partitioning.
+	 * Must be an integer bigger or equal to 1
+	 * @return Integer number of parts
+	 */
+	public static int askNumberOfParts()
+	{
+		Logger logger = Log.getLogger();
+		
+		int parts = 1;
+		if(runAllSteps)
+		{
+			parts = 100;
+		} else
+		{
+			boolean entered = false;
+			while(!entered)
+			{
+				logger.info("Enter the number of parts. Must be an integer >= 1.");
+				String partsString = scanner.next();
+				try
+				{
+					parts = Integer.valueOf(partsString);
+					if(parts > 0)
+					{
+						entered = true;
+					}
+				} catch(NumberFormatException e)
+				{
+					
+				}
+			}
+		}
+		logger.info("Entered number of parts: " + parts);
+		return parts;
+	}
+	
+	/**
+	 * Asks the user to enter the seed for label propagation or hash partitioning.
+	 * The same model and seed always result in the same partitioning.
+	 * @return Long seed
+	 */
+	public static long askPartitioningSeed()
+	{
+		Logger logger = Log.getLogger();
+		
+		long seed = 0;
+		if(!runAllSteps)
+		{
+			boolean entered = false;
+			while(!entered)
+			{
+				logger.info("Enter a seed for partitioning. Must be an integer.");
+				String seedString = scanner.next();
+				try
+				{
+					seed = Long.valueOf(seedString);
+					entered = true;
+				} catch(NumberFormatException e)
+				{
+					
+				}
+			}
+		}
+		logger.info("Entered seed: " + seed);
+		return seed;
+	}
+	
+	/**
+	 * Asks the user by which term of a statement hash partitioning should assign the statement to a part.
+	 * @return HashKeys (Enum) chosen key
+	 */
+	public static HashKeys askHashKey()
+	{
+		Logger logger = Log.getLogger();
+		
+		HashKeys key = HashKeys.SUBJECT;
+		if(!runAllSteps)
+		{
+			boolean entered = false;
+			while(!entered)
+			{
+				logger.info("Enter the term by which statements are hashed into parts. 'subject', 'predicate'");
+				String keyString = scanner.next();
+				switch (keyString)
+				{
+					case "subject":
+						key = HashKeys.SUBJECT;
+						entered = true;
+						break;
+					case "predicate":
+						key = HashKeys.PREDICATE;
+						entered = true;
+						break;
+					default:
+						
+				}
+			}
+		}
+		logger.info("Entered hash key: " + key);
+		return key;
+	}
+	
 	/**
 	 * Asks the User to enter a path to a folder.
 	 * @return path to folder
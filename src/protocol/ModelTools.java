@@ -1,16 +1,30 @@
 package protocol;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamOps;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWriter;
 
 /**
  * Class containing useful tools for Jena models.
@@ -19,6 +33,9 @@ import org.apache.jena.riot.RDFFormat;
  */
 public class ModelTools 
 {
+	// Put in front of models encoded with modelToBytes, used to recognize a properly decrypted model later on (BuyerObtainKGPart)
+	private static final byte[] MODEL_HEADER = "KGMODEL1".getBytes(StandardCharsets.US_ASCII);
+	
 	/**
 	 * Writes a Model to a file in turtle format.
 	 * @param model
@@ -100,4 +117,101 @@ public class ModelTools
 		}
 		return null;
 	}
+	
+	/**
+	 * Writes a model in RDF Thrift format, a binary format which is written triple by triple without building up the whole document first.
+	 * The stream is flushed but not closed.
+	 * @param model
+	 * @param out
+	 */
+	public static void writeModel(Model model, OutputStream out)
+	{
+		StreamRDF writer = StreamRDFWriter.getWriterStream(out, RDFFormat.RDF_THRIFT);
+		StreamOps.graphToStream(model.getGraph(), writer);	// calls start and finish, finish flushes
+	}
+	
+	/**
+	 * Parses a model in RDF Thrift format triple by triple into a model, until the stream ends.
+	 * @param in
+	 * @param model triples are added to this model
+	 * @throws RiotException if the stream does not contain RDF Thrift
+	 */
+	public static void readModel(InputStream in, Model model)
+	{
+		RDFDataMgr.parse(StreamRDFLib.graph(model.getGraph()), in, Lang.RDFTHRIFT);
+	}
+	
+	/**
+	 * Encodes a model as bytes in RDF Thrift format, with a header in front
+	 * @param model
+	 * @return bytes encoding the model
+	 */
+	public static byte[] modelToBytes(Model model)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(MODEL_HEADER, 0, MODEL_HEADER.length);
+		writeModel(model, out);
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Encodes statements as bytes in the same format as modelToBytes, without putting them into a model first
+	 * @param triples statements, duplicates are written as often as they appear
+	 * @return bytes encoding a model containing the statements
+	 */
+	public static byte[] triplesToBytes(Iterator<Triple> triples)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeTriples(triples, out);
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Writes statements in the format of modelToBytes to a stream, triple by triple.
+	 * The stream is flushed but not closed.
+	 * @param triples statements, duplicates are written as often as they appear
+	 * @param out
+	 */
+	public static void writeTriples(Iterator<Triple> triples, OutputStream out)
+	{
+		try 
+		{
+			out.write(MODEL_HEADER);
+		} catch (IOException e) 
+		{
+			throw new RiotException(e);
+		}
+		StreamRDF writer = StreamRDFWriter.getWriterStream(out, RDFFormat.RDF_THRIFT);
+		writer.start();
+		while(triples.hasNext())
+		{
+			writer.triple(triples.next());
+		}
+		writer.finish();
+	}
+	
+	/**
+	 * Turns bytes encoding a model back into a model.
+	 * The bytes need to start with the header written by modelToBytes
+	 * @param bytes
+	 * @return model, null if the header does not match or the bytes can not be parsed
+	 */
+	public static Model bytesToModel(byte[] bytes)
+	{
+		if(bytes == null || bytes.length < MODEL_HEADER.length 
+				|| !Arrays.equals(MODEL_HEADER, Arrays.copyOf(bytes, MODEL_HEADER.length)))
+		{
+			return null;
+		}
+		
+		Model model = ModelFactory.createDefaultModel();
+		try 
+		{
+			readModel(new ByteArrayInputStream(bytes, MODEL_HEADER.length, bytes.length - MODEL_HEADER.length), model);
+		} catch (RiotException e) 
+		{
+			return null;
+		}
+		return model;
+	}
 }
@@ -3,6 +3,7 @@ package protocol;
 import java.math.BigInteger;
 import java.security.KeyPair;
 import java.security.interfaces.RSAPublicKey;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Scanner;
@@ -14,17 +15,28 @@ import org.apache.jena.rdf.model.Resource;
 
 import com.google.common.hash.BloomFilter;
 
+import communication.ReadWrite;
 import communication.Server;
 import dataquality.EncryptionStorage;
 import dataquality.SellerPrepareKG;
+import knowledgegraphpartitioning.PartitionView;
 import knowledgegraphpartitioning.Partitioning;
+import oblivioustransfer.OTModes;
 import oblivioustransfer.SellerOT;
+import oblivioustransfer.SellerOTExtension;
 import privatesetintersection.KGIntersectionSeller;
+import privatesetintersection.PSIModes;
+import privatesetintersection.PSIParameters;
 import privatesetintersection.SellerBlindSignatures;
+import privatesetintersection.SellerOPRF;
+import privatesetintersection.SignatureDigest;
 import statistics.CBFSeller;
+import statistics.EntropiesEnum;
+import statistics.MultisetResults;
 import statistics.Multisets;
 import statistics.Statistics;
 import statistics.StatisticsResults;
+import triplestore.EncodedGraph;
 
 public class Seller 
 {
@@ -49,12 +61,17 @@ public class Seller
 		System.setProperty("javax.net.ssl.keyStore", pathToKeyStore); 
 		System.setProperty("javax.net.ssl.keyStorePassword", keyStorePw);
 		
+		ReadWrite.setPreferredFormat(GetUserInput.askWireFormat());
 		Server server = Server.getServer();
 		
 		KeyPair keypair = SellerBlindSignatures.createKeyPair();
 		RSAPublicKey publicKey = (RSAPublicKey) keypair.getPublic();
 		server.sendObject(publicKey);
 		
+		PSIParameters psiParameters = new PSIParameters(GetUserInput.getDigestLength(), GetUserInput.askLegacyDigestFormat(), GetUserInput.askPSIMode());
+		PSIParameters.setParameters(psiParameters);
+		server.sendObject(psiParameters);
+		
 		// ----------- Entropy Buyer signing ----------------
 		LinkedList<String> input = new LinkedList<String>();
 		boolean runEntropy = GetUserInput.runStep("Calculate the Entropies. [yes, no]");
@@ -70,11 +87,19 @@ public class Seller
 		}
 		GetUserInput.continueProtocol();
 		
+		// ----------- Encoded graph -------------------------
+		// Used instead of the model by the entropy, statistics and partitioning steps
+		EncodedGraph graph = null;
+		if(GetUserInput.runStep("Load the model into an encoded graph for entropies, statistics and partitioning. [yes, no]"))
+		{
+			graph = EncodedGraph.load(model);
+		}
+		
 		// ----------- Entropy and Statistics -------------------------		
 		// Entropy
 		if(runEntropy)
 		{
-			entropySeller(model, input);
+			entropySeller(model, graph, input);
 			
 			logger.info("Number of Bytes sent after Entropies: " + server.getOutputStreamCount());
 			logger.info("Number of Bytes received after Entropies: " + server.getInputStreamCount());
@@ -85,7 +110,13 @@ public class Seller
 		if(GetUserInput.runStep("Calculate the descriptive Statistics. [yes, no]"))
 		{
 			logger.info("Starting Statistics step.");
-			statisticsResults = Statistics.statistics(model);
+			if(GetUserInput.askApproximateStatistics())
+			{
+				statisticsResults = Statistics.approximateStatistics(model);
+			} else
+			{
+				statisticsResults = graph == null ? Statistics.statistics(model) : Statistics.statistics(graph);
+			}
 			server.sendObject(statisticsResults);
 			
 			// Wait for Buyer to finish as well
@@ -101,15 +132,20 @@ public class Seller
 		LinkedList<BigInteger> keys = null;
 		if(runOT)
 		{
-			keys = dataQualityStep(model, keypair);
+			keys = dataQualityStep(model, graph, keypair);
 		}
 		GetUserInput.continueProtocol();
 		
 		// ----------- finally send over the full KG -------------
+		boolean compress = GetUserInput.runStep("Compress the model before sending it. [yes, no]");
 		logger.info("Start sending model and used keys to the Buyer.");
-		server.sendModel(model);
+		server.sendModel(model, compress);
 		
 		server.sendObject(keypair);
+		if(psiParameters.getMode() == PSIModes.OPRF)
+		{
+			server.sendObject(SellerOPRF.getKey());
+		}
 		
 		if(runOT)
 		{
@@ -136,17 +172,13 @@ public class Seller
 		Logger logger = Log.getLogger();
 		logger.info("Starting Intersection Step.");
 		
-		LinkedList<String> signatures = SellerBlindSignatures.aliceBlindSignatures(model);
-		
 		double fpp = GetUserInput.getBloomFilterFPP();
-		BloomFilter<String> bf = KGIntersectionSeller.trainBloomFilter(fpp, signatures);
+		BloomFilter<SignatureDigest> bf = KGIntersectionSeller.trainBloomFilter(fpp, model);
 
-		Server server = Server.getServer();
-		LinkedList<Tuple<BigInteger, Long>> blindedStatements = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-		LinkedList<Tuple<BigInteger, Long>> blindedSignatures = SellerBlindSignatures.signBuyerStatements(blindedStatements);
-		server.sendObject(blindedSignatures);
+		SellerBlindSignatures.signBuyerBatches();
 		
-		server.sendObject(bf);
+		Server server = Server.getServer();
+		server.sendBloomFilter(bf);
 		
 		logger.info("Done sending BF. Its size was: " + bf.approximateElementCount());
 		
@@ -165,61 +197,41 @@ public class Seller
 	{
 		LinkedList<String> input = GetUserInput.entropiesToCompute();
 		
-		Server server = Server.getServer();
-		
 		if(input.contains("all") || input.contains("1"))
 		{
-			LinkedList<Tuple<BigInteger, Long>> blindedMultiset = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-			LinkedList<Tuple<BigInteger, Long>> multisetSignatures = SellerBlindSignatures.signBuyerStatements(blindedMultiset);
-			server.sendObject(multisetSignatures);
+			SellerBlindSignatures.signBuyerBatches();
 		}
 		if(input.contains("all") || input.contains("2"))
 		{
-			LinkedList<Tuple<BigInteger, Long>> blindedMultiset = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-			LinkedList<Tuple<BigInteger, Long>> multisetSignatures = SellerBlindSignatures.signBuyerStatements(blindedMultiset);
-			server.sendObject(multisetSignatures);
+			SellerBlindSignatures.signBuyerBatches();
 		}
 		if(input.contains("all") || input.contains("3"))
 		{
-			LinkedList<Tuple<BigInteger, Long>> blindedMultiset = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-			LinkedList<Tuple<BigInteger, Long>> multisetSignatures = SellerBlindSignatures.signBuyerStatements(blindedMultiset);
-			server.sendObject(multisetSignatures);
+			SellerBlindSignatures.signBuyerBatches();
 		}
 		if(input.contains("all") || input.contains("4"))
 		{
-			LinkedList<Tuple<BigInteger, Long>> blindedMultiset = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-			LinkedList<Tuple<BigInteger, Long>> multisetSignatures = SellerBlindSignatures.signBuyerStatements(blindedMultiset);
-			server.sendObject(multisetSignatures);
+			SellerBlindSignatures.signBuyerBatches();
 		}
 		if(input.contains("all") || input.contains("5"))
 		{
-			LinkedList<Tuple<BigInteger, Long>> blindedMultiset = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-			LinkedList<Tuple<BigInteger, Long>> multisetSignatures = SellerBlindSignatures.signBuyerStatements(blindedMultiset);
-			server.sendObject(multisetSignatures);
+			SellerBlindSignatures.signBuyerBatches();
 		}
 		if(input.contains("all") || input.contains("6"))
 		{
-			LinkedList<Tuple<BigInteger, Long>> blindedMultiset = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-			LinkedList<Tuple<BigInteger, Long>> multisetSignatures = SellerBlindSignatures.signBuyerStatements(blindedMultiset);
-			server.sendObject(multisetSignatures);
+			SellerBlindSignatures.signBuyerBatches();
 		}
 		if(input.contains("all") || input.contains("7"))
 		{
-			LinkedList<Tuple<BigInteger, Long>> blindedMultiset = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-			LinkedList<Tuple<BigInteger, Long>> multisetSignatures = SellerBlindSignatures.signBuyerStatements(blindedMultiset);
-			server.sendObject(multisetSignatures);
+			SellerBlindSignatures.signBuyerBatches();
 		}
 		if(input.contains("all") || input.contains("8"))
 		{
-			LinkedList<Tuple<BigInteger, Long>> blindedMultiset = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-			LinkedList<Tuple<BigInteger, Long>> multisetSignatures = SellerBlindSignatures.signBuyerStatements(blindedMultiset);
-			server.sendObject(multisetSignatures);
+			SellerBlindSignatures.signBuyerBatches();
 		}
 		if(input.contains("all") || input.contains("9"))
 		{
-			LinkedList<Tuple<BigInteger, Long>> blindedMultiset = server.<LinkedList<Tuple<BigInteger, Long>>>readObject();
-			LinkedList<Tuple<BigInteger, Long>> multisetSignatures = SellerBlindSignatures.signBuyerStatements(blindedMultiset);
-			server.sendObject(multisetSignatures);
+			SellerBlindSignatures.signBuyerBatches();
 		}
 		
 		return input;
@@ -228,61 +240,28 @@ public class Seller
 	/**
 	 * Handles the seller side of the entropy computations
 	 * @param model of the seller
+	 * @param graph model loaded into an encoded graph, if not null the multisets are computed on it
 	 */
-	private static void entropySeller(Model model, LinkedList<String> input)
+	private static void entropySeller(Model model, EncodedGraph graph, LinkedList<String> input)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start computing entropies.");
 		
-		HashMap<Tuple<Resource, RDFNode>,Integer> descMultisetSeller = null;
-		HashMap<Tuple<Resource, RDFNode>,Integer> classifMultisetSeller = null;
-		HashMap<Tuple<Resource,RDFNode>,Integer> descmMultisetSeller = null;
-		HashMap<Resource,Integer> descmpMultisetSeller = null;
-		HashMap<Resource,Integer> econnMultisetSeller = null;
-		HashMap<Resource,Integer> resourceMultisetSeller = null;
-		HashMap<Resource,Integer> subjectMultisetSeller = null;
-		HashMap<Resource,Integer> predicateMultisetSeller = null;
-		HashMap<RDFNode,Integer> literalMultisetSeller = null;
-		
 		// ------------- Compute Multisets ------------------------
 		logger.info("Start computing multisets.");
 		
-		if(input.contains("all") || input.contains("1"))
-		{
-			descMultisetSeller = Multisets.descMultiset(model);
-		}
-		if(input.contains("all") || input.contains("2"))
-		{
-			classifMultisetSeller = Multisets.classifMultiset(model);
-		}
-		if(input.contains("all") || input.contains("3"))
-		{
-			descmMultisetSeller = Multisets.descmMultiset(model);
-		}
-		if(input.contains("all") || input.contains("4"))
-		{
-			descmpMultisetSeller = Multisets.descmpMultiset(model);
-		}
-		if(input.contains("all") || input.contains("5"))
-		{
-			econnMultisetSeller = Multisets.econnMultiset(model);
-		}
-		if(input.contains("all") || input.contains("6"))
-		{
-			resourceMultisetSeller = Multisets.resourceMultiset(model);
-		}
-		if(input.contains("all") || input.contains("7"))
-		{
-			subjectMultisetSeller = Multisets.subjectMultiset(model);
-		}
-		if(input.contains("all") || input.contains("8"))
-		{
-			predicateMultisetSeller = Multisets.predicateMultiset(model);
-		}
-		if(input.contains("all") || input.contains("9"))
-		{
-			literalMultisetSeller = Multisets.literalMultiset(model);
-		}
+		EnumSet<EntropiesEnum> entropies = EntropiesEnum.fromUserInput(input);
+		MultisetResults multisets = graph == null ? Multisets.computeMultisets(model, entropies) : Multisets.computeMultisets(graph, entropies);
+		
+		HashMap<Tuple<Resource, RDFNode>,Integer> descMultisetSeller = multisets.getDesc();
+		HashMap<Tuple<Resource, RDFNode>,Integer> classifMultisetSeller = multisets.getClassif();
+		HashMap<Tuple<Resource,RDFNode>,Integer> descmMultisetSeller = multisets.getDescm();
+		HashMap<Resource,Integer> descmpMultisetSeller = multisets.getDescmp();
+		HashMap<Resource,Integer> econnMultisetSeller = multisets.getEconn();
+		HashMap<Resource,Integer> resourceMultisetSeller = multisets.getResource();
+		HashMap<Resource,Integer> subjectMultisetSeller = multisets.getSubject();
+		HashMap<Resource,Integer> predicateMultisetSeller = multisets.getPredicate();
+		HashMap<RDFNode,Integer> literalMultisetSeller = multisets.getLiteral();
 		
 		logger.info("Done calculating Seller multisets.");
 		// ----------- Compute signatures and send CBF -----------
@@ -334,7 +313,7 @@ public class Seller
 	{
 		Server server = Server.getServer();
 		
-		HashMap<String, Integer> signedSellerMultiset = CBFSeller.multisetToCBF(multiset);
+		HashMap<SignatureDigest, Integer> signedSellerMultiset = CBFSeller.multisetToCBF(multiset);
 		server.sendObject(signedSellerMultiset);
 	}
 	
@@ -343,30 +322,41 @@ public class Seller
 	 * First partitions the model.
 	 * Then runs OT to share parts with the buyer.
 	 * @param model
+	 * @param graph model loaded into an encoded graph, may be null
 	 * @param keypair
 	 * @return
 	 */
-	private static LinkedList<BigInteger> dataQualityStep(Model model, KeyPair keypair)
+	private static LinkedList<BigInteger> dataQualityStep(Model model, EncodedGraph graph, KeyPair keypair)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Staring oblivious transfer step.");
 		
-		LinkedList<Model> partitioning = Partitioning.partitionModel(model);
+		LinkedList<PartitionView> partitioning = Partitioning.partitionModel(model, graph);
 		EncryptionStorage encryptionStorage = SellerPrepareKG.prepareKG(partitioning);
 		LinkedList<BigInteger> keys = encryptionStorage.getKeys();
 		
-		LinkedList<BigInteger> randomMessages = SellerOT.sellerOT(keys, keypair);
-		
 		Server server = Server.getServer();
-		server.sendObject(randomMessages);
-		
-		LinkedList<BigInteger> vValues = server.<LinkedList<BigInteger>>readObject();
-		int numberOfSecrets = GetUserInput.askObliviousTransferK();
-		LinkedList<LinkedList<BigInteger>> kmprime = SellerOT.sellerOTPart2(keys, numberOfSecrets, vValues, randomMessages);
-		
-		server.sendObject(kmprime);
-		
-		server.sendObject(encryptionStorage.getByteIV());
+		if(GetUserInput.askObliviousTransferMode() == OTModes.EXTENSION)
+		{
+			server.sendObject(keys.size());
+			int choices = server.<Integer>readObject();
+			BigInteger senderMessage = server.<BigInteger>readObject();
+			server.sendObject(SellerOTExtension.sellerBaseOT(senderMessage));
+			
+			byte[][] u = server.<byte[][]>readObject();
+			int numberOfSecrets = GetUserInput.askObliviousTransferK();
+			// The messages masked for a choice are sent as soon as they are computed
+			SellerOTExtension.sellerOTExtension(keys, numberOfSecrets, choices, u, (maskedMessages) -> server.sendObject(maskedMessages));
+		} else
+		{
+			LinkedList<BigInteger> randomMessages = SellerOT.sellerOT(keys, keypair);
+			server.sendObject(randomMessages);
+			
+			LinkedList<BigInteger> vValues = server.<LinkedList<BigInteger>>readObject();
+			int numberOfSecrets = GetUserInput.askObliviousTransferK();
+			// Every row is sent as soon as it is computed
+			SellerOT.sellerOTPart2(keys, numberOfSecrets, vValues, randomMessages, (messagesprime) -> server.sendObject(messagesprime));
+		}
 		
 		server.sendObject(encryptionStorage.getEncryptedParts());
 		
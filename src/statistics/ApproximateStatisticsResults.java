@@ -0,0 +1,85 @@
+package statistics;
+
+/**
+ * Class to store results calculated by Statistics.approximateStatistics
+ * Numbers of different elements are HyperLogLog estimates, quantiles, minima and maxima are taken from a sample of the subjects and object resources.
+ * Size and totals are exact.
+ * @author ---
+ *
+ */
+public class ApproximateStatisticsResults extends StatisticsResults
+{
+	private static final long serialVersionUID = 1;
+
+	private double distinctCountError;		// maximal relative error of the numbers of different elements, also bounds the averages
+	private double subjectQuantileError;	// maximal error of the rank of the quantiles per subject, as a fraction of all subjects
+	private double objectQuantileError;		// maximal error of the rank of the quantiles per object resource, as a fraction of all object resources
+	private double confidence;				// probability that the quantiles are within their error
+	private long sampledSubjects;			// number of subjects the quantiles per subject are taken from
+	private long sampledObjects;			// number of object resources the quantiles per object resource are taken from
+
+	public ApproximateStatisticsResults()
+	{
+
+	}
+
+	public double getDistinctCountError()
+	{
+		return distinctCountError;
+	}
+
+	public void setDistinctCountError(double distinctCountError)
+	{
+		this.distinctCountError = distinctCountError;
+	}
+
+	public double getSubjectQuantileError()
+	{
+		return subjectQuantileError;
+	}
+
+	public void setSubjectQuantileError(double subjectQuantileError)
+	{
+		this.subjectQuantileError = subjectQuantileError;
+	}
+
+	public double getObjectQuantileError()
+	{
+		return objectQuantileError;
+	}
+
+	public void setObjectQuantileError(double objectQuantileError)
+	{
+		this.objectQuantileError = objectQuantileError;
+	}
+
+	public double getConfidence()
+	{
+		return confidence;
+	}
+
+	public void setConfidence(double confidence)
+	{
+		this.confidence = confidence;
+	}
+
+	public long getSampledSubjects()
+	{
+		return sampledSubjects;
+	}
+
+	public void setSampledSubjects(long sampledSubjects)
+	{
+		this.sampledSubjects = sampledSubjects;
+	}
+
+	public long getSampledObjects()
+	{
+		return sampledObjects;
+	}
+
+	public void setSampledObjects(long sampledObjects)
+	{
+		this.sampledObjects = sampledObjects;
+	}
+}
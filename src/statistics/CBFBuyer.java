@@ -6,6 +6,7 @@ import java.util.Map.Entry;
 import java.util.logging.Logger;
 
 import privatesetintersection.BuyerBlindSignatures;
+import privatesetintersection.SignatureDigest;
 import protocol.Log;
 import protocol.Tuple;
 
@@ -16,7 +17,7 @@ public class CBFBuyer {
 	 * @param multiset HashMap to be signed
 	 * @return HashMap containing signatures as keys and singed keys as values
 	 */
-	public static <K> LinkedList<Tuple<String, K>> getBuyerElementsSignatures(HashMap<K, Integer> multiset)
+	public static <K> LinkedList<Tuple<SignatureDigest, K>> getBuyerElementsSignatures(HashMap<K, Integer> multiset)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start getting signatures for Buyer multiset.");
@@ -25,8 +26,8 @@ public class CBFBuyer {
 		// Get identifier for each key
 		HashMap<Long, K> multisetIndex = CBFSeller.numberElements(multiset);
 		// Get blind signatures for keys
-		LinkedList<Tuple<String, Long>> blindSignatures = BuyerBlindSignatures.bobBlindSignature(multisetIndex);
-		LinkedList<Tuple<String, K>> signaturesWithElements = matchSignaturesWithElements(blindSignatures, multisetIndex);
+		LinkedList<Tuple<SignatureDigest, Long>> blindSignatures = BuyerBlindSignatures.bobBlindSignature(multisetIndex);
+		LinkedList<Tuple<SignatureDigest, K>> signaturesWithElements = matchSignaturesWithElements(blindSignatures, multisetIndex);
 		
 		return signaturesWithElements;
 	}
@@ -39,7 +40,7 @@ public class CBFBuyer {
 	 * @param signaturesWithElements signature element HashMap of the buyer
 	 * @return LinkedList of combined counts (without elements)
 	 */
-	public static <K> LinkedList<Integer> multisetIntersection(HashMap<K, Integer> multiset, HashMap<K, Integer> multisetIntersection, HashMap<String, Integer> signedSellerMultiset, LinkedList<Tuple<String, K>> signaturesWithElements)
+	public static <K> LinkedList<Integer> multisetIntersection(HashMap<K, Integer> multiset, HashMap<K, Integer> multisetIntersection, HashMap<SignatureDigest, Integer> signedSellerMultiset, LinkedList<Tuple<SignatureDigest, K>> signaturesWithElements)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start determining combined counts for both models.");
@@ -52,7 +53,7 @@ public class CBFBuyer {
 		// Elements resulting from the intersection of the two KG are counted twice, undo this
 		multiset = removeDuplicates(multiset, multisetIntersection);
 		// Get the counts from the Buyer multiset and append the remaining Seller counts to the list
-		HashMap<String, K> signaturesHashMap = signaturesToHashMap(signaturesWithElements);
+		HashMap<SignatureDigest, K> signaturesHashMap = signaturesToHashMap(signaturesWithElements);
 		LinkedList<Integer> counts = joinedCountList(signedSellerMultiset, multiset, signaturesHashMap);
 		
 		logger.info("Done determining combined counts for both models.");
@@ -66,13 +67,13 @@ public class CBFBuyer {
 	 * @param multisetIndex multiset keys and their identifiers
 	 * @return LinkedList of Tuples containing signature and element the signature belongs to
 	 */
-	private static <K> LinkedList<Tuple<String, K>> matchSignaturesWithElements(LinkedList<Tuple<String, Long>> blindSignatures, HashMap<Long, K> multisetIndex)
+	private static <K> LinkedList<Tuple<SignatureDigest, K>> matchSignaturesWithElements(LinkedList<Tuple<SignatureDigest, Long>> blindSignatures, HashMap<Long, K> multisetIndex)
 	{
-		LinkedList<Tuple<String, K>> signaturesWithElements = new LinkedList<Tuple<String, K>>();
-		for(Tuple<String, Long> signature : blindSignatures)
+		LinkedList<Tuple<SignatureDigest, K>> signaturesWithElements = new LinkedList<Tuple<SignatureDigest, K>>();
+		for(Tuple<SignatureDigest, Long> signature : blindSignatures)
 		{
 			K element = multisetIndex.get(signature.y);
-			signaturesWithElements.add(new Tuple<String, K>(signature.x, element));
+			signaturesWithElements.add(new Tuple<SignatureDigest, K>(signature.x, element));
 		}
 		
 		return signaturesWithElements;
@@ -85,11 +86,11 @@ public class CBFBuyer {
 	 * @param signaturesWithElements of the buyers multiset
 	 * @return LinkedList of Tuples with all element both the seller and buyers multisets contain and their value in the sellers multiset
 	 */
-	private static <K> LinkedList<Tuple<K, Integer>> intersectionWithCount(HashMap<String, Integer> signedSellerMultiset, LinkedList<Tuple<String, K>> signaturesWithElements)
+	private static <K> LinkedList<Tuple<K, Integer>> intersectionWithCount(HashMap<SignatureDigest, Integer> signedSellerMultiset, LinkedList<Tuple<SignatureDigest, K>> signaturesWithElements)
 	{
 		LinkedList<Tuple<K, Integer>> intersection = new LinkedList<Tuple<K, Integer>>();
 		
-		for(Tuple<String, K> signature : signaturesWithElements)
+		for(Tuple<SignatureDigest, K> signature : signaturesWithElements)
 		{
 			// Check if the signature matches a signature of the Seller
 			if(signedSellerMultiset.containsKey(signature.x))
@@ -152,10 +153,10 @@ public class CBFBuyer {
 	 * @param signaturesWithElements
 	 * @return HashMap containing Tuples of LinkedList
 	 */
-	private static <K> HashMap<String, K> signaturesToHashMap(LinkedList<Tuple<String, K>> signaturesWithElements)
+	private static <K> HashMap<SignatureDigest, K> signaturesToHashMap(LinkedList<Tuple<SignatureDigest, K>> signaturesWithElements)
 	{
-		HashMap<String, K> signaturesHashMap = new HashMap<String, K>();
-		for(Tuple<String, K> signature : signaturesWithElements)
+		HashMap<SignatureDigest, K> signaturesHashMap = new HashMap<SignatureDigest, K>();
+		for(Tuple<SignatureDigest, K> signature : signaturesWithElements)
 		{
 			signaturesHashMap.put(signature.x, signature.y);
 		}
@@ -172,11 +173,11 @@ public class CBFBuyer {
 	 * @param signaturesHashMap signatures of the buyers elements
 	 * @return LinkedList of counts
 	 */
-	private static <K> LinkedList<Integer> joinedCountList(HashMap<String, Integer> sellerMultiset, HashMap<K, Integer> multisetWithCommon, HashMap<String, K> signaturesHashMap)
+	private static <K> LinkedList<Integer> joinedCountList(HashMap<SignatureDigest, Integer> sellerMultiset, HashMap<K, Integer> multisetWithCommon, HashMap<SignatureDigest, K> signaturesHashMap)
 	{
 		LinkedList<Integer> counts = new LinkedList<Integer>();
 		
-		for(Entry<String, Integer> entry : sellerMultiset.entrySet())
+		for(Entry<SignatureDigest, Integer> entry : sellerMultiset.entrySet())
 		{
 			if(!signaturesHashMap.containsKey(entry.getKey()))
 			{
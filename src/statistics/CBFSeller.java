@@ -1,48 +1,29 @@
 package statistics;
 
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map.Entry;
 import java.util.logging.Logger;
 
-import privatesetintersection.BuyerBlindSignatures;
 import privatesetintersection.SellerBlindSignatures;
+import privatesetintersection.SignatureDigest;
 import protocol.Log;
-import protocol.Tuple;
 
 public class CBFSeller {
 	
 	
 	/**
-	 * Calculates blind signatures for keys of a multiset. 
+	 * Calculates signatures for keys of a multiset. 
 	 * Then stores signatures and values in a CBF (HashMap)
 	 * @param multiset
 	 * @return HashMap containing signatures as key and multiset value as  value
 	 */
-	public static <K> HashMap<String, Integer> multisetToCBF(HashMap<K, Integer> multiset)
+	public static <K> HashMap<SignatureDigest, Integer> multisetToCBF(HashMap<K, Integer> multiset)
 	{
 		Logger logger = Log.getLogger();
 		
-		HashMap<String, Integer> signedMultiset = new HashMap<String, Integer>(multiset.size());
-		logger.info("Counting Bloom Filter has been set up.");
-		
-		// --------------------- Sign Elements ------------------------
-		// Get a HashMap containing a mapping from identifier to plain text element
-		HashMap<Long, K> multisetIndex = numberElements(multiset);
-		// Turns identifier HashMap into a list with identifiers and elements
-		LinkedList<Tuple<K,Long>> multisetIndexList = BuyerBlindSignatures.hashmapToTupleList(multisetIndex);
-		// Sign elements
-		LinkedList<Tuple<Long,String>> blindSignatures = SellerBlindSignatures.signSellerMultiset(multisetIndexList);
-		
-		// --------------------- Create HashMap with signatures and counts --------------------
+		// --------------------- Sign Elements and store them with their counts ------------------------
 		logger.info("Start training Counting Bloom Filter.");
-		for(Tuple<Long,String> signature : blindSignatures)
-		{
-			// Use the HashMap containing the identifiers and plain text elements to find the element the signatures belongs to
-			// Use this to look up the count the signature belongs to
-			// Store both into the HashMap (signature as key, count as value)
-			signedMultiset.put(signature.y, multiset.get(multisetIndex.get(signature.x)));
-		}
+		HashMap<SignatureDigest, Integer> signedMultiset = SellerBlindSignatures.signSellerMultiset(multiset);
 		
 		logger.info("Done training Counting Bloom Filter. Elements in the Counting Bloom Filter: " + signedMultiset.size());
 		
@@ -0,0 +1,169 @@
+package statistics;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+/**
+ * Exact counts for a uniform sample of the different keys of a stream, used to estimate quantiles of per key counts
+ * like the number of outgoing links per subject.
+ * A key is in the sample if the lowest level bits of its hash are 0. Once the sample holds more than MAX_KEYS keys
+ * the level is raised, which drops about half of the keys. As membership only depends on the hash, every statement of a
+ * sampled key is counted no matter in which shard it is, so samples of shards can be merged by raising both to the higher level
+ * and adding the counts. If the level never had to be raised the sample holds every key and all quantiles are exact.
+ * Not thread safe.
+ * @author ---
+ *
+ */
+public class DegreeSample implements Serializable
+{
+	private static final long serialVersionUID = 1;
+
+	static final int MAX_KEYS = 1 << 16;
+
+	private final int columns;		// number of counts per key
+	private HashMap<Long, int[]> counts = new HashMap<Long, int[]>();
+	private int level = 0;
+
+	/**
+	 * Creates an empty sample
+	 * @param columns number of counts kept per key
+	 */
+	public DegreeSample(int columns)
+	{
+		this.columns = columns;
+	}
+
+	/**
+	 * Returns the counts of a key, so the caller can increment them
+	 * @param hash 64 bit hash of the key, needs to be well mixed
+	 * @return counts of the key, null if the key is not in the sample
+	 */
+	public int[] get(long hash)
+	{
+		if(!sampled(hash, level))
+		{
+			return null;
+		}
+		int[] keyCounts = counts.get(hash);
+		if(keyCounts == null)
+		{
+			while(counts.size() >= MAX_KEYS)
+			{
+				raiseLevel(level + 1);
+				if(!sampled(hash, level))
+				{
+					return null;
+				}
+			}
+			keyCounts = new int[columns];
+			counts.put(hash, keyCounts);
+		}
+		return keyCounts;
+	}
+
+	/**
+	 * Adds the counts of an other sample, both need the same number of columns
+	 * @param other
+	 */
+	public void merge(DegreeSample other)
+	{
+		raiseLevel(Math.max(level, other.level));
+		for(Entry<Long, int[]> entry : other.counts.entrySet())
+		{
+			if(!sampled(entry.getKey(), level))
+			{
+				continue;
+			}
+			int[] keyCounts = counts.get(entry.getKey());
+			if(keyCounts == null)
+			{
+				counts.put(entry.getKey(), entry.getValue().clone());
+			} else
+			{
+				for(int i = 0; i < columns; i++)
+				{
+					keyCounts[i] += entry.getValue()[i];
+				}
+			}
+		}
+		while(counts.size() > MAX_KEYS)
+		{
+			raiseLevel(level + 1);
+		}
+	}
+
+	/**
+	 *
+	 * @param column
+	 * @return counts of the column of all sampled keys in increasing order
+	 */
+	public int[] sorted(int column)
+	{
+		int[] values = new int[counts.size()];
+		int i = 0;
+		for(int[] keyCounts : counts.values())
+		{
+			values[i++] = keyCounts[column];
+		}
+		Arrays.sort(values);
+		return values;
+	}
+
+	/**
+	 *
+	 * @return number of sampled keys
+	 */
+	public int size()
+	{
+		return counts.size();
+	}
+
+	/**
+	 *
+	 * @return true if every key is in the sample
+	 */
+	public boolean isComplete()
+	{
+		return level == 0;
+	}
+
+	/**
+	 * Bound on how far the rank of a quantile picked from the sample can be off,
+	 * from the Dvoretzky-Kiefer-Wolfowitz inequality: P(sup |F_n - F| > e) <= 2 exp(-2 n e^2)
+	 * @param confidence probability that the rank is within the bound, e.g. 0.99
+	 * @return maximal difference of the true rank as a fraction of all keys, 0 if the sample is complete
+	 */
+	public double rankError(double confidence)
+	{
+		if(isComplete() || counts.isEmpty())
+		{
+			return 0;
+		}
+		return Math.sqrt(Math.log(2 / (1 - confidence)) / (2 * counts.size()));
+	}
+
+	private void raiseLevel(int newLevel)
+	{
+		if(newLevel <= level)
+		{
+			return;
+		}
+		level = newLevel;
+		Iterator<Long> keys = counts.keySet().iterator();
+		while(keys.hasNext())
+		{
+			if(!sampled(keys.next(), level))
+			{
+				keys.remove();
+			}
+		}
+	}
+
+	private static boolean sampled(long hash, int level)
+	{
+		return level == 0 || (hash & ((1L << level) - 1)) == 0;
+	}
+}
@@ -1,5 +1,8 @@
 package statistics;
 
+import java.util.EnumSet;
+import java.util.List;
+
 /**
  * Enum with names for entropies
  * @author ---
@@ -17,5 +20,27 @@ public enum EntropiesEnum
 	SUBJECT,
 	PREDICATE,
 	LITERAL;
-
+	
+	/**
+	 * Turns the answer of GetUserInput.entropiesToCompute into the selected entropies.
+	 * "all" selects every entropy, "1" to "9" select them in the order they are declared here.
+	 * @param input
+	 * @return selected entropies
+	 */
+	public static EnumSet<EntropiesEnum> fromUserInput(List<String> input)
+	{
+		if(input.contains("all"))
+		{
+			return EnumSet.allOf(EntropiesEnum.class);
+		}
+		EnumSet<EntropiesEnum> selected = EnumSet.noneOf(EntropiesEnum.class);
+		for(EntropiesEnum entropy : values())
+		{
+			if(input.contains(Integer.toString(entropy.ordinal() + 1)))
+			{
+				selected.add(entropy);
+			}
+		}
+		return selected;
+	}
 }
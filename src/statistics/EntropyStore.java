@@ -2,6 +2,8 @@ package statistics;
 
 import java.util.HashMap;
 
+import privatesetintersection.SignatureDigest;
+
 /**
  * Stores entropy values and multiset for an entropy
  * @author ---
@@ -13,7 +15,7 @@ public class EntropyStore {
 	private double entropyBuyer = Double.MIN_VALUE;				// entropy for buyer model
 	private double entropyGain = Double.MIN_VALUE;				// entropy difference between unified and buyer model
 	private double entropySeller = Double.MIN_VALUE;			// entropy for seller model
-	private HashMap<String, Integer> sellerMultiset = null;		// multiset of seller
+	private HashMap<SignatureDigest, Integer> sellerMultiset = null;		// multiset of seller
 	
 	public EntropyStore()
 	{
@@ -60,12 +62,12 @@ public class EntropyStore {
 		this.entropySeller = entropySeller;
 	}
 
-	public HashMap<String, Integer> getSellerMultiset() 
+	public HashMap<SignatureDigest, Integer> getSellerMultiset() 
 	{
 		return sellerMultiset;
 	}
 
-	public void setSellerMultiset(HashMap<String, Integer> sellerMultiset) 
+	public void setSellerMultiset(HashMap<SignatureDigest, Integer> sellerMultiset) 
 	{
 		this.sellerMultiset = sellerMultiset;
 	}
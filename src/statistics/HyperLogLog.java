@@ -0,0 +1,97 @@
+package statistics;
+
+import java.io.Serializable;
+
+/**
+ * HyperLogLog sketch estimating the number of different elements it has seen.
+ * The first PRECISION bits of an element's 64 bit hash choose a register, the register keeps the highest
+ * number of leading zeros (+1) seen in the remaining bits. Sketches with the same precision are merged by taking
+ * the maximum of every register, so sketches of shards or worker threads can be combined afterwards.
+ * Not thread safe.
+ * @author ---
+ *
+ */
+public class HyperLogLog implements Serializable
+{
+	private static final long serialVersionUID = 1;
+
+	static final int PRECISION = 14;
+	private static final int REGISTERS = 1 << PRECISION;
+	// Bias correction for the harmonic mean, for 2^7 or more registers
+	private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+	private final byte[] registers = new byte[REGISTERS];
+
+	/**
+	 * Creates an empty sketch
+	 */
+	public HyperLogLog()
+	{
+
+	}
+
+	/**
+	 * Adds an element
+	 * @param hash 64 bit hash of the element, needs to be well mixed
+	 */
+	public void add(long hash)
+	{
+		int register = (int) (hash >>> (64 - PRECISION));
+		// Bit PRECISION-1 is set so the rank is at most 64 - PRECISION + 1
+		byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+		if(rank > registers[register])
+		{
+			registers[register] = rank;
+		}
+	}
+
+	/**
+	 * Adds all elements seen by an other sketch
+	 * @param other
+	 */
+	public void merge(HyperLogLog other)
+	{
+		for(int i = 0; i < REGISTERS; i++)
+		{
+			if(other.registers[i] > registers[i])
+			{
+				registers[i] = other.registers[i];
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return estimated number of different elements
+	 */
+	public long estimate()
+	{
+		double sum = 0;
+		int zeros = 0;
+		for(byte register : registers)
+		{
+			sum += 1.0 / (1L << register);
+			if(register == 0)
+			{
+				zeros++;
+			}
+		}
+		double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+
+		// Small cardinalities, linear counting over the empty registers is more precise
+		if(estimate <= 2.5 * REGISTERS && zeros > 0)
+		{
+			estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 *
+	 * @return relative standard error of estimate()
+	 */
+	public static double standardError()
+	{
+		return 1.04 / Math.sqrt(REGISTERS);
+	}
+}
@@ -0,0 +1,80 @@
+package statistics;
+
+import java.util.HashMap;
+
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+
+import protocol.Tuple;
+
+/**
+ * Stores the multisets computed by Multisets.computeMultisets
+ * Multisets that have not been requested are null
+ * @author ---
+ *
+ */
+public class MultisetResults 
+{
+	HashMap<Tuple<Resource,RDFNode>,Integer> desc = null;
+	HashMap<Tuple<Resource,RDFNode>,Integer> classif = null;
+	HashMap<Tuple<Resource,RDFNode>,Integer> descm = null;
+	HashMap<Resource,Integer> descmp = null;
+	HashMap<Resource,Integer> econn = null;
+	HashMap<Resource,Integer> resource = null;
+	HashMap<Resource,Integer> subject = null;
+	HashMap<Resource,Integer> predicate = null;
+	HashMap<RDFNode,Integer> literal = null;
+	
+	/**
+	 * creates MultisetResults
+	 */
+	MultisetResults()
+	{
+		
+	}
+
+	public HashMap<Tuple<Resource,RDFNode>,Integer> getDesc() 
+	{
+		return desc;
+	}
+
+	public HashMap<Tuple<Resource,RDFNode>,Integer> getClassif() 
+	{
+		return classif;
+	}
+
+	public HashMap<Tuple<Resource,RDFNode>,Integer> getDescm() 
+	{
+		return descm;
+	}
+
+	public HashMap<Resource,Integer> getDescmp() 
+	{
+		return descmp;
+	}
+
+	public HashMap<Resource,Integer> getEconn() 
+	{
+		return econn;
+	}
+
+	public HashMap<Resource,Integer> getResource() 
+	{
+		return resource;
+	}
+
+	public HashMap<Resource,Integer> getSubject() 
+	{
+		return subject;
+	}
+
+	public HashMap<Resource,Integer> getPredicate() 
+	{
+		return predicate;
+	}
+
+	public HashMap<RDFNode,Integer> getLiteral() 
+	{
+		return literal;
+	}
+}
@@ -1,94 +1,385 @@
 package statistics;
 
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.vocabulary.RDF;
 
+import privatesetintersection.ExecutorHandling;
 import protocol.Log;
 import protocol.Tuple;
+import triplestore.EncodedGraph;
+import triplestore.TermDictionary;
 
 /**
  * This class is used to compute multisets (represented as HashMaps) for various entropies on a model
+ * All requested multisets are computed together in one pass over the statements, see computeMultisets.
+ * Every multiset can also be computed on an EncodedGraph, where elements are counted by their IDs 
+ * and only turned back into Jena objects for the result. Both give the same multisets.
  * @author ---
  *
  */
 public class Multisets {
 	
+	// Parallel counting is only worth it from this many statements on
+	private static final int PARALLEL_THRESHOLD = 100000;
+	// Every worker splits its counts into this many shards by hash, the shards are merged in parallel. Power of two
+	private static final int SHARDS = 64;
+	private static boolean parallelCounting = true;
+	
 	/**
-	 * Computes the multiset for Desc entropy
-	 * HashMap contains element as key and how often it appears in the model as value
-	 * Desc multiset contains all predicate object combinations in the model
+	 * Turns parallel counting of computeMultisets on or off. Both give the same multisets.
+	 * @param parallel
+	 */
+	public static void setParallelCounting(boolean parallel)
+	{
+		parallelCounting = parallel;
+	}
+	
+	/**
+	 * Computes the multisets for the given entropies in a single pass over the statements of the model.
+	 * HashMaps contain the element as key and how often it appears in the model as value
+	 * 
+	 * For big models the statements are counted in parallel. Every worker counts into its own counters,
+	 * so frequent elements like rdf:type are never contended. The counters are split into shards by hash,
+	 * shard i of all workers is merged by one task.
 	 * @param model
-	 * @return multiset as HashMap<Tuple<Resource,RDFNode>,Integer>
+	 * @param entropies multisets to compute
+	 * @return MultisetResults, multisets of entropies that were not requested are null
 	 */
-	public static HashMap<Tuple<Resource,RDFNode>,Integer> descMultiset(Model model)
+	public static MultisetResults computeMultisets(Model model, EnumSet<EntropiesEnum> entropies)
 	{
 		Logger logger = Log.getLogger();
-		logger.info("Start computing Desc multiset.");
+		logger.info("Start computing multisets " + entropies + ".");
 		
-		HashMap<Tuple<Resource,RDFNode>,Integer> descMultiset = new HashMap<Tuple<Resource,RDFNode>,Integer>((int) model.size());
-		
-		List<Statement> statements = model.listStatements().toList();
+		MultisetResults results = new MultisetResults();
+		if(parallelCounting && model.size() >= PARALLEL_THRESHOLD)
+		{
+			countParallel(model, entropies, results);
+		} else
+		{
+			countSerial(model, entropies, results);
+		}
 		
-		for(Statement statement : statements)
+		logMultisetSizes(results);
+		logger.info("Done computing multisets.");
+		return results;
+	}
+	
+	private static void countSerial(Model model, EnumSet<EntropiesEnum> entropies, MultisetResults results)
+	{
+		Counters counters = new Counters(entropies, 1);
+		StmtIterator statements = model.listStatements();
+		try
 		{
-			Tuple<Resource, RDFNode> key = new Tuple<Resource, RDFNode>(statement.getPredicate(),statement.getObject());
-			if(descMultiset.containsKey(key))
-			{
-				int count = descMultiset.get(key) + 1;
-				descMultiset.put(key, count);
-			} else
+			while(statements.hasNext())
 			{
-				descMultiset.put(key, 1);
+				counters.count(statements.nextStatement());
 			}
+		} finally
+		{
+			statements.close();
 		}
 		
-		logger.info("Size of desc: " + descMultiset.size());
-		logger.info("Done computing Desc multiset.");
-		return descMultiset;
+		results.desc = toHashMap(counters.desc);
+		results.classif = toHashMap(counters.classif);
+		results.descm = toHashMap(counters.descm);
+		results.descmp = toHashMap(counters.descmp);
+		results.econn = toHashMap(counters.econn);
+		results.resource = toHashMap(counters.resource);
+		results.subject = toHashMap(counters.subject);
+		results.predicate = toHashMap(counters.predicate);
+		results.literal = toHashMap(counters.literal);
+	}
+	
+	private static void countParallel(Model model, EnumSet<EntropiesEnum> entropies, MultisetResults results)
+	{
+		Logger logger = Log.getLogger();
+		
+		StmtIterator statements = model.listStatements();
+		try
+		{
+			List<Counters> workers = ExecutorHandling.forEachWithState(statements, () -> new Counters(entropies, SHARDS), (statement, counters) -> counters.count(statement));
+			if(workers.isEmpty())
+			{
+				// No statements
+				countSerial(model, entropies, results);
+				return;
+			}
+			
+			results.desc = reduce(workers, (counters) -> counters.desc);
+			results.classif = reduce(workers, (counters) -> counters.classif);
+			results.descm = reduce(workers, (counters) -> counters.descm);
+			results.descmp = reduce(workers, (counters) -> counters.descmp);
+			results.econn = reduce(workers, (counters) -> counters.econn);
+			results.resource = reduce(workers, (counters) -> counters.resource);
+			results.subject = reduce(workers, (counters) -> counters.subject);
+			results.predicate = reduce(workers, (counters) -> counters.predicate);
+			results.literal = reduce(workers, (counters) -> counters.literal);
+		} catch (ExecutionException e) 
+		{
+			logger.info("Exception when trying to compute multisets. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		} finally
+		{
+			statements.close();
+		}
 	}
 	
 	/**
-	 * Computes the multiset for Classif entropy
-	 * HashMap contains element as key and how often it appears in the model as value
-	 * Classif multiset contains all predicate object combinations where the predicate is RDF.type
-	 * @param model
-	 * @return multiset as HashMap<Tuple<Resource,RDFNode>,Integer>
+	 * Merges the shards of all workers for one multiset
+	 * @param workers counters of all workers, not empty
+	 * @param multiset selects the shards of one multiset from the counters
+	 * @return multiset as HashMap, null if the multiset was not requested
+	 * @throws ExecutionException
 	 */
-	public static HashMap<Tuple<Resource,RDFNode>,Integer> classifMultiset(Model model)
+	private static <K> HashMap<K, Integer> reduce(List<Counters> workers, Function<Counters, ObjectIntCounter<K>[]> multiset) throws ExecutionException
 	{
-		Logger logger = Log.getLogger();
-		logger.info("Start computing Classif multiset.");
+		if(multiset.apply(workers.get(0)) == null)
+		{
+			return null;
+		}
 		
-		HashMap<Tuple<Resource,RDFNode>,Integer> classifMultiset = new HashMap<Tuple<Resource,RDFNode>,Integer>((int) model.size());
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		ObjectIntCounter<K>[] merged = new ObjectIntCounter[SHARDS];
+		ExecutorHandling.forEachIndex(SHARDS, (shard) ->
+		{
+			ObjectIntCounter<K> counter = multiset.apply(workers.get(0))[shard];
+			for(int w = 1; w < workers.size(); w++)
+			{
+				counter.addAll(multiset.apply(workers.get(w))[shard]);
+			}
+			merged[shard] = counter;
+		});
+		return toHashMap(merged);
+	}
+	
+	/**
+	 * Puts the counts of all shards into one HashMap. Shards never share a key.
+	 * @param shards
+	 * @return multiset as HashMap, null if shards is null
+	 */
+	private static <K> HashMap<K, Integer> toHashMap(ObjectIntCounter<K>[] shards)
+	{
+		if(shards == null)
+		{
+			return null;
+		}
+		if(shards.length == 1)
+		{
+			return shards[0].toHashMap();
+		}
+		int size = 0;
+		for(ObjectIntCounter<K> shard : shards)
+		{
+			size += shard.size();
+		}
+		HashMap<K, Integer> map = new HashMap<K, Integer>(size * 4 / 3 + 1);
+		for(ObjectIntCounter<K> shard : shards)
+		{
+			shard.forEach((key, count) -> map.put(key, count));
+		}
+		return map;
+	}
+	
+	/**
+	 * Counters for all requested multisets of one worker, each split into shards by hash.
+	 * Counters of multisets that have not been requested are null.
+	 */
+	private static class Counters
+	{
+		final ObjectIntCounter<Tuple<Resource,RDFNode>>[] desc;
+		final ObjectIntCounter<Tuple<Resource,RDFNode>>[] classif;
+		final ObjectIntCounter<Tuple<Resource,RDFNode>>[] descm;
+		final ObjectIntCounter<Resource>[] descmp;
+		final ObjectIntCounter<Resource>[] econn;
+		final ObjectIntCounter<Resource>[] resource;
+		final ObjectIntCounter<Resource>[] subject;
+		final ObjectIntCounter<Resource>[] predicate;
+		final ObjectIntCounter<RDFNode>[] literal;
+		
+		Counters(EnumSet<EntropiesEnum> entropies, int shards)
+		{
+			desc = create(entropies.contains(EntropiesEnum.DESC), shards);
+			classif = create(entropies.contains(EntropiesEnum.CLASSIF), shards);
+			descm = create(entropies.contains(EntropiesEnum.DESCM), shards);
+			descmp = create(entropies.contains(EntropiesEnum.DESCMP), shards);
+			econn = create(entropies.contains(EntropiesEnum.ECONN), shards);
+			resource = create(entropies.contains(EntropiesEnum.RESOURCE), shards);
+			subject = create(entropies.contains(EntropiesEnum.SUBJECT), shards);
+			predicate = create(entropies.contains(EntropiesEnum.PREDICATE), shards);
+			literal = create(entropies.contains(EntropiesEnum.LITERAL), shards);
+		}
 		
-		List<Statement> statements = model.listStatements(null, RDF.type, (RDFNode) null).toList();
-//		Property rdfType = ResourceFactory.createProperty("http://www.w3.org/1999/02/22-rdf-syntax-ns#type");
-//		List<Statement> statements = model.listStatements(null, rdfType, (RDFNode) null).toList();
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static <K> ObjectIntCounter<K>[] create(boolean requested, int shards)
+		{
+			if(!requested)
+			{
+				return null;
+			}
+			ObjectIntCounter<K>[] counters = new ObjectIntCounter[shards];
+			for(int i = 0; i < shards; i++)
+			{
+				counters[i] = new ObjectIntCounter<K>();
+			}
+			return counters;
+		}
 		
-		for(Statement statement : statements)
+		/**
+		 * Adds one statement to every requested multiset
+		 * @param statement
+		 */
+		void count(Statement statement)
 		{
-			Tuple<Resource, RDFNode> key = new Tuple<Resource, RDFNode>(statement.getPredicate(),statement.getObject());
-			if(classifMultiset.containsKey(key))
+			Resource subjectNode = statement.getSubject();
+			Property predicateNode = statement.getPredicate();
+			RDFNode object = statement.getObject();
+			boolean isType = predicateNode.equals(RDF.type);
+			
+			// The predicate object combination is shared by all multisets that need it
+			Tuple<Resource, RDFNode> predicateObject = null;
+			if(desc != null || (isType && classif != null) || (!isType && descm != null))
+			{
+				predicateObject = new Tuple<Resource, RDFNode>(predicateNode, object);
+			}
+			
+			if(desc != null)
+			{
+				increment(desc, predicateObject);
+			}
+			if(classif != null && isType)
+			{
+				increment(classif, predicateObject);
+			}
+			if(descm != null && !isType)
+			{
+				increment(descm, predicateObject);
+			}
+			if(descmp != null && !isType)
+			{
+				increment(descmp, predicateNode);
+			}
+			if(econn != null && object.isResource())
+			{
+				increment(econn, (Resource) object);
+			}
+			if(resource != null)
+			{
+				increment(resource, subjectNode);
+				increment(resource, predicateNode);
+				if(object.isResource())
+				{
+					increment(resource, (Resource) object);
+				}
+			}
+			if(subject != null)
+			{
+				increment(subject, subjectNode);
+			}
+			if(predicate != null)
 			{
-				int count = classifMultiset.get(key) + 1;
-				classifMultiset.put(key, count);
-			} else
+				increment(predicate, predicateNode);
+			}
+			if(literal != null && object.isLiteral())
 			{
-				classifMultiset.put(key, 1);
+				increment(literal, object);
 			}
 		}
 		
-		logger.info("Size of classif: " + classifMultiset.size());
-		logger.info("Done computing Classif multiset.");
-		return classifMultiset;
+		/**
+		 * The top bits of the hash pick the shard, the low bits the slot inside the shard
+		 */
+		private static <K> void increment(ObjectIntCounter<K>[] shards, K key)
+		{
+			int hash = ObjectIntCounter.spread(key.hashCode());
+			int shard = shards.length == 1 ? 0 : hash >>> (32 - Integer.numberOfTrailingZeros(shards.length));
+			shards[shard].add(key, hash, 1);
+		}
+	}
+	
+	/**
+	 * Logs the size of every computed multiset
+	 * @param results
+	 */
+	private static void logMultisetSizes(MultisetResults results)
+	{
+		Logger logger = Log.getLogger();
+		
+		if(results.desc != null)
+		{
+			logger.info("Size of desc: " + results.desc.size());
+		}
+		if(results.classif != null)
+		{
+			logger.info("Size of classif: " + results.classif.size());
+		}
+		if(results.descm != null)
+		{
+			logger.info("Size of descm: " + results.descm.size());
+		}
+		if(results.descmp != null)
+		{
+			logger.info("Size of descmp: " + results.descmp.size());
+		}
+		if(results.econn != null)
+		{
+			logger.info("Size of econn: " + results.econn.size());
+		}
+		if(results.resource != null)
+		{
+			logger.info("Size of resource multiset: " + results.resource.size());
+		}
+		if(results.subject != null)
+		{
+			logger.info("Size of subject multiset: " + results.subject.size());
+		}
+		if(results.predicate != null)
+		{
+			logger.info("Size of predicate multiset: " + results.predicate.size());
+		}
+		if(results.literal != null)
+		{
+			logger.info("Size of literal multiset: " + results.literal.size());
+		}
+	}
+	
+	/**
+	 * Computes the multiset for Desc entropy
+	 * HashMap contains element as key and how often it appears in the model as value
+	 * Desc multiset contains all predicate object combinations in the model
+	 * @param model
+	 * @return multiset as HashMap<Tuple<Resource,RDFNode>,Integer>
+	 */
+	public static HashMap<Tuple<Resource,RDFNode>,Integer> descMultiset(Model model)
+	{
+		return computeMultisets(model, EnumSet.of(EntropiesEnum.DESC)).getDesc();
+	}
+	
+	/**
+	 * Computes the multiset for Classif entropy
+	 * HashMap contains element as key and how often it appears in the model as value
+	 * Classif multiset contains all predicate object combinations where the predicate is RDF.type
+	 * @param model
+	 * @return multiset as HashMap<Tuple<Resource,RDFNode>,Integer>
+	 */
+	public static HashMap<Tuple<Resource,RDFNode>,Integer> classifMultiset(Model model)
+	{
+		return computeMultisets(model, EnumSet.of(EntropiesEnum.CLASSIF)).getClassif();
 	}
 	
 	/**
@@ -99,30 +390,184 @@ public class Multisets {
 	 * @return multiset as HashMap<Tuple<Resource,RDFNode>,Integer>
 	 */
 	public static HashMap<Tuple<Resource,RDFNode>,Integer> descmMultiset(Model model)
+	{
+		return computeMultisets(model, EnumSet.of(EntropiesEnum.DESCM)).getDescm();
+	}
+	
+	/**
+	 * Computes the multiset for Descmp entropy
+	 * HashMap contains element as key and how often it appears in the model as value
+	 * Descmp multiset contains all predicate that are not RDF.type
+	 * @param model
+	 * @return multiset as HashMap<RDFNode, Integer>
+	 */
+	public static HashMap<Resource,Integer> descmpMultiset(Model model)
+	{
+		return computeMultisets(model, EnumSet.of(EntropiesEnum.DESCMP)).getDescmp();
+	}
+	
+	/**
+	 * Computes the multiset for Econn entropy
+	 * HashMap contains element as key and how often it appears in the model as value
+	 * Econn multiset contains all objects that are not literals (that are resources)
+	 * @param model
+	 * @return multiset as HashMap<Resource, Integer>
+	 */
+	public static HashMap<Resource, Integer> econnMultiset(Model model)
+	{
+		return computeMultisets(model, EnumSet.of(EntropiesEnum.ECONN)).getEconn();
+	}
+	
+	/**
+	 * Computes the multiset for Resource entropy
+	 * HashMap contains element as key and how often it appears in the model as value
+	 * Resource multiset contains all resources
+	 * @param model
+	 * @return multiset as HashMap<Resource, Integer>
+	 */
+	public static HashMap<Resource, Integer> resourceMultiset(Model model)
+	{
+		return computeMultisets(model, EnumSet.of(EntropiesEnum.RESOURCE)).getResource();
+	}
+	
+	/**
+	 * Computes the multiset for Subject entropy
+	 * HashMap contains element as key and how often it appears in the model as value
+	 * Subject multiset contains all subjects
+	 * @param model
+	 * @return multiset as HashMap<Resource, Integer>
+	 */
+	public static HashMap<Resource, Integer> subjectMultiset(Model model)
+	{
+		return computeMultisets(model, EnumSet.of(EntropiesEnum.SUBJECT)).getSubject();
+	}
+	
+	/**
+	 * Computes the multiset for Predicate entropy
+	 * HashMap contains element as key and how often it appears in the model as value
+	 * Predicate multiset contains all predicates
+	 * @param model
+	 * @return multiset as HashMap<Resource, Integer>
+	 */
+	public static HashMap<Resource, Integer> predicateMultiset(Model model)
+	{
+		return computeMultisets(model, EnumSet.of(EntropiesEnum.PREDICATE)).getPredicate();
+	}
+	
+	/**
+	 * Computes the multiset for Literal entropy
+	 * HashMap contains element as key and how often it appears in the model as value
+	 * Literal multiset contains all literals (objects that are not Resource)
+	 * @param model
+	 * @return multiset as HashMap<RDFNode, Integer>
+	 */
+	public static HashMap<RDFNode, Integer> literalMultiset(Model model)
+	{
+		return computeMultisets(model, EnumSet.of(EntropiesEnum.LITERAL)).getLiteral();
+	}
+	
+	// ------------------ Encoded graph ------------------------
+	
+	/**
+	 * Computes the multisets for the given entropies on an encoded graph
+	 * @param graph
+	 * @param entropies multisets to compute
+	 * @return MultisetResults, multisets of entropies that were not requested are null
+	 */
+	public static MultisetResults computeMultisets(EncodedGraph graph, EnumSet<EntropiesEnum> entropies)
+	{
+		MultisetResults results = new MultisetResults();
+		if(entropies.contains(EntropiesEnum.DESC))
+		{
+			results.desc = descMultiset(graph);
+		}
+		if(entropies.contains(EntropiesEnum.CLASSIF))
+		{
+			results.classif = classifMultiset(graph);
+		}
+		if(entropies.contains(EntropiesEnum.DESCM))
+		{
+			results.descm = descmMultiset(graph);
+		}
+		if(entropies.contains(EntropiesEnum.DESCMP))
+		{
+			results.descmp = descmpMultiset(graph);
+		}
+		if(entropies.contains(EntropiesEnum.ECONN))
+		{
+			results.econn = econnMultiset(graph);
+		}
+		if(entropies.contains(EntropiesEnum.RESOURCE))
+		{
+			results.resource = resourceMultiset(graph);
+		}
+		if(entropies.contains(EntropiesEnum.SUBJECT))
+		{
+			results.subject = subjectMultiset(graph);
+		}
+		if(entropies.contains(EntropiesEnum.PREDICATE))
+		{
+			results.predicate = predicateMultiset(graph);
+		}
+		if(entropies.contains(EntropiesEnum.LITERAL))
+		{
+			results.literal = literalMultiset(graph);
+		}
+		return results;
+	}
+	
+	/**
+	 * Computes the multiset for Desc entropy on an encoded graph
+	 * @param graph
+	 * @return multiset as HashMap<Tuple<Resource,RDFNode>,Integer>
+	 */
+	public static HashMap<Tuple<Resource,RDFNode>,Integer> descMultiset(EncodedGraph graph)
 	{
 		Logger logger = Log.getLogger();
-		logger.info("Start computing Descm multiset.");
+		logger.info("Start computing Desc multiset.");
 		
-		HashMap<Tuple<Resource,RDFNode>,Integer> descmMultiset = new HashMap<Tuple<Resource,RDFNode>,Integer>((int) model.size());
+		HashMap<Tuple<Resource,RDFNode>,Integer> descMultiset = pairMultiset(graph, -1, false);
 		
-		List<Statement> statements = model.listStatements().toList();
+		logger.info("Size of desc: " + descMultiset.size());
+		logger.info("Done computing Desc multiset.");
+		return descMultiset;
+	}
+	
+	/**
+	 * Computes the multiset for Classif entropy on an encoded graph
+	 * @param graph
+	 * @return multiset as HashMap<Tuple<Resource,RDFNode>,Integer>
+	 */
+	public static HashMap<Tuple<Resource,RDFNode>,Integer> classifMultiset(EncodedGraph graph)
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start computing Classif multiset.");
 		
-		for(Statement statement : statements)
+		int type = graph.getDictionary().lookup(RDF.type);
+		HashMap<Tuple<Resource,RDFNode>,Integer> classifMultiset = new HashMap<Tuple<Resource,RDFNode>,Integer>();
+		if(type != -1)
 		{
-			if(!statement.getPredicate().equals(RDF.type))
-			{
-				Tuple<Resource, RDFNode> key = new Tuple<Resource, RDFNode>(statement.getPredicate(),statement.getObject());
-				if(descmMultiset.containsKey(key))
-				{
-					int count = descmMultiset.get(key) + 1;
-					descmMultiset.put(key, count);
-				} else
-				{
-					descmMultiset.put(key, 1);
-				}
-			}
+			classifMultiset = pairMultiset(graph, type, true);
 		}
 		
+		logger.info("Size of classif: " + classifMultiset.size());
+		logger.info("Done computing Classif multiset.");
+		return classifMultiset;
+	}
+	
+	/**
+	 * Computes the multiset for Descm entropy on an encoded graph
+	 * @param graph
+	 * @return multiset as HashMap<Tuple<Resource,RDFNode>,Integer>
+	 */
+	public static HashMap<Tuple<Resource,RDFNode>,Integer> descmMultiset(EncodedGraph graph)
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start computing Descm multiset.");
+		
+		// If rdf:type is not in the graph no predicate is excluded
+		int type = graph.getDictionary().lookup(RDF.type);
+		HashMap<Tuple<Resource,RDFNode>,Integer> descmMultiset = pairMultiset(graph, type, false);
 		
 		logger.info("Found " + descmMultiset.size() + " Elements in the Hashmap.");
 		logger.info("Done computing Descm multiset.");
@@ -130,37 +575,26 @@ public class Multisets {
 	}
 	
 	/**
-	 * Computes the multiset for Descmp entropy
-	 * HashMap contains element as key and how often it appears in the model as value
-	 * Descmp multiset contains all predicate that are not RDF.type
-	 * @param model
-	 * @return multiset as HashMap<RDFNode, Integer>
+	 * Computes the multiset for Descmp entropy on an encoded graph
+	 * @param graph
+	 * @return multiset as HashMap<Resource, Integer>
 	 */
-	public static HashMap<Resource,Integer> descmpMultiset(Model model)
+	public static HashMap<Resource,Integer> descmpMultiset(EncodedGraph graph)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start computing Descmp multiset.");
 		
-		HashMap<Resource,Integer> descmpMultiset = new HashMap<Resource,Integer>((int) model.size());
-		
-		List<Statement> statements = model.listStatements().toList();
-		
-		for(Statement statement : statements)
+		int type = graph.getDictionary().lookup(RDF.type);
+		int[] counts = new int[graph.getDictionary().size()];
+		for(int statement = 0; statement < graph.size(); statement++)
 		{
-			if(!statement.getPredicate().equals(RDF.type))
+			int predicate = graph.predicate(statement);
+			if(predicate != type)
 			{
-				Resource key = statement.getPredicate();
-				if(descmpMultiset.containsKey(key))
-				{
-					int count = descmpMultiset.get(key) + 1;
-					descmpMultiset.put(key, count);
-				} else
-				{
-					descmpMultiset.put(key, 1);
-				}
+				counts[predicate]++;
 			}
 		}
-		
+		HashMap<Resource,Integer> descmpMultiset = countsToMultiset(graph, counts);
 		
 		logger.info("Found " + descmpMultiset.size() + " Elements in the Hashmap.");
 		logger.info("Done computing Descmp multiset.");
@@ -168,37 +602,26 @@ public class Multisets {
 	}
 	
 	/**
-	 * Computes the multiset for Econn entropy
-	 * HashMap contains element as key and how often it appears in the model as value
-	 * Econn multiset contains all objects that are not literals (that are resources)
-	 * @param model
+	 * Computes the multiset for Econn entropy on an encoded graph
+	 * @param graph
 	 * @return multiset as HashMap<Resource, Integer>
 	 */
-	public static HashMap<Resource, Integer> econnMultiset(Model model)
+	public static HashMap<Resource, Integer> econnMultiset(EncodedGraph graph)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start computing Econn multiset.");
 		
-		HashMap<Resource, Integer> econnMultiset = new HashMap<Resource, Integer>((int) model.size());
-		
-		List<Statement> statements = model.listStatements().toList();
-		
-		for(Statement statement : statements)
+		TermDictionary dictionary = graph.getDictionary();
+		int[] counts = new int[dictionary.size()];
+		for(int statement = 0; statement < graph.size(); statement++)
 		{
-			if(statement.getObject().isResource())
+			int object = graph.object(statement);
+			if(!dictionary.isLiteral(object))
 			{
-				Resource key = (Resource) statement.getObject();
-				if(econnMultiset.containsKey(key))
-				{
-					int count = econnMultiset.get(key) + 1;
-					econnMultiset.put(key, count);
-				} else
-				{
-					econnMultiset.put(key, 1);
-				}
+				counts[object]++;
 			}
-			
 		}
+		HashMap<Resource, Integer> econnMultiset = countsToMultiset(graph, counts);
 		
 		logger.info("Size of econn: " + econnMultiset.size());
 		logger.info("Done computing Econn multiset.");
@@ -206,54 +629,28 @@ public class Multisets {
 	}
 	
 	/**
-	 * Computes the multiset for Resource entropy
-	 * HashMap contains element as key and how often it appears in the model as value
-	 * Resource multiset contains all resources
-	 * @param model
+	 * Computes the multiset for Resource entropy on an encoded graph
+	 * @param graph
 	 * @return multiset as HashMap<Resource, Integer>
 	 */
-	public static HashMap<Resource, Integer> resourceMultiset(Model model)
+	public static HashMap<Resource, Integer> resourceMultiset(EncodedGraph graph)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start calculating Resource multiset.");
 		
-		HashMap<Resource, Integer> resourceMultiset = new HashMap<Resource, Integer>((int) model.size());
-		StmtIterator statements = model.listStatements();
-		
-		while(statements.hasNext())
+		TermDictionary dictionary = graph.getDictionary();
+		int[] counts = new int[dictionary.size()];
+		for(int statement = 0; statement < graph.size(); statement++)
 		{
-			Statement statement = statements.nextStatement();
-			Resource subject = statement.getSubject();
-			Resource predicate = statement.getPredicate();
-			RDFNode object = statement.getObject();
-			
-			if(resourceMultiset.containsKey(subject))
-			{
-				int count = resourceMultiset.get(subject) + 1;
-				resourceMultiset.put(subject, count);
-			} else
-			{
-				resourceMultiset.put(subject, 1);
-			}
-			
-			if(resourceMultiset.containsKey(predicate))
-			{
-				int count = resourceMultiset.get(predicate) + 1;
-				resourceMultiset.put(predicate, count);
-			} else
+			counts[graph.subject(statement)]++;
+			counts[graph.predicate(statement)]++;
+			int object = graph.object(statement);
+			if(!dictionary.isLiteral(object))
 			{
-				resourceMultiset.put(predicate, 1);
-			}
-			
-			if(object.isResource() && resourceMultiset.containsKey(object))
-			{
-				int count = resourceMultiset.get((Resource) object) + 1;
-				resourceMultiset.put((Resource) object, count);
-			} else if(object.isResource())
-			{
-				resourceMultiset.put((Resource) object, 1);
+				counts[object]++;
 			}
 		}
+		HashMap<Resource, Integer> resourceMultiset = countsToMultiset(graph, counts);
 		
 		logger.info("Size of resource multiset: " + resourceMultiset.size());
 		logger.info("Done computing Resource multiset.");
@@ -261,33 +658,21 @@ public class Multisets {
 	}
 	
 	/**
-	 * Computes the multiset for Subject entropy
-	 * HashMap contains element as key and how often it appears in the model as value
-	 * Subject multiset contains all subjects
-	 * @param model
+	 * Computes the multiset for Subject entropy on an encoded graph
+	 * @param graph
 	 * @return multiset as HashMap<Resource, Integer>
 	 */
-	public static HashMap<Resource, Integer> subjectMultiset(Model model)
+	public static HashMap<Resource, Integer> subjectMultiset(EncodedGraph graph)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start computing Subject multiset.");
 		
-		HashMap<Resource, Integer> subjectMultiset = new HashMap<Resource, Integer>((int) model.size());
-		
-		List<Statement> statements = model.listStatements().toList();
-		
-		for(Statement statement : statements)
+		int[] counts = new int[graph.getDictionary().size()];
+		for(int term = 0; term < counts.length; term++)
 		{
-			Resource key = statement.getSubject();
-			if(subjectMultiset.containsKey(key))
-			{
-				int count = subjectMultiset.get(key) + 1;
-				subjectMultiset.put(key, count);
-			} else
-			{
-				subjectMultiset.put(key, 1);
-			}
+			counts[term] = graph.outDegree(term);
 		}
+		HashMap<Resource, Integer> subjectMultiset = countsToMultiset(graph, counts);
 		
 		logger.info("Size of subject multiset: " + subjectMultiset.size());
 		logger.info("Done computing Subject multiset.");
@@ -295,33 +680,21 @@ public class Multisets {
 	}
 	
 	/**
-	 * Computes the multiset for Predicate entropy
-	 * HashMap contains element as key and how often it appears in the model as value
-	 * Predicate multiset contains all predicates
-	 * @param model
+	 * Computes the multiset for Predicate entropy on an encoded graph
+	 * @param graph
 	 * @return multiset as HashMap<Resource, Integer>
 	 */
-	public static HashMap<Resource, Integer> predicateMultiset(Model model)
+	public static HashMap<Resource, Integer> predicateMultiset(EncodedGraph graph)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start computing Predicate multiset.");
 		
-		HashMap<Resource, Integer> predicateMultiset = new HashMap<Resource, Integer>((int) model.size());
-		
-		List<Statement> statements = model.listStatements().toList();
-		
-		for(Statement statement : statements)
+		int[] counts = new int[graph.getDictionary().size()];
+		for(int statement = 0; statement < graph.size(); statement++)
 		{
-			Resource key = statement.getPredicate();
-			if(predicateMultiset.containsKey(key))
-			{
-				int count = predicateMultiset.get(key) + 1;
-				predicateMultiset.put(key, count);
-			} else
-			{
-				predicateMultiset.put(key, 1);
-			}
+			counts[graph.predicate(statement)]++;
 		}
+		HashMap<Resource, Integer> predicateMultiset = countsToMultiset(graph, counts);
 		
 		logger.info("Size of predicate multiset: " + predicateMultiset.size());
 		logger.info("Done computing Predicate multiset.");
@@ -329,36 +702,95 @@ public class Multisets {
 	}
 	
 	/**
-	 * Computes the multiset for Literal entropy
-	 * HashMap contains element as key and how often it appears in the model as value
-	 * Literal multiset contains all literals (objects that are not Resource)
-	 * @param model
+	 * Computes the multiset for Literal entropy on an encoded graph
+	 * @param graph
 	 * @return multiset as HashMap<RDFNode, Integer>
 	 */
-	public static HashMap<RDFNode, Integer> literalMultiset(Model model)
+	public static HashMap<RDFNode, Integer> literalMultiset(EncodedGraph graph)
 	{
 		Logger logger = Log.getLogger();
 		logger.info("Start computing Literal multiset.");
 		
-		HashMap<RDFNode, Integer> literalMultiset = new HashMap<RDFNode, Integer>((int) model.size());
-		
-		List<Statement> statements = model.listStatements().toList();
-		
-		for(Statement statement : statements)
+		TermDictionary dictionary = graph.getDictionary();
+		int[] counts = new int[dictionary.size()];
+		for(int term = 0; term < counts.length; term++)
 		{
-			RDFNode key = statement.getObject();
-			if(literalMultiset.containsKey(key))
-			{
-				int count = literalMultiset.get(key) + 1;
-				literalMultiset.put(key, count);
-			} else if(key.isLiteral())
+			if(dictionary.isLiteral(term))
 			{
-				literalMultiset.put(key, 1);
+				counts[term] = graph.inDegree(term);
 			}
 		}
+		HashMap<RDFNode, Integer> literalMultiset = countsToMultiset(graph, counts);
 		
 		logger.info("Size of literal multiset: " + literalMultiset.size());
 		logger.info("Done computing Literal multiset.");
 		return literalMultiset;
 	}
+	
+	/**
+	 * Counts predicate object combinations.
+	 * Each combination is packed into a long, the longs are sorted and equal neighbours counted.
+	 * @param graph
+	 * @param predicate term ID of a predicate, -1 for none
+	 * @param only if true only statements with this predicate are counted, otherwise all statements without it
+	 * @return multiset as HashMap<Tuple<Resource,RDFNode>,Integer>
+	 */
+	private static HashMap<Tuple<Resource,RDFNode>,Integer> pairMultiset(EncodedGraph graph, int predicate, boolean only)
+	{
+		long[] pairs = new long[graph.size()];
+		int size = 0;
+		for(int statement = 0; statement < graph.size(); statement++)
+		{
+			if((graph.predicate(statement) == predicate) == only)
+			{
+				pairs[size++] = ((long) graph.predicate(statement) << 32) | graph.object(statement);
+			}
+		}
+		Arrays.parallelSort(pairs, 0, size);
+		
+		HashMap<Tuple<Resource,RDFNode>,Integer> multiset = new HashMap<Tuple<Resource,RDFNode>,Integer>();
+		int i = 0;
+		while(i < size)
+		{
+			int j = i + 1;
+			while(j < size && pairs[j] == pairs[i])
+			{
+				j++;
+			}
+			Resource p = graph.getResource((int) (pairs[i] >>> 32));
+			RDFNode o = graph.getTerm((int) pairs[i]);
+			multiset.put(new Tuple<Resource, RDFNode>(p, o), j - i);
+			i = j;
+		}
+		return multiset;
+	}
+	
+	/**
+	 * Turns counts per term ID into a multiset of terms, terms with count 0 are left out.
+	 * @param graph
+	 * @param counts
+	 * @return multiset as HashMap<T, Integer>
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends RDFNode> HashMap<T, Integer> countsToMultiset(EncodedGraph graph, int[] counts)
+	{
+		int distinct = 0;
+		for(int count : counts)
+		{
+			if(count > 0)
+			{
+				distinct++;
+			}
+		}
+		
+		HashMap<T, Integer> multiset = new HashMap<T, Integer>(distinct * 4 / 3 + 1);
+		for(int term = 0; term < counts.length; term++)
+		{
+			if(counts[term] > 0)
+			{
+				multiset.put((T) graph.getTerm(term), counts[term]);
+			}
+		}
+		return multiset;
+	}
 }
@@ -0,0 +1,140 @@
+package statistics;
+
+import java.util.HashMap;
+
+/**
+ * Counts how often each key was added. Open addressing hash table with linear probing,
+ * counts are stored in an int array so they are never boxed while counting.
+ * Not thread safe, every worker uses its own counter and the counters are merged afterwards.
+ * @author ---
+ *
+ * @param <K> type of the keys, needs equals and hashCode
+ */
+final class ObjectIntCounter<K>
+{
+	private static final int INITIAL_CAPACITY = 64;	// power of two
+	
+	private Object[] keys = new Object[INITIAL_CAPACITY];
+	private int[] counts = new int[INITIAL_CAPACITY];
+	private int size = 0;
+	
+	interface KeyCount<K>
+	{
+		public void function(K key, int count);
+	}
+	
+	/**
+	 * Mixes the bits of a hash code, so keys with similar hash codes spread over the table
+	 * @param hashCode
+	 * @return mixed hash
+	 */
+	static int spread(int hashCode)
+	{
+		int h = hashCode * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	void increment(K key)
+	{
+		add(key, spread(key.hashCode()), 1);
+	}
+	
+	/**
+	 * Adds to the count of a key
+	 * @param key
+	 * @param hash spread(key.hashCode())
+	 * @param count
+	 */
+	void add(K key, int hash, int count)
+	{
+		int mask = keys.length - 1;
+		int i = hash & mask;
+		while(keys[i] != null)
+		{
+			if(keys[i].equals(key))
+			{
+				counts[i] += count;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		counts[i] = count;
+		size++;
+		// Keep the table at most half full
+		if(size * 2 > keys.length)
+		{
+			resize();
+		}
+	}
+	
+	/**
+	 * Adds all counts of an other counter to this one
+	 * @param other
+	 */
+	@SuppressWarnings("unchecked")
+	void addAll(ObjectIntCounter<K> other)
+	{
+		for(int i = 0; i < other.keys.length; i++)
+		{
+			if(other.keys[i] != null)
+			{
+				add((K) other.keys[i], spread(other.keys[i].hashCode()), other.counts[i]);
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @return number of different keys
+	 */
+	int size()
+	{
+		return size;
+	}
+	
+	@SuppressWarnings("unchecked")
+	void forEach(KeyCount<K> function)
+	{
+		for(int i = 0; i < keys.length; i++)
+		{
+			if(keys[i] != null)
+			{
+				function.function((K) keys[i], counts[i]);
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @return counts as HashMap, the multiset representation used everywhere else
+	 */
+	HashMap<K, Integer> toHashMap()
+	{
+		HashMap<K, Integer> map = new HashMap<K, Integer>(size * 4 / 3 + 1);
+		forEach((key, count) -> map.put(key, count));
+		return map;
+	}
+	
+	private void resize()
+	{
+		Object[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new Object[oldKeys.length * 2];
+		counts = new int[oldKeys.length * 2];
+		int mask = keys.length - 1;
+		for(int j = 0; j < oldKeys.length; j++)
+		{
+			if(oldKeys[j] != null)
+			{
+				int i = spread(oldKeys[j].hashCode()) & mask;
+				while(keys[i] != null)
+				{
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				counts[i] = oldCounts[j];
+			}
+		}
+	}
+}
@@ -1,21 +1,24 @@
 package statistics;
 
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.NodeIterator;
 import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.util.iterator.ExtendedIterator;
 
+import privatesetintersection.ExecutorHandling;
 import protocol.Log;
+import triplestore.EncodedGraph;
+import triplestore.TermDictionary;
 
 public class Statistics 
 {
@@ -38,188 +41,305 @@ public class Statistics
 	 */
 	public static StatisticsResults statistics(Model model)
 	{
-		StatisticsResults results = new StatisticsResults();
-		
-		// Size of the model = Number of Statements contained in the model
-		long nrStatements = model.size();
-		results.setSize(nrStatements);
-		
-		// Number of Resources in model
-		long resources = findAllResources(model).size();
-		results.setResources(resources);
-		
-		// Number of different Resources that appear as Subject in the model
-		long nrSubjects = model.listSubjects().toList().size();
-		results.setSubjects(nrSubjects);
+		TermDictionary dictionary = new TermDictionary((int) Math.min(model.size(), 1 << 20));
+		DegreeCounts degrees = countDegrees(model, dictionary);
+		return statistics(degrees.statements, dictionary, degrees);
+	}
+	
+	/**
+	 * Estimates the same statistics as statistics(Model) in one parallel pass with memory independent of the model size.
+	 * Every worker thread builds a StatisticsSketch of the statements it processes, the sketches are merged afterwards.
+	 * @param model
+	 * @return ApproximateStatisticsResults with the estimates and their error bounds
+	 */
+	public static ApproximateStatisticsResults approximateStatistics(Model model)
+	{
+		Logger logger = Log.getLogger();
 		
-		// Number of different Objects (Resources and Literals)
-		List<RDFNode> objects = model.listObjects().toList();
-		results.setObjects(objects.size());
-
-		// The above number of Objects does not distinguish between Resources and Literals
-		// Count these Resources and Literals individually
-		int resourceCounter = 0;		// Number of different Resources that appear as Objects
-		int literalCounter = 0;			// Number of different Literals that appear as Objects
-		for(RDFNode o : objects)
+		StatisticsSketch sketch = new StatisticsSketch();
+		ExtendedIterator<Triple> triples = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		try
 		{
-			if(o.isResource())
+			List<StatisticsSketch> workers = ExecutorHandling.forEachWithState(triples, () -> new StatisticsSketch(), (triple, workerSketch) -> workerSketch.add(triple));
+			for(StatisticsSketch workerSketch : workers)
 			{
-				resourceCounter++;
+				sketch.merge(workerSketch);
+			}
+		} catch (ExecutionException e) 
+		{
+			logger.info("Exception when trying to compute approximate statistics. \n" 
+					+ e.getMessage() + "\n"
+					+ e.toString() + "\n"
+					+ "Protocol is being terminated.");
+			System.exit(1);
+		} finally
+		{
+			triples.close();
+		}
+		return sketch.getResults();
+	}
+	
+	/**
+	 * Counts the statements per subject and per object resource in one scan over the model
+	 * @param model
+	 * @return sorted arrays of: statements per subject, resource objects per subject, literals per subject, statements per object resource
+	 */
+	public static int[][] sortedDegrees(Model model)
+	{
+		TermDictionary dictionary = new TermDictionary((int) Math.min(model.size(), 1 << 20));
+		return sortedDegrees(dictionary, countDegrees(model, dictionary));
+	}
+	
+	/**
+	 * Counts the statements of every term in one scan over all statements
+	 * @param model
+	 * @param dictionary every term is added and counted under its ID
+	 * @return counts per term ID
+	 */
+	private static DegreeCounts countDegrees(Model model, TermDictionary dictionary)
+	{
+		DegreeCounts degrees = new DegreeCounts();
+		ExtendedIterator<Triple> triples = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		try
+		{
+			while(triples.hasNext())
+			{
+				Triple triple = triples.next();
+				int subject = dictionary.encode(triple.getSubject());
+				int predicate = dictionary.encode(triple.getPredicate());
+				int object = dictionary.encode(triple.getObject());
+				degrees.ensureCapacity(dictionary.size());
+				
+				degrees.outgoing[subject]++;
+				degrees.incoming[object]++;
+				if(dictionary.isLiteral(object))
+				{
+					degrees.literals[subject]++;
+				} else
+				{
+					degrees.resObjects[subject]++;
+				}
+				degrees.isPredicate[predicate] = true;
+				degrees.statements++;
 			}
-			else if(o.isLiteral())
+		} finally
+		{
+			triples.close();
+		}
+		return degrees;
+	}
+	
+	/**
+	 * Calculates the same statistics as statistics(Model) on an encoded graph.
+	 * The number of statements per subject and object are read from the graph's indexes, 
+	 * every other count is done in one pass over the statements.
+	 * @param graph
+	 * @return StatistcsResults storing results for all these statistics
+	 */
+	public static StatisticsResults statistics(EncodedGraph graph)
+	{
+		TermDictionary dictionary = graph.getDictionary();
+		DegreeCounts degrees = new DegreeCounts();
+		degrees.ensureCapacity(dictionary.size());
+		
+		for(int term = 0; term < dictionary.size(); term++)
+		{
+			degrees.outgoing[term] = graph.outDegree(term);
+			degrees.incoming[term] = graph.inDegree(term);
+		}
+		for(int statement = 0; statement < graph.size(); statement++)
+		{
+			if(dictionary.isLiteral(graph.object(statement)))
+			{
+				degrees.literals[graph.subject(statement)]++;
+			} else
 			{
-				literalCounter++;
+				degrees.resObjects[graph.subject(statement)]++;
 			}
+			degrees.isPredicate[graph.predicate(statement)] = true;
 		}
-		results.setObjectResources(resourceCounter);
-		results.setLiterals(literalCounter);
 		
-		// Average number of outgoing Links
-		results.setAvgOutgoingLinks(((double) nrStatements)/nrSubjects);
+		return statistics(graph.size(), dictionary, degrees);
+	}
+	
+	/**
+	 * Calculates all statistics from the counts per term, shared by both entry points so they give identical results
+	 * @param nrStatements
+	 * @param dictionary of all terms of the model
+	 * @param degrees counts per term ID
+	 * @return StatistcsResults storing results for all these statistics
+	 */
+	private static StatisticsResults statistics(long nrStatements, TermDictionary dictionary, DegreeCounts degrees)
+	{
+		StatisticsResults results = new StatisticsResults();
+		int terms = dictionary.size();
 		
-		// Above looked at number of different Objects
-		// Now count the total number of Resources as Objects
-		// and total number of Literals as Objects
-		// Count number of different predicates
-		HashSet<Resource> predicates = new HashSet<Resource>();
+		int nrSubjects = 0;
+		int resourceCounter = 0;		// Number of different Resources that appear as Objects
+		int literalCounter = 0;			// Number of different Literals that appear as Objects
+		int predicates = 0;
 		long nrStatementsWithResourceObject = 0;
 		long nrStatementsWithLiteralObject = 0;
-//		List<Statement> statements = model.listStatements().toList();
-//		for(Statement s : statements)
-		StmtIterator statements = model.listStatements();
-		while(statements.hasNext())
+		for(int term = 0; term < terms; term++)
 		{
-			Statement s = statements.nextStatement();
-			if(s.getObject().isResource())
+			if(degrees.outgoing[term] > 0)
 			{
-				nrStatementsWithResourceObject++;
+				nrSubjects++;
+				nrStatementsWithResourceObject += degrees.resObjects[term];
+				nrStatementsWithLiteralObject += degrees.literals[term];
 			}
-			else if(s.getObject().isLiteral())
+			if(degrees.incoming[term] > 0)
 			{
-				nrStatementsWithLiteralObject++;
+				if(dictionary.isLiteral(term))
+				{
+					literalCounter++;
+				} else
+				{
+					resourceCounter++;
+				}
 			}
-			if(!predicates.contains(s.getPredicate()))
+			if(degrees.isPredicate[term])
 			{
-				predicates.add(s.getPredicate());
+				predicates++;
 			}
 		}
+		
+		results.setSize(nrStatements);
+		// Every term that is not a literal is a subject, predicate or resource object
+		results.setResources(terms - dictionary.numberOfLiterals());
+		results.setSubjects(nrSubjects);
+		results.setObjects(resourceCounter + literalCounter);
+		results.setObjectResources(resourceCounter);
+		results.setLiterals(literalCounter);
+		results.setAvgOutgoingLinks(((double) nrStatements)/nrSubjects);
 		results.setAvgIncomingLinks(((double) nrStatementsWithResourceObject)/resourceCounter);
 		results.setAvgLiterals(((double) nrStatementsWithLiteralObject)/nrSubjects);
 		results.setAvgObjectResources(((double) nrStatementsWithResourceObject)/nrSubjects);
 		results.setTotalObjectResources(nrStatementsWithResourceObject);
 		results.setTotalLiterals(nrStatementsWithLiteralObject);
-		results.setPredicates(predicates.size());
-		
+		results.setPredicates(predicates);
 		
 		// Calculate min, max, 25%, 50% and 75% quantile for averages
-		LinkedList<Integer> subjectStatementCount = new LinkedList<Integer>();
-		LinkedList<Integer> subjectResObjectCount = new LinkedList<Integer>();
-		LinkedList<Integer> subjectLiteralCount = new LinkedList<Integer>();
-		ResIterator subjects = model.listSubjects();
-		while(subjects.hasNext())
-		{
-			Resource subject = subjects.nextResource();
-			StmtIterator statementsWithSubject = model.listStatements(subject, null, (RDFNode) null);
-			int count = 0;
-			int countObjectIsResource = 0;
-			int countObjectIsLiteral = 0;
-			while(statementsWithSubject.hasNext())
-			{
-				Statement statement = statementsWithSubject.nextStatement();
-				count++;
-				if(statement.getObject().isResource())
-				{
-					countObjectIsResource++;
-				}
-				if(statement.getObject().isLiteral())
-				{
-					countObjectIsLiteral++;
-				}
-			}
-			subjectStatementCount.add(count);
-			subjectResObjectCount.add(countObjectIsResource);
-			subjectLiteralCount.add(countObjectIsLiteral);
-		}
+		int[][] sorted = sortedDegrees(dictionary, degrees);
+		int[] subjectStatementCount = sorted[0];
+		int[] subjectResObjectCount = sorted[1];
+		int[] subjectLiteralCount = sorted[2];
+		int[] objectStatementCount = sorted[3];
 		
-		subjectStatementCount = sortIntList(subjectStatementCount);
-		subjectResObjectCount = sortIntList(subjectResObjectCount);
-		subjectLiteralCount = sortIntList(subjectLiteralCount);
+		results.setMinOutgoingLinks(subjectStatementCount[0]);
+		results.setMaxOutgoingLinks(subjectStatementCount[nrSubjects - 1]);
+		results.setOutgoingLinks25(quantile(subjectStatementCount, 0.25));
+		results.setOutgoingLinks50(quantile(subjectStatementCount, 0.5));
+		results.setOutgoingLinks75(quantile(subjectStatementCount, 0.75));
 		
-		results.setMinOutgoingLinks(subjectStatementCount.getFirst());
-		results.setMaxOutgoingLinks(subjectStatementCount.getLast());
-		Double outLinks25Index = subjectStatementCount.size()*0.25;
-		results.setOutgoingLinks25(subjectStatementCount.get(outLinks25Index.intValue()));
-		Double outLinks50Index = subjectStatementCount.size()*0.5;
-		results.setOutgoingLinks50(subjectStatementCount.get(outLinks50Index.intValue()));
-		Double outLinks75Index = subjectStatementCount.size()*0.75;
-		results.setOutgoingLinks75(subjectStatementCount.get(outLinks75Index.intValue()));
+		results.setMinResObjects(subjectResObjectCount[0]);
+		results.setMaxResObjects(subjectResObjectCount[nrSubjects - 1]);
+		results.setResObjects25(quantile(subjectResObjectCount, 0.25));
+		results.setResObjects50(quantile(subjectResObjectCount, 0.5));
+		results.setResObjects75(quantile(subjectResObjectCount, 0.75));
 		
-		results.setMinResObjects(subjectResObjectCount.getFirst());
-		results.setMaxResObjects(subjectResObjectCount.getLast());
-		Double resObject25Index = subjectResObjectCount.size()*0.25;
-		results.setResObjects25(subjectResObjectCount.get(resObject25Index.intValue()));
-		Double resObject50Index = subjectResObjectCount.size()*0.50;
-		results.setResObjects50(subjectResObjectCount.get(resObject50Index.intValue()));
-		Double resObject75Index = subjectResObjectCount.size()*0.75;
-		results.setResObjects75(subjectResObjectCount.get(resObject75Index.intValue()));
+		results.setMinLiterals(subjectLiteralCount[0]);
+		results.setMaxLiterals(subjectLiteralCount[nrSubjects - 1]);
+		results.setLiterals25(quantile(subjectLiteralCount, 0.25));
+		results.setLiterals50(quantile(subjectLiteralCount, 0.5));
+		results.setLiterals75(quantile(subjectLiteralCount, 0.75));
 		
-		results.setMinLiterals(subjectLiteralCount.getFirst());
-		results.setMaxLiterals(subjectLiteralCount.getLast());
-		Double literal25Index = subjectLiteralCount.size()*0.25;
-		results.setLiterals25(subjectLiteralCount.get(literal25Index.intValue()));
-		Double literal50Index = subjectLiteralCount.size()*0.50;
-		results.setLiterals50(subjectLiteralCount.get(literal50Index.intValue()));
-		Double literal75Index = subjectLiteralCount.size()*0.75;
-		results.setLiterals75(subjectLiteralCount.get(literal75Index.intValue()));
+		results.setMinIncomingLinks(objectStatementCount[0]);
+		results.setMaxIncomingLinks(objectStatementCount[resourceCounter - 1]);
+		results.setIncomingLinks25(quantile(objectStatementCount, 0.25));
+		results.setIncomingLinks50(quantile(objectStatementCount, 0.5));
+		results.setIncomingLinks75(quantile(objectStatementCount, 0.75));
 		
-		LinkedList<Integer> objectStatementCount = new LinkedList<Integer>();
-		NodeIterator objectsIterator = model.listObjects();
-		while(objectsIterator.hasNext())
+		return results;
+	}
+	
+	/**
+	 * Collects the counts of all subjects and object resources and sorts them
+	 * @param dictionary
+	 * @param degrees counts per term ID
+	 * @return sorted arrays of: statements per subject, resource objects per subject, literals per subject, statements per object resource
+	 */
+	private static int[][] sortedDegrees(TermDictionary dictionary, DegreeCounts degrees)
+	{
+		int nrSubjects = 0;
+		int resourceCounter = 0;
+		for(int term = 0; term < dictionary.size(); term++)
 		{
-			RDFNode object = objectsIterator.nextNode();
-			if(object.isResource())
+			if(degrees.outgoing[term] > 0)
+			{
+				nrSubjects++;
+			}
+			if(degrees.incoming[term] > 0 && !dictionary.isLiteral(term))
 			{
-				objectStatementCount.add(model.listStatements(null, null, object).toList().size());
+				resourceCounter++;
 			}
 		}
 		
-		objectStatementCount = sortIntList(objectStatementCount);
-		
-		results.setMinIncomingLinks(objectStatementCount.getFirst());
-		results.setMaxIncomingLinks(objectStatementCount.getLast());
-		Double inLinks25Index = objectStatementCount.size()*0.25;
-		results.setIncomingLinks25(objectStatementCount.get(inLinks25Index.intValue()));
-		Double inLinks50Index = objectStatementCount.size()*0.50;
-		results.setIncomingLinks50(objectStatementCount.get(inLinks50Index.intValue()));
-		Double inLinks75Index = objectStatementCount.size()*0.75;
-		results.setIncomingLinks75(objectStatementCount.get(inLinks75Index.intValue()));
+		int[] subjectStatementCount = new int[nrSubjects];
+		int[] subjectResObjectCount = new int[nrSubjects];
+		int[] subjectLiteralCount = new int[nrSubjects];
+		int[] objectStatementCount = new int[resourceCounter];
+		int subjectIndex = 0;
+		int objectIndex = 0;
+		for(int term = 0; term < dictionary.size(); term++)
+		{
+			if(degrees.outgoing[term] > 0)
+			{
+				subjectStatementCount[subjectIndex] = degrees.outgoing[term];
+				subjectResObjectCount[subjectIndex] = degrees.resObjects[term];
+				subjectLiteralCount[subjectIndex] = degrees.literals[term];
+				subjectIndex++;
+			}
+			if(degrees.incoming[term] > 0 && !dictionary.isLiteral(term))
+			{
+				objectStatementCount[objectIndex++] = degrees.incoming[term];
+			}
+		}
+		Arrays.sort(subjectStatementCount);
+		Arrays.sort(subjectResObjectCount);
+		Arrays.sort(subjectLiteralCount);
+		Arrays.sort(objectStatementCount);
 		
-		return results;
+		return new int[][] {subjectStatementCount, subjectResObjectCount, subjectLiteralCount, objectStatementCount};
+	}
+	
+	/**
+	 * Picks a quantile of a sorted array
+	 * @param sorted counts in increasing order
+	 * @param quantile between 0 and 1
+	 * @return count at position size*quantile, rounded down
+	 */
+	static int quantile(int[] sorted, double quantile)
+	{
+		Double index = sorted.length*quantile;
+		return sorted[index.intValue()];
 	}
 	
 	/**
-	 * Sorts a list of integers in increasing order
-	 * @param list
-	 * @return
+	 * Counts per term ID, the arrays grow with the dictionary
 	 */
-	private static LinkedList<Integer> sortIntList(LinkedList<Integer> list)
+	private static class DegreeCounts
 	{
-		// Sort LinkedList
-		Collections.sort(list, new Comparator<Integer>()
+		int[] outgoing = new int[0];		// statements with the term as subject
+		int[] incoming = new int[0];		// statements with the term as object
+		int[] resObjects = new int[0];		// statements with the term as subject and a resource as object
+		int[] literals = new int[0];		// statements with the term as subject and a literal as object
+		boolean[] isPredicate = new boolean[0];
+		long statements = 0;
+		
+		void ensureCapacity(int terms)
 		{
-			   @Override
-			   public int compare(Integer int1, Integer int2)
-			   {
-			        if(int1 < int2){
-			           return -1; 
-			        }
-			        if(int1 > int2){
-			           return 1; 
-			        }
-			        return 0;
-			   }
-		});
-		return list;
+			if(terms <= outgoing.length)
+			{
+				return;
+			}
+			int capacity = (int) Math.min(Math.max(terms, outgoing.length * 2L), Integer.MAX_VALUE - 8);
+			outgoing = Arrays.copyOf(outgoing, capacity);
+			incoming = Arrays.copyOf(incoming, capacity);
+			resObjects = Arrays.copyOf(resObjects, capacity);
+			literals = Arrays.copyOf(literals, capacity);
+			isPredicate = Arrays.copyOf(isPredicate, capacity);
+		}
 	}
 	
 	/**
@@ -297,5 +417,15 @@ public class Statistics
 					+ "25% quantile of object resources per subject: " + results.getResObjects25() + "\n"
 					+ "50% quantile of object resources per subject: " + results.getResObjects50() + "\n"
 					+ "75% quantile of object resources per subject: " + results.getResObjects75() + "\n");
+		
+		if(results instanceof ApproximateStatisticsResults)
+		{
+			ApproximateStatisticsResults approximate = (ApproximateStatisticsResults) results;
+			logger.info("The statistics are approximate, size and totals are exact. \n"
+						+ "Maximal relative error of the numbers of different elements and the averages: " + approximate.getDistinctCountError() + "\n"
+						+ "Maximal rank error of the quantiles per subject: " + approximate.getSubjectQuantileError() + " (" + approximate.getSampledSubjects() + " subjects sampled)" + "\n"
+						+ "Maximal rank error of the quantiles per object resource: " + approximate.getObjectQuantileError() + " (" + approximate.getSampledObjects() + " object resources sampled)" + "\n"
+						+ "Confidence of the quantiles: " + approximate.getConfidence() + "\n");
+		}
 	}
 }
@@ -0,0 +1,217 @@
+package statistics;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Sketch of all statistics of Statistics.statistics, built in one pass over the statements with memory independent of the model size.
+ * Sketches of disjoint sets of statements can be merged, so shards or worker threads each build their own sketch.
+ * Not thread safe.
+ * @author ---
+ *
+ */
+public class StatisticsSketch implements Serializable
+{
+	private static final long serialVersionUID = 1;
+
+	// Probability that the quantiles are within their error bounds
+	static final double CONFIDENCE = 0.99;
+	// Multiple of the HyperLogLog standard error given as error bound, about 99.7% of the estimates are within
+	public static final double DISTINCT_COUNT_DEVIATIONS = 3;
+
+	// Columns of the subject sample
+	private static final int OUTGOING = 0;
+	private static final int RES_OBJECTS = 1;
+	private static final int LITERALS = 2;
+
+	private static final HashFunction hashFunction = Hashing.murmur3_128();
+
+	private final HyperLogLog resources = new HyperLogLog();
+	private final HyperLogLog subjects = new HyperLogLog();
+	private final HyperLogLog predicates = new HyperLogLog();
+	private final HyperLogLog objectResources = new HyperLogLog();
+	private final HyperLogLog literals = new HyperLogLog();
+	private final DegreeSample subjectSample = new DegreeSample(3);
+	private final DegreeSample objectSample = new DegreeSample(1);
+	private long size = 0;
+	private long totalObjectResources = 0;
+	private long totalLiterals = 0;
+
+	/**
+	 * Creates an empty sketch
+	 */
+	public StatisticsSketch()
+	{
+
+	}
+
+	/**
+	 * Adds a statement
+	 * @param triple
+	 */
+	public void add(Triple triple)
+	{
+		long subject = hash(triple.getSubject());
+		long predicate = hash(triple.getPredicate());
+		long object = hash(triple.getObject());
+
+		size++;
+		resources.add(subject);
+		resources.add(predicate);
+		subjects.add(subject);
+		predicates.add(predicate);
+
+		int[] subjectCounts = subjectSample.get(subject);
+		if(subjectCounts != null)
+		{
+			subjectCounts[OUTGOING]++;
+		}
+
+		if(triple.getObject().isLiteral())
+		{
+			totalLiterals++;
+			literals.add(object);
+			if(subjectCounts != null)
+			{
+				subjectCounts[LITERALS]++;
+			}
+		} else
+		{
+			totalObjectResources++;
+			resources.add(object);
+			objectResources.add(object);
+			if(subjectCounts != null)
+			{
+				subjectCounts[RES_OBJECTS]++;
+			}
+			int[] objectCounts = objectSample.get(object);
+			if(objectCounts != null)
+			{
+				objectCounts[0]++;
+			}
+		}
+	}
+
+	/**
+	 * Adds the statements of an other sketch, the statements of both sketches need to be disjoint
+	 * @param other
+	 */
+	public void merge(StatisticsSketch other)
+	{
+		resources.merge(other.resources);
+		subjects.merge(other.subjects);
+		predicates.merge(other.predicates);
+		objectResources.merge(other.objectResources);
+		literals.merge(other.literals);
+		subjectSample.merge(other.subjectSample);
+		objectSample.merge(other.objectSample);
+		size += other.size;
+		totalObjectResources += other.totalObjectResources;
+		totalLiterals += other.totalLiterals;
+	}
+
+	/**
+	 * Calculates the statistics from the sketch
+	 * @return ApproximateStatisticsResults with the estimates and their error bounds
+	 */
+	public ApproximateStatisticsResults getResults()
+	{
+		ApproximateStatisticsResults results = new ApproximateStatisticsResults();
+
+		long nrSubjects = subjects.estimate();
+		long nrObjectResources = objectResources.estimate();
+		long nrLiterals = literals.estimate();
+
+		results.setSize(size);
+		results.setResources(resources.estimate());
+		results.setSubjects(nrSubjects);
+		results.setPredicates(predicates.estimate());
+		results.setObjects(nrObjectResources + nrLiterals);
+		results.setObjectResources(nrObjectResources);
+		results.setLiterals(nrLiterals);
+		results.setTotalObjectResources(totalObjectResources);
+		results.setTotalLiterals(totalLiterals);
+		results.setAvgOutgoingLinks(((double) size)/nrSubjects);
+		results.setAvgIncomingLinks(((double) totalObjectResources)/nrObjectResources);
+		results.setAvgLiterals(((double) totalLiterals)/nrSubjects);
+		results.setAvgObjectResources(((double) totalObjectResources)/nrSubjects);
+
+		// Quantiles of the samples, empty if there are no statements
+		int[] subjectStatementCount = subjectSample.sorted(OUTGOING);
+		if(subjectStatementCount.length > 0)
+		{
+			int[] subjectResObjectCount = subjectSample.sorted(RES_OBJECTS);
+			int[] subjectLiteralCount = subjectSample.sorted(LITERALS);
+
+			results.setMinOutgoingLinks(subjectStatementCount[0]);
+			results.setMaxOutgoingLinks(subjectStatementCount[subjectStatementCount.length - 1]);
+			results.setOutgoingLinks25(Statistics.quantile(subjectStatementCount, 0.25));
+			results.setOutgoingLinks50(Statistics.quantile(subjectStatementCount, 0.5));
+			results.setOutgoingLinks75(Statistics.quantile(subjectStatementCount, 0.75));
+
+			results.setMinResObjects(subjectResObjectCount[0]);
+			results.setMaxResObjects(subjectResObjectCount[subjectResObjectCount.length - 1]);
+			results.setResObjects25(Statistics.quantile(subjectResObjectCount, 0.25));
+			results.setResObjects50(Statistics.quantile(subjectResObjectCount, 0.5));
+			results.setResObjects75(Statistics.quantile(subjectResObjectCount, 0.75));
+
+			results.setMinLiterals(subjectLiteralCount[0]);
+			results.setMaxLiterals(subjectLiteralCount[subjectLiteralCount.length - 1]);
+			results.setLiterals25(Statistics.quantile(subjectLiteralCount, 0.25));
+			results.setLiterals50(Statistics.quantile(subjectLiteralCount, 0.5));
+			results.setLiterals75(Statistics.quantile(subjectLiteralCount, 0.75));
+		}
+
+		int[] objectStatementCount = objectSample.sorted(0);
+		if(objectStatementCount.length > 0)
+		{
+			results.setMinIncomingLinks(objectStatementCount[0]);
+			results.setMaxIncomingLinks(objectStatementCount[objectStatementCount.length - 1]);
+			results.setIncomingLinks25(Statistics.quantile(objectStatementCount, 0.25));
+			results.setIncomingLinks50(Statistics.quantile(objectStatementCount, 0.5));
+			results.setIncomingLinks75(Statistics.quantile(objectStatementCount, 0.75));
+		}
+
+		results.setDistinctCountError(DISTINCT_COUNT_DEVIATIONS * HyperLogLog.standardError());
+		results.setSubjectQuantileError(subjectSample.rankError(CONFIDENCE));
+		results.setObjectQuantileError(objectSample.rankError(CONFIDENCE));
+		results.setConfidence(CONFIDENCE);
+		results.setSampledSubjects(subjectSample.size());
+		results.setSampledObjects(objectSample.size());
+
+		return results;
+	}
+
+	/**
+	 * 64 bit hash of a term, equal terms have equal hashes on every machine
+	 * @param node
+	 * @return hash
+	 */
+	static long hash(Node node)
+	{
+		Hasher hasher = hashFunction.newHasher();
+		if(node.isURI())
+		{
+			hasher.putChar('U').putString(node.getURI(), StandardCharsets.UTF_8);
+		} else if(node.isBlank())
+		{
+			hasher.putChar('B').putString(node.getBlankNodeLabel(), StandardCharsets.UTF_8);
+		} else if(node.isLiteral())
+		{
+			hasher.putChar('L').putString(node.getLiteralLexicalForm(), StandardCharsets.UTF_8)
+				.putChar('@').putString(String.valueOf(node.getLiteralLanguage()), StandardCharsets.UTF_8)
+				.putChar('^').putString(String.valueOf(node.getLiteralDatatypeURI()), StandardCharsets.UTF_8);
+		} else
+		{
+			hasher.putChar('N').putString(node.toString(), StandardCharsets.UTF_8);
+		}
+		return hasher.hash().asLong();
+	}
+}
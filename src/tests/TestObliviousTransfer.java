@@ -9,7 +9,9 @@ import java.util.LinkedList;
 import java.util.logging.Logger;
 
 import oblivioustransfer.BuyerOT;
+import oblivioustransfer.BuyerOTExtension;
 import oblivioustransfer.SellerOT;
+import oblivioustransfer.SellerOTExtension;
 import privatesetintersection.Alice;
 import protocol.Log;
 
@@ -53,7 +55,8 @@ public class TestObliviousTransfer
 		RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
 		LinkedList<BigInteger> vValues = BuyerOT.buyerOT(k, publicKey, randomMessages);
 			
-		LinkedList<LinkedList<BigInteger>> kmprime = SellerOT.sellerOTPart2(messages, k, vValues, randomMessages);
+		LinkedList<BigInteger[]> kmprime = new LinkedList<BigInteger[]>();
+		SellerOT.sellerOTPart2(messages, k, vValues, randomMessages, (row) -> kmprime.add(row));
 		LinkedList<BigInteger> mbs = BuyerOT.buyerOTPart2(publicKey, kmprime);
 		
 		logger.info("Able to decode all messages: " + messages.containsAll(mbs) + "\n"
@@ -61,5 +64,39 @@ public class TestObliviousTransfer
 
 		return messages.containsAll(mbs);
 	}
+	
+	/**
+	 * Tests the OT extension mode
+	 * Generates random messages of 256 bits.
+	 * Runs the base OTs and the OT extension on them.
+	 * 
+	 * @param n number of messages
+	 * @param k number of messages to obtain
+	 * @return true if all messages where received, false otherwise
+	 */
+	public static boolean obliviousTransferExtensionTest(int n, int k)
+	{
+		Logger logger = Log.getLogger();
+		LinkedList<BigInteger> messages = new LinkedList<BigInteger>();
+		SecureRandom secureRandom = new SecureRandom();
+		for(int i = 0; i < n; i++)
+		{
+			messages.add(new BigInteger(256, secureRandom));
+		}
+		
+		BigInteger senderMessage = BuyerOTExtension.buyerBaseOT();
+		BigInteger[] Bs = SellerOTExtension.sellerBaseOT(senderMessage);
+		BuyerOTExtension.buyerBaseOTPart2(Bs);
+		byte[][] u = BuyerOTExtension.buyerOTExtension(k, n);
+		
+		LinkedList<byte[]> maskedMessages = new LinkedList<byte[]>();
+		SellerOTExtension.sellerOTExtension(messages, k, k, u, (masked) -> maskedMessages.add(masked));
+		LinkedList<BigInteger> mbs = BuyerOTExtension.buyerOTExtensionPart2(maskedMessages);
+		
+		logger.info("Able to decode all messages: " + messages.containsAll(mbs) + "\n"
+				+ "Received " + mbs.size() + " messages. k was " + k);
+
+		return messages.containsAll(mbs) && mbs.size() == k;
+	}
 
 }
@@ -0,0 +1,93 @@
+package tests;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.LinkedList;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import privatesetintersection.SignatureVerifier;
+import privatesetintersection.VerificationPolicy;
+import protocol.Log;
+
+/**
+ * Class containing tests regarding the verification of unblinded signatures
+ *
+ * @author ---
+ *
+ */
+public class TestSignatureVerification
+{
+	
+	/**
+	 * Tests the batch test and the binary search of the BATCHED policy
+	 * Generates a RSA key with a public exponent of 96 bits, so the signatures are not verified one by one.
+	 * Signs random hashes, plants invalid signatures and a pair of invalid signatures whose errors cancel out in the product of all signatures.
+	 *
+	 * @param n number of signatures, at least 1024 so the pair lies in different halves of more than LEAF_SIZE signatures
+	 * @param k number of planted invalid signatures besides the pair
+	 * @return true if all signatures pass without planted ones and exactly the planted ones are found, false otherwise
+	 */
+	public static boolean batchVerificationTest(int n, int k)
+	{
+		Logger logger = Log.getLogger();
+		SecureRandom secureRandom = new SecureRandom();
+		try
+		{
+			KeyPairGenerator rsaKeyPairGenerator = KeyPairGenerator.getInstance("RSA");
+			rsaKeyPairGenerator.initialize(new RSAKeyGenParameterSpec(2048, BigInteger.probablePrime(96, secureRandom)));
+			KeyPair keyPair = rsaKeyPairGenerator.generateKeyPair();
+			RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+			BigInteger N = publicKey.getModulus();
+			BigInteger d = ((RSAPrivateKey) keyPair.getPrivate()).getPrivateExponent();
+			
+			BigInteger[] hashes = new BigInteger[n];
+			BigInteger[] signatures = new BigInteger[n];
+			for(int i = 0; i < n; i++)
+			{
+				hashes[i] = new BigInteger(N.bitLength() - 1, secureRandom);
+				signatures[i] = hashes[i].modPow(d, N);
+			}
+			
+			SignatureVerifier verifier = new SignatureVerifier(publicKey);
+			boolean validPass = verifier.findInvalid(signatures, hashes, VerificationPolicy.BATCHED).isEmpty();
+			
+			// The pair: s_a * x and s_b * x^-1 leave the product of all signatures unchanged
+			TreeSet<Integer> planted = new TreeSet<Integer>();
+			int a = secureRandom.nextInt(n / 2);
+			int b = n / 2 + secureRandom.nextInt(n - n / 2);
+			BigInteger x = BigInteger.valueOf(3);
+			signatures[a] = signatures[a].multiply(x).mod(N);
+			signatures[b] = signatures[b].multiply(x.modInverse(N)).mod(N);
+			planted.add(a);
+			planted.add(b);
+			while(planted.size() < k + 2)
+			{
+				int i = secureRandom.nextInt(n);
+				if(planted.add(i))
+				{
+					signatures[i] = signatures[i].add(BigInteger.ONE).mod(N);
+				}
+			}
+			
+			LinkedList<Integer> found = verifier.findInvalid(signatures, hashes, VerificationPolicy.BATCHED);
+			boolean plantedFound = planted.equals(new TreeSet<Integer>(found)) && found.size() == planted.size();
+			
+			logger.info("All valid signatures passed: " + validPass + "\n"
+					+ "Found " + found.size() + " invalid signatures, planted " + planted.size() + ". Found exactly the planted ones: " + plantedFound);
+			
+			return validPass && plantedFound;
+		} catch (Exception e) {
+			logger.info("Exception in TestSignatureVerification batchVerificationTest. \n"
+					+ e.getMessage() + "\n"
+					+ e.toString());
+			return false;
+		}
+	}
+
+}
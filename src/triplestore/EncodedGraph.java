@@ -0,0 +1,357 @@
+package triplestore;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import protocol.Log;
+import protocol.ModelTools;
+
+/**
+ * Read only copy of a model in which every term is replaced by its ID in a TermDictionary.
+ * Statement i is stored as subject[i], predicate[i], object[i], statement IDs are the order in which the model listed its statements.
+ * Two permutations of the statement IDs are kept: sorted by subject, predicate, object (SPO) and by object, subject, predicate (OSP),
+ * together with the position where each term starts in them. So all statements with a given subject or object can be found without a search.
+ * Analytics run over the IDs, terms are only turned back into Jena objects for their results.
+ * @author ---
+ *
+ */
+public class EncodedGraph 
+{
+	private final Model model;				// Model the graph was loaded from, used to turn IDs back into Jena objects
+	private final TermDictionary dictionary;
+	private final int size;					// number of statements
+	private final int[] subjects;			// subject ID of each statement
+	private final int[] predicates;			// predicate ID of each statement
+	private final int[] objects;			// object ID of each statement
+	private final int[] spo;				// statement IDs sorted by subject, predicate, object
+	private final int[] subjectOffsets;		// statements with subject t are spo[subjectOffsets[t]] to spo[subjectOffsets[t+1]-1]
+	private final int[] osp;				// statement IDs sorted by object, subject, predicate
+	private final int[] objectOffsets;		// statements with object t are osp[objectOffsets[t]] to osp[objectOffsets[t+1]-1]
+	
+	private EncodedGraph(Model model, TermDictionary dictionary, int[] subjects, int[] predicates, int[] objects)
+	{
+		this.model = model;
+		this.dictionary = dictionary;
+		this.size = subjects.length;
+		this.subjects = subjects;
+		this.predicates = predicates;
+		this.objects = objects;
+		
+		int terms = dictionary.size();
+		// Least significant key first, every pass is stable
+		spo = sortBy(sortBy(sortBy(identity(size), objects, terms), predicates, terms), subjects, terms);
+		subjectOffsets = offsets(subjects, terms);
+		osp = sortBy(sortBy(sortBy(identity(size), predicates, terms), subjects, terms), objects, terms);
+		objectOffsets = offsets(objects, terms);
+	}
+	
+	/**
+	 * Reads all statements of a model once and encodes them.
+	 * @param model
+	 * @return encoded graph
+	 */
+	public static EncodedGraph load(Model model)
+	{
+		Logger logger = Log.getLogger();
+		logger.info("Start loading model into encoded graph.");
+		
+		long modelSize = model.size();
+		if(modelSize > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Model has too many statements to be encoded: " + modelSize);
+		}
+		int size = (int) modelSize;
+		
+		TermDictionary dictionary = new TermDictionary(size);
+		int[] subjects = new int[size];
+		int[] predicates = new int[size];
+		int[] objects = new int[size];
+		
+		Graph graph = model.getGraph();
+		ExtendedIterator<Triple> triples = graph.find(Node.ANY, Node.ANY, Node.ANY);
+		int i = 0;
+		try
+		{
+			while(triples.hasNext())
+			{
+				Triple triple = triples.next();
+				if(i == size)
+				{
+					throw new IllegalStateException("Model changed while it was loaded into an encoded graph.");
+				}
+				subjects[i] = dictionary.encode(triple.getSubject());
+				predicates[i] = dictionary.encode(triple.getPredicate());
+				objects[i] = dictionary.encode(triple.getObject());
+				i++;
+			}
+		} finally
+		{
+			triples.close();
+		}
+		if(i != size)
+		{
+			throw new IllegalStateException("Model changed while it was loaded into an encoded graph.");
+		}
+		
+		EncodedGraph encoded = new EncodedGraph(model, dictionary, subjects, predicates, objects);
+		logger.info("Done loading model into encoded graph. Statements: " + size + " Terms: " + dictionary.size());
+		return encoded;
+	}
+	
+	/**
+	 * 
+	 * @return number of statements
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	public TermDictionary getDictionary()
+	{
+		return dictionary;
+	}
+	
+	/**
+	 * 
+	 * @param statement ID of a statement
+	 * @return term ID of the subject
+	 */
+	public int subject(int statement)
+	{
+		return subjects[statement];
+	}
+	
+	/**
+	 * 
+	 * @param statement ID of a statement
+	 * @return term ID of the predicate
+	 */
+	public int predicate(int statement)
+	{
+		return predicates[statement];
+	}
+	
+	/**
+	 * 
+	 * @param statement ID of a statement
+	 * @return term ID of the object
+	 */
+	public int object(int statement)
+	{
+		return objects[statement];
+	}
+	
+	/**
+	 * 
+	 * @param term ID of a term
+	 * @return number of statements with the term as subject
+	 */
+	public int outDegree(int term)
+	{
+		return subjectOffsets[term + 1] - subjectOffsets[term];
+	}
+	
+	/**
+	 * 
+	 * @param term ID of a term
+	 * @return number of statements with the term as object
+	 */
+	public int inDegree(int term)
+	{
+		return objectOffsets[term + 1] - objectOffsets[term];
+	}
+	
+	/**
+	 * 
+	 * @param term ID of a term
+	 * @return IDs of all statements with the term as subject, in SPO order
+	 */
+	public int[] statementsWithSubject(int term)
+	{
+		return Arrays.copyOfRange(spo, subjectOffsets[term], subjectOffsets[term + 1]);
+	}
+	
+	/**
+	 * 
+	 * @param term ID of a term
+	 * @return IDs of all statements with the term as object, in OSP order
+	 */
+	public int[] statementsWithObject(int term)
+	{
+		return Arrays.copyOfRange(osp, objectOffsets[term], objectOffsets[term + 1]);
+	}
+	
+	/**
+	 * 
+	 * @param term ID of a term
+	 * @return the term as resource or literal of the model the graph was loaded from
+	 */
+	public RDFNode getTerm(int term)
+	{
+		return model.asRDFNode(dictionary.getNode(term));
+	}
+	
+	/**
+	 * 
+	 * @param term ID of a term which is not a literal
+	 * @return the term as resource of the model the graph was loaded from
+	 */
+	public Resource getResource(int term)
+	{
+		return (Resource) getTerm(term);
+	}
+	
+	/**
+	 * 
+	 * @param statement ID of a statement
+	 * @return the statement as statement of the model the graph was loaded from
+	 */
+	public Statement getStatement(int statement)
+	{
+		return model.asStatement(getTriple(statement));
+	}
+	
+	/**
+	 * Lists the subjects in the order model.listResourcesWithProperty(null) returns them,
+	 * so algorithms on the graph can visit subjects in the same order as their model based versions.
+	 * @return term IDs of all subjects
+	 */
+	public int[] subjectsInModelOrder()
+	{
+		List<Resource> subjects = model.listResourcesWithProperty(null).toList();
+		int[] ids = new int[subjects.size()];
+		for(int i = 0; i < ids.length; i++)
+		{
+			ids[i] = dictionary.lookup(subjects.get(i));
+		}
+		return ids;
+	}
+	
+	/**
+	 * Creates a new model containing the given statements
+	 * @param statements IDs of statements, duplicates are allowed
+	 * @return model
+	 */
+	public Model toModel(int[] statements)
+	{
+		Model part = ModelFactory.createDefaultModel();
+		Graph graph = part.getGraph();
+		for(int statement : statements)
+		{
+			graph.add(getTriple(statement));
+		}
+		return part;
+	}
+	
+	/**
+	 * Encodes the given statements as bytes in the format of ModelTools.modelToBytes, without creating a model
+	 * @param statements IDs of statements
+	 * @return bytes encoding a model containing the statements
+	 */
+	public byte[] toBytes(int[] statements)
+	{
+		return ModelTools.triplesToBytes(Arrays.stream(statements).mapToObj((statement) -> getTriple(statement)).iterator());
+	}
+	
+	/**
+	 * Writes the given statements to a stream in the format of ModelTools.modelToBytes, without creating a model
+	 * @param statements IDs of statements
+	 * @param out is flushed but not closed
+	 */
+	public void write(int[] statements, OutputStream out)
+	{
+		ModelTools.writeTriples(Arrays.stream(statements).mapToObj((statement) -> getTriple(statement)).iterator(), out);
+	}
+	
+	/**
+	 * Finds the ID of a statement by searching the statements of its subject
+	 * @param triple
+	 * @return ID of the statement, -1 if the graph does not contain it
+	 */
+	public int statementId(Triple triple)
+	{
+		int subject = dictionary.lookup(triple.getSubject());
+		int predicate = dictionary.lookup(triple.getPredicate());
+		int object = dictionary.lookup(triple.getObject());
+		if(subject == -1 || predicate == -1 || object == -1)
+		{
+			return -1;
+		}
+		for(int i = subjectOffsets[subject]; i < subjectOffsets[subject + 1]; i++)
+		{
+			if(predicates[spo[i]] == predicate && objects[spo[i]] == object)
+			{
+				return spo[i];
+			}
+		}
+		return -1;
+	}
+	
+	private Triple getTriple(int statement)
+	{
+		return Triple.create(dictionary.getNode(subjects[statement]), dictionary.getNode(predicates[statement]), dictionary.getNode(objects[statement]));
+	}
+	
+	// ------------------ Sorting ------------------------------
+	
+	private static int[] identity(int size)
+	{
+		int[] order = new int[size];
+		for(int i = 0; i < size; i++)
+		{
+			order[i] = i;
+		}
+		return order;
+	}
+	
+	/**
+	 * Stable counting sort of statement IDs by a key column
+	 * @param order statement IDs
+	 * @param key term ID per statement
+	 * @param terms number of terms
+	 * @return statement IDs sorted by key, equal keys keep their order
+	 */
+	private static int[] sortBy(int[] order, int[] key, int terms)
+	{
+		int[] start = offsets(key, terms);
+		int[] sorted = new int[order.length];
+		for(int statement : order)
+		{
+			sorted[start[key[statement]]++] = statement;
+		}
+		return sorted;
+	}
+	
+	/**
+	 * 
+	 * @param key term ID per statement
+	 * @param terms number of terms
+	 * @return for every term the number of statements with a smaller key, plus the total number at the end
+	 */
+	private static int[] offsets(int[] key, int terms)
+	{
+		int[] offsets = new int[terms + 1];
+		for(int term : key)
+		{
+			offsets[term + 1]++;
+		}
+		for(int t = 0; t < terms; t++)
+		{
+			offsets[t + 1] += offsets[t];
+		}
+		return offsets;
+	}
+}
@@ -0,0 +1,116 @@
+package triplestore;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.RDFNode;
+
+/**
+ * Maps the terms (resources, blank nodes and literals) of a graph to int IDs and back.
+ * IDs are 0 to size()-1 and handed out in the order the terms are first seen.
+ * @author ---
+ *
+ */
+public class TermDictionary 
+{
+	private final HashMap<Node, Integer> ids;
+	private Node[] terms;
+	private final BitSet literals = new BitSet();
+	private int size = 0;
+	
+	/**
+	 * Creates an empty dictionary
+	 * @param expectedTerms used for the initial capacity
+	 */
+	public TermDictionary(int expectedTerms)
+	{
+		ids = new HashMap<Node, Integer>(expectedTerms * 4 / 3 + 1);
+		terms = new Node[Math.max(16, expectedTerms)];
+	}
+	
+	/**
+	 * Returns the ID of a term, adds the term if it is not in the dictionary yet
+	 * @param node term
+	 * @return ID of the term
+	 */
+	public int encode(Node node)
+	{
+		Integer id = ids.get(node);
+		if(id != null)
+		{
+			return id;
+		}
+		if(size == terms.length)
+		{
+			terms = Arrays.copyOf(terms, size * 2);
+		}
+		terms[size] = node;
+		if(node.isLiteral())
+		{
+			literals.set(size);
+		}
+		ids.put(node, size);
+		return size++;
+	}
+	
+	/**
+	 * 
+	 * @param node term
+	 * @return ID of the term, -1 if it is not in the dictionary
+	 */
+	public int lookup(Node node)
+	{
+		Integer id = ids.get(node);
+		return id == null ? -1 : id;
+	}
+	
+	/**
+	 * 
+	 * @param node term
+	 * @return ID of the term, -1 if it is not in the dictionary
+	 */
+	public int lookup(RDFNode node)
+	{
+		return lookup(node.asNode());
+	}
+	
+	/**
+	 * 
+	 * @param id
+	 * @return term with this ID
+	 */
+	public Node getNode(int id)
+	{
+		return terms[id];
+	}
+	
+	/**
+	 * 
+	 * @param id
+	 * @return true if the term with this ID is a literal, false if it is a resource or blank node
+	 */
+	public boolean isLiteral(int id)
+	{
+		return literals.get(id);
+	}
+	
+	/**
+	 * 
+	 * @return number of literals in the dictionary
+	 */
+	public int numberOfLiterals()
+	{
+		return literals.cardinality();
+	}
+	
+	/**
+	 * 
+	 * @return number of terms in the dictionary
+	 */
+	public int size()
+	{
+		return size;
+	}
+}